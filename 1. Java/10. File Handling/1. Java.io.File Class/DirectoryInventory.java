@@ -0,0 +1,463 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Recursive size, file count, directory count and newest file modification
+// time for every directory of a tree, kept up to date as the tree changes.
+//
+// f.length() answers for one file; a directory's total means walking its whole
+// subtree, which takes minutes on large trees. DirectoryInventory walks the
+// tree once (in parallel, with ParallelDirectoryWalker) and keeps one node per
+// directory holding the totals of its subtree. After that:
+// - summary(dir) is a hash lookup, O(1), however big the subtree is;
+// - a WatchService reports created, deleted and modified entries; each one is
+//   re-read from disk and the difference is added to its directory and all
+//   of its ancestors;
+// - when the WatchService reports OVERFLOW (events were lost), only the
+//   affected directory's subtree is scanned again.
+//
+// Usage:
+//   try (DirectoryInventory inventory = DirectoryInventory.open(Path.of("/data"), 8)) {
+//       DirectoryInventory.Summary s = inventory.summary(Path.of("/data/logs"));
+//       System.out.println(s.bytes() + " bytes in " + s.files() + " files");
+//   }
+//
+// Every directory needs its own watch registration; on Linux the number is
+// limited by fs.inotify.max_user_watches. Changes show up after the
+// WatchService delivers them, usually within milliseconds. Symbolic links are
+// counted as entries but not followed.
+public class DirectoryInventory implements AutoCloseable {
+    private final Path root;
+    private final int scanParallelism;
+    private final WatchService watchService;
+    private final Map<Path, Node> nodes = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Node> nodesByKey = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Thread watcher;
+    private final LongAdder eventsApplied = new LongAdder();
+    private final LongAdder rescans = new LongAdder();
+    private volatile boolean closed;
+
+    private DirectoryInventory(Path root, int scanParallelism) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.scanParallelism = scanParallelism;
+        this.watchService = this.root.getFileSystem().newWatchService();
+        Node top = scan(this.root);
+        lock.writeLock().lock();
+        try {
+            attach(top);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        watcher = new Thread(this::watchLoop, "directory-inventory");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    // Scans the tree under root with the given number of threads and starts watching it.
+    public static DirectoryInventory open(Path root, int scanParallelism) throws IOException {
+        if (!Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IllegalArgumentException("Not a directory: " + root);
+        }
+        return new DirectoryInventory(root, scanParallelism);
+    }
+
+    // Totals for the subtree under dir, or null if dir is not a known directory.
+    public Summary summary(Path dir) {
+        Node node = nodes.get(dir.toAbsolutePath().normalize());
+        if (node == null) return null;
+        lock.readLock().lock();
+        try {
+            return new Summary(node.totalBytes, node.totalFiles, node.totalDirectories, node.newestModified);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Summary rootSummary() {
+        return summary(root);
+    }
+
+    public long eventsApplied() {
+        return eventsApplied.sum();
+    }
+
+    public long rescans() {
+        return rescans.sum();
+    }
+
+    // Throws the tree away and scans it again.
+    public void rescanAll() throws IOException {
+        rescan(root);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close(); // wakes the watcher thread
+        try {
+            watcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- Watching ----
+
+    private void watchLoop() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Node dir = nodesByKey.get(key);
+            try {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan(dir != null ? dir.path : root);
+                    } else if (dir != null) {
+                        refresh(dir.path.resolve((Path) event.context()));
+                    }
+                    eventsApplied.increment();
+                }
+            } catch (IOException e) {
+                // Entries vanish between the event and our look at them; a failed
+                // rescan is retried on the next event for that directory
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            key.reset(); // false for a deleted directory; its parent's DELETE event removes it
+        }
+    }
+
+    // Brings one entry in line with the disk, whatever the event said
+    private void refresh(Path path) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            attributes = null;
+        }
+        Node subtree = null;
+        if (attributes != null && attributes.isDirectory() && !nodes.containsKey(path)) {
+            subtree = scan(path); // scan outside the lock; queries go on meanwhile
+        }
+        lock.writeLock().lock();
+        try {
+            Node parent = nodes.get(path.getParent());
+            if (parent == null) return; // outside the tree, or its parent is gone too
+            String name = path.getFileName().toString();
+            Node existingDir = parent.children.get(name);
+            FileInfo existingFile = parent.files.get(name);
+
+            if (existingDir != null && (attributes == null || !attributes.isDirectory())) {
+                detach(existingDir);
+                existingDir = null;
+            }
+            if (existingFile != null && (attributes == null || attributes.isDirectory())) {
+                removeFile(parent, name, existingFile);
+                existingFile = null;
+            }
+            if (attributes == null) return;
+            if (attributes.isDirectory()) {
+                if (existingDir == null && subtree != null) {
+                    subtree.parent = parent;
+                    attach(subtree);
+                } else if (existingDir != null && subtree != null) {
+                    // Scanned twice in a race: give the shared keys back to the nodes in the tree
+                    forEachNode(existingDir, n -> {
+                        if (n.key != null) nodesByKey.put(n.key, n);
+                    });
+                }
+            } else {
+                long modified = attributes.lastModifiedTime().toMillis();
+                long size = attributes.isRegularFile() ? attributes.size() : 0;
+                if (existingFile == null) {
+                    parent.files.put(name, new FileInfo(size, modified));
+                    addDelta(parent, size, 1, 0);
+                    fileTimeAdded(parent, modified);
+                } else if (existingFile.size != size || existingFile.modified != modified) {
+                    long oldModified = existingFile.modified;
+                    long delta = size - existingFile.size;
+                    existingFile.size = size;
+                    existingFile.modified = modified;
+                    addDelta(parent, delta, 0, 0);
+                    if (modified >= oldModified) fileTimeAdded(parent, modified);
+                    else fileTimeRemoved(parent, oldModified);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rescan(Path dir) throws IOException {
+        rescans.increment();
+        Node fresh = Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS) ? scan(dir) : null;
+        lock.writeLock().lock();
+        try {
+            Node old = nodes.get(dir);
+            Node parent = old != null ? old.parent : nodes.get(dir.getParent());
+            if (old != null) detach(old);
+            if (fresh != null && (parent != null || dir.equals(root))) {
+                fresh.parent = parent;
+                attach(fresh);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---- Tree maintenance (under the write lock, except scan) ----
+
+    // Builds a detached subtree with its totals; directories are registered with
+    // the WatchService before they are listed, so no change in between is missed
+    private Node scan(Path dir) throws IOException {
+        Map<Path, Node> scanned = new ConcurrentHashMap<>();
+        Node top = new Node(dir, null);
+        scanned.put(dir, top);
+        register(top);
+        ParallelDirectoryWalker walker = ParallelDirectoryWalker.builder().parallelism(scanParallelism).build();
+        walker.walk(dir, (path, attributes) -> {
+            if (path.equals(dir)) return; // the walk reports its root too
+            // The parent was visited before its entries were listed
+            Node owner = scanned.get(path.getParent());
+            String name = path.getFileName().toString();
+            if (attributes.isDirectory()) {
+                Node child = new Node(path, owner);
+                scanned.put(path, child);
+                try {
+                    register(child);
+                } catch (IOException e) {
+                    // e.g. the watch limit: the directory is counted but not watched
+                }
+                synchronized (owner) {
+                    owner.children.put(name, child);
+                }
+            } else {
+                long size = attributes.isRegularFile() ? attributes.size() : 0;
+                synchronized (owner) {
+                    owner.files.put(name, new FileInfo(size, attributes.lastModifiedTime().toMillis()));
+                }
+            }
+        });
+        computeTotals(top);
+        return top;
+    }
+
+    private void register(Node node) throws IOException {
+        node.key = node.path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        nodesByKey.put(node.key, node);
+    }
+
+    // Post-order: totals of every directory from its files and its subdirectories' totals
+    private static void computeTotals(Node top) {
+        Deque<Node> stack = new ArrayDeque<>();
+        List<Node> postOrder = new ArrayList<>();
+        stack.push(top);
+        while (!stack.isEmpty()) {
+            Node n = stack.pop();
+            postOrder.add(n);
+            for (Node child : n.children.values()) stack.push(child);
+        }
+        for (int i = postOrder.size() - 1; i >= 0; i--) {
+            Node n = postOrder.get(i);
+            n.recomputeOwnNewest();
+            long bytes = 0;
+            for (FileInfo f : n.files.values()) bytes += f.size;
+            n.totalBytes = bytes;
+            n.totalFiles = n.files.size();
+            n.totalDirectories = n.children.size();
+            long newest = n.ownNewest;
+            for (Node child : n.children.values()) {
+                n.totalBytes += child.totalBytes;
+                n.totalFiles += child.totalFiles;
+                n.totalDirectories += child.totalDirectories;
+                newest = Math.max(newest, child.newestModified);
+            }
+            n.newestModified = newest;
+        }
+    }
+
+    // Hooks a scanned subtree into the tree and adds its totals to the ancestors
+    private void attach(Node subtree) {
+        forEachNode(subtree, n -> {
+            nodes.put(n.path, n);
+            if (n.key != null) nodesByKey.put(n.key, n);
+        });
+        Node parent = subtree.parent;
+        if (parent == null) return;
+        parent.children.put(subtree.path.getFileName().toString(), subtree);
+        addDelta(parent, subtree.totalBytes, subtree.totalFiles, subtree.totalDirectories + 1);
+        if (subtree.newestModified > parent.newestModified) propagateNewest(parent);
+    }
+
+    // Removes a subtree, subtracting its totals from the ancestors. Registering
+    // a directory again returns the same WatchKey, so keys a rescan has taken
+    // over stay valid.
+    private void detach(Node subtree) {
+        forEachNode(subtree, n -> {
+            nodes.remove(n.path, n);
+            if (n.key != null && nodesByKey.remove(n.key, n)) n.key.cancel();
+        });
+        Node parent = subtree.parent;
+        if (parent == null) return;
+        parent.children.remove(subtree.path.getFileName().toString());
+        addDelta(parent, -subtree.totalBytes, -subtree.totalFiles, -(subtree.totalDirectories + 1));
+        if (subtree.newestModified >= parent.newestModified) propagateNewest(parent);
+    }
+
+    private void removeFile(Node dir, String name, FileInfo file) {
+        dir.files.remove(name);
+        addDelta(dir, -file.size, -1, 0);
+        fileTimeRemoved(dir, file.modified);
+    }
+
+    private static void addDelta(Node from, long bytes, long files, long directories) {
+        for (Node n = from; n != null; n = n.parent) {
+            n.totalBytes += bytes;
+            n.totalFiles += files;
+            n.totalDirectories += directories;
+        }
+    }
+
+    private static void fileTimeAdded(Node dir, long modified) {
+        if (modified > dir.ownNewest) dir.ownNewest = modified;
+        if (modified > dir.newestModified) propagateNewest(dir);
+    }
+
+    private static void fileTimeRemoved(Node dir, long modified) {
+        if (modified == dir.ownNewest) {
+            dir.recomputeOwnNewest(); // the newest file went away: look at the others
+            propagateNewest(dir);
+        }
+    }
+
+    // Recomputes newestModified upwards until an ancestor's value does not change
+    private static void propagateNewest(Node from) {
+        for (Node n = from; n != null; n = n.parent) {
+            long newest = n.ownNewest;
+            for (Node child : n.children.values()) newest = Math.max(newest, child.newestModified);
+            if (newest == n.newestModified) return;
+            n.newestModified = newest;
+        }
+    }
+
+    private static void forEachNode(Node top, java.util.function.Consumer<Node> action) {
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(top);
+        while (!stack.isEmpty()) {
+            Node n = stack.pop();
+            action.accept(n);
+            for (Node child : n.children.values()) stack.push(child);
+        }
+    }
+
+    private static final class FileInfo {
+        long size;
+        long modified;
+
+        FileInfo(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    private static final class Node {
+        final Path path;
+        Node parent;
+        final Map<String, Node> children = new HashMap<>();
+        final Map<String, FileInfo> files = new HashMap<>();
+        WatchKey key;
+        long ownNewest = Long.MIN_VALUE; // newest file directly in this directory
+        long totalBytes;
+        long totalFiles;
+        long totalDirectories;
+        long newestModified = Long.MIN_VALUE;
+
+        Node(Path path, Node parent) {
+            this.path = Objects.requireNonNull(path);
+            this.parent = parent;
+        }
+
+        void recomputeOwnNewest() {
+            long newest = Long.MIN_VALUE;
+            for (FileInfo f : files.values()) newest = Math.max(newest, f.modified);
+            ownNewest = newest;
+        }
+    }
+
+    // Totals of one directory's subtree (the directory itself not included in directories())
+    public static final class Summary {
+        private final long bytes;
+        private final long files;
+        private final long directories;
+        private final long newestModifiedMillis;
+
+        Summary(long bytes, long files, long directories, long newestModifiedMillis) {
+            this.bytes = bytes;
+            this.files = files;
+            this.directories = directories;
+            this.newestModifiedMillis = newestModifiedMillis;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+
+        // Files and other non-directory entries (links, devices)
+        public long files() {
+            return files;
+        }
+
+        public long directories() {
+            return directories;
+        }
+
+        // Epoch millis of the newest file, or Long.MIN_VALUE if there are no files
+        public long newestModifiedMillis() {
+            return newestModifiedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Summary{bytes=%d, files=%d, directories=%d, newest=%s}", bytes, files, directories,
+                    files == 0 ? "-" : java.time.Instant.ofEpochMilli(newestModifiedMillis).toString());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Summary)) return false;
+            Summary s = (Summary) o;
+            return bytes == s.bytes && files == s.files && directories == s.directories
+                    && newestModifiedMillis == s.newestModifiedMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bytes, files, directories, newestModifiedMillis);
+        }
+    }
+}
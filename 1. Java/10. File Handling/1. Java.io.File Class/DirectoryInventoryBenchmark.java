@@ -0,0 +1,106 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Asking "how big is this directory?" over and over:
+// - recursive File.listFiles()/length() for every question (the java.io way),
+// - DirectoryInventory: one scan, then summary() lookups,
+// and how long a change on disk takes to show up in the inventory.
+// Run with: java DirectoryInventoryBenchmark [directory]
+// Without a directory, a temporary tree of about 50,000 files is created
+// (and the change test, which writes files, only runs on that tree).
+public class DirectoryInventoryBenchmark {
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        Path root;
+        boolean temporary = args.length == 0;
+        if (temporary) {
+            root = Files.createTempDirectory("inventory-bench");
+            createTree(root, 100, 500);
+        } else {
+            root = Path.of(args[0]);
+        }
+        List<Path> directories = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root, 2)) {
+            paths.filter(Files::isDirectory).forEach(directories::add);
+        }
+
+        long start = System.nanoTime();
+        for (Path dir : directories) sink += sizeOf(dir.toFile());
+        long legacy = System.nanoTime() - start;
+        System.out.printf("%-40s %,12.1f ms for %d directories%n", "File.listFiles per question", legacy / 1e6,
+                directories.size());
+
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        start = System.nanoTime();
+        try (DirectoryInventory inventory = DirectoryInventory.open(root, threads)) {
+            System.out.printf("%-40s %,12.1f ms  %s%n", "DirectoryInventory.open (x" + threads + ")",
+                    (System.nanoTime() - start) / 1e6, inventory.rootSummary());
+
+            int rounds = 1_000_000 / directories.size() + 1;
+            for (int warmUp = 0; warmUp < 2; warmUp++) {
+                start = System.nanoTime();
+                for (int r = 0; r < rounds; r++) {
+                    for (Path dir : directories) sink += inventory.summary(dir).bytes();
+                }
+            }
+            long queries = (long) rounds * directories.size();
+            System.out.printf("%-40s %,12.1f ns per question%n", "DirectoryInventory.summary",
+                    (double) (System.nanoTime() - start) / queries);
+
+            if (temporary) {
+                // Append to files all over the tree and wait until the totals match
+                Path[] targets = new Path[1000];
+                for (int i = 0; i < targets.length; i++) {
+                    Path dir = root.resolve("d" + (i % 10)).resolve("sub" + (i % 100));
+                    targets[i] = dir.resolve("file" + (i % 500) + ".txt");
+                }
+                long before = inventory.rootSummary().bytes();
+                start = System.nanoTime();
+                for (Path target : targets) Files.write(target, new byte[100], StandardOpenOption.APPEND);
+                long written = System.nanoTime() - start;
+                while (inventory.rootSummary().bytes() != before + 100L * targets.length) Thread.sleep(0, 200_000);
+                System.out.printf("%-40s %,12.1f ms to write, %,.1f ms until visible (%d events)%n",
+                        targets.length + " appends", written / 1e6, (System.nanoTime() - start) / 1e6,
+                        inventory.eventsApplied());
+
+                start = System.nanoTime();
+                inventory.rescanAll();
+                System.out.printf("%-40s %,12.1f ms%n", "full rescan (what OVERFLOW would cost)",
+                        (System.nanoTime() - start) / 1e6);
+            }
+        }
+        if (temporary) deleteRecursively(root);
+    }
+
+    private static long sizeOf(File dir) {
+        File[] entries = dir.listFiles();
+        if (entries == null) return dir.length();
+        long total = 0;
+        for (File f : entries) total += f.isDirectory() ? sizeOf(f) : f.length();
+        return total;
+    }
+
+    private static void createTree(Path root, int directories, int filesPerDirectory) throws IOException {
+        for (int d = 0; d < directories; d++) {
+            Path dir = root.resolve("d" + (d % 10)).resolve("sub" + d);
+            Files.createDirectories(dir);
+            for (int f = 0; f < filesPerDirectory; f++) {
+                Files.write(dir.resolve("file" + f + ".txt"), new byte[f % 64]);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+}
@@ -21,6 +21,10 @@ public class DisplayAllDirectoryContent {
             // get the contents into arr[]
             // now arr[i] represent either a File or Directory
             String arr[] = f.list();
+            if (arr == null) {
+                System.out.println(f + " is not a directory");
+                return;
+            }
 
             // find no. of entries in the directory
             int n = arr.length;
@@ -28,8 +32,11 @@ public class DisplayAllDirectoryContent {
             // displaying the entries
             for (int i = 0; i < n; i++) {
                 System.out.println(arr[i]);
-                // create File object with the entry and test if it is a file or directory
-                File f1 = new File(arr[i]);
+                // create File object with the entry and test if it is a file or directory.
+                // The entry name must be resolved against f: new File(arr[i]) alone would
+                // point into the current working directory instead.
+                // (For large or deep trees see ParallelDirectoryWalker.)
+                File f1 = new File(f, arr[i]);
                 if (f1.isFile())
                     System.out.println(": is a file");
                 if (f1.isDirectory())
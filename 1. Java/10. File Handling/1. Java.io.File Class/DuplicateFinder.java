@@ -0,0 +1,473 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Finds files with identical content under one or more directory trees.
+//
+// Hashing every file reads the whole tree, and for terabytes that takes
+// hours. Most files can be ruled out without reading them at all:
+// 1. Size: the trees are walked (ParallelDirectoryWalker) and files are grouped
+//    by size. A file with a size nobody else has cannot have a duplicate.
+// 2. Edges: within a size group, only the first and last 4 KB are hashed.
+//    Files that differ usually differ there already (headers, trailers).
+// 3. Full hash: only files that still collide are hashed completely. Large
+//    files are read through FileChannel.map in fixed-size windows; smaller
+//    ones through a per-thread buffer.
+//
+// Stages 2 and 3 run on a thread pool. Memory stays bounded: besides the list
+// of files, each thread holds one buffer and at most one mapped window (each
+// window is unmapped as soon as it has been hashed, rather than whenever the
+// garbage collector gets to it).
+// Hard links (same file key) are read once and reported together with their
+// other names.
+//
+// Usage:
+//   DuplicateFinder.Result result = DuplicateFinder.builder().threads(8).build()
+//           .find(List.of(Path.of("/data"), Path.of("/backup")));
+//   for (DuplicateFinder.Group g : result.groups()) System.out.println(g);
+//   System.out.println(result.stats()); // bytes read vs. bytes in the trees
+public class DuplicateFinder {
+    private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+    private final int threads;
+    private final long minSize;
+    private final int edgeBytes;
+    private final long mapThreshold;
+    private final long mapWindow;
+    private final String algorithm;
+
+    private DuplicateFinder(Builder builder) {
+        this.threads = builder.threads;
+        this.minSize = builder.minSize;
+        this.edgeBytes = builder.edgeBytes;
+        this.mapThreshold = builder.mapThreshold;
+        this.mapWindow = builder.mapWindow;
+        this.algorithm = builder.algorithm;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Result find(List<Path> roots) throws IOException {
+        Stats stats = new Stats();
+        long start = System.nanoTime();
+
+        // 1. Walk and group by size; hard links collapse into one Candidate
+        Map<Long, Map<Object, Candidate>> bySize = new ConcurrentHashMap<>();
+        ParallelDirectoryWalker walker = ParallelDirectoryWalker.builder().parallelism(threads).build();
+        for (Path root : roots) {
+            walker.walk(root, (path, attributes) -> {
+                if (!attributes.isRegularFile()) return;
+                stats.files.increment();
+                stats.totalBytes.add(attributes.size());
+                if (attributes.size() < minSize) return;
+                Object key = attributes.fileKey() != null ? attributes.fileKey() : path;
+                Map<Object, Candidate> group = bySize.computeIfAbsent(attributes.size(), s -> new HashMap<>());
+                synchronized (group) {
+                    group.computeIfAbsent(key, k -> new Candidate(attributes.size())).paths.add(path);
+                }
+            });
+        }
+        List<Candidate> sameSize = new ArrayList<>();
+        for (Map<Object, Candidate> group : bySize.values()) {
+            if (group.size() > 1) sameSize.addAll(group.values());
+        }
+        bySize.clear();
+        stats.sameSize = sameSize.size();
+        stats.walkNanos = System.nanoTime() - start;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "duplicate-finder");
+            t.setDaemon(true);
+            return t;
+        });
+        ThreadLocal<Hasher> hashers = ThreadLocal.withInitial(Hasher::new);
+        try {
+            // 2. First and last edgeBytes; for small files that is the whole content
+            start = System.nanoTime();
+            parallel(pool, sameSize, c -> c.hash = hashers.get().edges(c, stats));
+            List<List<Candidate>> collisions = collide(sameSize);
+            List<Candidate> needFullHash = new ArrayList<>();
+            List<List<Candidate>> finished = new ArrayList<>();
+            for (List<Candidate> group : collisions) {
+                if (group.get(0).size <= 2L * edgeBytes) finished.add(group);
+                else needFullHash.addAll(group);
+            }
+            stats.sameEdges = needFullHash.size();
+            stats.edgeNanos = System.nanoTime() - start;
+
+            // 3. Full content
+            start = System.nanoTime();
+            parallel(pool, needFullHash, c -> c.hash = hashers.get().full(c, stats));
+            finished.addAll(collide(needFullHash));
+            stats.fullNanos = System.nanoTime() - start;
+
+            List<Group> groups = new ArrayList<>(finished.size());
+            for (List<Candidate> group : finished) {
+                List<Path> paths = new ArrayList<>();
+                for (Candidate c : group) paths.addAll(c.paths);
+                Collections.sort(paths);
+                groups.add(new Group(group.get(0).size, group.get(0).hash, paths));
+            }
+            groups.sort(Comparator.comparingLong(Group::wastedBytes).reversed()
+                    .thenComparing(g -> g.paths.get(0)));
+            return new Result(groups, stats);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Groups candidates of the same size whose hashes are equal; drops the unique
+    // ones (a file whose only twins are its own hard links shares storage already)
+    private static List<List<Candidate>> collide(List<Candidate> candidates) {
+        Map<ContentKey, List<Candidate>> byKey = new HashMap<>();
+        for (Candidate c : candidates) {
+            if (c.hash == null) continue; // unreadable
+            byKey.computeIfAbsent(new ContentKey(c.size, c.hash), k -> new ArrayList<>()).add(c);
+        }
+        List<List<Candidate>> collisions = new ArrayList<>();
+        for (List<Candidate> group : byKey.values()) {
+            if (group.size() > 1) collisions.add(group);
+        }
+        return collisions;
+    }
+
+    private <T> void parallel(ExecutorService pool, List<T> items, Consumer<T> action) {
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        int workers = Math.min(threads, items.size());
+        for (int w = 0; w < workers; w++) {
+            futures.add(pool.submit(() -> {
+                for (int i; (i = next.getAndIncrement()) < items.size(); ) action.accept(items.get(i));
+            }));
+        }
+        try {
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Hashing failed", e.getCause());
+        }
+    }
+
+    // Releases the mapping now; without a cleaner it stays until garbage collected
+    private static void unmap(MappedByteBuffer window) {
+        if (INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) window);
+        } catch (Throwable t) {
+            // Left to the garbage collector
+        }
+    }
+
+    // sun.misc.Unsafe.invokeCleaner (jdk.unsupported); null if unavailable
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(unsafe);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // One per pool thread: a digest and a read buffer, reused for every file
+    private final class Hasher {
+        final MessageDigest digest;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+        Hasher() {
+            try {
+                digest = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("Unknown digest: " + algorithm, e);
+            }
+        }
+
+        byte[] edges(Candidate c, Stats stats) {
+            Path path = c.paths.get(0);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = c.size;
+                if (size <= 2L * edgeBytes) {
+                    read(channel, 0, size, stats);
+                } else {
+                    read(channel, 0, edgeBytes, stats);
+                    read(channel, size - edgeBytes, edgeBytes, stats);
+                }
+                return digest.digest();
+            } catch (IOException e) {
+                stats.errors.increment();
+                digest.reset();
+                return null;
+            }
+        }
+
+        byte[] full(Candidate c, Stats stats) {
+            Path path = c.paths.get(0);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = c.size;
+                if (size < mapThreshold) {
+                    read(channel, 0, size, stats);
+                } else {
+                    for (long position = 0; position < size; position += mapWindow) {
+                        long length = Math.min(mapWindow, size - position);
+                        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                        try {
+                            digest.update(window);
+                        } finally {
+                            unmap(window);
+                        }
+                        stats.bytesRead.add(length);
+                    }
+                }
+                if (channel.size() != size) throw new IOException("File changed while hashing: " + path);
+                return digest.digest();
+            } catch (IOException e) {
+                stats.errors.increment();
+                digest.reset();
+                return null;
+            }
+        }
+
+        private void read(FileChannel channel, long position, long length, Stats stats) throws IOException {
+            long end = position + length;
+            while (position < end) {
+                buffer.clear();
+                if (end - position < buffer.capacity()) buffer.limit((int) (end - position));
+                int n = channel.read(buffer, position);
+                if (n < 0) throw new IOException("File shrank while hashing");
+                buffer.flip();
+                digest.update(buffer);
+                position += n;
+                stats.bytesRead.add(n);
+            }
+        }
+    }
+
+    private static final class Candidate {
+        final long size;
+        final List<Path> paths = new ArrayList<>(1); // more than one for hard links
+        volatile byte[] hash;
+
+        Candidate(long size) {
+            this.size = size;
+        }
+    }
+
+    private static final class ContentKey {
+        final long size;
+        final byte[] hash;
+        final int hashCode;
+
+        ContentKey(long size, byte[] hash) {
+            this.size = size;
+            this.hash = hash;
+            this.hashCode = 31 * Long.hashCode(size) + Arrays.hashCode(hash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ContentKey)) return false;
+            ContentKey k = (ContentKey) o;
+            return size == k.size && Arrays.equals(hash, k.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    // Files with the same content
+    public static final class Group {
+        private final long size;
+        private final byte[] hash;
+        private final List<Path> paths;
+
+        Group(long size, byte[] hash, List<Path> paths) {
+            this.size = size;
+            this.hash = hash;
+            this.paths = Collections.unmodifiableList(paths);
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public List<Path> paths() {
+            return paths;
+        }
+
+        // Bytes that keeping one copy would free (ignoring hard links, which share storage)
+        public long wastedBytes() {
+            return size * (paths.size() - 1);
+        }
+
+        public String hashHex() {
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) sb.append(String.format("%02x", b));
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return paths.size() + " x " + size + " bytes " + hashHex().substring(0, 12) + " " + paths;
+        }
+    }
+
+    public static final class Result {
+        private final List<Group> groups;
+        private final Stats stats;
+
+        Result(List<Group> groups, Stats stats) {
+            this.groups = Collections.unmodifiableList(groups);
+            this.stats = stats;
+        }
+
+        // Largest waste first
+        public List<Group> groups() {
+            return groups;
+        }
+
+        public Stats stats() {
+            return stats;
+        }
+    }
+
+    public static final class Stats {
+        final LongAdder files = new LongAdder();
+        final LongAdder totalBytes = new LongAdder();
+        final LongAdder bytesRead = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        long sameSize;
+        long sameEdges;
+        long walkNanos;
+        long edgeNanos;
+        long fullNanos;
+
+        Stats() {
+        }
+
+        public long files() {
+            return files.sum();
+        }
+
+        // Size of all regular files in the trees
+        public long totalBytes() {
+            return totalBytes.sum();
+        }
+
+        // What was actually read to decide
+        public long bytesRead() {
+            return bytesRead.sum();
+        }
+
+        // Files (hard links counted once) left after the size and edge stages
+        public long sameSize() {
+            return sameSize;
+        }
+
+        public long sameEdges() {
+            return sameEdges;
+        }
+
+        // Files that vanished or could not be read while hashing; they are left out
+        public long errors() {
+            return errors.sum();
+        }
+
+        @Override
+        public String toString() {
+            long total = totalBytes();
+            return String.format("%,d files, %,d bytes; candidates: %,d same size, %,d same edges; "
+                            + "read %,d bytes (%.2f%%); %d errors; walk %.1f ms, edges %.1f ms, full %.1f ms",
+                    files(), total, sameSize, sameEdges, bytesRead(), total == 0 ? 0.0 : 100.0 * bytesRead() / total,
+                    errors(), walkNanos / 1e6, edgeNanos / 1e6, fullNanos / 1e6);
+        }
+    }
+
+    public static final class Builder {
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private long minSize = 1;
+        private int edgeBytes = 4096;
+        private long mapThreshold = 1 << 20;
+        private long mapWindow = 64L << 20;
+        private String algorithm = "SHA-256";
+
+        private Builder() {
+        }
+
+        // Threads for walking and hashing (default: one per core)
+        public Builder threads(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("Threads must be >= 1: " + threads);
+            this.threads = threads;
+            return this;
+        }
+
+        // Smaller files are ignored (default 1: empty files are not reported)
+        public Builder minSize(long bytes) {
+            if (bytes < 0) throw new IllegalArgumentException("Negative minimum size: " + bytes);
+            this.minSize = bytes;
+            return this;
+        }
+
+        // Bytes hashed at each end in the edge stage (default 4096)
+        public Builder edgeBytes(int bytes) {
+            if (bytes < 1) throw new IllegalArgumentException("Edge bytes must be >= 1: " + bytes);
+            this.edgeBytes = bytes;
+            return this;
+        }
+
+        // Files this large or larger are mapped (default 1 MB), in windows of
+        // mapWindow bytes (default 64 MB). Every window costs a map and an
+        // unmap system call, so tiny ones do not pay off: at least 64 KB.
+        public Builder mapping(long threshold, long window) {
+            if (threshold < 0 || window < 64 * 1024 || window > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Bad mapping threshold/window: " + threshold + "/" + window);
+            }
+            this.mapThreshold = threshold;
+            this.mapWindow = window;
+            return this;
+        }
+
+        // MessageDigest algorithm (default SHA-256)
+        public Builder algorithm(String algorithm) {
+            this.algorithm = algorithm;
+            return this;
+        }
+
+        public DuplicateFinder build() {
+            return new DuplicateFinder(this);
+        }
+    }
+}
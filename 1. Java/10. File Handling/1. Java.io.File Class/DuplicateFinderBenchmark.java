@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Finding duplicate files two ways:
+// - hash every file completely and group by hash (the obvious way),
+// - DuplicateFinder (size, then first/last 4 KB, then full hash of what is left),
+// reporting time and how many bytes each had to read.
+// Run with: java DuplicateFinderBenchmark [directory]
+// Without a directory, a temporary tree of about 1 GB is created: files of
+// many sizes, some copied, some of them with a one-byte change in the middle.
+public class DuplicateFinderBenchmark {
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        Path root;
+        boolean temporary = args.length == 0;
+        if (temporary) {
+            root = Files.createTempDirectory("duplicates-bench");
+            createTree(root);
+        } else {
+            root = Path.of(args[0]);
+        }
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        long start = System.nanoTime();
+        long[] read = new long[1];
+        int naiveGroups = hashEverything(root, read);
+        long naiveNanos = System.nanoTime() - start;
+        System.out.printf("%-26s %9.1f ms  %,15d bytes read  %,d groups%n", "Full hash of every file",
+                naiveNanos / 1e6, read[0], naiveGroups);
+
+        DuplicateFinder finder = DuplicateFinder.builder().threads(threads).build();
+        start = System.nanoTime();
+        DuplicateFinder.Result result = finder.find(List.of(root));
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-26s %9.1f ms  %,15d bytes read  %,d groups%n", "DuplicateFinder x" + threads,
+                nanos / 1e6, result.stats().bytesRead(), result.groups().size());
+        System.out.println(result.stats());
+        long wasted = 0;
+        for (DuplicateFinder.Group g : result.groups()) wasted += g.wastedBytes();
+        System.out.printf("%,d bytes could be freed; largest groups:%n", wasted);
+        result.groups().stream().limit(5).forEach(g -> System.out.println("  " + g));
+
+        if (temporary) {
+            try (Stream<Path> s = Files.walk(root)) {
+                for (Path p : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+            }
+        }
+    }
+
+    private static int hashEverything(Path root, long[] read) throws Exception {
+        Map<String, Integer> counts = new HashMap<>();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[64 * 1024];
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> s = Files.walk(root)) {
+            s.filter(Files::isRegularFile).forEach(files::add);
+        }
+        for (Path p : files) {
+            try (InputStream in = Files.newInputStream(p)) {
+                for (int n; (n = in.read(buffer)) > 0; ) {
+                    digest.update(buffer, 0, n);
+                    read[0] += n;
+                }
+            }
+            byte[] hash = digest.digest();
+            counts.merge(Files.size(p) + ":" + new BigInteger(1, hash), 1, Integer::sum);
+        }
+        int groups = 0;
+        for (int c : counts.values()) if (c > 1) groups++;
+        sink += groups;
+        return groups;
+    }
+
+    private static void createTree(Path root) throws IOException {
+        Random random = new Random(42);
+        long written = 0;
+        List<byte[]> originals = new ArrayList<>();
+        for (int i = 0; written < 1L << 30; i++) {
+            Path dir = root.resolve("d" + (i % 20));
+            Files.createDirectories(dir);
+            byte[] content;
+            if (!originals.isEmpty() && random.nextInt(10) == 0) {
+                content = originals.get(random.nextInt(originals.size())).clone();
+                if (random.nextBoolean()) content[content.length / 2] ^= 1; // same size and edges, different file
+            } else {
+                // Mostly small files, a few large ones
+                boolean large = random.nextInt(100) == 0;
+                int size = large ? (8 << 20) + random.nextInt(1 << 20) : 1 + random.nextInt(256 << 10);
+                content = new byte[size];
+                random.nextBytes(content);
+                if (size > 64 << 10 && originals.size() < 200) originals.add(content);
+            }
+            Files.write(dir.resolve("file" + i + ".bin"), content);
+            written += content.length;
+        }
+    }
+}
@@ -3,9 +3,11 @@
 // it displays the property of that file or directory.
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 
 public class FileClassExample {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
 
         // accept file name or directory name through command line args
         String fname = args[0];
@@ -24,5 +26,14 @@ public class FileClassExample {
             System.out.println("Is a directory: " + f.isDirectory());
             System.out.println("File Size in bytes: " + f.length());
         }
+
+        // Each call above asks the operating system again. FileMetadata reads
+        // all of it with one call and answers from the snapshot.
+        FileMetadata m = FileMetadata.of(Path.of(fname));
+        System.out.println("Snapshot: " + m);
+        if (m.exists()) {
+            System.out.println("Is writable: " + m.canWrite() + ", readable: " + m.canRead() + ", directory: "
+                    + m.isDirectory() + ", size: " + m.length());
+        }
     }
 }
@@ -0,0 +1,360 @@
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Everything FileClassExample asks a File about, read with one call.
+//
+// f.exists(), f.canWrite(), f.canRead(), f.isDirectory() and f.length() are
+// five separate system calls (stat or access) on the same path. That is
+// nothing for one file, but on NFS or overlay file systems, checking
+// thousands of paths spends most of its time waiting for those round trips.
+//
+// FileMetadata.of(path) makes a single Files.readAttributes call and returns
+// an immutable snapshot:
+// - where the "unix" attribute view exists (Linux, macOS), one stat gives the
+//   type, size, times, file key, permission bits, uid and gid; canRead(),
+//   canWrite() and canExecute() are worked out from the bits for the current
+//   user and groups, without further calls;
+// - elsewhere the "posix" view is read when supported, else the "basic" one,
+//   and the access checks fall back to Files.isReadable/isWritable/isExecutable.
+//
+// Worked-out access ignores ACLs and read-only mounts, which access(2) (and so
+// File.canWrite) would take into account.
+//
+// readAll(paths, threads) reads many paths in parallel; FileMetadataCache adds
+// a time-to-live cache in front.
+//
+// Usage:
+//   FileMetadata m = FileMetadata.of(Path.of("notes.txt"));
+//   if (m.exists() && m.canRead()) System.out.println(m.length() + " bytes");
+public final class FileMetadata {
+    private static final String UNIX_ATTRIBUTES = "unix:size,lastModifiedTime,lastAccessTime,creationTime,fileKey,"
+            + "isRegularFile,isDirectory,isSymbolicLink,isOther,mode,uid,gid";
+    private static final PosixFilePermission[] PERMISSION_BITS = {
+            // Bit 8 (0400) down to bit 0 (0001)
+            PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE,
+            PosixFilePermission.GROUP_READ, PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_EXECUTE,
+            PosixFilePermission.OTHERS_READ, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_EXECUTE};
+
+    private static final int DIRECTORY = 1, REGULAR_FILE = 2, SYMBOLIC_LINK = 4, OTHER = 8;
+    private static final int READ = 1, WRITE = 2, EXECUTE = 4;
+
+    private final Path path;
+    private final boolean exists;
+    private final int type;
+    private final long size;
+    private final long lastModifiedMillis;
+    private final long lastAccessMillis;
+    private final long creationMillis;
+    private final Object fileKey;
+    private final Set<PosixFilePermission> permissions; // null if the file system has none
+    private final int uid;
+    private final int gid;
+    private final int access;
+    private final IOException error;
+
+    private FileMetadata(Path path, boolean exists, int type, long size, long lastModifiedMillis,
+            long lastAccessMillis, long creationMillis, Object fileKey, Set<PosixFilePermission> permissions,
+            int uid, int gid, int access, IOException error) {
+        this.path = path;
+        this.exists = exists;
+        this.type = type;
+        this.size = size;
+        this.lastModifiedMillis = lastModifiedMillis;
+        this.lastAccessMillis = lastAccessMillis;
+        this.creationMillis = creationMillis;
+        this.fileKey = fileKey;
+        this.permissions = permissions;
+        this.uid = uid;
+        this.gid = gid;
+        this.access = access;
+        this.error = error;
+    }
+
+    // Reads the metadata of path, following symbolic links like java.io.File
+    // does. A missing file gives exists() == false; other failures (e.g. a
+    // parent directory we may not enter) are thrown.
+    public static FileMetadata of(Path path, LinkOption... options) throws IOException {
+        Objects.requireNonNull(path);
+        try {
+            FileSystem fs = path.getFileSystem();
+            Set<String> views = fs.supportedFileAttributeViews();
+            if (views.contains("unix") && CurrentUser.KNOWN) return fromUnix(path, options);
+            if (views.contains("posix")) return fromPosix(path, options);
+            return fromBasic(path, options);
+        } catch (NoSuchFileException e) {
+            return missing(path, null);
+        }
+    }
+
+    // Reads many paths with the given number of threads. The result is in the
+    // order of paths; a path that could not be read comes back with
+    // exists() == false and the exception in error().
+    public static List<FileMetadata> readAll(List<Path> paths, int threads) {
+        FileMetadata[] results = new FileMetadata[paths.size()];
+        int workers = Math.max(1, Math.min(threads, paths.size()));
+        if (workers == 1) {
+            for (int i = 0; i < results.length; i++) results[i] = readOrFailed(paths.get(i));
+            return Collections.unmodifiableList(Arrays.asList(results));
+        }
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "file-metadata");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                futures.add(pool.submit(() -> {
+                    // Workers claim small blocks of indices; a slow path does not hold up the rest
+                    for (int start; (start = next.getAndAdd(16)) < results.length; ) {
+                        int end = Math.min(start + 16, results.length);
+                        for (int i = start; i < end; i++) results[i] = readOrFailed(paths.get(i));
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading file metadata", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Reading file metadata failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    private static FileMetadata readOrFailed(Path path) {
+        try {
+            return of(path);
+        } catch (IOException e) {
+            return missing(path, e);
+        }
+    }
+
+    private static FileMetadata missing(Path path, IOException error) {
+        return new FileMetadata(path, false, 0, 0, 0, 0, 0, null, null, -1, -1, 0, error);
+    }
+
+    private static FileMetadata fromUnix(Path path, LinkOption... options) throws IOException {
+        Map<String, Object> a = Files.readAttributes(path, UNIX_ATTRIBUTES, options);
+        int mode = (Integer) a.get("mode");
+        int uid = (Integer) a.get("uid");
+        int gid = (Integer) a.get("gid");
+        int type = type((Boolean) a.get("isDirectory"), (Boolean) a.get("isRegularFile"),
+                (Boolean) a.get("isSymbolicLink"), (Boolean) a.get("isOther"));
+        return new FileMetadata(path, true, type, (Long) a.get("size"), millis(a.get("lastModifiedTime")),
+                millis(a.get("lastAccessTime")), millis(a.get("creationTime")), a.get("fileKey"),
+                permissions(mode), uid, gid, CurrentUser.access(mode, uid, gid, type == DIRECTORY), null);
+    }
+
+    private static FileMetadata fromPosix(Path path, LinkOption... options) throws IOException {
+        PosixFileAttributes a = Files.readAttributes(path, PosixFileAttributes.class, options);
+        int type = type(a.isDirectory(), a.isRegularFile(), a.isSymbolicLink(), a.isOther());
+        return new FileMetadata(path, true, type, a.size(), a.lastModifiedTime().toMillis(),
+                a.lastAccessTime().toMillis(), a.creationTime().toMillis(), a.fileKey(),
+                Collections.unmodifiableSet(EnumSet.copyOf(a.permissions())), -1, -1, checkAccess(path), null);
+    }
+
+    private static FileMetadata fromBasic(Path path, LinkOption... options) throws IOException {
+        BasicFileAttributes a = Files.readAttributes(path, BasicFileAttributes.class, options);
+        int type = type(a.isDirectory(), a.isRegularFile(), a.isSymbolicLink(), a.isOther());
+        return new FileMetadata(path, true, type, a.size(), a.lastModifiedTime().toMillis(),
+                a.lastAccessTime().toMillis(), a.creationTime().toMillis(), a.fileKey(), null, -1, -1,
+                checkAccess(path), null);
+    }
+
+    // Three more calls, for file systems whose permissions we cannot interpret ourselves
+    private static int checkAccess(Path path) {
+        return (Files.isReadable(path) ? READ : 0) | (Files.isWritable(path) ? WRITE : 0)
+                | (Files.isExecutable(path) ? EXECUTE : 0);
+    }
+
+    private static int type(boolean directory, boolean regularFile, boolean symbolicLink, boolean other) {
+        return (directory ? DIRECTORY : 0) | (regularFile ? REGULAR_FILE : 0) | (symbolicLink ? SYMBOLIC_LINK : 0)
+                | (other ? OTHER : 0);
+    }
+
+    private static long millis(Object fileTime) {
+        return ((FileTime) fileTime).toMillis();
+    }
+
+    private static Set<PosixFilePermission> permissions(int mode) {
+        EnumSet<PosixFilePermission> set = EnumSet.noneOf(PosixFilePermission.class);
+        for (int i = 0; i < PERMISSION_BITS.length; i++) {
+            if ((mode & (0400 >> i)) != 0) set.add(PERMISSION_BITS[i]);
+        }
+        return Collections.unmodifiableSet(set);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public boolean exists() {
+        return exists;
+    }
+
+    public boolean isDirectory() {
+        return (type & DIRECTORY) != 0;
+    }
+
+    // Named like File.isFile(): a regular file
+    public boolean isFile() {
+        return (type & REGULAR_FILE) != 0;
+    }
+
+    // Only ever true when read with LinkOption.NOFOLLOW_LINKS
+    public boolean isSymbolicLink() {
+        return (type & SYMBOLIC_LINK) != 0;
+    }
+
+    public boolean isOther() {
+        return (type & OTHER) != 0;
+    }
+
+    // Size in bytes, 0 if the file does not exist (like File.length())
+    public long length() {
+        return size;
+    }
+
+    // Epoch millis, 0 if the file does not exist (like File.lastModified())
+    public long lastModified() {
+        return lastModifiedMillis;
+    }
+
+    public long lastAccess() {
+        return lastAccessMillis;
+    }
+
+    public long creation() {
+        return creationMillis;
+    }
+
+    // Identifies the file (device and inode on Unix); null if not available
+    public Object fileKey() {
+        return fileKey;
+    }
+
+    public boolean canRead() {
+        return (access & READ) != 0;
+    }
+
+    public boolean canWrite() {
+        return (access & WRITE) != 0;
+    }
+
+    public boolean canExecute() {
+        return (access & EXECUTE) != 0;
+    }
+
+    // The permission bits, or null where the file system has none (e.g. Windows)
+    public Set<PosixFilePermission> permissions() {
+        return permissions;
+    }
+
+    // Numeric owner and group, -1 if not read
+    public int uid() {
+        return uid;
+    }
+
+    public int gid() {
+        return gid;
+    }
+
+    // Why a batch read failed; null for files that were read (or simply do not exist)
+    public IOException error() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        if (!exists) return "FileMetadata{" + path + (error != null ? ", error=" + error : ", missing") + "}";
+        String kind = isDirectory() ? "directory" : isFile() ? "file" : isSymbolicLink() ? "link" : "other";
+        return "FileMetadata{" + path + ", " + kind + ", " + size + " bytes, "
+                + FileTime.fromMillis(lastModifiedMillis) + ", " + (canRead() ? "r" : "-") + (canWrite() ? "w" : "-")
+                + (canExecute() ? "x" : "-") + (permissions != null ? ", " + permissionString() : "") + "}";
+    }
+
+    private String permissionString() {
+        StringBuilder sb = new StringBuilder(9);
+        for (int i = 0; i < PERMISSION_BITS.length; i++) {
+            sb.append(permissions.contains(PERMISSION_BITS[i]) ? "rwx".charAt(i % 3) : '-');
+        }
+        return sb.toString();
+    }
+
+    // Who we are, read once: needed to apply permission bits the way the kernel does
+    private static final class CurrentUser {
+        static final boolean KNOWN;
+        static final long UID;
+        static final long[] GROUPS;
+
+        static {
+            boolean known = false;
+            long uid = -1;
+            long[] groups = new long[0];
+            try {
+                com.sun.security.auth.module.UnixSystem system = new com.sun.security.auth.module.UnixSystem();
+                uid = system.getUid();
+                long[] supplementary = system.getGroups();
+                groups = Arrays.copyOf(supplementary == null ? new long[0] : supplementary,
+                        supplementary == null ? 1 : supplementary.length + 1);
+                groups[groups.length - 1] = system.getGid();
+                known = true;
+            } catch (LinkageError | RuntimeException e) {
+                // Not a Unix JDK, or the jdk.security.auth module is missing
+            }
+            KNOWN = known;
+            UID = uid;
+            GROUPS = groups;
+        }
+
+        static int access(int mode, int uid, int gid, boolean directory) {
+            if (UID == 0) {
+                // root may read and write anything, and execute what anyone may execute
+                boolean anyExecute = (mode & 0111) != 0;
+                return READ | WRITE | (anyExecute || directory ? EXECUTE : 0);
+            }
+            int shift;
+            if (UID == uid) {
+                shift = 6;
+            } else if (inGroup(gid)) {
+                shift = 3;
+            } else {
+                shift = 0;
+            }
+            int bits = (mode >> shift) & 7; // rwx
+            return ((bits & 4) != 0 ? READ : 0) | ((bits & 2) != 0 ? WRITE : 0) | ((bits & 1) != 0 ? EXECUTE : 0);
+        }
+
+        private static boolean inGroup(int gid) {
+            for (long g : GROUPS) {
+                if (g == gid) return true;
+            }
+            return false;
+        }
+    }
+}
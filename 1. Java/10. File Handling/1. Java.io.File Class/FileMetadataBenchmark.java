@@ -0,0 +1,89 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Checking exists/canWrite/canRead/isDirectory/length for many paths:
+// - the five java.io.File calls FileClassExample makes,
+// - FileMetadata.of (one call per path),
+// - FileMetadata.readAll on several threads,
+// - FileMetadataCache once its entries are loaded.
+// Run with: java FileMetadataBenchmark [directory]
+// Without a directory, 20,000 temporary files are created. The gap is widest
+// on network file systems, where every call is a round trip.
+public class FileMetadataBenchmark {
+    private static volatile long sink;
+
+    public static void main(String[] args) throws IOException {
+        Path root;
+        boolean temporary = args.length == 0;
+        List<Path> paths = new ArrayList<>();
+        if (temporary) {
+            root = Files.createTempDirectory("metadata-bench");
+            for (int i = 0; i < 20_000; i++) {
+                Path p = root.resolve("file" + i + ".txt");
+                Files.write(p, new byte[i % 100]);
+                paths.add(p);
+            }
+        } else {
+            root = Path.of(args[0]);
+            try (Stream<Path> s = Files.walk(root)) {
+                s.limit(200_000).forEach(paths::add);
+            }
+        }
+        int threads = Math.max(8, Runtime.getRuntime().availableProcessors());
+        FileMetadataCache cache = FileMetadataCache.builder()
+                .ttl(Duration.ofMinutes(1)).maximumSize(paths.size()).threads(threads).build();
+        cache.getAll(paths);
+
+        for (int round = 1; round <= 3; round++) { // the first rounds warm up the JIT
+            System.out.printf("Round %d, %d paths%n", round, paths.size());
+            long start = System.nanoTime();
+            long total = 0;
+            for (Path p : paths) {
+                File f = p.toFile();
+                if (f.exists() && f.canWrite() && f.canRead() && !f.isDirectory()) total += f.length();
+            }
+            print("File: five calls", start, paths.size(), total);
+
+            start = System.nanoTime();
+            total = 0;
+            for (Path p : paths) {
+                FileMetadata m = FileMetadata.of(p);
+                if (m.exists() && m.canWrite() && m.canRead() && !m.isDirectory()) total += m.length();
+            }
+            print("FileMetadata.of", start, paths.size(), total);
+
+            start = System.nanoTime();
+            total = 0;
+            for (FileMetadata m : FileMetadata.readAll(paths, threads)) {
+                if (m.exists() && m.canWrite() && m.canRead() && !m.isDirectory()) total += m.length();
+            }
+            print("FileMetadata.readAll x" + threads, start, paths.size(), total);
+
+            start = System.nanoTime();
+            total = 0;
+            for (Path p : paths) {
+                FileMetadata m = cache.get(p);
+                if (m.exists() && m.canWrite() && m.canRead() && !m.isDirectory()) total += m.length();
+            }
+            print("FileMetadataCache.get (warm)", start, paths.size(), total);
+        }
+        if (temporary) {
+            try (Stream<Path> s = Files.walk(root)) {
+                for (Path p : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+            }
+        }
+    }
+
+    private static void print(String label, long start, int paths, long total) {
+        long nanos = System.nanoTime() - start;
+        sink += total;
+        System.out.printf("  %-32s %9.1f ms %8.2f us/path%n", label, nanos / 1e6, nanos / 1e3 / paths);
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// A FileMetadata cache for code that checks the same paths over and over
+// (build tools, file servers, config reloaders).
+//
+// - Entries are fresh for a fixed time (ttl) after they were read; an older
+//   entry is read again on the next get.
+// - At most maximumSize paths are kept; beyond that the oldest entries are
+//   dropped first.
+// - Reads and lookups from many threads need no lock; two threads missing
+//   the same path at the same time may both read it, which is harmless.
+// - getAll reads all misses in parallel with FileMetadata.readAll.
+//
+// The cache cannot know when a file changes, so a result can be up to ttl
+// old. invalidate(path) drops one entry when you know it changed.
+//
+// Usage:
+//   FileMetadataCache cache = FileMetadataCache.builder()
+//           .ttl(Duration.ofSeconds(2)).maximumSize(100_000).threads(16).build();
+//   FileMetadata m = cache.get(Path.of("config.yml"));
+//   List<FileMetadata> all = cache.getAll(paths);
+public class FileMetadataCache {
+    private final long ttlNanos;
+    private final int maximumSize;
+    private final int threads;
+    private final ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<>();
+    // Entries in the order they were stored; may hold replaced entries, which are skipped
+    private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private FileMetadataCache(Builder builder) {
+        this.ttlNanos = builder.ttl.toNanos();
+        this.maximumSize = builder.maximumSize;
+        this.threads = builder.threads;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // The cached metadata of path if it is fresh, else reads it (see FileMetadata.of)
+    public FileMetadata get(Path path) throws IOException {
+        long now = System.nanoTime();
+        Entry e = entries.get(path);
+        if (e != null && now - e.readAtNanos < ttlNanos) {
+            hits.increment();
+            return e.metadata;
+        }
+        misses.increment();
+        FileMetadata metadata = FileMetadata.of(path);
+        store(path, metadata, now);
+        return metadata;
+    }
+
+    // Like FileMetadata.readAll, reading only the paths that are not cached
+    public List<FileMetadata> getAll(List<Path> paths) {
+        long now = System.nanoTime();
+        FileMetadata[] results = new FileMetadata[paths.size()];
+        List<Path> missing = new ArrayList<>();
+        List<Integer> missingAt = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            Entry e = entries.get(paths.get(i));
+            if (e != null && now - e.readAtNanos < ttlNanos) {
+                results[i] = e.metadata;
+            } else {
+                missing.add(paths.get(i));
+                missingAt.add(i);
+            }
+        }
+        hits.add(results.length - missing.size());
+        misses.add(missing.size());
+        if (!missing.isEmpty()) {
+            List<FileMetadata> read = FileMetadata.readAll(missing, threads);
+            for (int j = 0; j < read.size(); j++) {
+                FileMetadata metadata = read.get(j);
+                results[missingAt.get(j)] = metadata;
+                if (metadata.error() == null) store(missing.get(j), metadata, now);
+            }
+        }
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    public void invalidate(Path path) {
+        entries.remove(path);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FileMetadataCache{size=%d, hits=%d, misses=%d, evictions=%d}", size(), hits(),
+                misses(), evictions());
+    }
+
+    private void store(Path path, FileMetadata metadata, long readAtNanos) {
+        Entry e = new Entry(path, metadata, readAtNanos);
+        entries.put(path, e);
+        order.add(e);
+        queued.incrementAndGet();
+        evict();
+    }
+
+    private void evict() {
+        // Replaced entries also pile up in the queue; clear them out once they
+        // outnumber the live ones
+        while (entries.size() > maximumSize || queued.get() > 2 * maximumSize + 16) {
+            Entry oldest = order.poll();
+            if (oldest == null) return;
+            queued.decrementAndGet();
+            if (entries.get(oldest.path) != oldest) continue; // replaced or invalidated
+            if (entries.size() > maximumSize) {
+                if (entries.remove(oldest.path, oldest)) evictions.increment();
+            } else {
+                order.add(oldest); // still wanted: keep it, just not at the head
+                queued.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final Path path;
+        final FileMetadata metadata;
+        final long readAtNanos;
+
+        Entry(Path path, FileMetadata metadata, long readAtNanos) {
+            this.path = path;
+            this.metadata = metadata;
+            this.readAtNanos = readAtNanos;
+        }
+    }
+
+    public static final class Builder {
+        private Duration ttl = Duration.ofSeconds(1);
+        private int maximumSize = 10_000;
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        private Builder() {
+        }
+
+        // How long an entry is used before it is read again (default 1 second)
+        public Builder ttl(Duration ttl) {
+            if (ttl.isNegative()) throw new IllegalArgumentException("Negative ttl: " + ttl);
+            this.ttl = ttl;
+            return this;
+        }
+
+        // Most paths kept (default 10,000)
+        public Builder maximumSize(int maximumSize) {
+            if (maximumSize < 1) throw new IllegalArgumentException("Maximum size must be >= 1: " + maximumSize);
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        // Threads getAll uses for paths that are not cached (default: one per core)
+        public Builder threads(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("Threads must be >= 1: " + threads);
+            this.threads = threads;
+            return this;
+        }
+
+        public FileMetadataCache build() {
+            return new FileMetadataCache(this);
+        }
+    }
+}
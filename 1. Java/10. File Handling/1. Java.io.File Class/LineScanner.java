@@ -0,0 +1,490 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// grep and wc -l for large text files, on all cores.
+//
+// BufferedReader.readLine decodes every byte into chars and allocates a String
+// per line, on one thread, even when almost no line is of interest.
+// LineScanner works on the raw bytes instead:
+// - The file is split into chunks (default 16 MB) whose boundaries are moved
+//   to the next newline, so no line is split. Each chunk is memory-mapped and
+//   searched by a pool thread, straight from the page cache.
+// - Newlines, and the places where a literal's first and last bytes both
+//   fit, are found eight bytes at a time (one long per step, with the "has
+//   zero byte" bit trick).
+// - Only matching lines are decoded into Strings (UTF-8).
+// - Chunks are handed back in file order, so the handler sees matches in order
+//   with correct line numbers while later chunks are still being searched.
+//   At most two chunks per thread are in flight, which bounds memory.
+//
+// literal(text) matches lines containing the text. regex(pattern) runs
+// java.util.regex over the bytes, one byte per char: fine for ASCII patterns
+// on UTF-8 text, but "." matches a single byte of a multi-byte character.
+// Lines end at '\n' only; as in grep, a '\r' before it is part of the line
+// for the pattern (it is dropped from the Strings handed to the handler).
+//
+// Usage:
+//   LineScanner scanner = LineScanner.builder().threads(8).build();
+//   scanner.scan(Path.of("app.log"), LineScanner.literal("ERROR"),
+//           (lineNumber, line) -> System.out.println(lineNumber + ": " + line));
+//   long lines = scanner.countLines(Path.of("app.log"));
+public class LineScanner {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_SEVEN = 0x7F7F7F7F7F7F7F7FL;
+    private static final long NEWLINES = ONES * '\n';
+
+    private final int threads;
+    private final int chunkSize;
+
+    private LineScanner(Builder builder) {
+        this.threads = builder.threads;
+        this.chunkSize = builder.chunkSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @FunctionalInterface
+    public interface MatchHandler {
+        // Called on the thread that called scan, in file order; lines are numbered from 1
+        void onMatch(long lineNumber, String line);
+    }
+
+    // Lines containing text (compared as UTF-8 bytes)
+    public static LinePattern literal(String text) {
+        if (text.isEmpty()) throw new IllegalArgumentException("Empty literal");
+        return new Literal(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Lines in which pattern finds a match (see the class comment about non-ASCII text)
+    public static LinePattern regex(String pattern) {
+        // UNIX_LINES: otherwise a lone '\r', or the byte 0x85 inside a UTF-8
+        // character, would count as a line end for ^ and $
+        return new Regex(Pattern.compile(pattern, Pattern.MULTILINE | Pattern.UNIX_LINES));
+    }
+
+    // Calls handler for every matching line and returns the counts
+    public Stats scan(Path file, LinePattern pattern, MatchHandler handler) throws IOException {
+        return run(file, pattern, handler);
+    }
+
+    // Counts matching lines without decoding any
+    public Stats count(Path file, LinePattern pattern) throws IOException {
+        return run(file, pattern, null);
+    }
+
+    public long countLines(Path file) throws IOException {
+        return run(file, null, null).lines();
+    }
+
+    private Stats run(Path file, LinePattern pattern, MatchHandler handler) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] boundaries = chunkBoundaries(channel, size);
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "line-scanner");
+                t.setDaemon(true);
+                return t;
+            });
+            long newlines = 0;
+            long matches = 0;
+            try {
+                Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+                int next = 0;
+                int chunks = boundaries.length - 1;
+                for (int done = 0; done < chunks; done++) {
+                    while (next < chunks && inFlight.size() < 2 * threads) {
+                        long from = boundaries[next], to = boundaries[next + 1];
+                        inFlight.add(pool.submit(() -> scanChunk(channel, from, to, pattern, handler != null)));
+                        next++;
+                    }
+                    ChunkResult result = inFlight.poll().get();
+                    for (int i = 0; i < result.matches; i++) {
+                        if (handler != null) handler.onMatch(newlines + result.lineIndexes[i] + 1, result.lines[i]);
+                    }
+                    matches += result.matches;
+                    newlines += result.newlines;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while scanning " + file, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IOException("Scanning " + file + " failed", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+            // A last line without a newline still counts
+            long lines = newlines + (size > 0 && lastByte(channel, size) != '\n' ? 1 : 0);
+            return new Stats(lines, matches, size, System.nanoTime() - start);
+        }
+    }
+
+    // Chunk starts, each just after a newline (or 0), and the file size at the end
+    private long[] chunkBoundaries(FileChannel channel, long size) throws IOException {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(64 * 1024);
+        long position = chunkSize;
+        while (position < size) {
+            long lineEnd = -1;
+            // Read forward until the newline that ends the line at position - 1
+            for (long p = position - 1; lineEnd < 0 && p < size; ) {
+                probe.clear();
+                int n = channel.read(probe, p);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    if (probe.get(i) == '\n') {
+                        lineEnd = p + i + 1;
+                        break;
+                    }
+                }
+                p += n;
+            }
+            if (lineEnd < 0 || lineEnd >= size) break;
+            long previous = boundaries.get(boundaries.size() - 1);
+            if (lineEnd - previous > Integer.MAX_VALUE) throw new IOException("Line longer than 2 GB at " + previous);
+            boundaries.add(lineEnd);
+            position = lineEnd + chunkSize;
+        }
+        if (size - boundaries.get(boundaries.size() - 1) > Integer.MAX_VALUE) {
+            throw new IOException("Line longer than 2 GB at " + boundaries.get(boundaries.size() - 1));
+        }
+        boundaries.add(size);
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) result[i] = boundaries.get(i);
+        return result;
+    }
+
+    private static int lastByte(FileChannel channel, long size) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, size - 1);
+        return one.get(0);
+    }
+
+    private static ChunkResult scanChunk(FileChannel channel, long from, long to, LinePattern pattern,
+            boolean decode) throws IOException {
+        int length = (int) (to - from);
+        ChunkResult result = new ChunkResult();
+        if (length == 0) return result;
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+        chunk.order(ByteOrder.LITTLE_ENDIAN);
+        if (pattern == null) {
+            result.newlines = countNewlines(chunk, 0, length);
+            return result;
+        }
+        // Walk from match to match, counting the newlines skipped on the way
+        int position = 0;
+        long lineIndex = 0;
+        LinePattern.Search search = pattern.searcher(chunk, length);
+        while (position < length) {
+            int at = search.find(position);
+            if (at < 0) break;
+            int lineStart = lineStart(chunk, at);
+            int lineEnd = indexOfNewline(chunk, at, length); // length if the last line has no newline
+            if (search.confirm(lineStart, lineEnd, at)) {
+                lineIndex += countNewlines(chunk, position, lineStart);
+                result.add(lineIndex, decode ? decode(chunk, lineStart, lineEnd) : null);
+                position = lineStart;
+            }
+            if (lineEnd >= length) {
+                position = length;
+                break;
+            }
+            lineIndex += countNewlines(chunk, position, lineEnd + 1);
+            position = lineEnd + 1;
+        }
+        result.newlines = lineIndex + countNewlines(chunk, position, length);
+        return result;
+    }
+
+    private static String decode(ByteBuffer chunk, int start, int end) {
+        if (end > start && chunk.get(end - 1) == '\r') end--; // Windows line endings
+        byte[] bytes = new byte[end - start];
+        chunk.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int lineStart(ByteBuffer chunk, int at) {
+        int i = at;
+        while (i > 0 && chunk.get(i - 1) != '\n') i--;
+        return i;
+    }
+
+    // Bytes of word equal to the byte repeated in pattern, as the high bit of each
+    // byte of the result (exact, no false positives)
+    private static long matchBytes(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW_SEVEN) + LOW_SEVEN) | x | LOW_SEVEN);
+    }
+
+    private static int indexOfByte(ByteBuffer chunk, int from, int end, byte b) {
+        long pattern = ONES * (b & 0xFF);
+        int i = from;
+        for (; i + 8 <= end; i += 8) {
+            long found = matchBytes(chunk.getLong(i), pattern);
+            if (found != 0) return i + (Long.numberOfTrailingZeros(found) >>> 3);
+        }
+        for (; i < end; i++) {
+            if (chunk.get(i) == b) return i;
+        }
+        return -1;
+    }
+
+    private static int indexOfNewline(ByteBuffer chunk, int from, int end) {
+        int i = indexOfByte(chunk, from, end, (byte) '\n');
+        return i < 0 ? end : i;
+    }
+
+    private static long countNewlines(ByteBuffer chunk, int from, int end) {
+        long count = 0;
+        int i = from;
+        for (; i + 8 <= end; i += 8) count += Long.bitCount(matchBytes(chunk.getLong(i), NEWLINES));
+        for (; i < end; i++) {
+            if (chunk.get(i) == '\n') count++;
+        }
+        return count;
+    }
+
+    // What to look for; create with literal(...) or regex(...)
+    public abstract static class LinePattern {
+        LinePattern() {
+        }
+
+        abstract Search searcher(ByteBuffer chunk, int length);
+
+        // One chunk's search state, used by one thread
+        interface Search {
+            // Position of a candidate match at or after from, or -1
+            int find(int from);
+
+            // Whether the line [start, end) really matches, given the candidate at 'at'
+            boolean confirm(int start, int end, int at);
+        }
+    }
+
+    private static final class Literal extends LinePattern {
+        private final byte[] bytes;
+        private final long firstBytes;
+        private final long lastBytes;
+
+        Literal(byte[] bytes) {
+            this.bytes = bytes;
+            this.firstBytes = ONES * (bytes[0] & 0xFF);
+            this.lastBytes = ONES * (bytes[bytes.length - 1] & 0xFF);
+        }
+
+        @Override
+        Search searcher(ByteBuffer chunk, int length) {
+            return new Search() {
+                // Eight start positions per step: a position is a candidate only if
+                // both the literal's first and its last byte are in place, which
+                // rules out far more positions than the first byte alone
+                @Override
+                public int find(int from) {
+                    int last = length - bytes.length; // last possible start
+                    int tail = bytes.length - 1;
+                    int i = from;
+                    for (; i + 8 <= last + 1; i += 8) {
+                        long found = matchBytes(chunk.getLong(i), firstBytes)
+                                & matchBytes(chunk.getLong(i + tail), lastBytes);
+                        while (found != 0) {
+                            int at = i + (Long.numberOfTrailingZeros(found) >>> 3);
+                            if (rest(at)) return at;
+                            found &= found - 1;
+                        }
+                    }
+                    for (; i <= last; i++) {
+                        if (chunk.get(i) == bytes[0] && rest(i)) return i;
+                    }
+                    return -1;
+                }
+
+                private boolean rest(int at) {
+                    for (int j = 1; j < bytes.length; j++) {
+                        if (chunk.get(at + j) != bytes[j]) return false;
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean confirm(int start, int end, int at) {
+                    return at + bytes.length <= end; // a literal with a newline cannot match inside one line
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return "literal(" + new String(bytes, StandardCharsets.UTF_8) + ")";
+        }
+    }
+
+    private static final class Regex extends LinePattern {
+        private final Pattern pattern;
+
+        Regex(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        Search searcher(ByteBuffer chunk, int length) {
+            Matcher matcher = pattern.matcher(new ByteChars(chunk, 0, length));
+            return new Search() {
+                @Override
+                public int find(int from) {
+                    matcher.region(from, length);
+                    return matcher.find() ? matcher.start() : -1;
+                }
+
+                @Override
+                public boolean confirm(int start, int end, int at) {
+                    if (matcher.end() <= end) return true;
+                    // The match ran past the end of its line; look inside the line only
+                    matcher.region(start, end);
+                    return matcher.find();
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return "regex(" + pattern.pattern() + ")";
+        }
+    }
+
+    // Bytes seen as chars 0-255, without copying
+    private static final class ByteChars implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        ByteChars(ByteBuffer bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new ByteChars(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] copy = new byte[length];
+            bytes.get(offset, copy);
+            return new String(copy, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private static final class ChunkResult {
+        long newlines;
+        int matches;
+        long[] lineIndexes = new long[8];
+        String[] lines = new String[8];
+
+        void add(long lineIndex, String line) {
+            if (matches == lineIndexes.length) {
+                lineIndexes = Arrays.copyOf(lineIndexes, matches * 2);
+                lines = Arrays.copyOf(lines, matches * 2);
+            }
+            lineIndexes[matches] = lineIndex;
+            lines[matches++] = line;
+        }
+    }
+
+    public static final class Stats {
+        private final long lines;
+        private final long matchingLines;
+        private final long bytes;
+        private final long elapsedNanos;
+
+        Stats(long lines, long matchingLines, long bytes, long elapsedNanos) {
+            this.lines = lines;
+            this.matchingLines = matchingLines;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long lines() {
+            return lines;
+        }
+
+        public long matchingLines() {
+            return matchingLines;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double megabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes / 1e6 / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d lines, %,d matching, %,d bytes in %.1f ms (%.0f MB/s)", lines, matchingLines,
+                    bytes, elapsedNanos / 1e6, megabytesPerSecond());
+        }
+    }
+
+    public static final class Builder {
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int chunkSize = 16 << 20;
+
+        private Builder() {
+        }
+
+        public Builder threads(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("Threads must be >= 1: " + threads);
+            this.threads = threads;
+            return this;
+        }
+
+        // Bytes per chunk before moving to the next newline (default 16 MB)
+        public Builder chunkSize(int bytes) {
+            if (bytes < 1) throw new IllegalArgumentException("Chunk size must be >= 1: " + bytes);
+            this.chunkSize = bytes;
+            return this;
+        }
+
+        public LineScanner build() {
+            return new LineScanner(this);
+        }
+    }
+}
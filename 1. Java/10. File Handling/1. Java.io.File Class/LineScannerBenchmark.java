@@ -0,0 +1,106 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+// Searching and counting lines of a large log file:
+// - BufferedReader.readLine + String.contains / regex (one thread, a String per line),
+// - LineScanner on 1 thread and on all cores.
+// Run with: java LineScannerBenchmark [file]
+// Without a file, a temporary log of about 512 MB is generated. Each
+// measurement runs twice; the second (page cache warm) is reported.
+public class LineScannerBenchmark {
+    private static final String LITERAL = "OutOfMemoryError";
+    private static final String REGEX = "status=5\\d\\d";
+
+    public static void main(String[] args) throws IOException {
+        Path file;
+        boolean temporary = args.length == 0;
+        if (temporary) {
+            file = Files.createTempFile("scanner-bench", ".log");
+            createLog(file, 512L << 20);
+        } else {
+            file = Path.of(args[0]);
+        }
+        long size = Files.size(file);
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%s: %,d bytes, %d cores%n", file, size, cores);
+        System.out.printf("%-40s %10s %10s %12s%n", "", "ms", "MB/s", "result");
+
+        long[] result = new long[1];
+        measure("readLine: count lines", size, result, () -> {
+            long n = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file)) {
+                while (reader.readLine() != null) n++;
+            }
+            return n;
+        });
+        measure("readLine: contains(literal)", size, result, () -> {
+            long n = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file)) {
+                for (String line; (line = reader.readLine()) != null; ) if (line.contains(LITERAL)) n++;
+            }
+            return n;
+        });
+        Pattern pattern = Pattern.compile(REGEX);
+        measure("readLine: regex", size, result, () -> {
+            long n = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file)) {
+                for (String line; (line = reader.readLine()) != null; ) if (pattern.matcher(line).find()) n++;
+            }
+            return n;
+        });
+
+        for (int threads : new int[] {1, cores}) {
+            LineScanner scanner = LineScanner.builder().threads(threads).build();
+            String label = "LineScanner x" + threads + ": ";
+            measure(label + "count lines", size, result, () -> scanner.countLines(file));
+            measure(label + "literal", size, result, () -> {
+                long[] n = new long[1];
+                scanner.scan(file, LineScanner.literal(LITERAL), (lineNumber, line) -> n[0]++);
+                return n[0];
+            });
+            measure(label + "regex", size, result, () -> scanner.count(file, LineScanner.regex(REGEX))
+                    .matchingLines());
+            if (threads == cores) break;
+        }
+        if (temporary) Files.delete(file);
+    }
+
+    interface Measured {
+        long run() throws IOException;
+    }
+
+    private static void measure(String label, long size, long[] result, Measured measured) throws IOException {
+        long nanos = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            result[0] = measured.run();
+            nanos = System.nanoTime() - start;
+        }
+        System.out.printf("%-40s %10.1f %10.0f %,12d%n", label, nanos / 1e6, size / 1e6 / (nanos / 1e9), result[0]);
+    }
+
+    private static void createLog(Path file, long size) throws IOException {
+        Random random = new Random(1);
+        String[] levels = {"INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR"};
+        long written = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (long i = 0; written < size; i++) {
+                String line = String.format("2024-05-%02d 12:%02d:%02d.%03d %-5s [worker-%d] request id=%d path=/api/v1/"
+                                + "items/%d status=%d took=%dms%s",
+                        1 + i % 28, i % 60, (i / 60) % 60, i % 1000, levels[random.nextInt(levels.length)],
+                        random.nextInt(32), i, random.nextInt(100_000),
+                        random.nextInt(50) == 0 ? 500 + random.nextInt(4) : 200, random.nextInt(2000),
+                        random.nextInt(100_000) == 0 ? " java.lang.OutOfMemoryError: Java heap space" : "");
+                out.write(line);
+                out.write('\n');
+                written += line.length() + 1;
+            }
+        }
+    }
+}
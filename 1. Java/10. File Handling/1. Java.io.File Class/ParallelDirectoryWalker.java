@@ -0,0 +1,418 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Walks a directory tree on several threads, reading each entry's attributes
+// exactly once.
+//
+// DisplayAllDirectoryContent lists one directory with File.list() and then
+// asks isFile() and isDirectory() per entry: two more system calls each, and
+// only one level deep. Here every directory is listed with
+// Files.newDirectoryStream, every entry costs one Files.readAttributes call,
+// and subdirectories are handed to a fork-join pool so that several
+// directories are listed at once (which pays off most on SSDs and network
+// file systems).
+//
+// Results are streamed, never collected:
+// - walk(root, visitor) calls the visitor for every entry, from pool threads;
+// - entries(root, capacity) returns an iterator fed through a bounded queue,
+//   so the walk pauses while the consumer is behind.
+// Memory stays bounded for trees of any size: at most maxPendingDirectories
+// directories wait in the pool's queues; beyond that a worker walks the
+// subdirectory itself, depth first.
+//
+// Usage:
+//   ParallelDirectoryWalker walker = ParallelDirectoryWalker.builder().parallelism(8).build();
+//   WalkStats stats = walker.walk(Path.of("/data"), (path, attrs) -> {
+//       if (attrs.isRegularFile()) totalBytes.add(attrs.size());
+//   });
+//
+// Symbolic links are reported but not followed unless followLinks(true) is
+// set; then directories already visited (same file key) are skipped, so link
+// cycles cannot loop forever.
+public class ParallelDirectoryWalker {
+    private final int parallelism;
+    private final int maxDepth;
+    private final boolean followLinks;
+    private final int maxPendingDirectories;
+
+    private ParallelDirectoryWalker(Builder builder) {
+        this.parallelism = builder.parallelism;
+        this.maxDepth = builder.maxDepth;
+        this.followLinks = builder.followLinks;
+        this.maxPendingDirectories = builder.maxPendingDirectories;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @FunctionalInterface
+    public interface EntryVisitor {
+        // Called once per entry, including the root, possibly from several threads at once
+        void visit(Path path, BasicFileAttributes attributes);
+
+        // Called when an entry's attributes or a directory's contents cannot be read
+        default void visitFailed(Path path, IOException exception) {
+        }
+    }
+
+    // Walks the tree under root and returns counts; throws IOException only if
+    // root itself cannot be read.
+    public WalkStats walk(Path root, EntryVisitor visitor) throws IOException {
+        return walkWith(root, new Walk(Objects.requireNonNull(visitor)));
+    }
+
+    // Iterates over the tree; at most capacity entries are buffered ahead of the
+    // consumer. Close the iterator to stop the walk early.
+    public Entries entries(Path root, int capacity) throws IOException {
+        readAttributes(root); // fail fast if root is unreadable
+        return new Entries(root, capacity);
+    }
+
+    private BasicFileAttributes readAttributes(Path path) throws IOException {
+        return followLinks
+                ? Files.readAttributes(path, BasicFileAttributes.class)
+                : Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    // State of one walk, shared by its tasks
+    private final class Walk {
+        final EntryVisitor visitor;
+        final AtomicInteger pending = new AtomicInteger();
+        final Set<Object> visitedKeys = followLinks ? ConcurrentHashMap.newKeySet() : null;
+        final LongAdder directories = new LongAdder();
+        final LongAdder files = new LongAdder();
+        final LongAdder others = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        volatile boolean cancelled;
+
+        Walk(EntryVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        void visit(Path path, BasicFileAttributes attributes) {
+            if (attributes.isDirectory()) {
+                directories.increment();
+            } else if (attributes.isRegularFile()) {
+                files.increment();
+                bytes.add(attributes.size());
+            } else {
+                others.increment();
+            }
+            visitor.visit(path, attributes);
+        }
+
+        void failed(Path path, IOException e) {
+            errors.increment();
+            visitor.visitFailed(path, e);
+        }
+
+        // With followLinks, a directory reached twice (through a link) is only walked once
+        boolean firstVisit(BasicFileAttributes attributes) {
+            if (visitedKeys == null) return true;
+            Object key = attributes.fileKey();
+            return key == null || visitedKeys.add(key);
+        }
+
+        WalkStats stats(long elapsedNanos) {
+            return new WalkStats(directories.sum(), files.sum(), others.sum(), bytes.sum(), errors.sum(), elapsedNanos);
+        }
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Walk walk;
+        private final transient Path directory;
+        private final int depth; // depth of the directory's entries
+
+        DirectoryTask(Walk walk, Path directory, int depth) {
+            this.walk = walk;
+            this.directory = directory;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            walkDirectory(directory, depth);
+        }
+
+        private void walkDirectory(Path dir, int entryDepth) {
+            if (walk.cancelled) return;
+            // Forked subtasks are joined together at the end, so one slow
+            // subdirectory does not hold up its siblings
+            List<DirectoryTask> forked = null;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path entry : stream) {
+                    if (walk.cancelled) break;
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = readAttributes(entry);
+                    } catch (IOException e) {
+                        walk.failed(entry, e);
+                        continue;
+                    }
+                    walk.visit(entry, attributes);
+                    if (!attributes.isDirectory() || entryDepth >= maxDepth || !walk.firstVisit(attributes)) continue;
+                    if (walk.pending.get() < maxPendingDirectories) {
+                        walk.pending.incrementAndGet();
+                        DirectoryTask task = new DirectoryTask(walk, entry, entryDepth + 1);
+                        task.fork();
+                        if (forked == null) forked = new ArrayList<>();
+                        forked.add(task);
+                    } else {
+                        walkDirectory(entry, entryDepth + 1); // enough work queued: go depth first
+                    }
+                }
+            } catch (IOException e) {
+                walk.failed(dir, e);
+            } catch (UncheckedIOException e) {
+                walk.failed(dir, e.getCause()); // DirectoryStream iteration failed midway
+            }
+            if (forked != null) {
+                for (DirectoryTask task : forked) {
+                    task.join();
+                    walk.pending.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    // A visited entry, as returned by entries()
+    public static final class Entry {
+        private final Path path;
+        private final BasicFileAttributes attributes;
+
+        Entry(Path path, BasicFileAttributes attributes) {
+            this.path = path;
+            this.attributes = attributes;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public BasicFileAttributes attributes() {
+            return attributes;
+        }
+
+        @Override
+        public String toString() {
+            return path + (attributes.isDirectory() ? "/" : "");
+        }
+    }
+
+    public final class Entries implements Iterator<Entry>, Iterable<Entry>, AutoCloseable {
+        private final Entry end = new Entry(null, null);
+        private final BlockingQueue<Entry> queue;
+        private final Walk walk;
+        private final Thread producer;
+        private volatile WalkStats stats;
+        private volatile Throwable failure;
+        private Entry next;
+
+        private Entries(Path root, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.walk = new Walk((path, attributes) -> {
+                try {
+                    queue.put(new Entry(path, attributes));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Walk interrupted");
+                }
+                if (Entries.this.walk.cancelled) throw new CancellationException("Walk closed");
+            });
+            this.producer = new Thread(() -> {
+                try {
+                    stats = walkWith(root, walk);
+                } catch (CancellationException ignored) {
+                    // closed by the consumer
+                } catch (IOException | RuntimeException | Error e) {
+                    failure = e;
+                } finally {
+                    if (!walk.cancelled) {
+                        try {
+                            queue.put(end);
+                        } catch (InterruptedException ignored) {
+                            // closed
+                        }
+                    }
+                }
+            }, "directory-walker");
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while waiting for entries");
+                }
+            }
+            if (next == end) {
+                if (failure != null) throw new IllegalStateException("Directory walk failed", failure);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Entry e = next;
+            next = null;
+            return e;
+        }
+
+        // Counts for the whole walk; null until the iterator is exhausted
+        public WalkStats stats() {
+            return stats;
+        }
+
+        @Override
+        public void close() {
+            walk.cancelled = true;
+            queue.clear(); // unblocks producers waiting for room
+            producer.interrupt();
+            next = end;
+        }
+    }
+
+    private WalkStats walkWith(Path root, Walk walk) throws IOException {
+        BasicFileAttributes rootAttributes = readAttributes(root);
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            walk.visit(root, rootAttributes);
+            if (rootAttributes.isDirectory() && maxDepth > 0 && walk.firstVisit(rootAttributes)) {
+                pool.invoke(new DirectoryTask(walk, root, 1));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return walk.stats(System.nanoTime() - start);
+    }
+
+    public static final class WalkStats {
+        private final long directories;
+        private final long files;
+        private final long others;
+        private final long bytes;
+        private final long errors;
+        private final long elapsedNanos;
+
+        WalkStats(long directories, long files, long others, long bytes, long errors, long elapsedNanos) {
+            this.directories = directories;
+            this.files = files;
+            this.others = others;
+            this.bytes = bytes;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long directories() {
+            return directories;
+        }
+
+        public long files() {
+            return files;
+        }
+
+        // Symbolic links and special files
+        public long others() {
+            return others;
+        }
+
+        // Total size of the regular files
+        public long bytes() {
+            return bytes;
+        }
+
+        public long errors() {
+            return errors;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long entries() {
+            return directories + files + others;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("WalkStats{directories=%d, files=%d, others=%d, bytes=%d, errors=%d, %.1f ms}",
+                    directories, files, others, bytes, errors, elapsedNanos / 1e6);
+        }
+    }
+
+    public static final class Builder {
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int maxDepth = Integer.MAX_VALUE;
+        private boolean followLinks;
+        private int maxPendingDirectories = 4096;
+
+        private Builder() {
+        }
+
+        // Threads listing directories; I/O bound, so more than the core count can help
+        public Builder parallelism(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("parallelism must be positive: " + threads);
+            this.parallelism = threads;
+            return this;
+        }
+
+        // 0 visits only the root, 1 also its entries, and so on
+        public Builder maxDepth(int depth) {
+            if (depth < 0) throw new IllegalArgumentException("maxDepth must not be negative: " + depth);
+            this.maxDepth = depth;
+            return this;
+        }
+
+        public Builder followLinks(boolean follow) {
+            this.followLinks = follow;
+            return this;
+        }
+
+        // Upper bound on directories queued in the pool at once
+        public Builder maxPendingDirectories(int directories) {
+            if (directories < 1) throw new IllegalArgumentException("maxPendingDirectories must be positive");
+            this.maxPendingDirectories = directories;
+            return this;
+        }
+
+        public ParallelDirectoryWalker build() {
+            return new ParallelDirectoryWalker(this);
+        }
+    }
+}
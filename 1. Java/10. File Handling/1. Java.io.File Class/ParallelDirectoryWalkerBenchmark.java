@@ -0,0 +1,98 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// Counts files and bytes under a tree three ways: recursive File.listFiles()
+// with isFile()/length() (the java.io way), Files.walkFileTree (one thread),
+// and ParallelDirectoryWalker on 1, 2, 4, ... threads.
+// Run with: java ParallelDirectoryWalkerBenchmark [directory]
+// Without a directory, a temporary tree of about 200,000 files is created.
+// Run it twice: the first walk of a tree also measures the disk, later ones the OS cache.
+public class ParallelDirectoryWalkerBenchmark {
+    public static void main(String[] args) throws IOException {
+        Path root;
+        boolean temporary = args.length == 0;
+        if (temporary) {
+            root = Files.createTempDirectory("walker-bench");
+            createTree(root, 200, 1000);
+        } else {
+            root = Path.of(args[0]);
+        }
+
+        for (int round = 1; round <= 2; round++) {
+            System.out.printf("Round %d%n", round);
+            long start = System.nanoTime();
+            long[] legacy = new long[2];
+            listFiles(root.toFile(), legacy);
+            print("File.listFiles (recursive)", legacy[0], legacy[1], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            long[] visited = new long[2];
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        visited[0]++;
+                        visited[1] += attrs.size();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            print("Files.walkFileTree", visited[0], visited[1], System.nanoTime() - start);
+
+            int maxThreads = Math.max(8, Runtime.getRuntime().availableProcessors());
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                LongAdder count = new LongAdder();
+                ParallelDirectoryWalker walker = ParallelDirectoryWalker.builder().parallelism(threads).build();
+                ParallelDirectoryWalker.WalkStats stats = walker.walk(root, (path, attrs) -> count.increment());
+                print("ParallelDirectoryWalker x" + threads, stats.files(), stats.bytes(), stats.elapsedNanos());
+            }
+        }
+        if (temporary) deleteRecursively(root);
+    }
+
+    private static void listFiles(File dir, long[] totals) {
+        File[] entries = dir.listFiles();
+        if (entries == null) return;
+        for (File f : entries) {
+            if (f.isFile()) {
+                totals[0]++;
+                totals[1] += f.length();
+            } else if (f.isDirectory()) {
+                listFiles(f, totals);
+            }
+        }
+    }
+
+    private static void print(String label, long files, long bytes, long nanos) {
+        System.out.printf("  %-30s %,10d files %,14d bytes %9.1f ms%n", label, files, bytes, nanos / 1e6);
+    }
+
+    private static void createTree(Path root, int directories, int filesPerDirectory) throws IOException {
+        for (int d = 0; d < directories; d++) {
+            Path dir = root.resolve("d" + (d % 10)).resolve("sub" + d);
+            Files.createDirectories(dir);
+            for (int f = 0; f < filesPerDirectory; f++) {
+                Files.write(dir.resolve("file" + f + ".txt"), new byte[f % 64]);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+}
@@ -0,0 +1,1020 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+
+// A persistent trigram index for searching the contents of a directory tree.
+//
+// Searching by listing the tree and reading every file (DisplayAllDirectoryContent
+// plus LineScanner) costs a full read of the tree per query. This index reads
+// each file once, records which three-byte sequences (trigrams) it contains,
+// and at query time reads only the files that contain every trigram of the
+// search string. For a selective string that is a handful of files out of
+// hundreds of thousands.
+//
+// Layout of the index directory:
+// - segment-NNNNNN.tgi: immutable segment files. A sorted trigram table with
+//   document counts and offsets, followed by the posting lists: ascending
+//   document ids, stored as varint-encoded gaps (1-2 bytes per entry for
+//   dense trigrams). Segments are memory-mapped, so a query touches only the
+//   pages of the trigrams it asks for, and the OS page cache is the cache.
+// - manifest.tgm: the list of segments and of indexed files (path, size,
+//   modification time, document id). Replaced atomically after segments are
+//   written, so a crash leaves the previous state.
+//
+// Updates are incremental: update(roots) walks the trees
+// (ParallelDirectoryWalker), indexes files that are new or whose size or
+// modification time changed into new segments, and drops files that
+// disappeared. Old documents are not rewritten; their ids simply vanish
+// from the manifest. When there are more than maxSegments segments, they are
+// merged into one and the dead ids are dropped (also available as compact()).
+// Files with a NUL byte (binary) or larger than maxFileSize are recorded but
+// not indexed.
+//
+// Queries (TrigramQuery.literal / regex) become trigram ANDs and ORs over
+// posting lists; the surviving candidates are read and verified on the pool,
+// so results are exact. Queries may run concurrently with each other and with
+// an update; they see the index as of the last finished update.
+//
+// Usage:
+//   try (TrigramIndex index = TrigramIndex.builder().threads(8).open(Path.of("/var/tmp/src-index"))) {
+//       System.out.println(index.update(List.of(Path.of("/src"))));
+//       TrigramIndex.SearchResult r = index.search(TrigramQuery.regex("Concurrent(Hash|Skip)Map"), 100);
+//       for (TrigramIndex.Hit hit : r.hits()) System.out.println(hit);
+//       System.out.println(r); // candidates read vs. documents indexed, latency
+//   }
+public class TrigramIndex implements AutoCloseable {
+    private static final int SEGMENT_MAGIC = 0x54474931; // "TGI1"
+    private static final int MANIFEST_MAGIC = 0x54474D31; // "TGM1"
+    private static final int SEGMENT_HEADER = 4 + 4 + 8;
+    private static final String MANIFEST = "manifest.tgm";
+    private static final int NOT_INDEXED = -1;
+    private static final int[] EMPTY = new int[0];
+
+    private final Path directory;
+    private final int threads;
+    private final long maxFileSize;
+    private final int maxPairsPerSegment;
+    private final int maxSegments;
+    private final int maxLinesPerHit;
+    private final ExecutorService pool;
+    private final ThreadLocal<Extractor> extractors = ThreadLocal.withInitial(Extractor::new);
+    private final Object updateLock = new Object();
+    private volatile Snapshot snapshot;
+
+    private TrigramIndex(Builder builder, Path directory) throws IOException {
+        this.directory = directory;
+        this.threads = builder.threads;
+        this.maxFileSize = builder.maxFileSize;
+        this.maxPairsPerSegment = builder.maxPairsPerSegment;
+        this.maxSegments = builder.maxSegments;
+        this.maxLinesPerHit = builder.maxLinesPerHit;
+        Files.createDirectories(directory);
+        this.snapshot = load();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "trigram-index");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Opens (or creates) an index with default settings
+    public static TrigramIndex open(Path directory) throws IOException {
+        return builder().open(directory);
+    }
+
+    // ---- Updating ----
+
+    // Brings the index up to date with the trees under roots: new and changed
+    // files are indexed, files that are gone are dropped. Files indexed from
+    // other roots are left alone.
+    public UpdateStats update(List<Path> roots) throws IOException {
+        synchronized (updateLock) {
+            long start = System.nanoTime();
+            UpdateStats stats = new UpdateStats();
+            Snapshot old = snapshot;
+
+            List<Path> normalized = new ArrayList<>();
+            ConcurrentLinkedQueue<Doc> seen = new ConcurrentLinkedQueue<>();
+            ParallelDirectoryWalker walker = ParallelDirectoryWalker.builder().parallelism(threads).build();
+            for (Path root : roots) {
+                Path r = root.toAbsolutePath().normalize();
+                normalized.add(r);
+                walker.walk(r, (path, attributes) -> {
+                    if (attributes.isRegularFile()) {
+                        seen.add(new Doc(NOT_INDEXED, path, attributes.size(),
+                                attributes.lastModifiedTime().toMillis()));
+                    }
+                });
+            }
+
+            // Which files are new or changed, and which are gone
+            List<Doc> changed = new ArrayList<>();
+            Set<Path> seenPaths = new HashSet<>();
+            for (Doc d : seen) {
+                seenPaths.add(d.path);
+                Doc known = old.byPath.get(d.path);
+                if (known == null || known.size != d.size || known.modified != d.modified) changed.add(d);
+            }
+            stats.filesSeen = seenPaths.size();
+            Map<Path, Doc> byPath = new HashMap<>(old.byPath);
+            for (Doc d : old.byPath.values()) {
+                if (!seenPaths.contains(d.path) && underAny(d.path, normalized)) {
+                    byPath.remove(d.path);
+                    stats.removed++;
+                }
+            }
+
+            // Index the changed files into new segments; ids continue after the old ones
+            SegmentWriter writer = new SegmentWriter(old.nextDocId, old.nextSegment);
+            ConcurrentLinkedQueue<Doc> results = new ConcurrentLinkedQueue<>();
+            ConcurrentLinkedQueue<Path> unreadable = new ConcurrentLinkedQueue<>();
+            LongAdder bytes = new LongAdder();
+            parallel(changed, d -> {
+                Doc indexed = indexFile(d, writer, bytes);
+                if (indexed != null) results.add(indexed);
+                else unreadable.add(d.path);
+            });
+            writer.flush();
+            for (Doc d : results) {
+                byPath.put(d.path, d);
+                if (d.id == NOT_INDEXED) stats.skipped++;
+                else stats.indexed++;
+            }
+            for (Path path : unreadable) {
+                byPath.remove(path); // retried by the next update if it comes back
+                stats.failed++;
+            }
+            stats.unchanged = stats.filesSeen - changed.size();
+            stats.bytesIndexed = bytes.sum();
+            stats.segmentsWritten = writer.written.size();
+
+            List<Segment> segments = new ArrayList<>(old.segments);
+            segments.addAll(writer.written);
+            Snapshot next = new Snapshot(segments, byPath, writer.nextDocId, writer.nextSegment);
+            if (changed.isEmpty() && stats.removed == 0) {
+                stats.elapsedNanos = System.nanoTime() - start;
+                return stats; // nothing to persist
+            }
+            writeManifest(next);
+            snapshot = next;
+            if (segments.size() > maxSegments) {
+                compact();
+                stats.compacted = true;
+            }
+            stats.elapsedNanos = System.nanoTime() - start;
+            return stats;
+        }
+    }
+
+    // Merges all segments into one, dropping documents that were changed or
+    // removed since they were indexed
+    public void compact() throws IOException {
+        synchronized (updateLock) {
+            Snapshot old = snapshot;
+            if (old.segments.isEmpty()) return;
+            Set<Integer> live = new HashSet<>();
+            for (int id : old.liveIds) live.add(id);
+            Segment merged = writeMerged(old.segments, live, old.nextSegment);
+            Snapshot next = new Snapshot(List.of(merged), old.byPath, old.nextDocId, old.nextSegment + 1);
+            writeManifest(next);
+            snapshot = next;
+            for (Segment s : old.segments) {
+                try {
+                    Files.deleteIfExists(s.file);
+                } catch (IOException e) {
+                    // Still mapped elsewhere (Windows): removed as an orphan on the next open
+                }
+            }
+        }
+    }
+
+    private static boolean underAny(Path path, List<Path> roots) {
+        for (Path root : roots) {
+            if (path.startsWith(root)) return true;
+        }
+        return false;
+    }
+
+    // Reads and indexes one file; returns its new Doc, or null if it could not be read
+    private Doc indexFile(Doc d, SegmentWriter writer, LongAdder bytes) {
+        if (d.size > maxFileSize) return new Doc(NOT_INDEXED, d.path, d.size, d.modified);
+        byte[] content;
+        try {
+            content = Files.readAllBytes(d.path);
+        } catch (IOException e) {
+            return null;
+        }
+        bytes.add(content.length);
+        int[] trigrams = extractors.get().extract(content);
+        if (trigrams == null) return new Doc(NOT_INDEXED, d.path, d.size, d.modified); // binary
+        try {
+            return new Doc(writer.add(trigrams), d.path, d.size, d.modified);
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing a segment failed", e);
+        }
+    }
+
+    // The distinct trigrams of a file, sorted; one per indexing thread
+    private static final class Extractor {
+        private final long[] seen = new long[1 << 18]; // one bit per possible trigram (2 MB)
+        private int[] found = new int[4096];
+
+        // Returns null for binary content (a NUL byte)
+        int[] extract(byte[] content) {
+            int count = 0;
+            int trigram = 0;
+            boolean binary = false;
+            for (int i = 0; i < content.length; i++) {
+                byte b = content[i];
+                if (b == 0) {
+                    binary = true;
+                    break;
+                }
+                trigram = (trigram << 8 | TrigramQuery.fold(b)) & 0xFFFFFF;
+                if (i < 2) continue;
+                long bit = 1L << trigram;
+                if ((seen[trigram >>> 6] & bit) != 0) continue;
+                seen[trigram >>> 6] |= bit;
+                if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                found[count++] = trigram;
+            }
+            for (int i = 0; i < count; i++) seen[found[i] >>> 6] = 0;
+            if (binary) return null;
+            int[] result = Arrays.copyOf(found, count);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    // Collects (trigram, document) pairs and writes them out as a segment
+    // whenever maxPairsPerSegment is reached
+    private final class SegmentWriter {
+        final List<Segment> written = new ArrayList<>();
+        int nextDocId;
+        int nextSegment;
+        private long[] pairs = new long[1 << 16];
+        private int pairCount;
+
+        SegmentWriter(int nextDocId, int nextSegment) {
+            this.nextDocId = nextDocId;
+            this.nextSegment = nextSegment;
+        }
+
+        synchronized int add(int[] trigrams) throws IOException {
+            if (pairCount + trigrams.length > maxPairsPerSegment && pairCount > 0) flush();
+            if (pairCount + trigrams.length > pairs.length) {
+                pairs = Arrays.copyOf(pairs, Math.max(pairs.length * 2, pairCount + trigrams.length));
+            }
+            int id = nextDocId++;
+            for (int t : trigrams) pairs[pairCount++] = (long) t << 32 | id;
+            return id;
+        }
+
+        synchronized void flush() throws IOException {
+            if (pairCount == 0) return;
+            Arrays.parallelSort(pairs, 0, pairCount); // by trigram, then document id
+            PostingsBuilder out = new PostingsBuilder();
+            int i = 0;
+            while (i < pairCount) {
+                int trigram = (int) (pairs[i] >>> 32);
+                out.startTrigram(trigram);
+                for (; i < pairCount && (int) (pairs[i] >>> 32) == trigram; i++) out.add((int) pairs[i]);
+                out.endTrigram();
+            }
+            written.add(out.write(directory.resolve(segmentName(nextSegment++))));
+            pairCount = 0;
+            if (pairs.length > 1 << 20) pairs = new long[1 << 16];
+        }
+    }
+
+    private Segment writeMerged(List<Segment> segments, Set<Integer> live, int number) throws IOException {
+        PostingsBuilder out = new PostingsBuilder();
+        int[] cursor = new int[segments.size()];
+        while (true) {
+            // The smallest trigram not yet merged; segments hold ascending id ranges
+            int trigram = Integer.MAX_VALUE;
+            for (int s = 0; s < segments.size(); s++) {
+                if (cursor[s] < segments.get(s).trigramCount) {
+                    trigram = Math.min(trigram, segments.get(s).trigramAt(cursor[s]));
+                }
+            }
+            if (trigram == Integer.MAX_VALUE) break;
+            out.startTrigram(trigram);
+            for (int s = 0; s < segments.size(); s++) {
+                Segment segment = segments.get(s);
+                if (cursor[s] < segment.trigramCount && segment.trigramAt(cursor[s]) == trigram) {
+                    for (int id : segment.postingsAt(cursor[s])) {
+                        if (live.contains(id)) out.add(id);
+                    }
+                    cursor[s]++;
+                }
+            }
+            out.endTrigram();
+        }
+        return out.write(directory.resolve(segmentName(number)));
+    }
+
+    private static String segmentName(int number) {
+        return String.format("segment-%06d.tgi", number);
+    }
+
+    // Builds one segment file: trigram table, counts, offsets, varint postings
+    private static final class PostingsBuilder {
+        private int[] trigrams = new int[1024];
+        private int[] counts = new int[1024];
+        private long[] offsets = new long[1025];
+        private int trigramCount;
+        private byte[] postings = new byte[1 << 16];
+        private int length;
+        private int count;
+        private int previous;
+
+        void startTrigram(int trigram) {
+            if (trigramCount == trigrams.length) {
+                trigrams = Arrays.copyOf(trigrams, trigramCount * 2);
+                counts = Arrays.copyOf(counts, trigramCount * 2);
+                offsets = Arrays.copyOf(offsets, trigramCount * 2 + 1);
+            }
+            trigrams[trigramCount] = trigram;
+            offsets[trigramCount] = length;
+            count = 0;
+            previous = -1;
+        }
+
+        void add(int id) {
+            if (length + 5 > postings.length) {
+                if (postings.length == Integer.MAX_VALUE - 8) throw new IllegalStateException("Segment too large");
+                postings = Arrays.copyOf(postings, (int) Math.min((long) postings.length * 2, Integer.MAX_VALUE - 8));
+            }
+            int gap = id - previous - 1; // ids are strictly ascending
+            while ((gap & ~0x7F) != 0) {
+                postings[length++] = (byte) (gap & 0x7F | 0x80);
+                gap >>>= 7;
+            }
+            postings[length++] = (byte) gap;
+            previous = id;
+            count++;
+        }
+
+        void endTrigram() {
+            if (count == 0) {
+                length = (int) offsets[trigramCount]; // every document of it was dropped
+                return;
+            }
+            counts[trigramCount++] = count;
+        }
+
+        Segment write(Path file) throws IOException {
+            offsets[trigramCount] = length;
+            long size = SEGMENT_HEADER + 8L * trigramCount + 8L * (trigramCount + 1) + length;
+            if (size > Integer.MAX_VALUE) throw new IOException("Segment larger than 2 GB: " + size);
+            try (FileOutputStream fileOut = new FileOutputStream(file.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+                out.writeInt(SEGMENT_MAGIC);
+                out.writeInt(trigramCount);
+                out.writeLong(length);
+                for (int i = 0; i < trigramCount; i++) out.writeInt(trigrams[i]);
+                for (int i = 0; i < trigramCount; i++) out.writeInt(counts[i]);
+                for (int i = 0; i <= trigramCount; i++) out.writeLong(offsets[i]);
+                out.write(postings, 0, length);
+                out.flush();
+                fileOut.getChannel().force(true); // before the manifest refers to it
+            }
+            return Segment.open(file);
+        }
+    }
+
+    // ---- Searching ----
+
+    // Files matching the query, at most maxFiles of them, sorted by path
+    public SearchResult search(TrigramQuery query, int maxFiles) {
+        if (maxFiles < 1) throw new IllegalArgumentException("Max files must be >= 1: " + maxFiles);
+        long start = System.nanoTime();
+        Snapshot s = snapshot;
+        int[] candidates = evaluate(query.compiledPlan(), s);
+        long planNanos = System.nanoTime() - start;
+
+        List<Doc> docs = new ArrayList<>(candidates.length);
+        for (int id : candidates) {
+            Doc d = s.byId.get(id);
+            if (d != null) docs.add(d); // otherwise changed or removed since
+        }
+        ConcurrentLinkedQueue<Hit> hits = new ConcurrentLinkedQueue<>();
+        AtomicInteger found = new AtomicInteger();
+        AtomicInteger read = new AtomicInteger();
+        parallel(docs, d -> {
+            if (found.get() >= maxFiles) return;
+            read.incrementAndGet();
+            Hit hit = verify(d.path, query);
+            if (hit != null && found.getAndIncrement() < maxFiles) hits.add(hit);
+        });
+        List<Hit> sorted = new ArrayList<>(hits);
+        sorted.sort((a, b) -> a.path.compareTo(b.path));
+        return new SearchResult(query, sorted, docs.size(), read.get(), s.liveIds.length, planNanos,
+                System.nanoTime() - start);
+    }
+
+    // Candidate document ids, ascending; may include dead ids
+    private static int[] evaluate(TrigramQuery.Plan plan, Snapshot s) {
+        switch (plan.kind) {
+            case ALL:
+                return s.liveIds;
+            case TRIGRAM: {
+                // Segments hold ascending id ranges, so concatenation keeps the order
+                int[][] parts = new int[s.segments.size()][];
+                int total = 0;
+                for (int i = 0; i < parts.length; i++) {
+                    parts[i] = s.segments.get(i).postings(plan.trigram);
+                    total += parts[i].length;
+                }
+                if (parts.length == 1) return parts[0];
+                int[] all = new int[total];
+                int n = 0;
+                for (int[] part : parts) {
+                    System.arraycopy(part, 0, all, n, part.length);
+                    n += part.length;
+                }
+                return all;
+            }
+            case AND: {
+                List<int[]> lists = new ArrayList<>();
+                for (TrigramQuery.Plan child : plan.children) {
+                    int[] ids = evaluate(child, s);
+                    if (ids.length == 0) return EMPTY;
+                    lists.add(ids);
+                }
+                lists.sort((a, b) -> Integer.compare(a.length, b.length)); // smallest first
+                int[] result = lists.get(0);
+                for (int i = 1; i < lists.size() && result.length > 0; i++) result = intersect(result, lists.get(i));
+                return result;
+            }
+            default: {
+                int[] result = EMPTY;
+                for (TrigramQuery.Plan child : plan.children) result = union(result, evaluate(child, s));
+                return result;
+            }
+        }
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (a.length == 0) return b;
+        if (b.length == 0) return a;
+        int[] out = new int[a.length + b.length];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) out[n++] = a[i++];
+            else if (a[i] > b[j]) out[n++] = b[j++];
+            else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) out[n++] = a[i++];
+        while (j < b.length) out[n++] = b[j++];
+        return Arrays.copyOf(out, n);
+    }
+
+    // Reads the file as it is now and collects its matching lines
+    private Hit verify(Path path, TrigramQuery query) {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        } catch (IOException e) {
+            return null; // gone since the last update
+        }
+        LineCollector lines = new LineCollector(content);
+        byte[] literal = query.literalBytes();
+        if (literal != null) {
+            for (int from = 0; (from = indexOf(content, literal, from)) >= 0; ) {
+                from = lines.add(from);
+            }
+        } else {
+            Matcher m = query.pattern().matcher(new String(content, StandardCharsets.ISO_8859_1));
+            for (int from = 0; from <= content.length && m.find(from); ) {
+                from = lines.add(m.start());
+            }
+        }
+        return lines.matches == 0 ? null : new Hit(path, lines.matches, lines.lines);
+    }
+
+    private static int indexOf(byte[] content, byte[] literal, int from) {
+        byte first = literal[0];
+        int last = content.length - literal.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            if (content[i] != first) continue;
+            for (int k = 1; k < literal.length; k++) {
+                if (content[i + k] != literal[k]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    // Turns match offsets into (line number, line) pairs, one per line
+    private final class LineCollector {
+        private final byte[] content;
+        private final List<Line> lines = new ArrayList<>();
+        private int matches;
+        private int lineStart;
+        private long lineNumber = 1;
+
+        LineCollector(byte[] content) {
+            this.content = content;
+        }
+
+        // Records the line containing offset; returns where the next search starts
+        int add(int offset) {
+            for (int i = lineStart; i < offset; i++) {
+                if (content[i] == '\n') {
+                    lineNumber++;
+                    lineStart = i + 1;
+                }
+            }
+            int end = lineStart;
+            while (end < content.length && content[end] != '\n') end++;
+            matches++;
+            if (lines.size() < maxLinesPerHit) {
+                lines.add(new Line(lineNumber, new String(content, lineStart, end - lineStart, StandardCharsets.UTF_8)));
+            }
+            return end + 1;
+        }
+    }
+
+    private <T> void parallel(List<T> items, Consumer<T> action) {
+        if (items.isEmpty()) return;
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        int workers = Math.min(threads, items.size());
+        for (int w = 0; w < workers; w++) {
+            futures.add(pool.submit(() -> {
+                for (int i; (i = next.getAndIncrement()) < items.size(); ) action.accept(items.get(i));
+            }));
+        }
+        try {
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // ---- Persistence ----
+
+    private Snapshot load() throws IOException {
+        Path manifest = directory.resolve(MANIFEST);
+        List<Segment> segments = new ArrayList<>();
+        Map<Path, Doc> byPath = new HashMap<>();
+        int nextDocId = 0;
+        int nextSegment = 0;
+        if (Files.exists(manifest)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest)))) {
+                if (in.readInt() != MANIFEST_MAGIC) throw new IOException("Not a trigram index manifest: " + manifest);
+                nextDocId = in.readInt();
+                nextSegment = in.readInt();
+                int segmentCount = in.readInt();
+                for (int i = 0; i < segmentCount; i++) segments.add(Segment.open(directory.resolve(in.readUTF())));
+                int docCount = in.readInt();
+                for (int i = 0; i < docCount; i++) {
+                    int id = in.readInt();
+                    long size = in.readLong();
+                    long modified = in.readLong();
+                    Path path = Path.of(in.readUTF());
+                    byPath.put(path, new Doc(id, path, size, modified));
+                }
+            }
+        }
+        // Segments of an update that never reached the manifest
+        Set<Path> referenced = new HashSet<>();
+        for (Segment s : segments) referenced.add(s.file);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "{segment-*.tgi,*.tmp}")) {
+            for (Path f : files) {
+                if (!referenced.contains(f)) Files.deleteIfExists(f);
+            }
+        }
+        return new Snapshot(segments, byPath, nextDocId, nextSegment);
+    }
+
+    private void writeManifest(Snapshot s) throws IOException {
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(s.nextDocId);
+            out.writeInt(s.nextSegment);
+            out.writeInt(s.segments.size());
+            for (Segment segment : s.segments) out.writeUTF(segment.file.getFileName().toString());
+            out.writeInt(s.byPath.size());
+            for (Doc d : s.byPath.values()) {
+                out.writeInt(d.id);
+                out.writeLong(d.size);
+                out.writeLong(d.modified);
+                out.writeUTF(d.path.toString());
+            }
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+        Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public int documents() {
+        return snapshot.liveIds.length;
+    }
+
+    public int segments() {
+        return snapshot.segments.size();
+    }
+
+    // Bytes of segment files (without the manifest)
+    public long indexBytes() {
+        long total = 0;
+        for (Segment s : snapshot.segments) total += s.size;
+        return total;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    // One memory-mapped segment file
+    private static final class Segment {
+        final Path file;
+        final long size;
+        final int trigramCount;
+        private final MappedByteBuffer map;
+        private final int countsBase;
+        private final int offsetsBase;
+        private final int postingsBase;
+
+        private Segment(Path file, MappedByteBuffer map) throws IOException {
+            this.file = file;
+            this.map = map;
+            this.size = map.capacity();
+            if (map.getInt(0) != SEGMENT_MAGIC) throw new IOException("Not a trigram segment: " + file);
+            this.trigramCount = map.getInt(4);
+            this.countsBase = SEGMENT_HEADER + 4 * trigramCount;
+            this.offsetsBase = countsBase + 4 * trigramCount;
+            this.postingsBase = offsetsBase + 8 * (trigramCount + 1);
+        }
+
+        static Segment open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return new Segment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } catch (NoSuchFileException e) {
+                throw new IOException("Index is missing segment " + file, e);
+            }
+        }
+
+        int trigramAt(int index) {
+            return map.getInt(SEGMENT_HEADER + 4 * index);
+        }
+
+        int[] postings(int trigram) {
+            int low = 0;
+            int high = trigramCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int t = trigramAt(mid);
+                if (t < trigram) low = mid + 1;
+                else if (t > trigram) high = mid - 1;
+                else return postingsAt(mid);
+            }
+            return EMPTY;
+        }
+
+        int[] postingsAt(int index) {
+            int[] ids = new int[map.getInt(countsBase + 4 * index)];
+            ByteBuffer in = map.duplicate(); // a private position; the map is shared by queries
+            in.position(postingsBase + (int) map.getLong(offsetsBase + 8 * index));
+            int previous = -1;
+            for (int i = 0; i < ids.length; i++) {
+                int gap = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = in.get();
+                    gap |= (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                previous += gap + 1;
+                ids[i] = previous;
+            }
+            return ids;
+        }
+    }
+
+    private static final class Doc {
+        final int id; // NOT_INDEXED for binary and oversized files
+        final Path path;
+        final long size;
+        final long modified;
+
+        Doc(int id, Path path, long size, long modified) {
+            this.id = id;
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    // What queries see: immutable once published
+    private static final class Snapshot {
+        final List<Segment> segments;
+        final Map<Path, Doc> byPath;
+        final Map<Integer, Doc> byId = new HashMap<>();
+        final int[] liveIds;
+        final int nextDocId;
+        final int nextSegment;
+
+        Snapshot(List<Segment> segments, Map<Path, Doc> byPath, int nextDocId, int nextSegment) {
+            this.segments = List.copyOf(segments);
+            this.byPath = byPath;
+            this.nextDocId = nextDocId;
+            this.nextSegment = nextSegment;
+            for (Doc d : byPath.values()) {
+                if (d.id != NOT_INDEXED) byId.put(d.id, d);
+            }
+            liveIds = new int[byId.size()];
+            int n = 0;
+            for (int id : byId.keySet()) liveIds[n++] = id;
+            Arrays.sort(liveIds);
+        }
+    }
+
+    public static final class Line {
+        private final long number;
+        private final String text;
+
+        Line(long number, String text) {
+            this.number = number;
+            this.text = text;
+        }
+
+        public long number() {
+            return number;
+        }
+
+        public String text() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return number + ": " + text;
+        }
+    }
+
+    public static final class Hit {
+        private final Path path;
+        private final int matchingLines;
+        private final List<Line> lines;
+
+        Hit(Path path, int matchingLines, List<Line> lines) {
+            this.path = path;
+            this.matchingLines = matchingLines;
+            this.lines = Collections.unmodifiableList(lines);
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public int matchingLines() {
+            return matchingLines;
+        }
+
+        // The first matching lines (at most maxLinesPerHit)
+        public List<Line> lines() {
+            return lines;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(path + " (" + matchingLines + " lines)");
+            for (Line line : lines) sb.append("\n  ").append(line);
+            return sb.toString();
+        }
+    }
+
+    public static final class SearchResult {
+        private final TrigramQuery query;
+        private final List<Hit> hits;
+        private final int candidates;
+        private final int filesRead;
+        private final int documents;
+        private final long planNanos;
+        private final long elapsedNanos;
+
+        SearchResult(TrigramQuery query, List<Hit> hits, int candidates, int filesRead, int documents,
+                     long planNanos, long elapsedNanos) {
+            this.query = query;
+            this.hits = Collections.unmodifiableList(hits);
+            this.candidates = candidates;
+            this.filesRead = filesRead;
+            this.documents = documents;
+            this.planNanos = planNanos;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<Hit> hits() {
+            return hits;
+        }
+
+        // Files the posting lists could not rule out
+        public int candidates() {
+            return candidates;
+        }
+
+        // Candidates actually read (fewer when maxFiles was reached early)
+        public int filesRead() {
+            return filesRead;
+        }
+
+        public int documents() {
+            return documents;
+        }
+
+        // Time spent on posting lists, before any file was read
+        public long planNanos() {
+            return planNanos;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d hits, %d of %d files read, postings %.2f ms, total %.2f ms", query,
+                    hits.size(), filesRead, documents, planNanos / 1e6, elapsedNanos / 1e6);
+        }
+    }
+
+    public static final class UpdateStats {
+        private int filesSeen;
+        private int indexed;
+        private int unchanged;
+        private int removed;
+        private int skipped;
+        private int failed;
+        private long bytesIndexed;
+        private int segmentsWritten;
+        private boolean compacted;
+        private long elapsedNanos;
+
+        public int filesSeen() {
+            return filesSeen;
+        }
+
+        public int indexed() {
+            return indexed;
+        }
+
+        public int unchanged() {
+            return unchanged;
+        }
+
+        public int removed() {
+            return removed;
+        }
+
+        // Binary or larger than maxFileSize: recorded, not searchable
+        public int skipped() {
+            return skipped;
+        }
+
+        // Disappeared or unreadable between the walk and the read
+        public int failed() {
+            return failed;
+        }
+
+        public long bytesIndexed() {
+            return bytesIndexed;
+        }
+
+        public int segmentsWritten() {
+            return segmentsWritten;
+        }
+
+        public boolean compacted() {
+            return compacted;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d files: %,d indexed (%,d bytes), %,d unchanged, %,d removed, %,d skipped, "
+                            + "%,d failed, %d segments written%s in %.1f ms", filesSeen, indexed, bytesIndexed,
+                    unchanged, removed, skipped, failed, segmentsWritten, compacted ? ", compacted" : "",
+                    elapsedNanos / 1e6);
+        }
+    }
+
+    public static final class Builder {
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private long maxFileSize = 16L << 20;
+        private int maxPairsPerSegment = 16 << 20;
+        private int maxSegments = 8;
+        private int maxLinesPerHit = 10;
+
+        private Builder() {
+        }
+
+        // Threads for reading files while indexing and verifying (default: cores)
+        public Builder threads(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("Threads must be >= 1: " + threads);
+            this.threads = threads;
+            return this;
+        }
+
+        // Larger files are not indexed (default 16 MB)
+        public Builder maxFileSize(long bytes) {
+            if (bytes < 0) throw new IllegalArgumentException("Max file size must be >= 0: " + bytes);
+            this.maxFileSize = bytes;
+            return this;
+        }
+
+        // (trigram, file) pairs buffered before a segment is written, 8 bytes
+        // each (default 16 M, i.e. 128 MB of heap while indexing)
+        public Builder maxPairsPerSegment(int pairs) {
+            if (pairs < 1024) throw new IllegalArgumentException("Max pairs per segment must be >= 1024: " + pairs);
+            this.maxPairsPerSegment = pairs;
+            return this;
+        }
+
+        // More segments than this after an update are merged into one (default 8)
+        public Builder maxSegments(int segments) {
+            if (segments < 1) throw new IllegalArgumentException("Max segments must be >= 1: " + segments);
+            this.maxSegments = segments;
+            return this;
+        }
+
+        // Matching lines kept per file in a Hit (default 10)
+        public Builder maxLinesPerHit(int lines) {
+            if (lines < 0) throw new IllegalArgumentException("Max lines per hit must be >= 0: " + lines);
+            this.maxLinesPerHit = lines;
+            return this;
+        }
+
+        public TrigramIndex open(Path directory) throws IOException {
+            return new TrigramIndex(this, directory);
+        }
+    }
+}
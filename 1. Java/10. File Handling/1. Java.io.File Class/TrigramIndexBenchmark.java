@@ -0,0 +1,132 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Builds a TrigramIndex over a tree and compares query latency with reading
+// every file (what a search without an index has to do). Also measures an
+// incremental update after touching 1% of the files, and a no-op update.
+// Run with: java TrigramIndexBenchmark [tree] [files]
+// Without a tree, a temporary one of synthetic source files is generated
+// (default 20,000 files, about 160 MB). Queries are repeated and the median
+// is reported, so both sides run from the page cache.
+public class TrigramIndexBenchmark {
+    private static final String[] LITERALS = {"ConcurrentHashMap", "OutOfMemoryError", "private static final", "zq"};
+    private static final String[] REGEXES = {"Concurrent(Hash|Skip)Map", "\\w+Exception\\(\"timeout", "(?i)todo:.*fixme"};
+
+    private static volatile long sink;
+
+    public static void main(String[] args) throws IOException {
+        boolean temporary = args.length == 0;
+        Path tree = temporary ? Files.createTempDirectory("trigram-tree") : Path.of(args[0]);
+        int fileCount = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        List<Path> files = new ArrayList<>();
+        if (temporary) createTree(tree, fileCount, files);
+        else try (Stream<Path> s = Files.walk(tree)) {
+            s.filter(Files::isRegularFile).forEach(files::add);
+        }
+        Path indexDir = Files.createTempDirectory("trigram-index");
+
+        try (TrigramIndex index = TrigramIndex.open(indexDir)) {
+            System.out.println("initial:     " + index.update(List.of(tree)));
+            System.out.printf("index:       %,d bytes in %d segment(s) for %,d documents%n", index.indexBytes(),
+                    index.segments(), index.documents());
+            Random random = new Random(3);
+            for (int i = 0; i < files.size() / 100; i++) {
+                Path f = files.get(random.nextInt(files.size()));
+                Files.setLastModifiedTime(f, FileTime.fromMillis(System.currentTimeMillis() + i));
+            }
+            System.out.println("touched 1%:  " + index.update(List.of(tree)));
+            System.out.println("no change:   " + index.update(List.of(tree)));
+            System.out.println();
+
+            System.out.printf("%-36s %10s %10s %12s %12s%n", "query", "hits", "read", "index ms", "scan ms");
+            List<TrigramQuery> queries = new ArrayList<>();
+            for (String literal : LITERALS) queries.add(TrigramQuery.literal(literal));
+            for (String regex : REGEXES) queries.add(TrigramQuery.regex(regex));
+            for (TrigramQuery query : queries) {
+                TrigramIndex.SearchResult[] result = new TrigramIndex.SearchResult[1];
+                double indexed = median(() -> result[0] = index.search(query, Integer.MAX_VALUE));
+                double scanned = median(() -> sink += scanAll(files, query));
+                String label = (query.isRegex() ? "re  " : "lit ") + query.text();
+                System.out.printf("%-36s %10d %10d %12.2f %12.2f%n", label, result[0].hits().size(),
+                        result[0].filesRead(), indexed, scanned);
+            }
+        } finally {
+            deleteTree(indexDir);
+            if (temporary) deleteTree(tree);
+        }
+    }
+
+    interface Measured {
+        void run() throws IOException;
+    }
+
+    private static double median(Measured measured) throws IOException {
+        double[] ms = new double[5];
+        for (int i = 0; i < ms.length; i++) {
+            long start = System.nanoTime();
+            measured.run();
+            ms[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(ms);
+        return ms[ms.length / 2];
+    }
+
+    // The search without an index: read and match every file
+    private static long scanAll(List<Path> files, TrigramQuery query) throws IOException {
+        long matches = 0;
+        for (Path f : files) {
+            String content = new String(Files.readAllBytes(f), StandardCharsets.ISO_8859_1);
+            if (query.isRegex() ? query.pattern().matcher(content).find() : content.contains(query.text())) matches++;
+        }
+        return matches;
+    }
+
+    private static void createTree(Path root, int count, List<Path> files) throws IOException {
+        Random random = new Random(1);
+        String[] lines = {
+                "    private static final int LIMIT = %d;",
+                "    public void process(List<String> items) {",
+                "        for (String item : items) handle(item, %d);",
+                "        Map<String, Integer> counts = new HashMap<>();",
+                "        if (value == null) throw new IllegalArgumentException(\"value %d\");",
+                "    // returns the number of entries in bucket %d",
+                "        return counts.getOrDefault(key, %d);",
+                "    }",
+        };
+        for (int i = 0; i < count; i++) {
+            Path dir = root.resolve("module" + i % 50).resolve("pkg" + i % 13);
+            Files.createDirectories(dir);
+            Path file = dir.resolve("Class" + i + ".java");
+            try (BufferedWriter out = Files.newBufferedWriter(file)) {
+                out.write("public class Class" + i + " {\n");
+                for (int n = 0; n < 160; n++) {
+                    out.write(String.format(lines[random.nextInt(lines.length)], random.nextInt(100_000)));
+                    out.write('\n');
+                }
+                // Rare content that the queries look for
+                if (random.nextInt(200) == 0) out.write("    ConcurrentHashMap<String, Long> cache;\n");
+                if (random.nextInt(1000) == 0) out.write("    // catch OutOfMemoryError here\n");
+                if (random.nextInt(500) == 0) out.write("        throw new IOException(\"timeout after retry\");\n");
+                if (random.nextInt(300) == 0) out.write("    // TODO: remove once FIXME is resolved\n");
+                out.write("}\n");
+            }
+            files.add(file);
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> s = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+}
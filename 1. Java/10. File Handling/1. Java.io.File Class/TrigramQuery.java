@@ -0,0 +1,416 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// A search for TrigramIndex: a literal or a regular expression, plus the
+// trigram plan that narrows the files worth reading.
+//
+// A file can only contain "hello" if it contains the trigrams "hel", "ell"
+// and "llo", so the index intersects those three posting lists and reads
+// only the files that remain. For a regex the plan is worked out from its
+// structure:
+//   abc(def|ghi)      ->  "abc" AND ("def" OR "ghi")
+//   foo.*bar          ->  "foo" AND "bar"
+//   colou?r           ->  "col" AND "olo"   (the optional u splits the literal)
+//   \w+Exception      ->  "Exception"
+// Whatever the analysis does not understand (classes, backreferences,
+// literals shorter than three characters) turns into "any file", which only
+// makes the plan less selective, never wrong: every candidate is verified
+// against the real pattern.
+//
+// Trigrams are folded to lower case (ASCII), so case-insensitive patterns
+// such as (?i)error use the index as well.
+//
+// Usage:
+//   TrigramQuery q = TrigramQuery.regex("Concurrent(Hash|Skip)Map");
+//   System.out.println(q.plan()); // the trigram expression
+public final class TrigramQuery {
+    private final String text;
+    private final byte[] literal; // null for a regex
+    private final Pattern pattern; // null for a literal
+    private final Plan plan;
+
+    private TrigramQuery(String text, byte[] literal, Pattern pattern, Plan plan) {
+        this.text = text;
+        this.literal = literal;
+        this.pattern = pattern;
+        this.plan = plan;
+    }
+
+    // Files containing text (compared as UTF-8 bytes, case-sensitive)
+    public static TrigramQuery literal(String text) {
+        if (text.isEmpty()) throw new IllegalArgumentException("Empty literal");
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return new TrigramQuery(text, bytes, null, Plan.literal(bytes));
+    }
+
+    // Files in which the pattern finds a match. As with LineScanner, the file
+    // is matched byte per char, lines end at '\n', and ASCII patterns work best.
+    public static TrigramQuery regex(String regex) {
+        Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE | Pattern.UNIX_LINES);
+        Plan plan;
+        try {
+            RegexAnalyzer analyzer = new RegexAnalyzer(regex);
+            plan = analyzer.alternation();
+            if (analyzer.position < regex.length()) plan = Plan.ALL; // unbalanced ')' would not compile anyway
+        } catch (GiveUp e) {
+            plan = Plan.ALL;
+        }
+        return new TrigramQuery(regex, null, pattern, plan);
+    }
+
+    public String text() {
+        return text;
+    }
+
+    public boolean isRegex() {
+        return pattern != null;
+    }
+
+    // The trigram expression, e.g. ("abc" AND ("def" OR "ghi")), or ALL
+    public String plan() {
+        return plan.toString();
+    }
+
+    byte[] literalBytes() {
+        return literal;
+    }
+
+    Pattern pattern() {
+        return pattern;
+    }
+
+    Plan compiledPlan() {
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        return (isRegex() ? "regex(" : "literal(") + text + ") -> " + plan;
+    }
+
+    static int fold(int b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b & 0xFF;
+    }
+
+    // A boolean expression over trigrams
+    static final class Plan {
+        enum Kind { ALL, TRIGRAM, AND, OR }
+
+        static final Plan ALL = new Plan(Kind.ALL, 0, List.of());
+
+        final Kind kind;
+        final int trigram;
+        final List<Plan> children;
+
+        private Plan(Kind kind, int trigram, List<Plan> children) {
+            this.kind = kind;
+            this.trigram = trigram;
+            this.children = children;
+        }
+
+        // All trigrams of the (folded) bytes, or ALL if there are fewer than three bytes
+        static Plan literal(byte[] bytes) {
+            if (bytes.length < 3) return ALL;
+            Set<Integer> trigrams = new LinkedHashSet<>();
+            for (int i = 0; i + 2 < bytes.length; i++) {
+                trigrams.add(fold(bytes[i]) << 16 | fold(bytes[i + 1]) << 8 | fold(bytes[i + 2]));
+            }
+            List<Plan> parts = new ArrayList<>(trigrams.size());
+            for (int t : trigrams) parts.add(new Plan(Kind.TRIGRAM, t, List.of()));
+            return and(parts);
+        }
+
+        static Plan and(List<Plan> parts) {
+            List<Plan> kept = new ArrayList<>();
+            for (Plan p : parts) {
+                if (p.kind == Kind.AND) kept.addAll(p.children);
+                else if (p.kind != Kind.ALL) kept.add(p);
+            }
+            if (kept.isEmpty()) return ALL;
+            return kept.size() == 1 ? kept.get(0) : new Plan(Kind.AND, 0, List.copyOf(kept));
+        }
+
+        static Plan or(List<Plan> parts) {
+            List<Plan> kept = new ArrayList<>();
+            for (Plan p : parts) {
+                if (p.kind == Kind.ALL) return ALL; // one branch could match anything
+                if (p.kind == Kind.OR) kept.addAll(p.children);
+                else kept.add(p);
+            }
+            return kept.size() == 1 ? kept.get(0) : new Plan(Kind.OR, 0, List.copyOf(kept));
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case ALL:
+                    return "ALL";
+                case TRIGRAM:
+                    char[] chars = {(char) (trigram >>> 16), (char) (trigram >>> 8 & 0xFF), (char) (trigram & 0xFF)};
+                    return "\"" + new String(chars) + "\"";
+                default:
+                    StringBuilder sb = new StringBuilder("(");
+                    for (int i = 0; i < children.size(); i++) {
+                        if (i > 0) sb.append(kind == Kind.AND ? " AND " : " OR ");
+                        sb.append(children.get(i));
+                    }
+                    return sb.append(')').toString();
+            }
+        }
+    }
+
+    private static final class GiveUp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        GiveUp() {
+            super(null, null, false, false);
+        }
+    }
+
+    // Recursive descent over the regex syntax, only as far as needed to find
+    // the literals every match must contain. The pattern has already compiled,
+    // so it is well formed.
+    private static final class RegexAnalyzer {
+        private static final int NONE = 0, OPTIONAL = 1, REPEATED = 2;
+
+        private final String p;
+        int position;
+
+        RegexAnalyzer(String p) {
+            this.p = p;
+        }
+
+        Plan alternation() {
+            List<Plan> branches = new ArrayList<>();
+            branches.add(concatenation());
+            while (position < p.length() && p.charAt(position) == '|') {
+                position++;
+                branches.add(concatenation());
+            }
+            return branches.size() == 1 ? branches.get(0) : Plan.or(branches);
+        }
+
+        private Plan concatenation() {
+            List<Plan> parts = new ArrayList<>();
+            StringBuilder run = new StringBuilder(); // adjacent literal characters
+            while (position < p.length() && p.charAt(position) != '|' && p.charAt(position) != ')') {
+                Atom atom = atom();
+                int quantifier = quantifier();
+                if (atom.zeroWidth) continue; // ^, $, \b, lookarounds: no characters, no break
+                if (atom.literal != null) {
+                    if (quantifier == OPTIONAL) {
+                        // Only the last character is optional
+                        run.append(atom.literal, 0, atom.literal.length() - 1);
+                        flush(run, parts);
+                    } else {
+                        run.append(atom.literal);
+                        if (quantifier == REPEATED) flush(run, parts); // c+ is c, then maybe more c's
+                    }
+                } else {
+                    flush(run, parts);
+                    if (quantifier != OPTIONAL) parts.add(atom.plan);
+                }
+            }
+            flush(run, parts);
+            return Plan.and(parts);
+        }
+
+        private static void flush(StringBuilder run, List<Plan> parts) {
+            if (run.length() == 0) return;
+            parts.add(Plan.literal(run.toString().getBytes(StandardCharsets.UTF_8)));
+            run.setLength(0);
+        }
+
+        private int quantifier() {
+            if (position >= p.length()) return NONE;
+            char c = p.charAt(position);
+            int result;
+            if (c == '*' || c == '?') {
+                position++;
+                result = OPTIONAL;
+            } else if (c == '+') {
+                position++;
+                result = REPEATED;
+            } else if (c == '{') {
+                int close = p.indexOf('}', position);
+                String bounds = p.substring(position + 1, close);
+                position = close + 1;
+                int comma = bounds.indexOf(',');
+                int min = Integer.parseInt((comma < 0 ? bounds : bounds.substring(0, comma)).trim());
+                result = min == 0 ? OPTIONAL : REPEATED;
+            } else {
+                return NONE;
+            }
+            // Lazy or possessive variants mean the same for us
+            if (position < p.length() && (p.charAt(position) == '?' || p.charAt(position) == '+')) position++;
+            return result;
+        }
+
+        private Atom atom() {
+            char c = p.charAt(position++);
+            switch (c) {
+                case '(':
+                    return group();
+                case '[':
+                    skipClass();
+                    return Atom.ANY;
+                case '.':
+                    return Atom.ANY;
+                case '^':
+                case '$':
+                    return Atom.ZERO_WIDTH;
+                case '\\':
+                    return escape();
+                default:
+                    return Atom.literal(String.valueOf(c));
+            }
+        }
+
+        private Atom group() {
+            boolean lookaround = false;
+            if (position < p.length() && p.charAt(position) == '?') {
+                position++;
+                char kind = p.charAt(position);
+                if (kind == ':' || kind == '>') {
+                    position++;
+                } else if (kind == '=' || kind == '!') {
+                    position++;
+                    lookaround = true;
+                } else if (kind == '<' && (p.charAt(position + 1) == '=' || p.charAt(position + 1) == '!')) {
+                    position += 2;
+                    lookaround = true;
+                } else if (kind == '<') {
+                    position = p.indexOf('>', position) + 1; // named group
+                } else {
+                    // Inline flags: (?i) or (?i:...)
+                    int end = position;
+                    while (p.charAt(end) != ')' && p.charAt(end) != ':') end++;
+                    String flags = p.substring(position, end);
+                    if (flags.contains("x")) throw new GiveUp(); // comments mode changes what is literal
+                    position = end + 1;
+                    if (p.charAt(end) == ')') return Atom.ZERO_WIDTH;
+                }
+            }
+            Plan inner = alternation();
+            position++; // ')'
+            if (lookaround) return Atom.ZERO_WIDTH;
+            return Atom.plan(inner);
+        }
+
+        private void skipClass() {
+            if (p.charAt(position) == '^') position++;
+            if (p.charAt(position) == ']') position++; // a leading ] is literal
+            int depth = 0;
+            while (true) {
+                char c = p.charAt(position++);
+                if (c == '\\') {
+                    position++;
+                } else if (c == '[') {
+                    depth++;
+                } else if (c == ']') {
+                    if (depth == 0) return;
+                    depth--;
+                }
+            }
+        }
+
+        private Atom escape() {
+            char c = p.charAt(position++);
+            switch (c) {
+                case 't':
+                    return Atom.literal("\t");
+                case 'n':
+                    return Atom.literal("\n");
+                case 'r':
+                    return Atom.literal("\r");
+                case 'f':
+                    return Atom.literal("\f");
+                case 'a':
+                    return Atom.literal("\u0007");
+                case 'e':
+                    return Atom.literal("\u001B");
+                case 'b':
+                case 'B':
+                case 'A':
+                case 'z':
+                case 'Z':
+                case 'G':
+                    return Atom.ZERO_WIDTH;
+                case 'Q': {
+                    int end = p.indexOf("\\E", position);
+                    String quoted = p.substring(position, end < 0 ? p.length() : end);
+                    position = end < 0 ? p.length() : end + 2;
+                    return quoted.isEmpty() ? Atom.ZERO_WIDTH : Atom.literal(quoted);
+                }
+                case 'p':
+                case 'P':
+                    if (p.charAt(position) == '{') position = p.indexOf('}', position) + 1;
+                    else position++;
+                    return Atom.ANY;
+                case 'x':
+                    if (p.charAt(position) == '{') position = p.indexOf('}', position) + 1;
+                    else position += 2;
+                    return Atom.ANY;
+                case 'u':
+                    position += 4;
+                    return Atom.ANY;
+                case 'c':
+                    position++;
+                    return Atom.ANY;
+                case '0':
+                    while (position < p.length() && position < p.length() && p.charAt(position) >= '0'
+                            && p.charAt(position) <= '7') {
+                        position++;
+                    }
+                    return Atom.ANY;
+                case 'k':
+                    position = p.indexOf('>', position) + 1;
+                    return Atom.ANY;
+                default:
+                    // \d \w \s \h \v \R \X ..., and backreferences \1-\9
+                    if (Character.isLetterOrDigit(c)) return Atom.ANY;
+                    return Atom.literal(String.valueOf(c)); // escaped punctuation: \. \( \\ ...
+            }
+        }
+    }
+
+    private static final class Atom {
+        static final Atom ANY = new Atom(null, Plan.ALL, false);
+        static final Atom ZERO_WIDTH = new Atom(null, Plan.ALL, true);
+
+        final String literal;
+        final Plan plan;
+        final boolean zeroWidth;
+
+        private Atom(String literal, Plan plan, boolean zeroWidth) {
+            this.literal = literal;
+            this.plan = plan;
+            this.zeroWidth = zeroWidth;
+        }
+
+        static Atom literal(String s) {
+            return new Atom(s, null, false);
+        }
+
+        static Atom plan(Plan plan) {
+            return new Atom(null, plan, false);
+        }
+
+        @Override
+        public String toString() {
+            return literal != null ? literal : zeroWidth ? "zero-width" : plan.toString();
+        }
+    }
+
+    // For debugging the analysis: java TrigramQuery "regex" ...
+    public static void main(String[] args) {
+        for (String regex : args.length > 0 ? args : new String[] {"abc(def|ghi)", "foo.*bar", "colou?r",
+                "\\w+Exception", "(?i)error: .*timeout", "a|bcd"}) {
+            System.out.println(regex + "  ->  " + regex(regex).plan());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+// Copies files of 4 KB up to a maximum size (default 256 MB, e.g. "10g" for
+// 10 GB; the maximum itself is always the last size measured) with every
+// FileTransfer strategy and reports throughput and CPU time
+// per GB. CPU time is the copying thread's (user + system), which is where
+// sendfile and page-cache copies are charged.
+// Run with: java FileTransferBenchmark [max size] [directory]
+// The files go to the temporary directory unless one is given; a 10 GB run
+// needs about 20 GB free there. Mostly measures the page cache once a file
+// has been read: drop the OS caches between runs to measure the disk.
+public class FileTransferBenchmark {
+    private static final FileTransfer.Strategy[] STRATEGIES = {
+            FileTransfer.Strategy.BUFFERED_STREAMS, FileTransfer.Strategy.DIRECT_BUFFER,
+            FileTransfer.Strategy.TRANSFER, FileTransfer.Strategy.MEMORY_MAPPED, FileTransfer.Strategy.AUTO};
+
+    public static void main(String[] args) throws IOException {
+        long maxSize = args.length > 0 ? parseSize(args[0]) : 256L << 20;
+        if (maxSize < 1) throw new IllegalArgumentException("Max size must be positive: " + maxSize);
+        Path dir = args.length > 1 ? Path.of(args[1]) : Files.createTempDirectory("transfer-bench");
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        System.out.printf("%-10s", "size");
+        for (FileTransfer.Strategy s : STRATEGIES) System.out.printf(" %22s", s);
+        System.out.printf("%n%-10s", "");
+        for (int i = 0; i < STRATEGIES.length; i++) System.out.printf(" %22s", "MB/s  CPU ms/GB");
+        System.out.println();
+
+        for (long size = Math.min(4096, maxSize); size > 0; size = nextSize(size, maxSize)) {
+            Path source = dir.resolve("source-" + size);
+            Path target = dir.resolve("target-" + size);
+            createFile(source, size);
+            System.out.printf("%-10s", formatSize(size));
+            for (FileTransfer.Strategy strategy : STRATEGIES) {
+                FileTransfer transfer = FileTransfer.builder().strategy(strategy).build();
+                transfer.copy(source, target); // warm-up, and fills the page cache
+                // Repeat small copies so each measurement covers at least ~256 MB or 3 runs
+                long runs = Math.max(3, (256L << 20) / size);
+                long cpu = threads.getCurrentThreadCpuTime();
+                long start = System.nanoTime();
+                for (long r = 0; r < runs; r++) transfer.copy(source, target);
+                long nanos = System.nanoTime() - start;
+                cpu = threads.getCurrentThreadCpuTime() - cpu;
+                double bytes = (double) size * runs;
+                if (Files.size(target) != size) throw new IllegalStateException(strategy + " copied wrong size");
+                System.out.printf(" %12.0f %9.0f", bytes / 1e6 / (nanos / 1e9), cpu / 1e6 / (bytes / 1e9));
+            }
+            System.out.println();
+            Files.delete(source);
+            Files.deleteIfExists(target);
+        }
+        if (args.length < 2) Files.delete(dir);
+    }
+
+    // x16 up to 1 MB, then x4, clamped so that the last step lands on maxSize;
+    // 0 once maxSize has been measured
+    private static long nextSize(long size, long maxSize) {
+        if (size >= maxSize) return 0;
+        return Math.min(maxSize, size * (size < (1 << 20) ? 16 : 4));
+    }
+
+    private static void createFile(Path path, long size) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 20);
+        byte[] random = new byte[1 << 20];
+        new Random(size).nextBytes(random);
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long written = 0; written < size; ) {
+                chunk.clear();
+                chunk.put(random, 0, (int) Math.min(random.length, size - written));
+                chunk.flip();
+                written += out.write(chunk);
+            }
+        }
+    }
+
+    private static long parseSize(String s) {
+        String lower = s.toLowerCase();
+        long unit = lower.endsWith("g") ? 1L << 30 : lower.endsWith("m") ? 1L << 20 : lower.endsWith("k") ? 1L << 10 : 1;
+        return Long.parseLong(unit == 1 ? lower : lower.substring(0, lower.length() - 1)) * unit;
+    }
+
+    private static String formatSize(long size) {
+        if (size >= 1L << 30 && size % (1L << 30) == 0) return (size >> 30) + " GB";
+        if (size >= 1L << 20 && size % (1L << 20) == 0) return (size >> 20) + " MB";
+        if (size >= 1L << 10 && size % (1L << 10) == 0) return (size >> 10) + " KB";
+        return size + " B";
+    }
+}
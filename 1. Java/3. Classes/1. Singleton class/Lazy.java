@@ -0,0 +1,74 @@
+import java.util.Objects;
+import java.util.function.Supplier;
+
+// A value that is created on first use, at most once, by any number of threads.
+//
+// get() is lock-free once the value exists: a single volatile read, unlike
+// a synchronized getInstance() that takes the monitor on every call. Only the
+// first callers take the lock ("double-checked locking"; correct because the
+// value field is volatile).
+//
+// If the supplier throws, the value stays unset and the next get() tries again.
+//
+// Usage:
+//   private static final Lazy<Config> CONFIG = Lazy.of(Config::load);
+//   ...
+//   CONFIG.get().timeout();
+//
+// For startup profiling and parallel warm-up, create Lazy values through a
+// LazyRegistry instead of Lazy.of().
+public final class Lazy<T> {
+    private final String name;
+    private final Supplier<? extends T> supplier;
+    private final LazyRegistry registry; // null when not registered
+    private volatile T value;
+
+    private Lazy(String name, Supplier<? extends T> supplier, LazyRegistry registry) {
+        this.name = Objects.requireNonNull(name);
+        this.supplier = Objects.requireNonNull(supplier);
+        this.registry = registry;
+    }
+
+    public static <T> Lazy<T> of(Supplier<? extends T> supplier) {
+        return new Lazy<>("lazy", supplier, null);
+    }
+
+    static <T> Lazy<T> registered(String name, Supplier<? extends T> supplier, LazyRegistry registry) {
+        return new Lazy<>(name, supplier, registry);
+    }
+
+    public T get() {
+        T v = value;
+        if (v != null) return v; // fast path: one volatile read, no lock
+        return initialize();
+    }
+
+    public boolean isInitialized() {
+        return value != null;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    private T initialize() {
+        long waitStart = System.nanoTime();
+        synchronized (this) {
+            T v = value;
+            if (v != null) {
+                // Another thread initialized it while we waited for the lock
+                if (registry != null) registry.waitedFor(System.nanoTime() - waitStart);
+                return v;
+            }
+            v = registry == null ? supplier.get() : registry.runInitializer(name, supplier);
+            if (v == null) throw new NullPointerException("Supplier of " + name + " returned null");
+            value = v;
+            return v;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Lazy{" + name + (isInitialized() ? ", initialized}" : ", not initialized}");
+    }
+}
@@ -0,0 +1,89 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+// 1. Read cost after startup: synchronized getInstance() against the holder
+//    idiom, double-checked locking and Lazy.get(), on 1, 2, 4, ... threads.
+// 2. Startup: simulated slow singletons (some depending on others),
+//    initialized one by one and then with LazyRegistry.warmUp(), plus the
+//    registry's report.
+// Run with: java LazyInitBenchmark
+public class LazyInitBenchmark {
+    private static final int READS = 20_000_000;
+    private static final Lazy<Object> LAZY = Lazy.of(Object::new);
+    private static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d reads per thread (ns per read)%n", READS);
+        System.out.printf("%-8s %14s %14s %14s %14s%n", "threads", "synchronized", "holder", "double-checked", "Lazy.get");
+        for (int threads = 1; threads <= Math.max(cores, 1); threads *= 2) {
+            System.out.printf("%-8d %14.2f %14.2f %14.2f %14.2f%n", threads,
+                    nanosPerRead(threads, SingletonThreadSafe::getInstance),
+                    nanosPerRead(threads, SingletonHolder::getInstance),
+                    nanosPerRead(threads, SingletonDoubleChecked::getInstance),
+                    nanosPerRead(threads, LAZY::get));
+        }
+
+        System.out.println();
+        LazyRegistry sequential = slowServices();
+        long start = System.nanoTime();
+        for (String name : new String[] {"config", "metrics", "database", "cache", "templates", "http-client", "search"}) {
+            sequential.get(name, Object.class);
+        }
+        System.out.printf("One by one: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+
+        LazyRegistry parallel = slowServices();
+        Duration warmUp = parallel.warmUp(4);
+        System.out.printf("warmUp(4):  %d ms%n%n", warmUp.toMillis());
+        System.out.print(parallel.report());
+    }
+
+    private static double nanosPerRead(int threads, Supplier<Object> getter) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long local = 0;
+                for (int i = 0; i < READS; i++) local += getter.get().hashCode() & 1;
+                sink += local;
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+        return (double) (System.nanoTime() - begin) / READS;
+    }
+
+    // Seven services whose constructors sleep; database and cache need config,
+    // search needs database and cache
+    private static LazyRegistry slowServices() {
+        LazyRegistry registry = new LazyRegistry();
+        Lazy<Object> config = registry.register("config", () -> slow(100));
+        registry.register("metrics", () -> slow(150));
+        Lazy<Object> database = registry.register("database", () -> { config.get(); return slow(300); });
+        Lazy<Object> cache = registry.register("cache", () -> { config.get(); return slow(200); });
+        registry.register("templates", () -> slow(250));
+        registry.register("http-client", () -> slow(120));
+        registry.register("search", () -> { database.get(); cache.get(); return slow(150); });
+        return registry;
+    }
+
+    private static Object slow(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new Object();
+    }
+}
@@ -0,0 +1,221 @@
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// A registry of named lazy singletons that records when and how long each one
+// took to initialize, and can initialize independent ones in parallel at startup.
+//
+// Usage:
+//   LazyRegistry registry = new LazyRegistry();
+//   Lazy<Config> config = registry.register("config", Config::load);
+//   Lazy<Database> db = registry.register("database", () -> new Database(config.get()));
+//   registry.warmUp(4);               // optional: initialize everything on 4 threads
+//   System.out.println(registry.report());
+//
+// The report lists initializations in the order they finished with their
+// total time and their "self" time (total minus the time spent initializing,
+// or waiting for, other singletons they used), which points at what makes
+// startup slow.
+//
+// A singleton may use others while initializing, but the dependencies must not
+// form a cycle; a cycle within one thread is detected and reported with an
+// IllegalStateException.
+public class LazyRegistry {
+    private final Map<String, Lazy<?>> byName = new ConcurrentHashMap<>();
+    private final List<Lazy<?>> inRegistrationOrder = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<InitRecord> records = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final long createdNanos = System.nanoTime();
+    private final ThreadLocal<Deque<Frame>> initializing = ThreadLocal.withInitial(ArrayDeque::new);
+
+    public <T> Lazy<T> register(String name, Supplier<? extends T> supplier) {
+        Lazy<T> lazy = Lazy.registered(name, supplier, this);
+        if (byName.putIfAbsent(name, lazy) != null) {
+            throw new IllegalArgumentException("Already registered: " + name);
+        }
+        inRegistrationOrder.add(lazy);
+        return lazy;
+    }
+
+    public <T> T get(String name, Class<T> type) {
+        Lazy<?> lazy = byName.get(name);
+        if (lazy == null) throw new IllegalArgumentException("Not registered: " + name);
+        return type.cast(lazy.get());
+    }
+
+    // Initializes every registered singleton that is not initialized yet, using
+    // the given number of threads, and returns the wall-clock time it took.
+    // Singletons that depend on each other are simply initialized on whichever
+    // thread needs them first.
+    public Duration warmUp(int parallelism) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "warm-up-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Lazy<?> lazy : inRegistrationOrder) {
+                if (!lazy.isInitialized()) futures.add(pool.submit(lazy::get));
+            }
+            List<Throwable> failures = new ArrayList<>();
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted during warm-up", e);
+                }
+            }
+            if (!failures.isEmpty()) {
+                IllegalStateException e = new IllegalStateException(failures.size() + " singleton(s) failed to initialize");
+                failures.forEach(e::addSuppressed);
+                throw e;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    // All initializations so far, in the order they finished.
+    public List<InitRecord> initializations() {
+        List<InitRecord> list = new ArrayList<>(records);
+        list.sort(Comparator.comparingInt(InitRecord::order));
+        return list;
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-5s %-24s %-16s %10s %10s %10s%n", "#", "name", "thread", "start ms", "total ms", "self ms"));
+        long selfSum = 0;
+        for (InitRecord r : initializations()) {
+            sb.append(String.format("%-5d %-24s %-16s %10.1f %10.1f %10.1f%s%n", r.order(), r.name(), r.thread(),
+                    r.startNanos() / 1e6, r.totalNanos() / 1e6, r.selfNanos() / 1e6, r.failed() ? "  FAILED" : ""));
+            selfSum += r.selfNanos();
+        }
+        sb.append(String.format("Sum of self times: %.1f ms%n", selfSum / 1e6));
+        return sb.toString();
+    }
+
+    // Called by Lazy while holding its lock, on the initializing thread
+    <T> T runInitializer(String name, Supplier<? extends T> supplier) {
+        Deque<Frame> stack = initializing.get();
+        for (Frame frame : stack) {
+            if (frame.name.equals(name)) {
+                List<String> cycle = new ArrayList<>();
+                stack.descendingIterator().forEachRemaining(f -> cycle.add(f.name));
+                cycle.add(name);
+                throw new IllegalStateException("Initialization cycle: " + String.join(" -> ", cycle));
+            }
+        }
+        Frame frame = new Frame(name);
+        Frame parent = stack.peek();
+        stack.push(frame);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T value = supplier.get();
+            failed = false;
+            return value;
+        } finally {
+            long total = System.nanoTime() - start;
+            stack.pop();
+            if (parent != null) parent.childNanos += total;
+            records.add(new InitRecord(finished.incrementAndGet(), name, Thread.currentThread().getName(),
+                    start - createdNanos, total, total - frame.childNanos, failed));
+        }
+    }
+
+    // Time an initializer spent blocked on a singleton that another thread was
+    // initializing is not its own work either
+    void waitedFor(long nanos) {
+        Frame current = initializing.get().peek();
+        if (current != null) current.childNanos += nanos;
+    }
+
+    private static final class Frame {
+        final String name;
+        long childNanos;
+
+        Frame(String name) {
+            this.name = Objects.requireNonNull(name);
+        }
+    }
+
+    public static final class InitRecord {
+        private final int order;
+        private final String name;
+        private final String thread;
+        private final long startNanos;
+        private final long totalNanos;
+        private final long selfNanos;
+        private final boolean failed;
+
+        InitRecord(int order, String name, String thread, long startNanos, long totalNanos, long selfNanos,
+                   boolean failed) {
+            this.order = order;
+            this.name = name;
+            this.thread = thread;
+            this.startNanos = startNanos;
+            this.totalNanos = totalNanos;
+            this.selfNanos = selfNanos;
+            this.failed = failed;
+        }
+
+        // Position in the order initializations finished, starting at 1
+        public int order() {
+            return order;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public String thread() {
+            return thread;
+        }
+
+        // Nanoseconds from the registry's creation to the start of the initialization
+        public long startNanos() {
+            return startNanos;
+        }
+
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        // totalNanos minus the time spent initializing or waiting for other singletons
+        public long selfNanos() {
+            return selfNanos;
+        }
+
+        public boolean failed() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("InitRecord{#%d %s on %s, total=%.1f ms, self=%.1f ms%s}", order, name, thread,
+                    totalNanos / 1e6, selfNanos / 1e6, failed ? ", failed" : "");
+        }
+    }
+}
@@ -2,6 +2,8 @@ public class SingletonClass {
     SingletonEager singletonEager = SingletonEager.getInstance();
     SingletonLazy singletonLazy = SingletonLazy.getInstance();
     SingletonThreadSafe singletonThreadSafe = SingletonThreadSafe.getInstance();
+    SingletonHolder singletonHolder = SingletonHolder.getInstance();
+    SingletonDoubleChecked singletonDoubleChecked = SingletonDoubleChecked.getInstance();
 }
 
 class SingletonEager {
@@ -15,6 +17,7 @@ class SingletonEager {
     }
 }
 
+// Not thread-safe: two threads can both see null and create two instances
 class SingletonLazy {
     private static SingletonLazy instance;
 
@@ -26,6 +29,7 @@ class SingletonLazy {
     }
 }
 
+// Thread-safe, but every call takes the class monitor, even long after the instance exists
 class SingletonThreadSafe {
     private static SingletonThreadSafe instance;
 
@@ -35,4 +39,37 @@ class SingletonThreadSafe {
         if (instance == null) instance = new SingletonThreadSafe();
         return instance;
     }
-}
\ No newline at end of file
+}
+
+// Lazy and thread-safe without any locking: the JVM initializes Holder (and
+// so the instance) only when getInstance() first touches it, exactly once
+class SingletonHolder {
+    private SingletonHolder() {}
+
+    private static class Holder {
+        private static final SingletonHolder INSTANCE = new SingletonHolder();
+    }
+
+    public static SingletonHolder getInstance() {
+        return Holder.INSTANCE;
+    }
+}
+
+// Double-checked locking: after the first call, one volatile read and no lock.
+// volatile is required, or another thread could see a half-constructed object
+class SingletonDoubleChecked {
+    private static volatile SingletonDoubleChecked instance;
+
+    private SingletonDoubleChecked() {}
+
+    public static SingletonDoubleChecked getInstance() {
+        SingletonDoubleChecked result = instance;
+        if (result == null) {
+            synchronized (SingletonDoubleChecked.class) {
+                result = instance;
+                if (result == null) instance = result = new SingletonDoubleChecked();
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,39 @@
+// Allocation-free building blocks for hashCode().
+//
+// Objects.hash(name, age) is short to write but allocates an Object[] for its
+// varargs and boxes every primitive on each call. These helpers compute the
+// same kind of 31-based combined hash without allocating:
+//
+//   @Override
+//   public int hashCode() {
+//       return Hashing.combine(Hashing.combine(Hashing.SEED, name), age);
+//   }
+//
+// For immutable classes that are hashed often (map keys), cache the result in
+// a field the way String does; see Person in ObjectClass.java.
+public final class Hashing {
+    public static final int SEED = 1;
+
+    private Hashing() {
+    }
+
+    public static int combine(int hash, Object value) {
+        return 31 * hash + (value == null ? 0 : value.hashCode());
+    }
+
+    public static int combine(int hash, int value) {
+        return 31 * hash + value;
+    }
+
+    public static int combine(int hash, long value) {
+        return 31 * hash + Long.hashCode(value);
+    }
+
+    public static int combine(int hash, double value) {
+        return 31 * hash + Double.hashCode(value);
+    }
+
+    public static int combine(int hash, boolean value) {
+        return 31 * hash + Boolean.hashCode(value);
+    }
+}
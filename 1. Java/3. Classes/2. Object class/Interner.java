@@ -0,0 +1,189 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps one canonical instance per distinct value ("hash consing"), like
+// String.intern() does for strings, but for any immutable value class.
+//
+// When the same value is created over and over (the same Person read from
+// many records), interning replaces all the copies with one shared object:
+// - the copies can be garbage collected, which saves heap, and
+// - equals() between interned objects is usually decided by its first line,
+//   this == obj, instead of comparing fields.
+//
+// Two flavours:
+// - strong(): canonical instances live as long as the interner. Fastest; use
+//   it when the set of distinct values is bounded.
+// - weak(): a canonical instance is dropped once nothing else refers to it,
+//   so the interner never keeps values alive on its own.
+//
+// Usage:
+//   Interner<Person> people = Interner.weak();
+//   Person p = people.intern(new Person("Vivek", 25)); // same object for every equal Person
+//
+// Both are thread-safe. Values must be immutable: their equals() and
+// hashCode() must not change after they are interned.
+public abstract class Interner<T> {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public static <T> Interner<T> strong() {
+        return new StrongInterner<>();
+    }
+
+    public static <T> Interner<T> weak() {
+        return new WeakInterner<>();
+    }
+
+    // Returns the canonical instance equal to value, making value canonical if there is none yet.
+    public abstract T intern(T value);
+
+    // Number of canonical instances currently held (weak: may include some already collected).
+    public abstract int size();
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{size=%d, hits=%d, misses=%d}", getClass().getSimpleName(), size(),
+                hitCount(), missCount());
+    }
+
+    private static final class StrongInterner<T> extends Interner<T> {
+        private final ConcurrentHashMap<T, T> map = new ConcurrentHashMap<>();
+
+        @Override
+        public T intern(T value) {
+            Objects.requireNonNull(value);
+            // get() first: it never locks, while putIfAbsent() locks the bin even on a hit
+            T canonical = map.get(value);
+            if (canonical == null) {
+                canonical = map.putIfAbsent(value, value);
+                if (canonical == null) {
+                    super.misses.increment();
+                    return value;
+                }
+            }
+            super.hits.increment();
+            return canonical;
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+    }
+
+    private static final class WeakInterner<T> extends Interner<T> {
+        // Keys and values are the same WeakEntry; lookups use a short-lived Probe
+        private final ConcurrentHashMap<Object, WeakEntry<T>> map = new ConcurrentHashMap<>();
+        private final ReferenceQueue<T> collected = new ReferenceQueue<>();
+
+        @Override
+        public T intern(T value) {
+            Objects.requireNonNull(value);
+            expungeCollected();
+            Probe probe = new Probe(value);
+            while (true) {
+                WeakEntry<T> entry = map.get(probe);
+                if (entry != null) {
+                    T canonical = entry.get();
+                    if (canonical != null) {
+                        super.hits.increment();
+                        return canonical;
+                    }
+                    map.remove(entry, entry); // collected but not expunged yet
+                    continue;
+                }
+                WeakEntry<T> created = new WeakEntry<>(value, probe.hash, collected);
+                entry = map.putIfAbsent(created, created);
+                if (entry == null) {
+                    super.misses.increment();
+                    return value;
+                }
+                // Lost a race: use the winner unless it has been collected in the meantime
+                T canonical = entry.get();
+                if (canonical != null) {
+                    super.hits.increment();
+                    return canonical;
+                }
+                map.remove(entry, entry);
+            }
+        }
+
+        @Override
+        public int size() {
+            expungeCollected();
+            return map.size();
+        }
+
+        private void expungeCollected() {
+            Object ref;
+            while ((ref = collected.poll()) != null) {
+                map.remove(ref, ref);
+            }
+        }
+    }
+
+    // Entries compare by value with each other and with probes, so that
+    // putIfAbsent finds an equal entry another thread has just inserted. Once
+    // either referent is collected only identity is left, which is all
+    // expungeCollected needs to remove the dead entry.
+    private static final class WeakEntry<T> extends WeakReference<T> {
+        final int hash;
+
+        WeakEntry(T value, int hash, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj instanceof Probe) return ((Probe) obj).equals(this);
+            if (!(obj instanceof WeakEntry)) return false;
+            WeakEntry<?> entry = (WeakEntry<?>) obj;
+            if (entry.hash != hash) return false;
+            Object mine = get();
+            Object theirs = entry.get();
+            return mine != null && theirs != null && (mine == theirs || mine.equals(theirs));
+        }
+    }
+
+    private static final class Probe {
+        final Object value;
+        final int hash;
+
+        Probe(Object value) {
+            this.value = value;
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof WeakEntry)) return false;
+            WeakEntry<?> entry = (WeakEntry<?>) obj;
+            if (entry.hash != hash) return false;
+            Object other = entry.get();
+            return other != null && (other == value || value.equals(other));
+        }
+    }
+}
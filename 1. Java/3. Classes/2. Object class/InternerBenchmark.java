@@ -0,0 +1,160 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+// A map-heavy workload (counting records per Person) with
+// - Objects.hash() recomputed on every call,
+// - Person's cached hash code,
+// - interned Persons (cached hash, and equals() usually hits this == obj),
+// then the heap used by the records with and without interning.
+// First checks that threads interning equal values at the same moment all get
+// back one canonical instance, for both interners.
+// Run with: java -Xmx4g InternerBenchmark [records] [distinct]
+public class InternerBenchmark {
+    private static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int distinct = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        Random random = new Random(42);
+        String[] names = new String[distinct];
+        int[] ages = new int[distinct];
+        for (int i = 0; i < distinct; i++) {
+            names[i] = "Person-" + Integer.toString(random.nextInt(), 36);
+            ages[i] = 18 + random.nextInt(60);
+        }
+        checkConcurrent("strong", Interner.strong(), 2_000);
+        checkConcurrent("weak", Interner.weak(), 2_000);
+
+        int[] picks = new int[records];
+        for (int i = 0; i < records; i++) picks[i] = random.nextInt(distinct);
+
+        // Every record has its own objects, as if parsed from a file
+        List<LegacyPerson> legacy = new ArrayList<>(records);
+        List<Person> plain = new ArrayList<>(records);
+        for (int pick : picks) {
+            legacy.add(new LegacyPerson(new String(names[pick]), ages[pick]));
+            plain.add(new Person(new String(names[pick]), ages[pick]));
+        }
+        Interner<Person> interner = Interner.strong();
+        List<Person> interned = new ArrayList<>(records);
+        long start = System.nanoTime();
+        for (Person p : plain) interned.add(interner.intern(p));
+        long internNanos = System.nanoTime() - start;
+        System.out.printf("Interned %d records into %d canonical objects in %.1f ms (%.1f M/s)%n%n",
+                records, interner.size(), internNanos / 1e6, records * 1e3 / internNanos);
+
+        System.out.printf("Counting %d records per Person, 3 passes each%n", records);
+        for (int round = 1; round <= 3; round++) {
+            long legacyNanos = time(() -> count(legacy));
+            long plainNanos = time(() -> count(plain));
+            long internedNanos = time(() -> count(interned));
+            System.out.printf("  round %d: Objects.hash %7.1f ms  cached hash %7.1f ms  interned %7.1f ms%n",
+                    round, legacyNanos / 1e6, plainNanos / 1e6, internedNanos / 1e6);
+        }
+
+        // Heap: the same records, kept as separate copies or as interned references
+        legacy.clear();
+        interned.clear();
+        long before = usedHeap();
+        List<Person> copies = new ArrayList<>(records);
+        for (int pick : picks) copies.add(new Person(new String(names[pick]), ages[pick]));
+        long copiesBytes = usedHeap() - before;
+        sink += copies.size();
+        copies = null;
+
+        Interner<Person> weak = Interner.weak();
+        before = usedHeap();
+        List<Person> shared = new ArrayList<>(records);
+        for (int pick : picks) shared.add(weak.intern(new Person(new String(names[pick]), ages[pick])));
+        long sharedBytes = usedHeap() - before;
+        sink += shared.size();
+        System.out.printf("%nHeap for %d records: copies %,d MB, interned %,d MB (including the interner)%n",
+                records, copiesBytes >> 20, sharedBytes >> 20);
+        sink += plain.size();
+    }
+
+    // Each round, several threads intern equal but separate Persons at once;
+    // all of them must get the same object back
+    private static void checkConcurrent(String label, Interner<Person> interner, int rounds)
+            throws InterruptedException {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        Person[][] results = new Person[rounds][threads];
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int slot = t;
+            workers.add(new Thread(() -> {
+                try {
+                    for (int round = 0; round < rounds; round++) {
+                        Person copy = new Person(new String("Racer-" + round), round);
+                        barrier.await();
+                        results[round][slot] = interner.intern(copy);
+                    }
+                } catch (InterruptedException | BrokenBarrierException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Thread t : workers) t.start();
+        for (Thread t : workers) t.join();
+        for (int round = 0; round < rounds; round++) {
+            for (int t = 1; t < threads; t++) {
+                if (results[round][t] != results[round][0]) {
+                    throw new IllegalStateException(label + " interner returned two canonical instances in round " + round);
+                }
+            }
+        }
+        System.out.printf("Concurrent check (%s): %d threads x %d rounds, one canonical instance per value%n",
+                label, threads, rounds);
+    }
+
+    private static <P> void count(List<P> people) {
+        for (int pass = 0; pass < 3; pass++) {
+            Map<P, Integer> counts = new HashMap<>();
+            for (P p : people) counts.merge(p, 1, Integer::sum);
+            sink += counts.size();
+        }
+    }
+
+    private static long time(Runnable run) {
+        long start = System.nanoTime();
+        run.run();
+        return System.nanoTime() - start;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Person as it was: hash recomputed (with a varargs array and boxing) on every call
+    static final class LegacyPerson {
+        private final String name;
+        private final int age;
+
+        LegacyPerson(String name, int age) {
+            this.name = name;
+            this.age = age;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            LegacyPerson other = (LegacyPerson) obj;
+            return age == other.age && Objects.equals(name, other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, age);
+        }
+    }
+}
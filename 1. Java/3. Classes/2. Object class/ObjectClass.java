@@ -11,12 +11,22 @@ public class ObjectClass {
         System.out.println(p2.hashCode());
 
         System.out.println(p1.equals(p2));
+
+        // Equal values share one canonical instance (see Interner)
+        Interner<Person> people = Interner.weak();
+        Person p3 = people.intern(new Person(new String("Vivek"), 25));
+        Person p4 = people.intern(new Person(new String("Vivek"), 25));
+        System.out.println(p3.equals(p1) + " " + (p3 == p4));
     }
 }
 
 class Person {
-    private String name;
-    private int age;
+    private final String name;
+    private final int age;
+    // Cached like String.hashCode(): computed on first use. Racy but safe, since
+    // every thread computes the same value from final fields.
+    private int hash;
+    private boolean hashIsZero;
 
     public Person(String name, int age) {
         this.name = name;
@@ -33,12 +43,23 @@ class Person {
 
         Person person = (Person)obj;
 
-        return this.name == person.name && this.age == person.age;
+        // Objects.equals, not ==: two equal names are often different String objects
+        return this.age == person.age && Objects.equals(this.name, person.name);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, age);
+        // Same value as Objects.hash(name, age), without the varargs array and boxing
+        int h = hash;
+        if (h == 0 && !hashIsZero) {
+            h = Hashing.combine(Hashing.combine(Hashing.SEED, name), age);
+            if (h == 0) {
+                hashIsZero = true;
+            } else {
+                hash = h;
+            }
+        }
+        return h;
     }
     
     @Override
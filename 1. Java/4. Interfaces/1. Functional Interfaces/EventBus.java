@@ -0,0 +1,311 @@
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+// In-process publish/subscribe over MyFunctionalInterface handlers.
+//
+// Handlers subscribe to a topic by name. Each topic keeps its handlers in a
+// plain array that is replaced (copy-on-write) when someone subscribes or
+// unsubscribes, so publishing is a loop over an array: no lock, no iterator,
+// no allocation.
+//
+// - publish(topic, message) calls the handlers on the caller's thread.
+// - publishAsync(topic, message) puts the message into the topic's bounded
+//   ring buffer and returns. A pool thread later takes a batch of messages
+//   and hands the whole batch to one handler after the other.
+//
+// A handler that throws (an exception or an Error) does not affect the other
+// handlers or later messages: the failure goes to the error handler (by
+// default printed to stderr) and delivery continues.
+//
+// Usage:
+//   try (EventBus bus = new EventBus(2, 1024)) {
+//       EventBus.Subscription s = bus.subscribe("orders", message -> System.out.println(message));
+//       bus.publish("orders", "order 1 created");
+//       bus.publishAsync("orders", "order 2 created");
+//       s.close(); // unsubscribe
+//   }
+public class EventBus implements AutoCloseable {
+    private static final MyFunctionalInterface[] NO_HANDLERS = new MyFunctionalInterface[0];
+    private static final int BATCH = 256;
+    private static final int BATCHES_PER_TURN = 16; // then let other topics have the thread
+
+    private final ConcurrentHashMap<String, Topic> topics = new ConcurrentHashMap<>();
+    private final ExecutorService dispatchers;
+    private final int ringCapacity;
+    private final BiConsumer<Throwable, String> errorHandler;
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed;
+
+    // asyncThreads threads deliver asynchronous messages; every topic buffers
+    // up to ringCapacity (a power of two) undelivered ones.
+    public EventBus(int asyncThreads, int ringCapacity) {
+        this(asyncThreads, ringCapacity, (error, message) -> {
+            System.err.println("Event handler failed on '" + message + "': " + error);
+        });
+    }
+
+    public EventBus(int asyncThreads, int ringCapacity, BiConsumer<Throwable, String> errorHandler) {
+        if (ringCapacity < 2 || Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two >= 2: " + ringCapacity);
+        }
+        this.ringCapacity = ringCapacity;
+        this.errorHandler = Objects.requireNonNull(errorHandler);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.dispatchers = Executors.newFixedThreadPool(asyncThreads, r -> {
+            Thread t = new Thread(r, "event-bus-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public Subscription subscribe(String topicName, MyFunctionalInterface handler) {
+        Objects.requireNonNull(handler);
+        Topic topic = topic(topicName);
+        synchronized (topic) {
+            MyFunctionalInterface[] old = topic.handlers;
+            MyFunctionalInterface[] updated = Arrays.copyOf(old, old.length + 1);
+            updated[old.length] = handler;
+            topic.handlers = updated;
+        }
+        return new Subscription(topic, handler);
+    }
+
+    // Delivers the message to every handler of the topic on this thread; returns
+    // how many handlers received it.
+    public int publish(String topicName, String message) {
+        Topic topic = topics.get(topicName);
+        if (topic == null) return 0;
+        MyFunctionalInterface[] handlers = topic.handlers; // one volatile read per message
+        for (MyFunctionalInterface handler : handlers) {
+            try {
+                handler.display(message);
+            } catch (Throwable t) {
+                failed(t, message);
+            }
+        }
+        return handlers.length;
+    }
+
+    // Queues the message for delivery on a pool thread; returns false (and
+    // counts it as dropped) if the topic's buffer is full, or if close() shut
+    // the pool down while the message was being queued.
+    public boolean publishAsync(String topicName, String message) {
+        if (closed) throw new IllegalStateException("EventBus is closed");
+        Topic topic = topic(topicName);
+        if (!topic.ring.offer(message)) {
+            dropped.increment();
+            return false;
+        }
+        if (!topic.schedule()) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public long failureCount() {
+        return failures.sum();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    // Delivers what is still buffered, then stops the pool threads. Gives up
+    // waiting after 10 seconds (e.g. when a handler hangs).
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        // Topics drain themselves; wait until no ring has undelivered messages
+        for (Topic topic : topics.values()) {
+            while ((!topic.ring.isEmpty() || topic.scheduled.get()) && !interrupted
+                    && System.nanoTime() - deadline < 0) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        dispatchers.shutdown();
+        try {
+            long left = Math.max(0, deadline - System.nanoTime());
+            if (!dispatchers.awaitTermination(left, TimeUnit.NANOSECONDS)) dispatchers.shutdownNow();
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private Topic topic(String name) {
+        Topic topic = topics.get(name);
+        return topic != null ? topic : topics.computeIfAbsent(name, n -> new Topic(ringCapacity));
+    }
+
+    private void failed(Throwable error, String message) {
+        failures.increment();
+        try {
+            errorHandler.accept(error, message);
+        } catch (Throwable ignored) {
+            // the error handler must not break delivery either
+        }
+    }
+
+    public final class Subscription implements AutoCloseable {
+        private final Topic topic;
+        private final MyFunctionalInterface handler;
+        private final AtomicBoolean active = new AtomicBoolean(true);
+
+        private Subscription(Topic topic, MyFunctionalInterface handler) {
+            this.topic = topic;
+            this.handler = handler;
+        }
+
+        // Unsubscribes; messages already being delivered may still reach the handler.
+        @Override
+        public void close() {
+            if (!active.compareAndSet(true, false)) return;
+            synchronized (topic) {
+                MyFunctionalInterface[] old = topic.handlers;
+                for (int i = 0; i < old.length; i++) {
+                    if (old[i] == handler) {
+                        MyFunctionalInterface[] updated = new MyFunctionalInterface[old.length - 1];
+                        System.arraycopy(old, 0, updated, 0, i);
+                        System.arraycopy(old, i + 1, updated, i, old.length - i - 1);
+                        topic.handlers = updated;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private final class Topic implements Runnable {
+        volatile MyFunctionalInterface[] handlers = NO_HANDLERS;
+        final Ring ring;
+        final AtomicBoolean scheduled = new AtomicBoolean(); // a pool thread owns the ring's consumer side
+        private final String[] batch = new String[BATCH];
+
+        Topic(int capacity) {
+            ring = new Ring(capacity);
+        }
+
+        // False once the pool has been shut down: nothing will drain the ring
+        boolean schedule() {
+            if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+                try {
+                    dispatchers.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Runs on a pool thread; only one at a time per topic
+        @Override
+        public void run() {
+            try {
+                for (int turn = 0; turn < BATCHES_PER_TURN; turn++) {
+                    int n = ring.drainTo(batch);
+                    if (n == 0) break;
+                    deliver(n);
+                }
+            } finally {
+                scheduled.set(false);
+                // A message published after the last drain but before the flag was
+                // cleared would otherwise wait for the next publish
+                if (!ring.isEmpty() && !dispatchers.isShutdown()) schedule();
+            }
+        }
+
+        private void deliver(int n) {
+            MyFunctionalInterface[] hs = handlers;
+            try {
+                for (MyFunctionalInterface handler : hs) {
+                    for (int i = 0; i < n; i++) {
+                        try {
+                            handler.display(batch[i]);
+                        } catch (Throwable t) {
+                            failed(t, batch[i]);
+                        }
+                    }
+                }
+            } finally {
+                Arrays.fill(batch, 0, n, null);
+            }
+        }
+    }
+
+    // Bounded multi-producer, single-consumer ring (each slot carries a
+    // sequence number saying whether it may be written or read)
+    private static final class Ring {
+        private final String[] slots;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+
+        Ring(int capacity) {
+            slots = new String[capacity];
+            sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) sequences.set(i, i);
+            mask = capacity - 1;
+        }
+
+        boolean offer(String message) {
+            long position = tail.get();
+            int index;
+            while (true) {
+                index = (int) position & mask;
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.weakCompareAndSetVolatile(position, position + 1)) break;
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false; // full
+                } else {
+                    position = tail.get();
+                }
+            }
+            slots[index] = message;
+            sequences.lazySet(index, position + 1);
+            return true;
+        }
+
+        // Consumer only
+        int drainTo(String[] batch) {
+            long h = head;
+            int n = 0;
+            while (n < batch.length) {
+                int index = (int) h & mask;
+                if (sequences.get(index) != h + 1) break;
+                batch[n++] = slots[index];
+                slots[index] = null;
+                sequences.lazySet(index, h + slots.length);
+                h++;
+            }
+            head = h;
+            return n;
+        }
+
+        boolean isEmpty() {
+            return tail.get() == head;
+        }
+    }
+}
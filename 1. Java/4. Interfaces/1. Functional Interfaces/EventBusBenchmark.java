@@ -0,0 +1,74 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fan-out to 1, 10 and 100 subscribers:
+// - a List<MyFunctionalInterface> looped over with for-each (the old way),
+// - EventBus.publish (synchronous),
+// - EventBus.publishAsync (ring buffer + batched delivery on a pool thread).
+// The handlers come from four different lambdas, as in a real application,
+// so the call site sees several handler classes.
+// Run with: java EventBusBenchmark [messages]
+public class EventBusBenchmark {
+    private static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        String[] payloads = new String[1024];
+        for (int i = 0; i < payloads.length; i++) payloads[i] = "event-" + i;
+
+        System.out.printf("%-12s %16s %16s %16s%n", "subscribers", "List loop", "publish", "publishAsync");
+        System.out.printf("%-12s %16s %16s %16s%n", "", "M deliveries/s", "M deliveries/s", "M deliveries/s");
+        for (int subscribers : new int[] {1, 10, 100}) {
+            int perRun = Math.max(messages / subscribers, 10_000);
+            LongAdder received = new LongAdder();
+            List<MyFunctionalInterface> list = new ArrayList<>();
+            for (int i = 0; i < subscribers; i++) list.add(handler(i, received));
+
+            try (EventBus bus = new EventBus(1, 1 << 14)) {
+                for (MyFunctionalInterface h : list) bus.subscribe("bench", h);
+                double listRate = 0, syncRate = 0, asyncRate = 0;
+                for (int round = 0; round < 3; round++) { // the last round is reported
+                    long start = System.nanoTime();
+                    for (int m = 0; m < perRun; m++) {
+                        String payload = payloads[m & 1023];
+                        for (MyFunctionalInterface h : list) h.display(payload);
+                    }
+                    listRate = rate(perRun, subscribers, System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    for (int m = 0; m < perRun; m++) bus.publish("bench", payloads[m & 1023]);
+                    syncRate = rate(perRun, subscribers, System.nanoTime() - start);
+
+                    received.reset();
+                    long expected = (long) perRun * subscribers;
+                    start = System.nanoTime();
+                    for (int m = 0; m < perRun; m++) {
+                        while (!bus.publishAsync("bench", payloads[m & 1023])) Thread.onSpinWait();
+                    }
+                    while (received.sum() < expected) Thread.sleep(0, 100_000);
+                    asyncRate = rate(perRun, subscribers, System.nanoTime() - start);
+                }
+                System.out.printf("%-12d %16.1f %16.1f %16.1f%n", subscribers, listRate, syncRate, asyncRate);
+                sink += received.sum();
+            }
+        }
+    }
+
+    private static double rate(int messages, int subscribers, long nanos) {
+        return (double) messages * subscribers * 1e3 / nanos;
+    }
+
+    private static MyFunctionalInterface handler(int i, LongAdder received) {
+        switch (i % 4) {
+            case 0:
+                return message -> received.increment();
+            case 1:
+                return message -> { if (message.length() > 0) received.increment(); };
+            case 2:
+                return message -> { if (message.charAt(0) == 'e') received.increment(); };
+            default:
+                return message -> { sink += message.length(); received.increment(); };
+        }
+    }
+}
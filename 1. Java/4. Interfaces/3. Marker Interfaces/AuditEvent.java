@@ -0,0 +1,110 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+// One audited change to an Auditable object.
+//
+// On disk each event is one record:
+//   int  payload length
+//   int  CRC32 of the payload
+//   payload: long sequence, long timestamp (epoch millis),
+//            then entity type, entity ID and action as (int length, UTF-8 bytes)
+// The CRC lets a reader recognize a record that was only partly written when
+// the process died.
+public final class AuditEvent {
+    static final int HEADER_BYTES = 8;
+
+    private final long sequence;
+    private final long timestampMillis;
+    private final String entityType;
+    private final String entityId;
+    private final String action;
+
+    AuditEvent(long sequence, long timestampMillis, String entityType, String entityId, String action) {
+        this.sequence = sequence;
+        this.timestampMillis = timestampMillis;
+        this.entityType = Objects.requireNonNull(entityType);
+        this.entityId = Objects.requireNonNull(entityId);
+        this.action = Objects.requireNonNull(action);
+    }
+
+    // Position in the log, starting at 1. Assigned when the event is written,
+    // so it is 0 on events that have not been read back from a log.
+    public long sequence() {
+        return sequence;
+    }
+
+    public long timestampMillis() {
+        return timestampMillis;
+    }
+
+    public String entityType() {
+        return entityType;
+    }
+
+    public String entityId() {
+        return entityId;
+    }
+
+    public String action() {
+        return action;
+    }
+
+    // Writes the record with the given sequence; the buffer must have
+    // maxEncodedSize() bytes of room.
+    void encode(ByteBuffer buffer, long sequence, CRC32 crc) {
+        byte[] type = entityType.getBytes(StandardCharsets.UTF_8);
+        byte[] id = entityId.getBytes(StandardCharsets.UTF_8);
+        byte[] act = action.getBytes(StandardCharsets.UTF_8);
+        int start = buffer.position();
+        int payloadLength = 16 + 12 + type.length + id.length + act.length;
+        buffer.putInt(payloadLength);
+        buffer.putInt(0); // CRC, filled in below
+        buffer.putLong(sequence);
+        buffer.putLong(timestampMillis);
+        putBytes(buffer, type);
+        putBytes(buffer, id);
+        putBytes(buffer, act);
+        crc.reset();
+        crc.update(buffer.array(), buffer.arrayOffset() + start + HEADER_BYTES, payloadLength);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    int maxEncodedSize() {
+        // Two longs, three length prefixes; UTF-8 needs at most 3 bytes per Java char
+        return HEADER_BYTES + 16 + 12 + 3 * (entityType.length() + entityId.length() + action.length());
+    }
+
+    // Decodes a payload whose CRC has already been checked
+    static AuditEvent decode(ByteBuffer payload) {
+        try {
+            long sequence = payload.getLong();
+            long timestamp = payload.getLong();
+            return new AuditEvent(sequence, timestamp, getString(payload), getString(payload), getString(payload));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IllegalStateException("Malformed audit record", e);
+        }
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) throw new IllegalArgumentException("Bad length " + length);
+        String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return s;
+    }
+
+    @Override
+    public String toString() {
+        return "AuditEvent{#" + sequence + " " + Instant.ofEpochMilli(timestampMillis) + " " + entityType + "/"
+                + entityId + " " + action + '}';
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Replays the audit log written by AuditPipeline, segment by segment, in
+// sequence order.
+//
+// A record that was only partly written (the process died mid-write) can only
+// be at the very end of the last segment; it is ignored there. Anywhere else a
+// bad record means the log is damaged and replay fails with an IOException.
+public final class AuditLogReader {
+    static final String SEGMENT_PREFIX = "audit-";
+    static final String SEGMENT_SUFFIX = ".log";
+
+    private AuditLogReader() {
+    }
+
+    // Passes every event in the log to consumer; returns how many there were.
+    public static long replay(Path directory, Consumer<? super AuditEvent> consumer) throws IOException {
+        return replay(directory, 1, consumer);
+    }
+
+    // Passes the events with sequence >= fromSequence to consumer.
+    public static long replay(Path directory, long fromSequence, Consumer<? super AuditEvent> consumer)
+            throws IOException {
+        List<Path> segments = segments(directory);
+        long count = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            boolean last = i == segments.size() - 1;
+            // Skip whole segments that end before fromSequence
+            if (!last && firstSequence(segments.get(i + 1)) <= fromSequence) continue;
+            count += scan(segments.get(i), fromSequence, consumer, last).events;
+        }
+        return count;
+    }
+
+    // Segment files in sequence order
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path p : stream) segments.add(p);
+        }
+        // Names hold zero-padded sequence numbers, so name order is sequence order
+        segments.sort(null);
+        return segments;
+    }
+
+    static String segmentName(long firstSequence) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX);
+    }
+
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Reads one segment. With tolerateTornTail, a damaged record ends the
+    // segment instead of failing; validBytes then tells where it starts.
+    static ScanResult scan(Path segment, long fromSequence, Consumer<? super AuditEvent> consumer,
+                           boolean tolerateTornTail) throws IOException {
+        ScanResult result = new ScanResult();
+        CRC32 crc = new CRC32();
+        long fileSize = Files.size(segment);
+        try (InputStream file = Files.newInputStream(segment);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            byte[] payload = new byte[256];
+            while (result.validBytes < fileSize) {
+                String problem = null;
+                int length = 0;
+                try {
+                    length = in.readInt();
+                    int expectedCrc = in.readInt();
+                    if (length < 16 || length > fileSize - result.validBytes - AuditEvent.HEADER_BYTES) {
+                        problem = "bad record length " + length;
+                    } else {
+                        if (payload.length < length) payload = new byte[Math.max(length, payload.length * 2)];
+                        in.readFully(payload, 0, length);
+                        crc.reset();
+                        crc.update(payload, 0, length);
+                        if ((int) crc.getValue() != expectedCrc) problem = "CRC mismatch";
+                    }
+                } catch (EOFException e) {
+                    problem = "truncated record";
+                }
+                if (problem != null) {
+                    if (tolerateTornTail) break;
+                    throw new IOException(segment + ": " + problem + " at offset " + result.validBytes);
+                }
+                AuditEvent event = AuditEvent.decode(ByteBuffer.wrap(payload, 0, length));
+                result.validBytes += AuditEvent.HEADER_BYTES + length;
+                result.lastSequence = event.sequence();
+                if (consumer != null && event.sequence() >= fromSequence) {
+                    consumer.accept(event);
+                    result.events++;
+                }
+            }
+        }
+        return result;
+    }
+
+    static final class ScanResult {
+        long validBytes;   // length of the intact prefix of the segment
+        long lastSequence; // sequence of the last intact record, 0 if none
+        long events;       // events passed to the consumer
+    }
+}
@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+// Asynchronous audit log for Auditable objects.
+//
+// Writing and fsyncing an audit record inside every request is slow (an fsync
+// alone takes milliseconds). Here a request only builds a small event and puts
+// it into a bounded lock-free queue; that costs well under a microsecond.
+// One background writer thread takes the queued events in batches, appends
+// them to the current segment file and then fsyncs once for the whole batch
+// ("group commit"). Segments are rolled at a configured size, so old ones can
+// be archived or deleted, and AuditLogReader replays them.
+//
+// Usage:
+//   try (AuditPipeline audit = AuditPipeline.builder(Path.of("audit")).build()) {
+//       audit.audit(user, user.getUsername(), "password-changed");
+//       ...
+//       audit.flush(); // only where the caller must know the events are on disk
+//   }
+//
+// The queue is bounded, so memory use is too: tryAudit() returns false when
+// the queue is full, and audit() waits for room. Events offered while close()
+// is running may be dropped. On startup a partly written record at the end of
+// the last segment (from a crash) is cut off and numbering continues after
+// the last intact record.
+public final class AuditPipeline implements AutoCloseable {
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    private final MpscBoundedQueue<AuditEvent> queue;
+    private final Path directory;
+    private final long segmentBytes;
+    private final int maxBatch;
+    private final long fsyncIntervalNanos;
+    private final boolean fsync;
+    private final Thread writer;
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile boolean running = true;
+    private volatile Throwable failure;
+    private volatile long durable;  // events taken from the queue that are on disk
+
+    // Writer thread state
+    private FileChannel channel;
+    private long segmentSize;
+    private long nextSequence;
+    private long consumed;          // events taken from the queue
+    private long lastSyncNanos = System.nanoTime();
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+    private final CRC32 crc = new CRC32();
+
+    private AuditPipeline(Builder builder) throws IOException {
+        this.queue = new MpscBoundedQueue<>(builder.bufferCapacity);
+        this.directory = builder.directory;
+        this.segmentBytes = builder.segmentBytes;
+        this.maxBatch = builder.maxBatch;
+        this.fsyncIntervalNanos = builder.fsyncInterval.toNanos();
+        this.fsync = builder.fsync;
+        Files.createDirectories(directory);
+        recover();
+        this.writer = new Thread(this::runWriter, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static Builder builder(Path directory) {
+        return new Builder(directory);
+    }
+
+    // Queues an audit event; returns false (and counts a rejection) if the queue is full.
+    public boolean tryAudit(Object entity, String entityId, String action) {
+        checkUsable();
+        boolean queued = queue.offer(newEvent(entity, entityId, action));
+        if (!queued) rejected.increment();
+        return queued;
+    }
+
+    // Queues an audit event, waiting while the queue is full.
+    public void audit(Object entity, String entityId, String action) {
+        checkUsable();
+        AuditEvent event = newEvent(entity, entityId, action);
+        int spins = 0;
+        while (!queue.offer(event)) {
+            checkUsable();
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(10_000);
+            }
+        }
+    }
+
+    // Waits until every event queued before this call has been written (and
+    // fsynced, unless fsync is off).
+    public void flush() {
+        long target = queue.claimed();
+        while (durable < target) {
+            if (failure != null) throw writerFailure();
+            if (!writer.isAlive()) throw new IllegalStateException("Audit pipeline is closed");
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public long durableCount() {
+        return durable;
+    }
+
+    // Stops accepting events, writes and fsyncs everything queued, and closes the segment.
+    @Override
+    public void close() {
+        running = false;
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw writerFailure();
+    }
+
+    private AuditEvent newEvent(Object entity, String entityId, String action) {
+        if (!(entity instanceof Auditable)) {
+            throw new IllegalArgumentException("Not Auditable: " + (entity == null ? "null" : entity.getClass().getName()));
+        }
+        return new AuditEvent(0, System.currentTimeMillis(), entity.getClass().getName(),
+                Objects.requireNonNull(entityId), Objects.requireNonNull(action));
+    }
+
+    private void checkUsable() {
+        if (failure != null) throw writerFailure();
+        if (!running) throw new IllegalStateException("Audit pipeline is closed");
+    }
+
+    private RuntimeException writerFailure() {
+        Throwable t = failure;
+        if (t instanceof IOException) return new UncheckedIOException("Audit writer failed", (IOException) t);
+        return new IllegalStateException("Audit writer failed", t);
+    }
+
+    // ---- Writer thread ----
+
+    private void runWriter() {
+        try {
+            while (true) {
+                boolean stopping = !running; // read first: everything queued before close() is drained below
+                int taken = queue.drain(this::append, maxBatch);
+                boolean idle = taken == 0;
+                if (consumed > durable) {
+                    long now = System.nanoTime();
+                    if (fsyncIntervalNanos == 0 || now - lastSyncNanos >= fsyncIntervalNanos || (idle && stopping)) {
+                        sync(); // one fsync for the whole batch
+                    } else if (idle) {
+                        writeBuffer();
+                    }
+                }
+                if (idle) {
+                    if (stopping) break;
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+    }
+
+    private void append(AuditEvent event) {
+        try {
+            int maxSize = event.maxEncodedSize();
+            if (segmentSize + buffer.position() > 0 && segmentSize + buffer.position() + maxSize > segmentBytes) {
+                roll();
+            }
+            if (buffer.remaining() < maxSize) {
+                writeBuffer();
+                if (buffer.capacity() < maxSize) buffer = ByteBuffer.allocate(maxSize);
+            }
+            event.encode(buffer, nextSequence++, crc);
+            consumed++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) segmentSize += channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void sync() throws IOException {
+        writeBuffer();
+        if (fsync) channel.force(false);
+        lastSyncNanos = System.nanoTime();
+        durable = consumed;
+    }
+
+    private void roll() throws IOException {
+        sync();
+        channel.close();
+        openSegment(directory.resolve(AuditLogReader.segmentName(nextSequence)), 0);
+    }
+
+    private void openSegment(Path path, long validBytes) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(validBytes); // drops a torn record left by a crash
+        channel.position(validBytes);
+        segmentSize = validBytes;
+    }
+
+    private void recover() throws IOException {
+        List<Path> segments = AuditLogReader.segments(directory);
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            openSegment(directory.resolve(AuditLogReader.segmentName(1)), 0);
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        AuditLogReader.ScanResult scan = AuditLogReader.scan(last, Long.MAX_VALUE, null, true);
+        nextSequence = scan.lastSequence > 0 ? scan.lastSequence + 1 : AuditLogReader.firstSequence(last);
+        openSegment(last, scan.validBytes);
+    }
+
+    public static final class Builder {
+        private final Path directory;
+        private int bufferCapacity = 1 << 16;
+        private long segmentBytes = 64L << 20;
+        private int maxBatch = 4096;
+        private Duration fsyncInterval = Duration.ZERO;
+        private boolean fsync = true;
+
+        private Builder(Path directory) {
+            this.directory = Objects.requireNonNull(directory);
+        }
+
+        // Queue size in events; a power of two
+        public Builder bufferCapacity(int events) {
+            this.bufferCapacity = events;
+            return this;
+        }
+
+        // Segment files are rolled once they reach about this size
+        public Builder segmentBytes(long bytes) {
+            if (bytes < 1024) throw new IllegalArgumentException("Segment too small: " + bytes);
+            this.segmentBytes = bytes;
+            return this;
+        }
+
+        // Most events written per batch
+        public Builder maxBatch(int events) {
+            if (events < 1) throw new IllegalArgumentException("maxBatch must be positive: " + events);
+            this.maxBatch = events;
+            return this;
+        }
+
+        // Zero (the default) fsyncs after every batch; a longer interval trades
+        // a wider window of loss on a crash for fewer fsyncs
+        public Builder fsyncInterval(Duration interval) {
+            if (interval.isNegative()) throw new IllegalArgumentException("Negative interval: " + interval);
+            this.fsyncInterval = interval;
+            return this;
+        }
+
+        // false only writes to the OS without fsync (survives a process crash, not a power loss)
+        public Builder fsync(boolean fsync) {
+            this.fsync = fsync;
+            return this;
+        }
+
+        public AuditPipeline build() throws IOException {
+            return new AuditPipeline(this);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Cost per audited request: a synchronous write + fsync per event against
+// AuditPipeline.audit(), on 1, 2, 4, ... threads, then a replay of the log.
+// Run with: java AuditPipelineBenchmark [eventsPerThread] [directory]
+public class AuditPipelineBenchmark {
+    public static void main(String[] args) throws Exception {
+        int perThread = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path root = args.length > 1 ? Path.of(args[1]) : Files.createTempDirectory("audit-bench");
+        User user = new User("john_doe", "password123");
+
+        // Synchronous baseline: few events, an fsync each is slow
+        int syncEvents = 2_000;
+        Path syncFile = root.resolve("sync.log");
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(syncFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < syncEvents; i++) {
+                byte[] line = ("User " + user.getUsername() + " updated " + i + "\n").getBytes(StandardCharsets.UTF_8);
+                channel.write(ByteBuffer.wrap(line));
+                channel.force(false);
+            }
+        }
+        System.out.printf("Synchronous write + fsync: %,.0f ns per event%n%n", (System.nanoTime() - start) / (double) syncEvents);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%-8s %18s %18s %14s%n", "threads", "audit() ns/event", "until durable ms", "segments");
+        for (int threads = 1; threads <= Math.max(cores, 1) * 2; threads *= 2) {
+            Path dir = root.resolve("run-" + threads);
+            try (AuditPipeline audit = AuditPipeline.builder(dir).segmentBytes(16L << 20).build()) {
+                List<Thread> workers = new ArrayList<>();
+                long[] nanos = new long[threads];
+                for (int t = 0; t < threads; t++) {
+                    int id = t;
+                    workers.add(new Thread(() -> {
+                        long begin = System.nanoTime();
+                        for (int i = 0; i < perThread; i++) audit.audit(user, user.getUsername(), "update");
+                        nanos[id] = System.nanoTime() - begin;
+                    }));
+                }
+                start = System.nanoTime();
+                for (Thread w : workers) w.start();
+                for (Thread w : workers) w.join();
+                audit.flush();
+                long total = System.nanoTime() - start;
+                long maxThread = 0;
+                for (long n : nanos) maxThread = Math.max(maxThread, n);
+                System.out.printf("%-8d %18.1f %18.1f %14d%n", threads, (double) maxThread / perThread, total / 1e6,
+                        AuditLogReader.segments(dir).size());
+            }
+            long[] count = new long[1];
+            long replayStart = System.nanoTime();
+            AuditLogReader.replay(dir, e -> count[0]++);
+            if (count[0] != (long) threads * perThread) {
+                throw new IllegalStateException("Replayed " + count[0] + " events, expected " + (long) threads * perThread);
+            }
+            System.out.printf("         replayed %,d events in %.1f ms%n", count[0], (System.nanoTime() - replayStart) / 1e6);
+        }
+        if (args.length <= 1) deleteRecursively(root);
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+}
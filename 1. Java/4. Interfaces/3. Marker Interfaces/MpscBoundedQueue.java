@@ -0,0 +1,81 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+// A bounded, lock-free queue for many producer threads and one consumer thread
+// (D. Vyukov's bounded queue).
+//
+// Each slot carries a sequence number telling whose turn it is: a producer may
+// fill slot i at position p when the slot's sequence is p, and the consumer may
+// empty it when the sequence is p + 1. Producers claim positions with one CAS;
+// the consumer never needs one. offer() fails instead of waiting when the
+// queue is full, so producers are never blocked by a slow consumer.
+final class MpscBoundedQueue<E> {
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // next position to claim (producers)
+    private long head;                                // next position to consume (consumer only)
+
+    MpscBoundedQueue(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two >= 2: " + capacity);
+        }
+        elements = new Object[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) sequences.set(i, i);
+        mask = capacity - 1;
+    }
+
+    boolean offer(E e) {
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.weakCompareAndSetVolatile(position, position + 1)) break;
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // the slot still holds an element from one lap ago: full
+            } else {
+                position = tail.get(); // another producer claimed it; retry
+            }
+        }
+        elements[index] = e;
+        sequences.lazySet(index, position + 1); // release: publishes the element to the consumer
+        return true;
+    }
+
+    // Consumer thread only
+    @SuppressWarnings("unchecked")
+    E poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) return null; // empty, or claimed but not yet published
+        E e = (E) elements[index];
+        elements[index] = null;
+        sequences.lazySet(index, head + elements.length); // free the slot for the next lap
+        head++;
+        return e;
+    }
+
+    // Consumer thread only: hands up to limit elements to the consumer, returns how many
+    int drain(Consumer<? super E> consumer, int limit) {
+        int count = 0;
+        E e;
+        while (count < limit && (e = poll()) != null) {
+            consumer.accept(e);
+            count++;
+        }
+        return count;
+    }
+
+    // Positions claimed so far by producers (some may not be published yet)
+    long claimed() {
+        return tail.get();
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+}
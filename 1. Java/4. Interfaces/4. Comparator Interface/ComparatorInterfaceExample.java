@@ -30,6 +30,10 @@ public class ComparatorInterfaceExample {
         
         Collections.sort(students, Comparator.comparing(Student::getGrade).reversed().thenComparing(Student::getName));
         System.out.println(students);
+
+        // Same order, but each key is read once per student instead of once per comparison (see KeySorter)
+        KeySorter.<Student>byInt(Student::getGrade).descending().thenByString(Student::getName).sort(students);
+        System.out.println(students);
     }
 }
 
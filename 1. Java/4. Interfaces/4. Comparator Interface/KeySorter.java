@@ -0,0 +1,321 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+// Sorts objects by a list of keys without calling a Comparator per comparison.
+//
+// Comparator.comparing(Student::getGrade).reversed().thenComparing(Student::getName)
+// calls both getters (and boxes the int grade) on every one of the ~n log n
+// comparisons. KeySorter instead:
+// 1. extracts every key exactly once into a primitive array (a "Schwartzian
+//    transform"); String keys are replaced by their rank among the distinct
+//    strings, which is computed once, so later steps only see numbers,
+// 2. shifts each key to start at 0 (and flips descending keys), packs as many
+//    keys as fit into one long, and
+// 3. radix sorts the element indices by the packed keys, then moves every
+//    object once into its final place.
+//
+// Usage:
+//   KeySorter<Student> byGradeThenName = KeySorter.<Student>byInt(Student::getGrade).descending()
+//           .thenByString(Student::getName);
+//   byGradeThenName.sort(students);
+//
+// The sort is stable, like Collections.sort. Keys must not change while
+// sorting, and String keys must not be null. KeySorter objects are immutable:
+// thenBy...() and descending() return new instances.
+public final class KeySorter<T> {
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int MASK = RADIX - 1;
+
+    private final Key<T>[] keys;
+
+    private KeySorter(Key<T>[] keys) {
+        this.keys = keys;
+    }
+
+    public static <T> KeySorter<T> byInt(ToIntFunction<? super T> key) {
+        return new KeySorter<T>(newKeys(0)).then(new IntKey<>(key, false));
+    }
+
+    public static <T> KeySorter<T> byLong(ToLongFunction<? super T> key) {
+        return new KeySorter<T>(newKeys(0)).then(new LongKey<>(key, false));
+    }
+
+    public static <T> KeySorter<T> byString(Function<? super T, String> key) {
+        return byString(key, Comparator.naturalOrder());
+    }
+
+    // Strings are ordered by the given comparator, e.g. a java.text.Collator;
+    // it is only called O(d log d) times for d distinct strings.
+    public static <T> KeySorter<T> byString(Function<? super T, String> key,
+                                            Comparator<? super String> order) {
+        return new KeySorter<T>(newKeys(0)).then(new StringKey<>(key, order, false));
+    }
+
+    public KeySorter<T> thenByInt(ToIntFunction<? super T> key) {
+        return then(new IntKey<>(key, false));
+    }
+
+    public KeySorter<T> thenByLong(ToLongFunction<? super T> key) {
+        return then(new LongKey<>(key, false));
+    }
+
+    public KeySorter<T> thenByString(Function<? super T, String> key) {
+        return thenByString(key, Comparator.naturalOrder());
+    }
+
+    public KeySorter<T> thenByString(Function<? super T, String> key,
+                                     Comparator<? super String> order) {
+        return then(new StringKey<>(key, order, false));
+    }
+
+    // Reverses the order of the most recently added key only.
+    public KeySorter<T> descending() {
+        Key<T>[] copy = keys.clone();
+        copy[copy.length - 1] = copy[copy.length - 1].reversed();
+        return new KeySorter<>(copy);
+    }
+
+    public void sort(List<T> list) {
+        @SuppressWarnings("unchecked")
+        T[] items = (T[]) list.toArray();
+        int[] order = sortedOrder(items);
+        ListIterator<T> it = list.listIterator();
+        for (int index : order) {
+            it.next();
+            it.set(items[index]);
+        }
+    }
+
+    public void sort(T[] array) {
+        int[] order = sortedOrder(array);
+        T[] copy = array.clone();
+        for (int i = 0; i < order.length; i++) array[i] = copy[order[i]];
+    }
+
+    // The indices of the elements in sorted order; the array is not changed.
+    public int[] sortedOrder(T[] items) {
+        int n = items.length;
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++) index[i] = i;
+        if (n < 2) return index;
+
+        // Extract and normalize every key, then pack them into as few longs as possible.
+        // words.get(0) holds the most significant keys.
+        List<long[]> words = new ArrayList<>();
+        List<Integer> wordBits = new ArrayList<>();
+        long[] word = null;
+        int used = 0;
+        for (Key<T> key : keys) {
+            long[] column = new long[n];
+            int bits = key.extract(items, column);
+            if (bits == 0) continue; // all elements have the same key: it cannot change the order
+            if (word == null || used + bits > 64) {
+                if (word != null) {
+                    words.add(word);
+                    wordBits.add(used);
+                }
+                word = column;
+                used = bits;
+            } else {
+                for (int i = 0; i < n; i++) word[i] = (word[i] << bits) | column[i];
+                used += bits;
+            }
+        }
+        if (word == null) return index;
+        words.add(word);
+        wordBits.add(used);
+
+        // LSD radix sort: least significant word first; each pass is stable
+        int[] indexTmp = new int[n];
+        long[] keyTmp = new long[n];
+        long[] current = null;
+        for (int w = words.size() - 1; w >= 0; w--) {
+            long[] column = words.get(w);
+            if (current == null) {
+                current = column; // index is still the identity, so the column is already aligned
+            } else {
+                long[] gathered = keyTmp;
+                for (int i = 0; i < n; i++) gathered[i] = column[index[i]];
+                keyTmp = current;
+                current = gathered;
+            }
+            int bits = wordBits.get(w);
+            int[] count = new int[RADIX];
+            for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+                Arrays.fill(count, 0);
+                for (int i = 0; i < n; i++) count[(int) (current[i] >>> shift) & MASK]++;
+                if (count[(int) (current[0] >>> shift) & MASK] == n) continue; // one digit everywhere
+                int sum = 0;
+                for (int d = 0; d < RADIX; d++) {
+                    int c = count[d];
+                    count[d] = sum;
+                    sum += c;
+                }
+                for (int i = 0; i < n; i++) {
+                    int pos = count[(int) (current[i] >>> shift) & MASK]++;
+                    keyTmp[pos] = current[i];
+                    indexTmp[pos] = index[i];
+                }
+                long[] k = current;
+                current = keyTmp;
+                keyTmp = k;
+                int[] x = index;
+                index = indexTmp;
+                indexTmp = x;
+            }
+        }
+        return index;
+    }
+
+    private KeySorter<T> then(Key<T> key) {
+        Key<T>[] copy = Arrays.copyOf(keys, keys.length + 1);
+        copy[keys.length] = key;
+        return new KeySorter<>(copy);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Key<T>[] newKeys(int length) {
+        return (Key<T>[]) new Key<?>[length];
+    }
+
+    private static int bitsFor(long unsignedRange) {
+        return 64 - Long.numberOfLeadingZeros(unsignedRange);
+    }
+
+    // A sort key. extract() fills column with values in [0, 2^bits) whose
+    // unsigned order is the key's order, and returns bits.
+    private abstract static class Key<T> {
+        final boolean descending;
+
+        Key(boolean descending) {
+            this.descending = descending;
+        }
+
+        abstract int extract(T[] items, long[] column);
+
+        abstract Key<T> reversed();
+    }
+
+    private static final class IntKey<T> extends Key<T> {
+        private final ToIntFunction<? super T> getter;
+
+        IntKey(ToIntFunction<? super T> getter, boolean descending) {
+            super(descending);
+            this.getter = getter;
+        }
+
+        @Override
+        int extract(T[] items, long[] column) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < items.length; i++) {
+                int v = getter.applyAsInt(items[i]);
+                column[i] = v;
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+            // Shift to start at 0: a small range (like grades 0..100) needs few radix passes
+            for (int i = 0; i < column.length; i++) {
+                column[i] = descending ? max - column[i] : column[i] - min;
+            }
+            return bitsFor((long) max - min);
+        }
+
+        @Override
+        Key<T> reversed() {
+            return new IntKey<>(getter, !descending);
+        }
+    }
+
+    private static final class LongKey<T> extends Key<T> {
+        private final ToLongFunction<? super T> getter;
+
+        LongKey(ToLongFunction<? super T> getter, boolean descending) {
+            super(descending);
+            this.getter = getter;
+        }
+
+        @Override
+        int extract(T[] items, long[] column) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < items.length; i++) {
+                long v = getter.applyAsLong(items[i]);
+                column[i] = v;
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+            // The differences may exceed Long.MAX_VALUE; they are correct as unsigned values
+            for (int i = 0; i < column.length; i++) {
+                column[i] = descending ? max - column[i] : column[i] - min;
+            }
+            return bitsFor(max - min);
+        }
+
+        @Override
+        Key<T> reversed() {
+            return new LongKey<>(getter, !descending);
+        }
+    }
+
+    private static final class StringKey<T> extends Key<T> {
+        private final Function<? super T, String> getter;
+        private final Comparator<? super String> order;
+
+        StringKey(Function<? super T, String> getter, Comparator<? super String> order,
+                  boolean descending) {
+            super(descending);
+            this.getter = getter;
+            this.order = order;
+        }
+
+        @Override
+        int extract(T[] items, long[] column) {
+            // Number the distinct strings, sort only those, and use each one's
+            // rank as its key: real data usually repeats strings a lot
+            Map<String, Integer> ids = new HashMap<>();
+            List<String> distinct = new ArrayList<>();
+            for (int i = 0; i < items.length; i++) {
+                String s = getter.apply(items[i]);
+                if (s == null) throw new NullPointerException("String key is null at index " + i);
+                Integer id = ids.get(s);
+                if (id == null) {
+                    id = distinct.size();
+                    ids.put(s, id);
+                    distinct.add(s);
+                }
+                column[i] = id;
+            }
+            int d = distinct.size();
+            Integer[] byOrder = new Integer[d];
+            for (int i = 0; i < d; i++) byOrder[i] = i;
+            Arrays.sort(byOrder, (a, b) -> order.compare(distinct.get(a), distinct.get(b)));
+            long[] rank = new long[d];
+            int r = 0;
+            for (int i = 0; i < d; i++) {
+                // Strings the comparator considers equal (e.g. under a Collator) share a rank
+                if (i > 0 && order.compare(distinct.get(byOrder[i - 1]), distinct.get(byOrder[i])) != 0) r++;
+                rank[byOrder[i]] = r;
+            }
+            for (int i = 0; i < column.length; i++) {
+                long v = rank[(int) column[i]];
+                column[i] = descending ? r - v : v;
+            }
+            return bitsFor(r);
+        }
+
+        @Override
+        Key<T> reversed() {
+            return new StringKey<>(getter, order, !descending);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+// Collections.sort with Comparator.comparing(Student::getGrade).reversed()
+// .thenComparing(Student::getName) against KeySorter with the same keys.
+// Run with: java -Xmx4g KeySorterBenchmark [n]
+public class KeySorterBenchmark {
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        String[] names = new String[50_000];
+        for (int i = 0; i < names.length; i++) names[i] = "Student-" + Integer.toString(random.nextInt(), 36);
+        List<Student> source = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) source.add(new Student(names[random.nextInt(names.length)], random.nextInt(101)));
+
+        Comparator<Student> comparator = Comparator.comparing(Student::getGrade).reversed()
+                .thenComparing(Student::getName);
+        KeySorter<Student> sorter = KeySorter.<Student>byInt(Student::getGrade).descending()
+                .thenByString(Student::getName);
+
+        System.out.printf("Sorting %d students by grade (descending), then name%n", n);
+        for (int round = 1; round <= 10; round++) {
+            List<Student> expected = new ArrayList<>(source);
+            long start = System.nanoTime();
+            Collections.sort(expected, comparator);
+            long comparatorNanos = System.nanoTime() - start;
+
+            List<Student> actual = new ArrayList<>(source);
+            start = System.nanoTime();
+            sorter.sort(actual);
+            long sorterNanos = System.nanoTime() - start;
+
+            for (int i = 0; i < n; i++) {
+                if (expected.get(i) != actual.get(i)) throw new IllegalStateException("Orders differ at " + i);
+            }
+            sink += actual.get(0).grade;
+            System.out.printf("  round %d: Collections.sort %7.1f ms  KeySorter %7.1f ms  (%.1fx)%n",
+                    round, comparatorNanos / 1e6, sorterNanos / 1e6, (double) comparatorNanos / sorterNanos);
+        }
+    }
+}
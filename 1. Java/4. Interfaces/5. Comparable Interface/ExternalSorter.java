@@ -0,0 +1,978 @@
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+// Sorts more records than fit in memory (external merge sort).
+//
+// Collections.sort needs the whole list on the heap. ExternalSorter needs only
+// a memory budget; the records pass through temporary files:
+// - Run generation: records are read into chunks of memoryBudget / (threads + 1)
+//   (estimated heap size). Each full chunk is sorted and written to a run file
+//   by a pool thread while the next chunk is being read, so sorting and
+//   writing use all cores and at most threads + 1 chunks are in memory.
+// - Merging: the runs are merged k ways with a loser tree, which finds the
+//   next record with one comparison per tree level (log2 k) and no heap
+//   reshuffling. Run files are read through a buffer per run (BUFFERED) or
+//   memory-mapped a window at a time (MAPPED).
+// - More runs than fanIn: earlier passes merge groups of consecutive runs (in
+//   parallel) into longer runs until fanIn remain. The first pass merges just
+//   enough runs for the last pass to have exactly fanIn, so as little data as
+//   possible is read and written twice.
+// - The sort is stable: chunks are sorted with a stable sort, and equal records
+//   are merged in run order.
+// - Input that fits in a single chunk is sorted in memory, without files.
+// Records are written to disk with a Codec (DataOutput / DataInput); the
+// Comparator runs on decoded records.
+//
+// Usage:
+//   ExternalSorter<Student> sorter = ExternalSorter.builder(new StudentCodec(), Comparator.<Student>naturalOrder())
+//           .memoryBudget(512L << 20)
+//           .build();
+//   ExternalSorter.Stats stats = sorter.sort(Path.of("students.bin"), Path.of("sorted.bin"));
+//   System.out.println(stats); // records, runs, merge passes, MB/s
+//
+// Records must not be null. A sorter can be shared; each sort() uses its own
+// threads and temporary directory, which is deleted afterwards.
+public final class ExternalSorter<T> {
+    // Writes and reads one record. read must consume exactly what write produced.
+    public interface Codec<T> {
+        void write(T record, DataOutput out) throws IOException;
+
+        T read(DataInput in) throws IOException;
+    }
+
+    public enum ReadMode { BUFFERED, MAPPED }
+
+    private static final int MIN_BUFFER = 64 << 10;
+    private static final int MAX_BUFFER = 8 << 20;
+    private static final int MAPPED_WINDOW = 32 << 20;
+    private static final int SAMPLE_EVERY = 256;
+    private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+    private final Codec<T> codec;
+    private final Comparator<? super T> comparator;
+    private final long memoryBudget;
+    private final int threads;
+    private final int fanIn;
+    private final ReadMode readMode;
+    private final Path tempDirectory;
+    private final ToLongFunction<? super T> recordSize;
+
+    private ExternalSorter(Builder<T> builder) {
+        this.codec = builder.codec;
+        this.comparator = builder.comparator;
+        this.memoryBudget = builder.memoryBudget;
+        this.threads = builder.threads;
+        this.fanIn = builder.fanIn;
+        this.readMode = builder.readMode;
+        this.tempDirectory = builder.tempDirectory;
+        this.recordSize = builder.recordSize;
+    }
+
+    public static <T> Builder<T> builder(Codec<T> codec, Comparator<? super T> comparator) {
+        return new Builder<>(codec, comparator);
+    }
+
+    // Sorts the records of input and hands them to output in order
+    public Stats sort(Iterator<? extends T> input, Consumer<? super T> output) throws IOException {
+        Objects.requireNonNull(output);
+        return run(input, output::accept, null);
+    }
+
+    public Stats sort(Stream<? extends T> input, Consumer<? super T> output) throws IOException {
+        return sort(input.iterator(), output);
+    }
+
+    // Sorts the records of input into a file written with the codec. The file
+    // is written next to output and moved into place at the end, so output is
+    // either replaced completely or left as it was.
+    public Stats sort(Iterator<? extends T> input, Path output) throws IOException {
+        Path absolute = output.toAbsolutePath();
+        Path partial = Files.createTempFile(absolute.getParent(), absolute.getFileName() + ".", ".sorting");
+        try {
+            Stats stats;
+            try (RecordOutput out = RecordOutput.create(partial, MAX_BUFFER)) {
+                stats = run(input, record -> codec.write(record, out), out);
+            }
+            try {
+                Files.move(partial, output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partial, output, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return stats;
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    // Sorts a file of records written with the codec into another one, or
+    // into itself (input and output may be the same file)
+    public Stats sort(Path input, Path output) throws IOException {
+        try (RecordInput in = RecordInput.open(input, ReadMode.BUFFERED, MAX_BUFFER)) {
+            return sort(new FileRecords(in), output);
+        }
+    }
+
+    private interface Sink<T> {
+        void accept(T record) throws IOException;
+    }
+
+    private Stats run(Iterator<? extends T> input, Sink<T> sink, RecordOutput fileOutput) throws IOException {
+        Objects.requireNonNull(input);
+        long start = System.nanoTime();
+        Path dir = Files.createTempDirectory(tempDirectory, "external-sort-");
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "external-sorter");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Generation generation = generateRuns(input, dir, pool);
+            long runsDone = System.nanoTime();
+            if (generation.inMemory != null) {
+                for (T record : generation.inMemory) sink.accept(record);
+                if (fileOutput != null) fileOutput.flush();
+                long end = System.nanoTime();
+                return new Stats(generation.records, generation.bytes, 0, 0, end - start, end - runsDone);
+            }
+            List<Run> runs = generation.runs;
+            int passes = 0;
+            while (runs.size() > fanIn) {
+                passes++;
+                runs = mergePass(runs, passes, dir, pool);
+            }
+            try (Merger merger = new Merger(runs, bufferSize(fanIn + 1))) {
+                for (T record; (record = merger.next()) != null; ) sink.accept(record);
+            }
+            if (fileOutput != null) fileOutput.flush();
+            long end = System.nanoTime();
+            return new Stats(generation.records, generation.bytes, generation.runs.size(), passes + 1, end - start,
+                    end - runsDone);
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // from reading an input file
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException("Sorting failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sorting");
+        } finally {
+            pool.shutdownNow();
+            deleteRecursively(dir);
+        }
+    }
+
+    // ---- Run generation ----
+
+    private static final class Run {
+        final Path file;
+        final long records;
+        final long bytes;
+
+        Run(Path file, long records, long bytes) {
+            this.file = file;
+            this.records = records;
+            this.bytes = bytes;
+        }
+    }
+
+    private final class Generation {
+        List<Run> runs = new ArrayList<>();
+        List<T> inMemory;
+        long records;
+        long bytes;
+    }
+
+    private Generation generateRuns(Iterator<? extends T> input, Path dir, ExecutorService pool)
+            throws IOException, InterruptedException, ExecutionException {
+        long chunkBudget = Math.max(1, memoryBudget / (threads + 1));
+        Semaphore chunksInMemory = new Semaphore(threads + 1);
+        List<Future<Run>> written = new ArrayList<>();
+        SizeEstimator estimator = new SizeEstimator();
+        Generation generation = new Generation();
+
+        chunksInMemory.acquire();
+        Object[] chunk = new Object[1024];
+        int n = 0;
+        long chunkBytes = 0;
+        while (input.hasNext()) {
+            T record = Objects.requireNonNull(input.next(), "null record");
+            if (n == chunk.length) chunk = Arrays.copyOf(chunk, n * 2);
+            chunk[n++] = record;
+            chunkBytes += estimator.heapSize(record);
+            if (chunkBytes >= chunkBudget) {
+                written.add(submitRun(chunk, n, dir.resolve(runName(written.size())), pool, chunksInMemory));
+                generation.records += n;
+                chunk = new Object[n]; // the next chunk will need about as many slots
+                n = 0;
+                chunkBytes = 0;
+                for (Future<Run> f : written) {
+                    if (f.isDone()) f.get(); // fail early if writing a run failed
+                }
+                chunksInMemory.acquire();
+            }
+        }
+        generation.records += n;
+        if (written.isEmpty()) {
+            @SuppressWarnings("unchecked")
+            T[] records = (T[]) chunk;
+            Arrays.sort(records, 0, n, comparator);
+            generation.inMemory = Arrays.asList(records).subList(0, n);
+            RecordOutput counter = RecordOutput.counting();
+            for (int i = 0; i < n; i++) codec.write(records[i], counter);
+            generation.bytes = counter.size();
+            return generation;
+        }
+        if (n > 0) written.add(submitRun(chunk, n, dir.resolve(runName(written.size())), pool, chunksInMemory));
+        for (Future<Run> f : written) {
+            Run run = f.get();
+            generation.runs.add(run);
+            generation.bytes += run.bytes;
+        }
+        return generation;
+    }
+
+    private Future<Run> submitRun(Object[] chunk, int n, Path file, ExecutorService pool, Semaphore chunksInMemory) {
+        return pool.submit(() -> {
+            try {
+                @SuppressWarnings("unchecked")
+                T[] records = (T[]) chunk;
+                Arrays.sort(records, 0, n, comparator); // stable
+                try (RecordOutput out = RecordOutput.create(file, bufferSize(threads))) {
+                    for (int i = 0; i < n; i++) codec.write(records[i], out);
+                    out.flush();
+                    return new Run(file, n, out.size());
+                }
+            } finally {
+                chunksInMemory.release();
+            }
+        });
+    }
+
+    private static String runName(int index) {
+        return String.format("run-%06d.bin", index);
+    }
+
+    // Heap bytes per record: the given function, or twice the encoded size
+    // (measured on a sample) plus object header and reference
+    private final class SizeEstimator {
+        private final RecordOutput counter = RecordOutput.counting();
+        private long sampled;
+        private long sampledBytes;
+        private long seen;
+        private long estimate = 64;
+
+        long heapSize(T record) throws IOException {
+            if (recordSize != null) return recordSize.applyAsLong(record);
+            if (seen++ < SAMPLE_EVERY || seen % SAMPLE_EVERY == 0) {
+                long before = counter.size();
+                codec.write(record, counter);
+                sampledBytes += counter.size() - before;
+                sampled++;
+                estimate = 2 * sampledBytes / sampled + 32;
+            }
+            return estimate;
+        }
+    }
+
+    // ---- Merging ----
+
+    // Merges consecutive groups of runs so that at most fanIn remain (or as
+    // close as one pass allows), keeping the run order for stability
+    private List<Run> mergePass(List<Run> runs, int pass, Path dir, ExecutorService pool)
+            throws IOException, InterruptedException, ExecutionException {
+        List<List<Run>> groups = new ArrayList<>();
+        int next = 0;
+        int remaining = runs.size();
+        while (remaining > fanIn && runs.size() - next > 1) {
+            int size = Math.min(Math.min(fanIn, remaining - fanIn + 1), runs.size() - next);
+            groups.add(runs.subList(next, next + size));
+            next += size;
+            remaining -= size - 1;
+        }
+        int bufferSize = bufferSize(Math.min(threads, groups.size()) * (fanIn + 1));
+        List<Future<Run>> merged = new ArrayList<>();
+        for (int g = 0; g < groups.size(); g++) {
+            List<Run> group = groups.get(g);
+            Path file = dir.resolve(String.format("pass-%02d-%06d.bin", pass, g));
+            merged.add(pool.submit(() -> mergeToFile(group, file, bufferSize)));
+        }
+        List<Run> result = new ArrayList<>();
+        for (Future<Run> f : merged) result.add(f.get());
+        result.addAll(runs.subList(next, runs.size()));
+        return result;
+    }
+
+    private Run mergeToFile(List<Run> group, Path file, int bufferSize) throws IOException {
+        long records = 0;
+        try (Merger merger = new Merger(group, bufferSize);
+             RecordOutput out = RecordOutput.create(file, bufferSize)) {
+            for (T record; (record = merger.next()) != null; ) {
+                codec.write(record, out);
+                records++;
+            }
+            out.flush();
+            for (Run run : group) Files.deleteIfExists(run.file); // frees the disk space early
+            return new Run(file, records, out.size());
+        }
+    }
+
+    // Per-run buffer when 'buffers' of them share the memory budget
+    private int bufferSize(int buffers) {
+        return (int) Math.max(MIN_BUFFER, Math.min(MAX_BUFFER, memoryBudget / Math.max(1, buffers)));
+    }
+
+    // k-way merge with a loser tree. Leaf i is run i; internal node p (1..k-1)
+    // holds the loser of the match between its subtrees, node 0 the winner.
+    // A run's next record is its head; null once the run is exhausted.
+    private final class Merger implements Closeable {
+        private final List<RecordInput> inputs = new ArrayList<>();
+        private final long[] remaining;
+        private final Object[] heads;
+        private final int[] losers;
+        private final int k;
+
+        Merger(List<Run> runs, int bufferSize) throws IOException {
+            k = runs.size();
+            remaining = new long[k];
+            heads = new Object[k];
+            losers = new int[Math.max(1, k)];
+            try {
+                for (int i = 0; i < k; i++) {
+                    Run run = runs.get(i);
+                    inputs.add(RecordInput.open(run.file, readMode, bufferSize));
+                    remaining[i] = run.records;
+                    advance(i);
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+            if (k > 0) build();
+        }
+
+        private void build() {
+            int[] winners = new int[2 * k];
+            for (int i = 0; i < k; i++) winners[k + i] = i;
+            for (int p = k - 1; p >= 1; p--) {
+                int a = winners[2 * p];
+                int b = winners[2 * p + 1];
+                if (beats(a, b)) {
+                    winners[p] = a;
+                    losers[p] = b;
+                } else {
+                    winners[p] = b;
+                    losers[p] = a;
+                }
+            }
+            losers[0] = k == 1 ? 0 : winners[1];
+        }
+
+        // The smallest remaining record, or null when all runs are exhausted
+        T next() throws IOException {
+            if (k == 0) return null;
+            int winner = losers[0];
+            @SuppressWarnings("unchecked")
+            T record = (T) heads[winner];
+            if (record == null) return null;
+            advance(winner);
+            // Replay the winner's path: at each node the stored loser plays the new head
+            for (int p = (winner + k) >>> 1; p >= 1; p >>>= 1) {
+                if (beats(losers[p], winner)) {
+                    int t = losers[p];
+                    losers[p] = winner;
+                    winner = t;
+                }
+            }
+            losers[0] = winner;
+            return record;
+        }
+
+        // Whether run a's head comes before run b's; ties go to the earlier run
+        @SuppressWarnings("unchecked")
+        private boolean beats(int a, int b) {
+            Object x = heads[a];
+            Object y = heads[b];
+            if (x == null) return false;
+            if (y == null) return true;
+            int c = comparator.compare((T) x, (T) y);
+            return c < 0 || (c == 0 && a < b);
+        }
+
+        private void advance(int i) throws IOException {
+            if (remaining[i] == 0) {
+                heads[i] = null;
+                return;
+            }
+            remaining[i]--;
+            heads[i] = Objects.requireNonNull(codec.read(inputs.get(i)), "Codec read a null record");
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (RecordInput in : inputs) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    if (failure == null) failure = e;
+                }
+            }
+            if (failure != null) throw failure;
+        }
+    }
+
+    // Records of a file written with the codec, until the end of the file
+    private final class FileRecords implements Iterator<T> {
+        private final RecordInput in;
+
+        FileRecords(RecordInput in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return in.hasRemaining();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            try {
+                return codec.read(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // ---- Record files ----
+
+    // DataInput over a file, through a heap buffer refilled from the channel or
+    // through a sliding memory-mapped window
+    private static final class RecordInput implements DataInput, Closeable {
+        private final FileChannel channel;
+        private final boolean mapped;
+        private final long fileSize;
+        private ByteBuffer buffer;
+        private long bufferStart; // file offset of buffer index 0
+
+        private RecordInput(FileChannel channel, boolean mapped, int bufferSize) throws IOException {
+            this.channel = channel;
+            this.mapped = mapped;
+            this.fileSize = channel.size();
+            if (mapped) {
+                buffer = ByteBuffer.allocate(0);
+            } else {
+                buffer = ByteBuffer.allocate(bufferSize);
+                buffer.flip();
+            }
+        }
+
+        static RecordInput open(Path file, ReadMode mode, int bufferSize) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                return new RecordInput(channel, mode == ReadMode.MAPPED, bufferSize);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        boolean hasRemaining() throws IOException {
+            return buffer.hasRemaining() || refill(1);
+        }
+
+        // Makes at least n bytes available (n <= 8, or any n for mapped windows)
+        private void require(int n) throws IOException {
+            if (buffer.remaining() < n && !refill(n)) throw new EOFException();
+        }
+
+        private boolean refill(int n) throws IOException {
+            long position = bufferStart + buffer.position();
+            if (mapped) {
+                long size = Math.min(Math.max(MAPPED_WINDOW, n), fileSize - position);
+                if (size < n) return false;
+                free(buffer);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                bufferStart = position;
+                return true;
+            }
+            buffer.compact();
+            bufferStart = position;
+            while (buffer.position() < n) {
+                if (channel.read(buffer, bufferStart + buffer.position()) < 0) break;
+            }
+            buffer.flip();
+            return buffer.remaining() >= n;
+        }
+
+        @Override
+        public void readFully(byte[] b) throws IOException {
+            readFully(b, 0, b.length);
+        }
+
+        @Override
+        public void readFully(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!buffer.hasRemaining()) require(1);
+                int k = Math.min(len, buffer.remaining());
+                buffer.get(b, off, k);
+                off += k;
+                len -= k;
+            }
+        }
+
+        @Override
+        public int skipBytes(int n) throws IOException {
+            int skipped = 0;
+            while (skipped < n && hasRemaining()) {
+                int k = Math.min(n - skipped, buffer.remaining());
+                buffer.position(buffer.position() + k);
+                skipped += k;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            require(1);
+            return buffer.get();
+        }
+
+        @Override
+        public int readUnsignedByte() throws IOException {
+            return readByte() & 0xFF;
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            require(2);
+            return buffer.getShort();
+        }
+
+        @Override
+        public int readUnsignedShort() throws IOException {
+            return readShort() & 0xFFFF;
+        }
+
+        @Override
+        public char readChar() throws IOException {
+            require(2);
+            return buffer.getChar();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            require(4);
+            return buffer.getInt();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            require(8);
+            return buffer.getLong();
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            return Float.intBitsToFloat(readInt());
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        // As DataInputStream.readLine: one char per byte, up to "\n", "\r" or
+        // "\r\n"; null at the end of the file
+        @Override
+        public String readLine() throws IOException {
+            if (!hasRemaining()) return null;
+            StringBuilder line = new StringBuilder();
+            while (hasRemaining()) {
+                int c = buffer.get() & 0xFF;
+                if (c == '\n') break;
+                if (c == '\r') {
+                    if (hasRemaining() && buffer.get(buffer.position()) == '\n') buffer.get();
+                    break;
+                }
+                line.append((char) c);
+            }
+            return line.toString();
+        }
+
+        @Override
+        public String readUTF() throws IOException {
+            return DataInputStream.readUTF(this);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mapped) free(buffer);
+            channel.close();
+        }
+    }
+
+    // DataOutput into a file through a heap buffer; without a file it only
+    // counts bytes (for size estimates)
+    private static final class RecordOutput implements DataOutput, Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long flushed;
+
+        private RecordOutput(FileChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(bufferSize);
+        }
+
+        static RecordOutput create(Path file, int bufferSize) throws IOException {
+            return new RecordOutput(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING), bufferSize);
+        }
+
+        static RecordOutput counting() {
+            return new RecordOutput(null, 8 << 10);
+        }
+
+        long size() {
+            return flushed + buffer.position();
+        }
+
+        private void room(int n) throws IOException {
+            if (buffer.remaining() < n) flush();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            if (channel != null) {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+            flushed += buffer.limit();
+            buffer.clear();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            room(1);
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b) throws IOException {
+            write(b, 0, b.length);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!buffer.hasRemaining()) flush();
+                int k = Math.min(len, buffer.remaining());
+                buffer.put(b, off, k);
+                off += k;
+                len -= k;
+            }
+        }
+
+        @Override
+        public void writeBoolean(boolean v) throws IOException {
+            write(v ? 1 : 0);
+        }
+
+        @Override
+        public void writeByte(int v) throws IOException {
+            write(v);
+        }
+
+        @Override
+        public void writeShort(int v) throws IOException {
+            room(2);
+            buffer.putShort((short) v);
+        }
+
+        @Override
+        public void writeChar(int v) throws IOException {
+            room(2);
+            buffer.putChar((char) v);
+        }
+
+        @Override
+        public void writeInt(int v) throws IOException {
+            room(4);
+            buffer.putInt(v);
+        }
+
+        @Override
+        public void writeLong(long v) throws IOException {
+            room(8);
+            buffer.putLong(v);
+        }
+
+        @Override
+        public void writeFloat(float v) throws IOException {
+            writeInt(Float.floatToIntBits(v));
+        }
+
+        @Override
+        public void writeDouble(double v) throws IOException {
+            writeLong(Double.doubleToLongBits(v));
+        }
+
+        @Override
+        public void writeBytes(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) write(s.charAt(i));
+        }
+
+        @Override
+        public void writeChars(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) writeChar(s.charAt(i));
+        }
+
+        // Modified UTF-8 with a two-byte length, as DataOutputStream writes it
+        @Override
+        public void writeUTF(String s) throws IOException {
+            int length = 0;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                length += c >= 1 && c <= 0x7F ? 1 : c <= 0x7FF ? 2 : 3;
+            }
+            if (length > 0xFFFF) throw new UTFDataFormatException("Encoded string too long: " + length + " bytes");
+            writeShort(length);
+            if (length <= buffer.capacity()) {
+                // Usual case: encode straight into the buffer's array
+                room(length);
+                byte[] bytes = buffer.array();
+                int at = buffer.arrayOffset() + buffer.position();
+                for (int i = 0; i < s.length(); i++) {
+                    char c = s.charAt(i);
+                    if (c >= 1 && c <= 0x7F) {
+                        bytes[at++] = (byte) c;
+                    } else if (c <= 0x7FF) {
+                        bytes[at++] = (byte) (0xC0 | (c >> 6));
+                        bytes[at++] = (byte) (0x80 | (c & 0x3F));
+                    } else {
+                        bytes[at++] = (byte) (0xE0 | (c >> 12));
+                        bytes[at++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                        bytes[at++] = (byte) (0x80 | (c & 0x3F));
+                    }
+                }
+                buffer.position(at - buffer.arrayOffset());
+                return;
+            }
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c >= 1 && c <= 0x7F) {
+                    write(c);
+                } else if (c <= 0x7FF) {
+                    room(2);
+                    buffer.put((byte) (0xC0 | (c >> 6))).put((byte) (0x80 | (c & 0x3F)));
+                } else {
+                    room(3);
+                    buffer.put((byte) (0xE0 | (c >> 12))).put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                            .put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) channel.close();
+        }
+    }
+
+    // ---- Housekeeping ----
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    // Left for the OS to clean up with the temp directory
+                }
+            });
+        } catch (IOException e) {
+            // Same
+        }
+    }
+
+    // Unmaps a mapped window now instead of when it is collected
+    private static void free(ByteBuffer buffer) {
+        if (!buffer.isDirect() || INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invokeExact(buffer);
+        } catch (Throwable t) {
+            // Left to the garbage collector
+        }
+    }
+
+    // sun.misc.Unsafe.invokeCleaner (jdk.unsupported); null if unavailable
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(unsafe);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public static final class Stats {
+        private final long records;
+        private final long bytes;
+        private final int runs;
+        private final int mergePasses;
+        private final long totalNanos;
+        private final long mergeNanos;
+
+        Stats(long records, long bytes, int runs, int mergePasses, long totalNanos, long mergeNanos) {
+            this.records = records;
+            this.bytes = bytes;
+            this.runs = runs;
+            this.mergePasses = mergePasses;
+            this.totalNanos = totalNanos;
+            this.mergeNanos = mergeNanos;
+        }
+
+        public long records() {
+            return records;
+        }
+
+        // Encoded size of all records
+        public long bytes() {
+            return bytes;
+        }
+
+        // Sorted runs written by run generation; 0 if sorted in memory
+        public int runs() {
+            return runs;
+        }
+
+        // Including the final merge
+        public int mergePasses() {
+            return mergePasses;
+        }
+
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        public long mergeNanos() {
+            return mergeNanos;
+        }
+
+        public double megabytesPerSecond() {
+            return totalNanos == 0 ? 0 : (bytes / (double) (1 << 20)) / (totalNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d records, %,d MB, %d runs, %d merge passes, %.0f ms (merge %.0f ms), %.1f MB/s",
+                    records, bytes >> 20, runs, mergePasses, totalNanos / 1e6, mergeNanos / 1e6, megabytesPerSecond());
+        }
+    }
+
+    public static final class Builder<T> {
+        private final Codec<T> codec;
+        private final Comparator<? super T> comparator;
+        private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int fanIn = 64;
+        private ReadMode readMode = ReadMode.BUFFERED;
+        private Path tempDirectory = Path.of(System.getProperty("java.io.tmpdir"));
+        private ToLongFunction<? super T> recordSize;
+
+        private Builder(Codec<T> codec, Comparator<? super T> comparator) {
+            this.codec = Objects.requireNonNull(codec);
+            this.comparator = Objects.requireNonNull(comparator);
+        }
+
+        // Heap bytes for records in memory, across all threads (default a quarter of -Xmx)
+        public Builder<T> memoryBudget(long bytes) {
+            if (bytes < 1) throw new IllegalArgumentException("Memory budget must be >= 1: " + bytes);
+            this.memoryBudget = bytes;
+            return this;
+        }
+
+        public Builder<T> threads(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("Threads must be >= 1: " + threads);
+            this.threads = threads;
+            return this;
+        }
+
+        // Runs merged at once (default 64); more runs take extra passes
+        public Builder<T> fanIn(int fanIn) {
+            if (fanIn < 2) throw new IllegalArgumentException("Fan-in must be >= 2: " + fanIn);
+            this.fanIn = fanIn;
+            return this;
+        }
+
+        // How run files are read while merging (default BUFFERED)
+        public Builder<T> readMode(ReadMode readMode) {
+            this.readMode = Objects.requireNonNull(readMode);
+            return this;
+        }
+
+        // Where run files go (default java.io.tmpdir); needs room for about twice the data
+        public Builder<T> tempDirectory(Path directory) {
+            this.tempDirectory = Objects.requireNonNull(directory);
+            return this;
+        }
+
+        // Heap bytes of one record, if known (default: estimated from encoded sizes)
+        public Builder<T> recordSize(ToLongFunction<? super T> bytes) {
+            this.recordSize = Objects.requireNonNull(bytes);
+            return this;
+        }
+
+        public ExternalSorter<T> build() {
+            return new ExternalSorter<>(this);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+// Sorts a file of Student records (by age, then name) into another file:
+// - all into an ArrayList and Collections.sort, as in ComparableInterfaceExample
+//   (needs the whole data set on the heap);
+// - ExternalSorter with a 64 MB memory budget, reading runs buffered and
+//   memory-mapped;
+// - the same with a fan-in of 8, which takes several merge passes.
+// Each variant runs twice; the second run is reported.
+// Run with: java -Xmx2g ExternalSorterBenchmark [students]
+// (default 5,000,000, about 110 MB on disk; files go to java.io.tmpdir)
+public class ExternalSorterBenchmark {
+    private static final Comparator<Student> BY_AGE_THEN_NAME =
+            Comparator.<Student>naturalOrder().thenComparing(Student::getName);
+
+    private static volatile long sink;
+
+    static final class StudentCodec implements ExternalSorter.Codec<Student> {
+        @Override
+        public void write(Student student, DataOutput out) throws IOException {
+            out.writeUTF(student.getName());
+            out.writeInt(student.getAge());
+        }
+
+        @Override
+        public Student read(DataInput in) throws IOException {
+            String name = in.readUTF();
+            return new Student(name, in.readInt());
+        }
+    }
+
+    interface Sort {
+        ExternalSorter.Stats run(Path input, Path output) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        Path dir = Files.createTempDirectory("external-sorter-benchmark");
+        Path input = dir.resolve("students.bin");
+        Path output = dir.resolve("sorted.bin");
+        try {
+            Random random = new Random(42);
+            StudentCodec codec = new StudentCodec();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(input)))) {
+                for (int i = 0; i < n; i++) {
+                    codec.write(new Student("Student-" + Integer.toString(random.nextInt(), 36), 18 + random.nextInt(50)),
+                            out);
+                }
+            }
+            System.out.printf("%,d students, %,d MB, %d cores, max heap %,d MB%n", n, Files.size(input) >> 20,
+                    Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() >> 20);
+            System.out.printf("%-36s %10s %8s %8s %10s%n", "", "ms", "runs", "passes", "MB/s");
+
+            measure("ArrayList + Collections.sort", input, output, (in, out) -> inHeap(codec, in, out));
+            for (ExternalSorter.ReadMode mode : ExternalSorter.ReadMode.values()) {
+                ExternalSorter<Student> sorter = ExternalSorter.builder(codec, BY_AGE_THEN_NAME)
+                        .memoryBudget(64 << 20)
+                        .readMode(mode)
+                        .build();
+                measure("ExternalSorter, 64 MB, " + mode, input, output, sorter::sort);
+            }
+            ExternalSorter<Student> narrow = ExternalSorter.builder(codec, BY_AGE_THEN_NAME)
+                    .memoryBudget(64 << 20)
+                    .fanIn(8)
+                    .build();
+            measure("ExternalSorter, 64 MB, fan-in 8", input, output, narrow::sort);
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void measure(String label, Path input, Path output, Sort sort) throws IOException {
+        ExternalSorter.Stats stats = null;
+        for (int round = 0; round < 2; round++) stats = sort.run(input, output);
+        checkSorted(output);
+        System.out.printf("%-36s %10.0f %8d %8d %10.1f%n", label, stats.totalNanos() / 1e6, stats.runs(),
+                stats.mergePasses(), stats.megabytesPerSecond());
+    }
+
+    private static ExternalSorter.Stats inHeap(StudentCodec codec, Path input, Path output) throws IOException {
+        long start = System.nanoTime();
+        List<Student> list = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(input)))) {
+            while (in.available() > 0) list.add(codec.read(in));
+        }
+        Collections.sort(list, BY_AGE_THEN_NAME);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+            for (Student s : list) codec.write(s, out);
+        }
+        return new ExternalSorter.Stats(list.size(), Files.size(input), 0, 0, System.nanoTime() - start, 0);
+    }
+
+    private static void checkSorted(Path file) throws IOException {
+        StudentCodec codec = new StudentCodec();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            Student previous = null;
+            long count = 0;
+            while (in.available() > 0) {
+                Student s = codec.read(in);
+                if (previous != null && BY_AGE_THEN_NAME.compare(previous, s) > 0) {
+                    throw new IllegalStateException("Not sorted: " + previous + " before " + s);
+                }
+                previous = s;
+                count++;
+            }
+            sink += count;
+        }
+    }
+}
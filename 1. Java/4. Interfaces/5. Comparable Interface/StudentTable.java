@@ -0,0 +1,303 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+// Column-oriented ("struct of arrays") storage for Student records.
+//
+// A List<Student> holds one object per student; every sort or filter follows a
+// pointer to a separate object (header, fields, padding) and then another to
+// its name String. Here each field is one array instead:
+// - ages:    int[], one entry per row
+// - nameIds: int[], one entry per row, pointing into a dictionary that stores
+//            every distinct name once ("dictionary encoding")
+// A row ID is simply the row's index. A student costs 8 bytes plus its share
+// of the dictionary, and scans read memory sequentially.
+//
+// Queries work on row selections (int[] of row IDs): filters produce them,
+// sorts reorder them and group-bys aggregate over them. Student objects are
+// only created when asked for with student(row) or students(rows).
+//
+// Usage:
+//   StudentTable table = new StudentTable();
+//   table.add("Vivek", 25);
+//   int[] twenties = table.filterAgeBetween(20, 29);
+//   int[] byAge = table.sortByAge(table.sortByName(twenties)); // by age, then name
+//   Map<String, Integer> perName = table.countByName(twenties);
+//
+// Not thread-safe. Rows cannot be removed.
+public class StudentTable {
+    private int[] ages;
+    private int[] nameIds;
+    private int size;
+
+    private String[] dictionary = new String[16];
+    private int dictionarySize;
+    private final Map<String, Integer> idOfName = new HashMap<>();
+    private int[] nameRank; // rank of each dictionary entry in name order; null after the dictionary grows
+
+    public StudentTable() {
+        this(16);
+    }
+
+    // Sizing the columns up front avoids growing (and copying) them while loading.
+    public StudentTable(int expectedRows) {
+        ages = new int[Math.max(expectedRows, 1)];
+        nameIds = new int[Math.max(expectedRows, 1)];
+    }
+
+    // Appends a row and returns its row ID.
+    public int add(String name, int age) {
+        if (size == ages.length) {
+            int capacity = Math.max(16, size * 2);
+            ages = Arrays.copyOf(ages, capacity);
+            nameIds = Arrays.copyOf(nameIds, capacity);
+        }
+        ages[size] = age;
+        nameIds[size] = encode(name);
+        return size++;
+    }
+
+    public void addAll(Collection<Student> students) {
+        for (Student s : students) add(s.getName(), s.getAge());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int age(int row) {
+        checkRow(row);
+        return ages[row];
+    }
+
+    public String name(int row) {
+        checkRow(row);
+        return dictionary[nameIds[row]];
+    }
+
+    // Creates a Student object for one row.
+    public Student student(int row) {
+        return new Student(name(row), age(row));
+    }
+
+    public Student[] students(int[] rows) {
+        Student[] result = new Student[rows.length];
+        for (int i = 0; i < rows.length; i++) result[i] = student(rows[i]);
+        return result;
+    }
+
+    public int[] allRows() {
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) rows[i] = i;
+        return rows;
+    }
+
+    // ---- Filters: return the matching row IDs in ascending order ----
+
+    public int[] filterAgeBetween(int minInclusive, int maxInclusive) {
+        int[] rows = new int[size];
+        int count = 0;
+        int[] ages = this.ages;
+        for (int i = 0; i < size; i++) {
+            // Branch-free: always write, advance only on a match
+            rows[count] = i;
+            count += (ages[i] >= minInclusive & ages[i] <= maxInclusive) ? 1 : 0;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    public int[] filterAge(IntPredicate predicate) {
+        int[] rows = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (predicate.test(ages[i])) rows[count++] = i;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // The name is looked up once; the scan then compares ints, not strings.
+    public int[] filterName(String name) {
+        Integer id = idOfName.get(name);
+        if (id == null) return new int[0];
+        int target = id;
+        int[] rows = new int[size];
+        int count = 0;
+        int[] nameIds = this.nameIds;
+        for (int i = 0; i < size; i++) {
+            rows[count] = i;
+            count += nameIds[i] == target ? 1 : 0;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // Tests each distinct name once, then scans the ID column.
+    public int[] filterNameStartsWith(String prefix) {
+        boolean[] matches = new boolean[dictionarySize];
+        for (int id = 0; id < dictionarySize; id++) matches[id] = dictionary[id].startsWith(prefix);
+        int[] rows = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (matches[nameIds[i]]) rows[count++] = i;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // Keeps the rows of the selection whose age is in range.
+    public int[] filterAgeBetween(int[] rows, int minInclusive, int maxInclusive) {
+        int[] result = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            int age = ages[row];
+            result[count] = row;
+            count += (age >= minInclusive & age <= maxInclusive) ? 1 : 0;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // ---- Sorts: stable, so sorting by a second key and then the first gives a two-key order ----
+
+    public int[] sortByAge(int[] rows) {
+        return sortByColumn(rows, ages, null);
+    }
+
+    public int[] sortByName(int[] rows) {
+        return sortByColumn(rows, nameIds, nameRank());
+    }
+
+    // ---- Group-by: one int counter per distinct key, Maps are built only at the end ----
+
+    public Map<Integer, Integer> countByAge(int[] rows) {
+        if (rows.length == 0) return new LinkedHashMap<>();
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int row : rows) {
+            min = Math.min(min, ages[row]);
+            max = Math.max(max, ages[row]);
+        }
+        if ((long) max - min >= Integer.MAX_VALUE) {
+            throw new IllegalStateException("Age range too wide to group by: " + min + ".." + max);
+        }
+        int[] counts = new int[max - min + 1];
+        for (int row : rows) counts[ages[row] - min]++;
+        Map<Integer, Integer> result = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) result.put(min + i, counts[i]);
+        }
+        return result;
+    }
+
+    public Map<String, Integer> countByName(int[] rows) {
+        int[] counts = new int[dictionarySize];
+        for (int row : rows) counts[nameIds[row]]++;
+        Map<String, Integer> result = new HashMap<>();
+        for (int id = 0; id < dictionarySize; id++) {
+            if (counts[id] > 0) result.put(dictionary[id], counts[id]);
+        }
+        return result;
+    }
+
+    public Map<String, Double> averageAgeByName(int[] rows) {
+        int[] counts = new int[dictionarySize];
+        long[] sums = new long[dictionarySize];
+        for (int row : rows) {
+            int id = nameIds[row];
+            counts[id]++;
+            sums[id] += ages[row];
+        }
+        Map<String, Double> result = new HashMap<>();
+        for (int id = 0; id < dictionarySize; id++) {
+            if (counts[id] > 0) result.put(dictionary[id], (double) sums[id] / counts[id]);
+        }
+        return result;
+    }
+
+    public int distinctNames() {
+        return dictionarySize;
+    }
+
+    // Approximate heap footprint of the columns and the dictionary.
+    public long sizeInBytes() {
+        long columns = 4L * ages.length + 4L * nameIds.length;
+        long strings = 0;
+        for (int id = 0; id < dictionarySize; id++) {
+            strings += 40 + dictionary[id].length(); // String + byte[] headers, Latin-1 content
+        }
+        long map = 48L * dictionarySize; // HashMap node + boxed Integer per name
+        return columns + 4L * dictionary.length + strings + map;
+    }
+
+    private int encode(String name) {
+        Integer id = idOfName.get(name);
+        if (id != null) return id;
+        if (name == null) throw new NullPointerException("name");
+        if (dictionarySize == dictionary.length) dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+        dictionary[dictionarySize] = name;
+        idOfName.put(name, dictionarySize);
+        nameRank = null;
+        return dictionarySize++;
+    }
+
+    // Sorting names means sorting d distinct strings once; rows are then sorted by int rank
+    private int[] nameRank() {
+        if (nameRank == null) {
+            Integer[] ids = new Integer[dictionarySize];
+            for (int i = 0; i < dictionarySize; i++) ids[i] = i;
+            Arrays.sort(ids, (a, b) -> dictionary[a].compareTo(dictionary[b]));
+            int[] rank = new int[dictionarySize];
+            for (int r = 0; r < dictionarySize; r++) rank[ids[r]] = r;
+            nameRank = rank;
+        }
+        return nameRank;
+    }
+
+    // Stable LSD radix sort of the rows by column[row] (mapped through rank if given)
+    private static int[] sortByColumn(int[] rows, int[] column, int[] rank) {
+        int n = rows.length;
+        int[] keys = new int[n];
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            int k = rank == null ? column[rows[i]] : rank[column[rows[i]]];
+            keys[i] = k;
+            min = Math.min(min, k);
+            max = Math.max(max, k);
+        }
+        int[] order = rows.clone();
+        if (n < 2 || min == max) return order;
+        int bits = 32 - Integer.numberOfLeadingZeros(max - min); // unsigned range
+        for (int i = 0; i < n; i++) keys[i] -= min;
+
+        int[] keysTmp = new int[n];
+        int[] orderTmp = new int[n];
+        int[] count = new int[256];
+        for (int shift = 0; shift < bits; shift += 8) {
+            Arrays.fill(count, 0);
+            for (int i = 0; i < n; i++) count[(keys[i] >>> shift) & 0xFF]++;
+            int sum = 0;
+            for (int d = 0; d < 256; d++) {
+                int c = count[d];
+                count[d] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int pos = count[(keys[i] >>> shift) & 0xFF]++;
+                keysTmp[pos] = keys[i];
+                orderTmp[pos] = order[i];
+            }
+            int[] t = keys;
+            keys = keysTmp;
+            keysTmp = t;
+            t = order;
+            order = orderTmp;
+            orderTmp = t;
+        }
+        return order;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + ", size " + size);
+    }
+}
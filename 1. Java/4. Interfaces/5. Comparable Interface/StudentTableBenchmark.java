@@ -0,0 +1,87 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Heap footprint and query times of ArrayList<Student> against StudentTable:
+// filter by age range, sort by age, and count per name.
+// Run with: java -Xmx8g StudentTableBenchmark [n]
+// (50M rows need about -Xmx8g for the list; the table alone fits in well under 1 GB)
+public class StudentTableBenchmark {
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Random random = new Random(42);
+        String[] names = new String[20_000];
+        for (int i = 0; i < names.length; i++) names[i] = "Student-" + Integer.toString(random.nextInt(), 36);
+
+        long before = usedHeap();
+        List<Student> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            // new String(...) so each Student has its own name, as if read from a file or database
+            list.add(new Student(new String(names[random.nextInt(names.length)]), 18 + random.nextInt(50)));
+        }
+        long listBytes = usedHeap() - before;
+
+        before = usedHeap();
+        StudentTable table = new StudentTable(n);
+        table.addAll(list);
+        long tableBytes = usedHeap() - before;
+
+        System.out.printf("%d students, %d distinct names%n", n, table.distinctNames());
+        System.out.printf("Heap: ArrayList<Student> %,d MB, StudentTable %,d MB (estimated %,d MB)%n%n",
+                listBytes >> 20, tableBytes >> 20, table.sizeInBytes() >> 20);
+
+        System.out.printf("%-28s %14s %14s%n", "", "ArrayList", "StudentTable");
+        for (int round = 1; round <= 3; round++) {
+            long start = System.nanoTime();
+            List<Student> young = new ArrayList<>();
+            for (Student s : list) if (s.getAge() >= 20 && s.getAge() <= 29) young.add(s);
+            long listFilter = System.nanoTime() - start;
+            start = System.nanoTime();
+            int[] youngRows = table.filterAgeBetween(20, 29);
+            long tableFilter = System.nanoTime() - start;
+            check(young.size(), youngRows.length);
+            print("filter age 20-29", listFilter, tableFilter);
+
+            start = System.nanoTime();
+            List<Student> sorted = new ArrayList<>(list);
+            Collections.sort(sorted);
+            long listSort = System.nanoTime() - start;
+            start = System.nanoTime();
+            int[] sortedRows = table.sortByAge(table.allRows());
+            long tableSort = System.nanoTime() - start;
+            check(sorted.get(n / 2).getAge(), table.age(sortedRows[n / 2]));
+            print("sort by age", listSort, tableSort);
+
+            start = System.nanoTime();
+            Map<String, Integer> counts = new HashMap<>();
+            for (Student s : list) counts.merge(s.getName(), 1, Integer::sum);
+            long listGroup = System.nanoTime() - start;
+            start = System.nanoTime();
+            Map<String, Integer> tableCounts = table.countByName(table.allRows());
+            long tableGroup = System.nanoTime() - start;
+            check(counts.size(), tableCounts.size());
+            print("count by name", listGroup, tableGroup);
+            sink += young.size() + sorted.size() + counts.size();
+        }
+    }
+
+    private static void print(String label, long listNanos, long tableNanos) {
+        System.out.printf("%-28s %11.1f ms %11.1f ms  (%.1fx)%n", label, listNanos / 1e6, tableNanos / 1e6,
+                (double) listNanos / tableNanos);
+    }
+
+    private static void check(int expected, int actual) {
+        if (expected != actual) throw new IllegalStateException("Expected " + expected + ", got " + actual);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
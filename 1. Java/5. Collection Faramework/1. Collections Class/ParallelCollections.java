@@ -0,0 +1,317 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToDoubleFunction;
+
+// Companion to java.util.Collections for very large lists:
+// - parallelSort: sorts on all cores instead of one.
+// - minMax / summary: one pass instead of one pass per statistic.
+// - topK / bottomK: the k largest/smallest elements without sorting everything.
+public final class ParallelCollections {
+    // Below this many elements a sub-array is sorted sequentially
+    private static final int SEQUENTIAL_THRESHOLD = 8192;
+
+    private ParallelCollections() {
+    }
+
+    // Sorts the list with Arrays.parallelSort (a fork-join merge sort on the common pool).
+    public static <T> void parallelSort(List<T> list, Comparator<? super T> comparator) {
+        @SuppressWarnings("unchecked")
+        T[] array = (T[]) list.toArray();
+        Arrays.parallelSort(array, comparator);
+        writeBack(list, array);
+    }
+
+    // Same, but runs a fork-join merge sort on the given pool, so the number of
+    // cores used can be chosen (Arrays.parallelSort always uses the common pool).
+    public static <T> void parallelSort(List<T> list, Comparator<? super T> comparator, ForkJoinPool pool) {
+        @SuppressWarnings("unchecked")
+        T[] array = (T[]) list.toArray();
+        @SuppressWarnings("unchecked")
+        T[] buffer = (T[]) new Object[array.length];
+        pool.invoke(new MergeSortTask<>(array, buffer, 0, array.length, comparator));
+        writeBack(list, array);
+    }
+
+    // Smallest and largest element in one pass, using about 1.5 comparisons per element.
+    // On ties the first one wins, as with Collections.min and Collections.max.
+    public static <T> MinMax<T> minMax(Collection<? extends T> collection, Comparator<? super T> comparator) {
+        Iterator<? extends T> it = collection.iterator();
+        if (!it.hasNext()) throw new NoSuchElementException("Collection is empty");
+        T min = it.next();
+        T max = min;
+        while (it.hasNext()) {
+            T a = it.next();
+            if (!it.hasNext()) {
+                if (comparator.compare(a, min) < 0) min = a;
+                else if (comparator.compare(a, max) > 0) max = a;
+                break;
+            }
+            T b = it.next();
+            // Compare the pair first, then the smaller with min and the larger with max;
+            // an equal pair offers its earlier element for both
+            int c = comparator.compare(a, b);
+            T smaller = c > 0 ? b : a;
+            T larger = c < 0 ? b : a;
+            if (comparator.compare(smaller, min) < 0) min = smaller;
+            if (comparator.compare(larger, max) > 0) max = larger;
+        }
+        return new MinMax<>(min, max);
+    }
+
+    public static <T extends Comparable<? super T>> MinMax<T> minMax(Collection<? extends T> collection) {
+        return minMax(collection, Comparator.naturalOrder());
+    }
+
+    // Count, min, max, mean and variance of a numeric property in one pass.
+    public static <T> Summary summary(Collection<? extends T> collection, ToDoubleFunction<? super T> property) {
+        Summary summary = new Summary();
+        for (T t : collection) summary.accept(property.applyAsDouble(t));
+        return summary;
+    }
+
+    // Same, computed on all cores; partial summaries are merged exactly.
+    public static <T> Summary parallelSummary(Collection<? extends T> collection, ToDoubleFunction<? super T> property) {
+        return collection.parallelStream()
+                .mapToDouble(property)
+                .collect(Summary::new, Summary::accept, Summary::combine);
+    }
+
+    // The k largest elements, largest first. O(n log k) with a bounded heap, or
+    // quickselect when k is a large share of n.
+    public static <T> List<T> topK(Collection<? extends T> collection, int k, Comparator<? super T> comparator) {
+        if (k < 0) throw new IllegalArgumentException("k must not be negative: " + k);
+        int n = collection.size();
+        if (k == 0 || n == 0) return new ArrayList<>();
+        if (k >= n) {
+            List<T> all = new ArrayList<>(collection);
+            all.sort(Collections.reverseOrder(comparator));
+            return all;
+        }
+        if ((long) k * 8 >= n) {
+            return topKBySelection(collection, k, comparator);
+        }
+        // Min-heap holding the k largest seen so far; its head is the one to beat
+        PriorityQueue<T> heap = new PriorityQueue<>(k, comparator);
+        for (T t : collection) {
+            if (heap.size() < k) {
+                heap.add(t);
+            } else if (comparator.compare(t, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(t);
+            }
+        }
+        List<T> result = new ArrayList<>(heap);
+        result.sort(Collections.reverseOrder(comparator));
+        return result;
+    }
+
+    // The k smallest elements, smallest first.
+    public static <T> List<T> bottomK(Collection<? extends T> collection, int k, Comparator<? super T> comparator) {
+        return topK(collection, k, Collections.reverseOrder(comparator));
+    }
+
+    private static <T> List<T> topKBySelection(Collection<? extends T> collection, int k, Comparator<? super T> comparator) {
+        @SuppressWarnings("unchecked")
+        T[] array = (T[]) collection.toArray();
+        // Partition so that the k largest end up in array[n - k, n)
+        int target = array.length - k;
+        int low = 0;
+        int high = array.length - 1;
+        int[] equal = new int[2];
+        // Past this depth the pivots are going badly: sort what is left (introselect)
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(array.length));
+        while (low < high) {
+            if (depthLimit-- == 0) {
+                Arrays.sort(array, low, high + 1, comparator);
+                break;
+            }
+            partition(array, low, high, comparator, equal);
+            if (target < equal[0]) high = equal[0] - 1;
+            else if (target > equal[1]) low = equal[1] + 1;
+            else break; // target is among the elements equal to the pivot
+        }
+        T[] top = Arrays.copyOfRange(array, target, array.length);
+        Arrays.sort(top, Collections.reverseOrder(comparator));
+        return new ArrayList<>(Arrays.asList(top));
+    }
+
+    // Three-way (Dutch national flag) partition around a median-of-three pivot:
+    // smaller | equal | larger. Stores the bounds of the equal block in equal[0..1],
+    // so keys with many duplicates are settled in one pass instead of one per element.
+    private static <T> void partition(T[] a, int low, int high, Comparator<? super T> c, int[] equal) {
+        int mid = (low + high) >>> 1;
+        if (c.compare(a[mid], a[low]) < 0) swap(a, mid, low);
+        if (c.compare(a[high], a[low]) < 0) swap(a, high, low);
+        if (c.compare(a[mid], a[high]) < 0) swap(a, mid, high); // median now at high
+        T pivot = a[high];
+        int lt = low;
+        int gt = high;
+        int i = low;
+        while (i <= gt) {
+            int cmp = c.compare(a[i], pivot);
+            if (cmp < 0) swap(a, i++, lt++);
+            else if (cmp > 0) swap(a, i, gt--);
+            else i++;
+        }
+        equal[0] = lt;
+        equal[1] = gt;
+    }
+
+    private static void swap(Object[] a, int i, int j) {
+        Object t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    private static <T> void writeBack(List<T> list, T[] array) {
+        ListIterator<T> it = list.listIterator();
+        for (T t : array) {
+            it.next();
+            it.set(t);
+        }
+    }
+
+    private static final class MergeSortTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final T[] array;
+        private final T[] buffer;
+        private final int from;
+        private final int to;
+        private final Comparator<? super T> comparator;
+
+        MergeSortTask(T[] array, T[] buffer, int from, int to, Comparator<? super T> comparator) {
+            this.array = array;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                Arrays.sort(array, from, to, comparator);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new MergeSortTask<>(array, buffer, from, mid, comparator),
+                    new MergeSortTask<>(array, buffer, mid, to, comparator));
+            // Already in order (e.g. presorted input): nothing to merge
+            if (comparator.compare(array[mid - 1], array[mid]) <= 0) return;
+            System.arraycopy(array, from, buffer, from, to - from);
+            int i = from, j = mid, k = from;
+            while (i < mid && j < to) {
+                array[k++] = comparator.compare(buffer[j], buffer[i]) < 0 ? buffer[j++] : buffer[i++];
+            }
+            while (i < mid) array[k++] = buffer[i++];
+            while (j < to) array[k++] = buffer[j++];
+        }
+    }
+
+    public static final class MinMax<T> {
+        private final T min;
+        private final T max;
+
+        MinMax(T min, T max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        public T min() {
+            return min;
+        }
+
+        public T max() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "MinMax{min=" + min + ", max=" + max + '}';
+        }
+    }
+
+    // Running statistics; variance uses Welford's method so it stays accurate
+    // for large counts, and combine() merges partial results (Chan et al.).
+    public static final class Summary {
+        private long count;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double mean;
+        private double m2; // sum of squared distances from the mean
+
+        public void accept(double value) {
+            count++;
+            if (value < min) min = value;
+            if (value > max) max = value;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+        }
+
+        public void combine(Summary other) {
+            if (other.count == 0) return;
+            if (count == 0) {
+                count = other.count;
+                min = other.min;
+                max = other.max;
+                mean = other.mean;
+                m2 = other.m2;
+                return;
+            }
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+            count = total;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public double min() {
+            return min;
+        }
+
+        public double max() {
+            return max;
+        }
+
+        public double mean() {
+            return count == 0 ? 0.0 : mean;
+        }
+
+        public double sum() {
+            return mean * count;
+        }
+
+        // Population variance
+        public double variance() {
+            return count == 0 ? 0.0 : m2 / count;
+        }
+
+        public double standardDeviation() {
+            return Math.sqrt(variance());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Summary{count=%d, min=%f, max=%f, mean=%f, stdDev=%f}",
+                    count, min, max, mean(), standardDeviation());
+        }
+    }
+}
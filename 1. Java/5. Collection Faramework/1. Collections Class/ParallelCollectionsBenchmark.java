@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Collections.sort against ParallelCollections.parallelSort on pools of 1, 2,
+// 4, ... threads (up to the number of cores), then the single-pass helpers
+// against their Collections equivalents (topK also on duplicate-heavy
+// grades, where k is a quarter of n). First checks that minMax picks the
+// same element as Collections.min and max when keys are equal.
+// Run with: java -Xmx4g ParallelCollectionsBenchmark [n]
+public class ParallelCollectionsBenchmark {
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        checkMinMaxTies(new Random(1));
+        List<String> source = randomStrings(n, new Random(42));
+        Comparator<String> order = Comparator.naturalOrder();
+
+        System.out.printf("Sorting %d strings (%d cores available)%n", n, cores);
+        System.out.printf("%-34s %10s %8s%n", "", "time", "speedup");
+        long sequential = best(() -> {
+            List<String> list = new ArrayList<>(source);
+            Collections.sort(list);
+            sink += list.get(0).length();
+        });
+        System.out.printf("%-34s %7.1f ms %8s%n", "Collections.sort", sequential / 1e6, "1.00x");
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long nanos = best(() -> {
+                List<String> list = new ArrayList<>(source);
+                ParallelCollections.parallelSort(list, order, pool);
+                sink += list.get(0).length();
+            });
+            pool.shutdown();
+            System.out.printf("%-34s %7.1f ms %7.2fx%n", "parallelSort, " + threads + " thread(s)",
+                    nanos / 1e6, (double) sequential / nanos);
+        }
+        long arraysParallel = best(() -> {
+            List<String> list = new ArrayList<>(source);
+            ParallelCollections.parallelSort(list, order);
+            sink += list.get(0).length();
+        });
+        System.out.printf("%-34s %7.1f ms %7.2fx%n", "parallelSort, common pool",
+                arraysParallel / 1e6, (double) sequential / arraysParallel);
+
+        System.out.println();
+        System.out.printf("Single-pass helpers over %d strings%n", n);
+        long minPlusMax = best(() -> sink += Collections.min(source).length() + Collections.max(source).length());
+        long minMax = best(() -> {
+            ParallelCollections.MinMax<String> mm = ParallelCollections.minMax(source);
+            sink += mm.min().length() + mm.max().length();
+        });
+        System.out.printf("%-34s %7.1f ms%n", "Collections.min + Collections.max", minPlusMax / 1e6);
+        System.out.printf("%-34s %7.1f ms%n", "ParallelCollections.minMax", minMax / 1e6);
+
+        int k = 100;
+        long sortThenTake = best(() -> {
+            List<String> list = new ArrayList<>(source);
+            list.sort(Collections.reverseOrder());
+            sink += list.subList(0, k).size();
+        });
+        long topK = best(() -> sink += ParallelCollections.topK(source, k, order).size());
+        System.out.printf("%-34s %7.1f ms%n", "sort + subList(0, " + k + ")", sortThenTake / 1e6);
+        System.out.printf("%-34s %7.1f ms%n", "ParallelCollections.topK(" + k + ")", topK / 1e6);
+
+        // Duplicate-heavy keys (grades 0..100) with k a large share of n: the quickselect path
+        List<Integer> grades = new ArrayList<>(n);
+        Random random = new Random(7);
+        for (int i = 0; i < n; i++) grades.add(random.nextInt(101));
+        int quarter = n / 4;
+        long sortGrades = best(() -> {
+            List<Integer> list = new ArrayList<>(grades);
+            list.sort(Collections.reverseOrder());
+            sink += list.subList(0, quarter).size();
+        });
+        long topGrades = best(() -> sink += ParallelCollections.topK(grades, quarter, Comparator.naturalOrder()).size());
+        System.out.printf("%-34s %7.1f ms%n", "grades: sort + subList(0, n/4)", sortGrades / 1e6);
+        System.out.printf("%-34s %7.1f ms%n", "grades: topK(n/4)", topGrades / 1e6);
+
+        long summary = best(() -> sink += ParallelCollections.summary(source, String::length).count());
+        long parallelSummary = best(() -> sink += ParallelCollections.parallelSummary(source, String::length).count());
+        System.out.printf("%-34s %7.1f ms%n", "summary", summary / 1e6);
+        System.out.printf("%-34s %7.1f ms%n", "parallelSummary", parallelSummary / 1e6);
+    }
+
+    // Short lists of "key#position" compared by key only, so most have ties;
+    // minMax must return the very elements Collections.min and max return
+    private static void checkMinMaxTies(Random random) {
+        Comparator<String> byKey = Comparator.comparing(s -> s.substring(0, s.indexOf('#')));
+        int lists = 10_000;
+        for (int i = 0; i < lists; i++) {
+            List<String> list = new ArrayList<>();
+            int size = 1 + random.nextInt(9);
+            for (int j = 0; j < size; j++) list.add((char) ('a' + random.nextInt(3)) + "#" + j);
+            ParallelCollections.MinMax<String> mm = ParallelCollections.minMax(list, byKey);
+            if (mm.min() != Collections.min(list, byKey) || mm.max() != Collections.max(list, byKey)) {
+                throw new IllegalStateException("minMax of " + list + " gave " + mm);
+            }
+        }
+        System.out.printf("minMax ties: same elements as Collections.min/max on %d lists%n%n", lists);
+    }
+
+    // Best of a few runs, after one warm-up run
+    private static long best(Runnable run) {
+        run.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static List<String> randomStrings(int n, Random random) {
+        List<String> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) list.add(Long.toString(random.nextLong() >>> 1, 36));
+        return list;
+    }
+}
@@ -0,0 +1,176 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+// An indexed 4-ary min-heap. Every entry is identified by an int handle
+// (e.g. a vertex id in Dijkstra, a task id in a scheduler) and carries an
+// int key. Because the heap position of each handle is tracked, the key of
+// an entry can be changed, or the entry removed, in O(log n).
+public class IndexedIntPriorityQueue {
+    private static final int ARITY = 4;
+    private static final int NOT_IN_HEAP = -1;
+
+    private int[] heap;      // heap position -> handle
+    private int[] position;  // handle -> heap position, or NOT_IN_HEAP
+    private int[] keys;      // handle -> key
+    private int size;
+
+    public IndexedIntPriorityQueue(int maxHandles) {
+        if (maxHandles < 1) {
+            throw new IllegalArgumentException("maxHandles must be positive: " + maxHandles);
+        }
+        heap = new int[maxHandles];
+        keys = new int[maxHandles];
+        position = new int[maxHandles];
+        Arrays.fill(position, NOT_IN_HEAP);
+    }
+
+    public void add(int handle, int key) {
+        if (handle < 0) throw new IllegalArgumentException("Negative handle: " + handle);
+        if (handle >= position.length) grow(handle + 1);
+        if (position[handle] != NOT_IN_HEAP) {
+            throw new IllegalStateException("Handle already in queue: " + handle);
+        }
+        keys[handle] = key;
+        siftUp(size++, handle);
+    }
+
+    public boolean contains(int handle) {
+        return handle >= 0 && handle < position.length && position[handle] != NOT_IN_HEAP;
+    }
+
+    public int keyOf(int handle) {
+        checkContains(handle);
+        return keys[handle];
+    }
+
+    public void decreaseKey(int handle, int newKey) {
+        checkContains(handle);
+        if (newKey > keys[handle]) {
+            throw new IllegalArgumentException("New key " + newKey + " is greater than current key " + keys[handle]);
+        }
+        keys[handle] = newKey;
+        siftUp(position[handle], handle);
+    }
+
+    // Sets the key to any value, moving the entry up or down as needed.
+    public void changeKey(int handle, int newKey) {
+        checkContains(handle);
+        int oldKey = keys[handle];
+        keys[handle] = newKey;
+        if (newKey < oldKey) {
+            siftUp(position[handle], handle);
+        } else {
+            siftDown(position[handle], handle);
+        }
+    }
+
+    public void remove(int handle) {
+        checkContains(handle);
+        int index = position[handle];
+        position[handle] = NOT_IN_HEAP;
+        int last = heap[--size];
+        if (index == size) return;
+        // Put the last entry in the hole, then restore order in whichever direction it needs
+        siftUp(index, last);
+        if (heap[index] == last) {
+            siftDown(index, last);
+        }
+    }
+
+    public int peekHandle() {
+        if (size == 0) throw new NoSuchElementException("Priority queue is empty");
+        return heap[0];
+    }
+
+    public int peekKey() {
+        return keys[peekHandle()];
+    }
+
+    // Removes the entry with the smallest key and returns its handle.
+    public int pollHandle() {
+        int head = peekHandle();
+        position[head] = NOT_IN_HEAP;
+        int last = heap[--size];
+        if (size > 0) {
+            siftDown(0, last);
+        }
+        return head;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Removes and returns handles in key order.
+    public PrimitiveIterator.OfInt drain() {
+        return new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return size > 0;
+            }
+
+            @Override
+            public int nextInt() {
+                return pollHandle();
+            }
+        };
+    }
+
+    private void siftUp(int index, int handle) {
+        int key = keys[handle];
+        while (index > 0) {
+            int p = (index - 1) / ARITY;
+            int parentHandle = heap[p];
+            if (key >= keys[parentHandle]) break;
+            heap[index] = parentHandle;
+            position[parentHandle] = index;
+            index = p;
+        }
+        heap[index] = handle;
+        position[handle] = index;
+    }
+
+    private void siftDown(int index, int handle) {
+        int key = keys[handle];
+        int first;
+        while ((first = index * ARITY + 1) < size) {
+            int end = Math.min(first + ARITY, size);
+            int best = first;
+            int bestKey = keys[heap[first]];
+            for (int c = first + 1; c < end; c++) {
+                int k = keys[heap[c]];
+                if (k < bestKey) {
+                    best = c;
+                    bestKey = k;
+                }
+            }
+            if (key <= bestKey) break;
+            int childHandle = heap[best];
+            heap[index] = childHandle;
+            position[childHandle] = index;
+            index = best;
+        }
+        heap[index] = handle;
+        position[handle] = index;
+    }
+
+    private void grow(int minCapacity) {
+        int oldLength = position.length;
+        int newLength = Math.max(minCapacity, oldLength + (oldLength >> 1) + 1);
+        heap = Arrays.copyOf(heap, newLength);
+        keys = Arrays.copyOf(keys, newLength);
+        position = Arrays.copyOf(position, newLength);
+        Arrays.fill(position, oldLength, newLength, NOT_IN_HEAP);
+    }
+
+    private void checkContains(int handle) {
+        if (!contains(handle)) {
+            throw new NoSuchElementException("Handle not in queue: " + handle);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+// A min-heap of primitive ints stored in a single int[] as a 4-ary heap.
+// Compared to PriorityQueue<Integer> there is no boxing, and a 4-ary heap is
+// about half as deep as a binary heap, so poll() touches fewer cache lines.
+public class IntPriorityQueue {
+    private static final int ARITY = 4;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] heap;
+    private int size;
+
+    public IntPriorityQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntPriorityQueue(int initialCapacity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("initialCapacity must be positive: " + initialCapacity);
+        }
+        heap = new int[initialCapacity];
+    }
+
+    // Builds the heap in O(n) from an unordered array (heapify).
+    public static IntPriorityQueue of(int... values) {
+        IntPriorityQueue pq = new IntPriorityQueue(Math.max(values.length, 1));
+        System.arraycopy(values, 0, pq.heap, 0, values.length);
+        pq.size = values.length;
+        if (pq.size > 1) {
+            for (int i = parent(pq.size - 1); i >= 0; i--) {
+                pq.siftDown(i, pq.heap[i]);
+            }
+        }
+        return pq;
+    }
+
+    public void add(int value) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length + (heap.length >> 1) + 1);
+        }
+        siftUp(size++, value);
+    }
+
+    public int peek() {
+        if (size == 0) throw new NoSuchElementException("Priority queue is empty");
+        return heap[0];
+    }
+
+    public int poll() {
+        if (size == 0) throw new NoSuchElementException("Priority queue is empty");
+        int head = heap[0];
+        int last = heap[--size];
+        if (size > 0) {
+            siftDown(0, last);
+        }
+        return head;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Removes and returns elements in priority order, unlike a plain
+    // for-each over PriorityQueue which walks the heap array as it is.
+    public PrimitiveIterator.OfInt drain() {
+        return new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return size > 0;
+            }
+
+            @Override
+            public int nextInt() {
+                return poll();
+            }
+        };
+    }
+
+    private void siftUp(int index, int value) {
+        while (index > 0) {
+            int p = parent(index);
+            int parentValue = heap[p];
+            if (value >= parentValue) break;
+            heap[index] = parentValue;
+            index = p;
+        }
+        heap[index] = value;
+    }
+
+    private void siftDown(int index, int value) {
+        int first;
+        while ((first = index * ARITY + 1) < size) {
+            int end = Math.min(first + ARITY, size);
+            int best = first;
+            int bestValue = heap[first];
+            for (int c = first + 1; c < end; c++) {
+                if (heap[c] < bestValue) {
+                    best = c;
+                    bestValue = heap[c];
+                }
+            }
+            if (value <= bestValue) break;
+            heap[index] = bestValue;
+            index = best;
+        }
+        heap[index] = value;
+    }
+
+    private static int parent(int index) {
+        return (index - 1) / ARITY;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.copyOf(heap, size));
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.PriorityQueue;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+// Rough wall-clock comparison of PriorityQueue<Integer> against IntPriorityQueue
+// and IndexedIntPriorityQueue. Run with: java IntPriorityQueueBenchmark [n]
+public class IntPriorityQueueBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        // Draining gives priority order, unlike iterating PriorityQueue directly
+        IntPriorityQueue demo = IntPriorityQueue.of(10, 20, 15);
+        System.out.print("Drained in priority order:");
+        for (PrimitiveIterator.OfInt it = demo.drain(); it.hasNext(); ) {
+            System.out.print(" " + it.nextInt());
+        }
+        System.out.println();
+
+        int[] values = new Random(42).ints(n, 0, Integer.MAX_VALUE).toArray();
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + " (n = " + n + ")");
+            report("PriorityQueue<Integer> add+poll", boxedAddPoll(values));
+            report("IntPriorityQueue add+poll", primitiveAddPoll(values));
+            report("PriorityQueue lazy-delete update", boxedLazyUpdates(values));
+            report("IndexedIntPriorityQueue update", indexedUpdates(values));
+        }
+    }
+
+    private static long boxedAddPoll(int[] values) {
+        long start = System.nanoTime();
+        PriorityQueue<Integer> pq = new PriorityQueue<>();
+        for (int v : values) pq.add(v);
+        long sum = 0;
+        while (!pq.isEmpty()) sum += pq.poll();
+        blackhole(sum);
+        return System.nanoTime() - start;
+    }
+
+    private static long primitiveAddPoll(int[] values) {
+        long start = System.nanoTime();
+        IntPriorityQueue pq = new IntPriorityQueue();
+        for (int v : values) pq.add(v);
+        long sum = 0;
+        while (!pq.isEmpty()) sum += pq.poll();
+        blackhole(sum);
+        return System.nanoTime() - start;
+    }
+
+    // Without decrease-key, the usual workaround is to push a second entry
+    // with the new priority and skip stale entries when they are polled.
+    private static long boxedLazyUpdates(int[] values) {
+        long start = System.nanoTime();
+        int n = values.length;
+        int[] current = values.clone();
+        PriorityQueue<long[]> pq = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        for (int i = 0; i < n; i++) pq.add(new long[] {current[i], i});
+        for (int i = 0; i < n; i += 2) {
+            current[i] -= 1000;
+            pq.add(new long[] {current[i], i});
+        }
+        long sum = 0;
+        while (!pq.isEmpty()) {
+            long[] e = pq.poll();
+            if (e[0] == current[(int) e[1]]) sum += e[1];
+        }
+        blackhole(sum);
+        return System.nanoTime() - start;
+    }
+
+    private static long indexedUpdates(int[] values) {
+        long start = System.nanoTime();
+        int n = values.length;
+        IndexedIntPriorityQueue pq = new IndexedIntPriorityQueue(n);
+        for (int i = 0; i < n; i++) pq.add(i, values[i]);
+        for (int i = 0; i < n; i += 2) pq.decreaseKey(i, values[i] - 1000);
+        long sum = 0;
+        while (!pq.isEmpty()) sum += pq.pollHandle();
+        blackhole(sum);
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.printf("  %-34s %6d ms%n", name, nanos / 1_000_000);
+    }
+
+    private static volatile long sink;
+
+    private static void blackhole(long value) {
+        sink += value;
+    }
+}
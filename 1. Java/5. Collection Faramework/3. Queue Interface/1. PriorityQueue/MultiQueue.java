@@ -0,0 +1,166 @@
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+// A relaxed concurrent priority queue ("MultiQueue").
+//
+// Instead of one heap behind one lock (PriorityBlockingQueue), the elements are
+// spread over c * threads sequential sub-heaps, each with its own lock.
+// - add() inserts into a random sub-heap whose lock is free.
+// - poll() looks at the heads of two random sub-heaps and removes the smaller one.
+//
+// The price is that poll() does not always return the global minimum. With
+// m = c * threads sub-heaps, the rank of the returned element (0 = true minimum)
+// is O(m) in expectation and O(m log m) with high probability ("power of two
+// choices"; Rihani, Sanders and Dementiev, "MultiQueues: Simple Relaxed
+// Concurrent Priority Queues", and Alistarh et al., "The Power of Choice in
+// Priority Scheduling"). Elements are never lost: poll() returns null only
+// after it has seen every sub-heap empty.
+//
+// Good fit: schedulers and parallel graph searches that tolerate slightly out of
+// order processing. Not a fit: code that needs strict priority order.
+public class MultiQueue<E> {
+    private static final int DEFAULT_QUEUES_PER_THREAD = 2;
+
+    private final SubQueue<E>[] queues;
+    private final Comparator<? super E> comparator;
+
+    public MultiQueue(int threads, Comparator<? super E> comparator) {
+        this(threads, DEFAULT_QUEUES_PER_THREAD, comparator);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MultiQueue(int threads, int queuesPerThread, Comparator<? super E> comparator) {
+        if (threads < 1 || queuesPerThread < 1) {
+            throw new IllegalArgumentException("threads and queuesPerThread must be positive");
+        }
+        this.comparator = comparator;
+        int count = Math.max(2, threads * queuesPerThread);
+        queues = (SubQueue<E>[]) new SubQueue[count];
+        for (int i = 0; i < count; i++) {
+            queues[i] = new SubQueue<>(comparator);
+        }
+    }
+
+    public static <E extends Comparable<? super E>> MultiQueue<E> naturalOrder(int threads) {
+        return new MultiQueue<>(threads, Comparator.naturalOrder());
+    }
+
+    public void add(E e) {
+        if (e == null) throw new NullPointerException();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            SubQueue<E> q = queues[random.nextInt(queues.length)];
+            if (q.lock.tryLock()) {
+                try {
+                    q.heap.add(e);
+                    q.publishHead();
+                } finally {
+                    q.lock.unlock();
+                }
+                return;
+            }
+        }
+    }
+
+    // Removes an element close to the minimum, or returns null if the queue is empty.
+    public E poll() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int n = queues.length;
+        for (int attempt = 0; attempt < n; attempt++) {
+            SubQueue<E> a = queues[random.nextInt(n)];
+            SubQueue<E> b = queues[random.nextInt(n)];
+            SubQueue<E> best = better(a, b);
+            if (best == null) continue; // both looked empty, sample again
+            if (best.lock.tryLock()) {
+                try {
+                    E head = best.heap.poll();
+                    if (head != null) {
+                        best.publishHead();
+                        return head;
+                    }
+                } finally {
+                    best.lock.unlock();
+                }
+            }
+        }
+        return pollSlowPath();
+    }
+
+    // Returns an element close to the minimum without removing it. The heads are
+    // read without locking, so the result may already be stale when returned.
+    public E peek() {
+        E best = null;
+        for (SubQueue<E> q : queues) {
+            E head = q.head;
+            if (head != null && (best == null || comparator.compare(head, best) < 0)) {
+                best = head;
+            }
+        }
+        return best;
+    }
+
+    public boolean isEmpty() {
+        for (SubQueue<E> q : queues) {
+            if (q.head != null) return false;
+        }
+        return true;
+    }
+
+    // Approximate under concurrent modification.
+    public int size() {
+        int size = 0;
+        for (SubQueue<E> q : queues) {
+            size += q.size;
+        }
+        return size;
+    }
+
+    private SubQueue<E> better(SubQueue<E> a, SubQueue<E> b) {
+        E headA = a.head;
+        E headB = b.head;
+        if (headA == null) return headB == null ? null : b;
+        if (headB == null) return a;
+        return comparator.compare(headA, headB) <= 0 ? a : b;
+    }
+
+    // Random sampling kept hitting empty or busy sub-heaps: walk all of them,
+    // blocking on each lock, so that an element present for the whole call is found.
+    private E pollSlowPath() {
+        int start = ThreadLocalRandom.current().nextInt(queues.length);
+        for (int i = 0; i < queues.length; i++) {
+            SubQueue<E> q = queues[(start + i) % queues.length];
+            if (q.head == null) continue;
+            q.lock.lock();
+            try {
+                E head = q.heap.poll();
+                if (head != null) {
+                    q.publishHead();
+                    return head;
+                }
+            } finally {
+                q.lock.unlock();
+            }
+        }
+        return null;
+    }
+
+    private static final class SubQueue<E> {
+        final ReentrantLock lock = new ReentrantLock();
+        final PriorityQueue<E> heap;
+        // Published copies of the head and size, readable without the lock
+        volatile E head;
+        volatile int size;
+
+        SubQueue(Comparator<? super E> comparator) {
+            heap = new PriorityQueue<>(comparator);
+        }
+
+        // Must be called while holding the lock
+        void publishHead() {
+            head = heap.peek();
+            size = heap.size();
+        }
+    }
+}
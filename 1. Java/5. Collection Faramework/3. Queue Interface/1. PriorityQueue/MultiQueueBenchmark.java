@@ -0,0 +1,81 @@
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+// Scalability of MultiQueue against PriorityBlockingQueue and ConcurrentSkipListSet.
+// Every thread alternates add and poll on a prefilled queue, and the total
+// throughput is reported for 1 to 64 threads.
+// Run with: java MultiQueueBenchmark [opsPerThread]
+public class MultiQueueBenchmark {
+    private static final int PREFILL = 100_000;
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+    public static void main(String[] args) throws InterruptedException {
+        int opsPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        System.out.printf("%8s %18s %18s %18s%n", "threads", "MultiQueue", "PriorityBlocking", "SkipListSet");
+        for (int threads : THREAD_COUNTS) {
+            MultiQueue<Long> multiQueue = MultiQueue.naturalOrder(threads);
+            PriorityBlockingQueue<Long> blockingQueue = new PriorityBlockingQueue<>();
+            // Keys are made unique (see uniqueKey) because a set drops duplicates
+            ConcurrentSkipListSet<Long> skipList = new ConcurrentSkipListSet<>();
+
+            double mq = run(threads, opsPerThread, multiQueue::add, () -> orZero(multiQueue.poll()));
+            double pbq = run(threads, opsPerThread, blockingQueue::add, () -> orZero(blockingQueue.poll()));
+            double sl = run(threads, opsPerThread, skipList::add, () -> orZero(skipList.pollFirst()));
+            System.out.printf("%8d %13.2f Mop/s %13.2f Mop/s %13.2f Mop/s%n", threads, mq, pbq, sl);
+        }
+    }
+
+    private static double run(int threads, int opsPerThread, LongConsumer add, LongSupplier poll)
+            throws InterruptedException {
+        for (int i = 0; i < PREFILL; i++) {
+            add.accept(uniqueKey(i));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    long sum = 0;
+                    for (int i = 0; i < opsPerThread; i++) {
+                        if ((i & 1) == 0) {
+                            add.accept(uniqueKey(i));
+                        } else {
+                            sum += poll.getAsLong();
+                        }
+                    }
+                    sink += sum;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        return (double) threads * opsPerThread / elapsed * 1_000; // ops per ns -> Mop/s
+    }
+
+    // Random priority in the high bits, a per-call tiebreaker in the low bits
+    private static long uniqueKey(int i) {
+        return ((long) ThreadLocalRandom.current().nextInt(1 << 20) << 40)
+                | ((Thread.currentThread().getId() & 0xFFFF) << 24) | (i & 0xFFFFFF);
+    }
+
+    private static long orZero(Long value) {
+        return value == null ? 0 : value;
+    }
+
+    private static volatile long sink;
+}
@@ -11,6 +11,7 @@ public class PriorityQueueExample {
         System.out.println("Head of the queue: " + pq.peek());
 
         // Iterating over the priority queue
+        // Note: the iterator walks the internal heap array, so this is heap order, not priority order
         System.out.println("Elements in the priority queue:");
         for (Integer element : pq) {
             System.out.println(element);
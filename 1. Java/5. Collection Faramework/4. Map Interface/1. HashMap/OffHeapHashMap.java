@@ -0,0 +1,652 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.StampedLock;
+
+// A String -> long hash map whose entries live outside the Java heap.
+//
+// A HashMap<String, Integer> costs about 100 bytes of heap per entry (the
+// node, the String and its byte[], the boxed Integer), and with hundreds of
+// millions of entries every full GC has to trace all of those objects. This
+// map keeps no per-entry objects at all:
+// - Keys are stored as length-prefixed UTF-8 bytes next to their fixed-width
+//   (8-byte) value, appended to a per-stripe key area.
+// - Lookup is open addressing (linear probing) over a table of 8-byte slots:
+//   a 32-bit fingerprint of the key's 64-bit hash and the record's offset.
+//   Keys are only compared when the fingerprints match, which is almost
+//   always the right key.
+// - Both live in direct ByteBuffers, or in memory-mapped files when file(dir)
+//   is set; then the map survives a restart without being rebuilt: open()
+//   maps the files and it is ready.
+// - The map is split into stripes by the top bits of the hash. Each stripe has
+//   its own table, key area and StampedLock, so readers of a stripe share it
+//   and writers only block their own stripe. A stripe grows (or drops removed
+//   entries) by rehashing into a new table; its old memory is freed at once.
+//
+// Usage:
+//   try (OffHeapHashMap counts = OffHeapHashMap.builder().expectedEntries(100_000_000).build()) {
+//       counts.put("Apple", 10);
+//       counts.add("Apple", 5);                 // 15, no boxing
+//       long v = counts.get("Apple");           // OffHeapHashMap.MISSING if absent
+//   }
+//   // Survives restarts; close() (or flush()) makes the files consistent
+//   OffHeapHashMap persistent = OffHeapHashMap.builder().file(Path.of("/data/counts")).open();
+//
+// Memory is released by close(), not by the garbage collector. Direct memory
+// is capped by -XX:MaxDirectMemorySize (by default the maximum heap size), so
+// raise it for maps larger than the heap, or use file(dir), whose mappings
+// are not counted. Files of a map that was not closed cleanly are rejected on
+// open. (This uses ByteBuffers rather than the Foreign Memory API's
+// MemorySegments, which are still incubating in Java 17; each buffer holds at
+// most 2 GB, hence at most 2 GB of keys per stripe.)
+public final class OffHeapHashMap implements AutoCloseable {
+    // Returned by get, put and remove when there is no value
+    public static final long MISSING = Long.MIN_VALUE;
+
+    private static final int MAGIC = 0x4F484D31; // "OHM1"
+    private static final int HEADER = 64;
+    private static final int SLOT = 8;
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = 1;
+    private static final int RECORD_OVERHEAD = 4 + 8; // key length, value
+    private static final int MAX_SLOTS = 1 << 27;
+    private static final double MAX_LOAD = 0.75;
+    private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final Path directory;
+    private final ThreadLocal<Key> keys = ThreadLocal.withInitial(Key::new);
+    private volatile boolean closed;
+
+    private OffHeapHashMap(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        int stripeCount = builder.stripes;
+        if (directory != null) {
+            Files.createDirectories(directory);
+            Path meta = directory.resolve("map.meta");
+            if (Files.exists(meta)) {
+                stripeCount = ByteBuffer.wrap(Files.readAllBytes(meta)).getInt(4);
+            } else {
+                Files.write(meta, ByteBuffer.allocate(8).putInt(MAGIC).putInt(stripeCount).array());
+            }
+        }
+        this.stripes = new Stripe[stripeCount];
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+        long perStripe = Math.max(16, builder.expectedEntries / stripeCount + 1);
+        int slots = Integer.highestOneBit((int) Math.min(MAX_SLOTS / 2, (long) (perStripe / MAX_LOAD))) * 2;
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(i, slots, (int) Math.min(256 << 20, perStripe * 16));
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // ---- Map operations ----
+
+    public long get(String key) {
+        return getOrDefault(key, MISSING);
+    }
+
+    public long getOrDefault(String key, long defaultValue) {
+        Key k = encode(key);
+        Stripe s = stripeOf(k);
+        long stamp = s.lock.readLock();
+        try {
+            checkOpen();
+            int slot = s.find(k);
+            return slot < 0 ? defaultValue : s.keys.getLong(s.offsetAt(slot) + 4);
+        } finally {
+            s.lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean containsKey(String key) {
+        Key k = encode(key);
+        Stripe s = stripeOf(k);
+        long stamp = s.lock.readLock();
+        try {
+            checkOpen();
+            return s.find(k) >= 0;
+        } finally {
+            s.lock.unlockRead(stamp);
+        }
+    }
+
+    // Returns the previous value, or MISSING
+    public long put(String key, long value) {
+        Key k = encode(key);
+        Stripe s = stripeOf(k);
+        long stamp = s.lock.writeLock();
+        try {
+            checkOpen();
+            s.markDirty();
+            int slot = s.find(k);
+            if (slot >= 0) {
+                int valueAt = s.offsetAt(slot) + 4;
+                long previous = s.keys.getLong(valueAt);
+                s.keys.putLong(valueAt, value);
+                return previous;
+            }
+            s.insert(k, value);
+            return MISSING;
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Adds delta to the value (a missing key counts as 0) and returns the new value
+    public long add(String key, long delta) {
+        Key k = encode(key);
+        Stripe s = stripeOf(k);
+        long stamp = s.lock.writeLock();
+        try {
+            checkOpen();
+            s.markDirty();
+            int slot = s.find(k);
+            if (slot >= 0) {
+                int valueAt = s.offsetAt(slot) + 4;
+                long value = s.keys.getLong(valueAt) + delta;
+                s.keys.putLong(valueAt, value);
+                return value;
+            }
+            s.insert(k, delta);
+            return delta;
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Returns the removed value, or MISSING
+    public long remove(String key) {
+        Key k = encode(key);
+        Stripe s = stripeOf(k);
+        long stamp = s.lock.writeLock();
+        try {
+            checkOpen();
+            int slot = s.find(k);
+            if (slot < 0) return MISSING;
+            s.markDirty();
+            int offset = s.offsetAt(slot);
+            long previous = s.keys.getLong(offset + 4);
+            s.slots.putInt(HEADER + slot * SLOT, TOMBSTONE);
+            s.size--;
+            s.tombstones++;
+            s.garbage += RECORD_OVERHEAD + s.keys.getInt(offset);
+            return previous;
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Entries at the time each stripe is read; exact when no writer is running
+    public long size() {
+        long size = 0;
+        for (Stripe s : stripes) size += s.size;
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(String key, long value);
+    }
+
+    // Visits every entry, one stripe at a time under its read lock (so the
+    // consumer must not write to this map)
+    public void forEach(EntryConsumer consumer) {
+        for (Stripe s : stripes) {
+            long stamp = s.lock.readLock();
+            try {
+                checkOpen();
+                for (int slot = 0; slot < s.capacity; slot++) {
+                    if (!isLive(s.slots.getInt(HEADER + slot * SLOT))) continue;
+                    int offset = s.offsetAt(slot);
+                    byte[] bytes = new byte[s.keys.getInt(offset)];
+                    s.keys.get(offset + RECORD_OVERHEAD, bytes);
+                    consumer.accept(new String(bytes, StandardCharsets.UTF_8), s.keys.getLong(offset + 4));
+                }
+            } finally {
+                s.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    // Bytes of table and key memory reserved outside the heap (or mapped)
+    public long offHeapBytes() {
+        long total = 0;
+        for (Stripe s : stripes) {
+            long stamp = s.lock.readLock();
+            try {
+                if (s.slots != null) total += s.slots.capacity() + s.keys.capacity();
+            } finally {
+                s.lock.unlockRead(stamp);
+            }
+        }
+        return total;
+    }
+
+    // File-backed maps: writes all changes to disk and marks the files
+    // consistent, as close() does, but keeps the map open
+    public void flush() {
+        for (Stripe s : stripes) {
+            long stamp = s.lock.writeLock();
+            try {
+                checkOpen();
+                s.flush();
+            } finally {
+                s.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    // Frees (or unmaps) all memory. Waits for running operations; later ones
+    // throw IllegalStateException.
+    @Override
+    public void close() {
+        if (closed) return;
+        long[] stamps = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) stamps[i] = stripes[i].lock.writeLock();
+        try {
+            if (closed) return;
+            closed = true;
+            for (Stripe s : stripes) {
+                s.flush();
+                free(s.slots);
+                free(s.keys);
+                s.slots = null;
+                s.keys = null;
+            }
+        } finally {
+            for (int i = 0; i < stripes.length; i++) stripes[i].lock.unlockWrite(stamps[i]);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("Map is closed");
+    }
+
+    private Stripe stripeOf(Key k) {
+        return stripes.length == 1 ? stripes[0] : stripes[(int) (k.hash >>> stripeShift)];
+    }
+
+    // ---- Keys and hashing ----
+
+    // The calling thread's encoded key: UTF-8 bytes in a reused buffer, and their hash
+    private static final class Key {
+        ByteBuffer bytes = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        int length;
+        long hash;
+    }
+
+    private Key encode(String key) {
+        Key k = keys.get();
+        int n = key.length();
+        if (k.bytes.capacity() < n * 3) {
+            k.bytes = ByteBuffer.allocate(Math.max(n * 3, k.bytes.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        byte[] array = k.bytes.array();
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            char c = key.charAt(i);
+            if (c >= 0x80) { // not ASCII: let the JDK encode it
+                byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(utf8, 0, array, 0, utf8.length);
+                length = utf8.length;
+                break;
+            }
+            array[length++] = (byte) c;
+        }
+        k.length = length;
+        k.hash = hash(k.bytes, 0, length);
+        return k;
+    }
+
+    // 64-bit hash of length bytes at offset, eight at a time
+    private static long hash(ByteBuffer buffer, int offset, int length) {
+        long h = 0x9E3779B97F4A7C15L ^ length;
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            h = Long.rotateLeft(h ^ buffer.getLong(offset + i) * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+        long tail = 0;
+        for (int shift = 0; i < length; i++, shift += 8) tail |= (buffer.get(offset + i) & 0xFFL) << shift;
+        h = Long.rotateLeft(h ^ tail * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        // Final avalanche (MurmurHash3 fmix64)
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ h >>> 33;
+    }
+
+    // The low 32 bits, never EMPTY or TOMBSTONE
+    private static int fingerprint(long hash) {
+        int f = (int) hash;
+        return f > TOMBSTONE || f < 0 ? f : f + 2;
+    }
+
+    private static boolean isLive(int fingerprint) {
+        return fingerprint != EMPTY && fingerprint != TOMBSTONE;
+    }
+
+    // Bits 24 and up: independent of most fingerprint bits and, for up to
+    // 4096 stripes and 2^27 slots, of the stripe bits at the top
+    private static int home(long hash, int mask) {
+        return (int) (hash >>> 24) & mask;
+    }
+
+    // ---- Stripes ----
+
+    private final class Stripe {
+        final StampedLock lock = new StampedLock();
+        private final int number;
+        ByteBuffer slots; // header, then capacity slots of (fingerprint, record offset)
+        ByteBuffer keys;  // records: key length, value, key bytes
+        int capacity;
+        volatile int size;
+        int tombstones;
+        int keysUsed;
+        long garbage;     // bytes of removed records
+        private boolean dirty;
+
+        Stripe(int number, int initialSlots, int initialKeyBytes) throws IOException {
+            this.number = number;
+            Path slotsFile = file("slots");
+            if (slotsFile != null && Files.exists(slotsFile)) {
+                slots = map(slotsFile, Files.size(slotsFile));
+                keys = map(file("keys"), Files.size(file("keys")));
+                if (slots.getInt(0) != MAGIC) throw new IOException("Not an off-heap map file: " + slotsFile);
+                if (slots.getInt(24) != 1) throw new IOException("Map was not closed cleanly: " + slotsFile);
+                capacity = slots.getInt(4);
+                size = slots.getInt(8);
+                tombstones = slots.getInt(12);
+                keysUsed = slots.getInt(16);
+                garbage = slots.getLong(32);
+            } else {
+                capacity = initialSlots;
+                slots = allocate("slots", HEADER + (long) capacity * SLOT);
+                keys = allocate("keys", Math.max(1024, initialKeyBytes));
+                install("slots");
+                install("keys");
+                dirty = true;
+                flush();
+            }
+        }
+
+        int offsetAt(int slot) {
+            return slots.getInt(HEADER + slot * SLOT + 4);
+        }
+
+        // The slot holding k, or -1
+        int find(Key k) {
+            int fingerprint = fingerprint(k.hash);
+            int mask = capacity - 1;
+            for (int i = home(k.hash, mask); ; i = (i + 1) & mask) {
+                int f = slots.getInt(HEADER + i * SLOT);
+                if (f == EMPTY) return -1;
+                if (f == fingerprint && keyEquals(slots.getInt(HEADER + i * SLOT + 4), k)) return i;
+            }
+        }
+
+        private boolean keyEquals(int offset, Key k) {
+            int length = k.length;
+            if (keys.getInt(offset) != length) return false;
+            int at = offset + RECORD_OVERHEAD;
+            int i = 0;
+            for (; i + 8 <= length; i += 8) {
+                if (keys.getLong(at + i) != k.bytes.getLong(i)) return false;
+            }
+            for (; i < length; i++) {
+                if (keys.get(at + i) != k.bytes.get(i)) return false;
+            }
+            return true;
+        }
+
+        // Adds a key known to be absent
+        void insert(Key k, long value) {
+            if (size + tombstones + 1 > capacity * MAX_LOAD) {
+                rehash(size + 1 > capacity * MAX_LOAD / 2 ? capacity * 2 : capacity);
+            }
+            int recordSize = RECORD_OVERHEAD + k.length;
+            if ((long) keysUsed + recordSize > keys.capacity()) growKeys(recordSize);
+            int offset = keysUsed;
+            keys.putInt(offset, k.length);
+            keys.putLong(offset + 4, value);
+            keys.put(offset + RECORD_OVERHEAD, k.bytes.array(), 0, k.length);
+            keysUsed += recordSize;
+
+            int mask = capacity - 1;
+            int i = home(k.hash, mask);
+            while (isLive(slots.getInt(HEADER + i * SLOT))) i = (i + 1) & mask; // reuse tombstones
+            if (slots.getInt(HEADER + i * SLOT) == TOMBSTONE) tombstones--;
+            slots.putInt(HEADER + i * SLOT + 4, offset);
+            slots.putInt(HEADER + i * SLOT, fingerprint(k.hash));
+            size++;
+        }
+
+        private void growKeys(int recordSize) {
+            long needed = (long) keysUsed - garbage + recordSize;
+            if (garbage > keysUsed / 4 && needed <= keys.capacity()) {
+                rehash(capacity); // compacting is enough
+                if ((long) keysUsed + recordSize <= keys.capacity()) return;
+            }
+            long grown = Math.max((long) keys.capacity() * 2, keysUsed + (long) recordSize);
+            if ((long) keysUsed + recordSize > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Stripe " + number + " holds 2 GB of keys; use more stripes");
+            }
+            ByteBuffer next = allocate("keys", Math.min(grown, Integer.MAX_VALUE - 8));
+            next.put(0, keys, 0, keysUsed);
+            replaceKeys(next);
+        }
+
+        // Rebuilds the table with newCapacity slots, dropping tombstones, and
+        // copies the live records into a fresh key area if a quarter is garbage
+        private void rehash(int newCapacity) {
+            if (newCapacity > MAX_SLOTS) {
+                throw new IllegalStateException("Stripe " + number + " is full (" + size + " entries); use more stripes");
+            }
+            boolean compact = garbage > keysUsed / 4;
+            ByteBuffer newSlots = allocate("slots", HEADER + (long) newCapacity * SLOT);
+            ByteBuffer newKeys = compact ? allocate("keys", keys.capacity()) : keys;
+            int newUsed = compact ? 0 : keysUsed;
+            int mask = newCapacity - 1;
+            for (int slot = 0; slot < capacity; slot++) {
+                int f = slots.getInt(HEADER + slot * SLOT);
+                if (!isLive(f)) continue;
+                int offset = offsetAt(slot);
+                int keyLength = keys.getInt(offset);
+                long h = hash(keys, offset + RECORD_OVERHEAD, keyLength);
+                if (compact) {
+                    newKeys.put(newUsed, keys, offset, RECORD_OVERHEAD + keyLength);
+                    offset = newUsed;
+                    newUsed += RECORD_OVERHEAD + keyLength;
+                }
+                int i = home(h, mask);
+                while (newSlots.getInt(HEADER + i * SLOT) != EMPTY) i = (i + 1) & mask;
+                newSlots.putInt(HEADER + i * SLOT, f);
+                newSlots.putInt(HEADER + i * SLOT + 4, offset);
+            }
+            ByteBuffer oldSlots = slots;
+            slots = newSlots;
+            capacity = newCapacity;
+            tombstones = 0;
+            writeHeader();
+            install("slots");
+            free(oldSlots);
+            if (compact) {
+                keysUsed = newUsed;
+                garbage = 0;
+                replaceKeys(newKeys);
+                writeHeader();
+            }
+        }
+
+        private void replaceKeys(ByteBuffer next) {
+            ByteBuffer old = keys;
+            keys = next;
+            install("keys");
+            free(old);
+        }
+
+        void markDirty() {
+            if (dirty) return;
+            dirty = true;
+            slots.putInt(24, 0); // files are inconsistent until the next flush
+            if (directory != null) ((MappedByteBuffer) slots).force(0, HEADER);
+        }
+
+        void flush() {
+            if (!dirty) return;
+            writeHeader();
+            if (directory != null) {
+                ((MappedByteBuffer) keys).force();
+                slots.putInt(24, 1);
+                ((MappedByteBuffer) slots).force();
+            }
+            dirty = false;
+        }
+
+        private void writeHeader() {
+            slots.putInt(0, MAGIC);
+            slots.putInt(4, capacity);
+            slots.putInt(8, size);
+            slots.putInt(12, tombstones);
+            slots.putInt(16, keysUsed);
+            slots.putInt(24, dirty ? 0 : 1);
+            slots.putLong(32, garbage);
+        }
+
+        // ---- Memory ----
+
+        private Path file(String kind) {
+            return directory == null ? null : directory.resolve(String.format("stripe-%04d.%s", number, kind));
+        }
+
+        // Zeroed memory: a direct buffer, or a new temporary file mapped in
+        // full that install() moves into place
+        private ByteBuffer allocate(String kind, long bytes) {
+            if (bytes > Integer.MAX_VALUE - 8) throw new IllegalStateException("Buffer over 2 GB: " + bytes);
+            if (directory == null) return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                Path temp = Path.of(file(kind) + ".tmp");
+                Files.deleteIfExists(temp);
+                return map(temp, bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void install(String kind) {
+            if (directory == null) return;
+            try {
+                Files.move(Path.of(file(kind) + ".tmp"), file(kind), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(Path file, long bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes); // extends the file
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            return map;
+        }
+    }
+
+    // Releases a direct or mapped buffer now instead of when it is collected.
+    // Callers hold the stripe's write lock, so no reader still uses it.
+    private static void free(ByteBuffer buffer) {
+        if (buffer == null || INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invokeExact(buffer);
+        } catch (Throwable t) {
+            // Left to the garbage collector
+        }
+    }
+
+    // sun.misc.Unsafe.invokeCleaner, the supported way to free a direct
+    // buffer early (jdk.unsupported); null if unavailable
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(unsafe);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public static final class Builder {
+        private long expectedEntries = 1 << 16;
+        private int stripes = 64;
+        private Path directory;
+
+        private Builder() {
+        }
+
+        // Sizes the tables up front so that loading needs no rehashing (default 65,536)
+        public Builder expectedEntries(long entries) {
+            if (entries < 0) throw new IllegalArgumentException("Expected entries must be >= 0: " + entries);
+            this.expectedEntries = entries;
+            return this;
+        }
+
+        // Independently locked parts, a power of two up to 4096 (default 64).
+        // Each holds at most 2^27 slots and 2 GB of keys.
+        public Builder stripes(int stripes) {
+            if (stripes < 1 || stripes > 4096 || Integer.bitCount(stripes) != 1) {
+                throw new IllegalArgumentException("Stripes must be a power of two from 1 to 4096: " + stripes);
+            }
+            this.stripes = stripes;
+            return this;
+        }
+
+        // Keeps the map in memory-mapped files in directory, reopened as they
+        // are. An existing map's stripe count wins over stripes().
+        public Builder file(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        // An in-memory map (file not set)
+        public OffHeapHashMap build() {
+            if (directory != null) throw new IllegalStateException("File-backed maps are opened with open()");
+            try {
+                return new OffHeapHashMap(this);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // not reached without files
+            }
+        }
+
+        // Opens or creates the file-backed map in the file() directory
+        public OffHeapHashMap open() throws IOException {
+            if (directory == null) throw new IllegalStateException("No directory set; use file(dir)");
+            return new OffHeapHashMap(this);
+        }
+    }
+}
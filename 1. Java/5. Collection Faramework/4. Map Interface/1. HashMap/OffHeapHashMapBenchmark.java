@@ -0,0 +1,113 @@
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+// Loads N String -> long entries into a HashMap<String, Long> and into an
+// OffHeapHashMap, then looks up random keys. Reports throughput, the GC
+// activity during each phase (collections, total and longest pause), the heap
+// still in use, and how long a full GC takes while the map is alive.
+// Run with: java -Xmx2g OffHeapHashMapBenchmark [entries]
+// (default 5,000,000; for more, raise -Xmx for the HashMap and
+// -XX:MaxDirectMemorySize for the off-heap map)
+public class OffHeapHashMapBenchmark {
+    private static final AtomicLong LONGEST_PAUSE = new AtomicLong();
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int lookups = 2 * entries;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    return;
+                }
+                long ms = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())
+                        .getGcInfo().getDuration();
+                LONGEST_PAUSE.accumulateAndGet(ms, Math::max);
+            }, null, null);
+        }
+        System.out.printf("%,d entries, %,d lookups, max heap %,d MB%n", entries, lookups,
+                Runtime.getRuntime().maxMemory() >> 20);
+        System.out.printf("%-28s %10s %8s %10s %12s %12s%n", "", "ops/s", "GCs", "GC ms", "longest ms", "heap MB");
+
+        try (OffHeapHashMap map = OffHeapHashMap.builder().expectedEntries(entries).build()) {
+            run("OffHeapHashMap", entries, lookups, new Target() {
+                @Override
+                public void put(String key, long value) {
+                    map.put(key, value);
+                }
+
+                @Override
+                public long get(String key) {
+                    return map.get(key);
+                }
+            });
+            System.out.printf("  off-heap memory: %,d MB%n", map.offHeapBytes() >> 20);
+        }
+        HashMap<String, Long> heapMap = new HashMap<>();
+        run("HashMap<String, Long>", entries, lookups, new Target() {
+            @Override
+            public void put(String key, long value) {
+                heapMap.put(key, value);
+            }
+
+            @Override
+            public long get(String key) {
+                Long v = heapMap.get(key);
+                return v == null ? -1 : v;
+            }
+        });
+        sink += heapMap.size();
+    }
+
+    interface Target {
+        void put(String key, long value);
+
+        long get(String key);
+    }
+
+    private static void run(String name, int entries, int lookups, Target target) {
+        System.gc();
+        phase(name + ": load", entries, () -> {
+            for (int i = 0; i < entries; i++) target.put("user:" + i, i);
+        });
+        Random random = new Random(1);
+        phase(name + ": get", lookups, () -> {
+            long sum = 0;
+            for (int i = 0; i < lookups; i++) sum += target.get("user:" + random.nextInt(entries));
+            sink += sum;
+        });
+        long start = System.nanoTime();
+        System.gc(); // a full collection with the map alive: its cost grows with the live heap
+        long fullGc = System.nanoTime() - start;
+        Runtime rt = Runtime.getRuntime();
+        System.out.printf("  full GC with the map alive: %.1f ms, heap in use %,d MB%n", fullGc / 1e6,
+                (rt.totalMemory() - rt.freeMemory()) >> 20);
+    }
+
+    private static void phase(String label, long operations, Runnable work) {
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount -= gc.getCollectionCount();
+            gcMillis -= gc.getCollectionTime();
+        }
+        LONGEST_PAUSE.set(0);
+        long start = System.nanoTime();
+        work.run();
+        long nanos = System.nanoTime() - start;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += gc.getCollectionCount();
+            gcMillis += gc.getCollectionTime();
+        }
+        Runtime rt = Runtime.getRuntime();
+        System.out.printf("%-28s %,10.0f %8d %10d %12d %12d%n", label, operations / (nanos / 1e9), gcCount, gcMillis,
+                LONGEST_PAUSE.get(), (rt.totalMemory() - rt.freeMemory()) >> 20);
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToLongFunction;
+
+// A membership set that answers most "not present" lookups from a Bloom filter
+// and only asks the exact set when the filter says "maybe".
+//
+// Worth it when most contains() calls miss and the exact set is expensive to
+// probe: very large (cache-missing) hash sets, or sets kept on disk or remotely.
+//
+// A Bloom filter cannot delete bits, so removals leave stale bits behind that
+// only raise the false positive rate. Once the number of removals (or growth
+// past the expected size) would noticeably hurt the rate, the filter is
+// rebuilt from the exact set.
+public class BloomFilteredSet<E> {
+    private static final double REBUILD_REMOVED_FRACTION = 0.25;
+    private static final double GROWTH_FACTOR = 2.0;
+
+    private final Set<E> exact;
+    private final ToLongFunction<? super E> hasher;
+    private final double falsePositiveRate;
+    // add/remove take the read lock (they may run together); rebuild takes the
+    // write lock so that no add can slip past the new filter
+    private final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    private volatile BlockedBloomFilter filter;
+    private volatile long expectedInsertions;
+    private final AtomicLong removedSinceRebuild = new AtomicLong();
+
+    private final LongAdder filterNegatives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder truePositives = new LongAdder();
+
+    public BloomFilteredSet(long expectedInsertions, double falsePositiveRate) {
+        this(ConcurrentHashMap.newKeySet(), BloomFilteredSet::defaultHash, expectedInsertions, falsePositiveRate);
+    }
+
+    // The exact set must be thread-safe if the filtered set is used from several threads.
+    public BloomFilteredSet(Set<E> exact, ToLongFunction<? super E> hasher,
+                            long expectedInsertions, double falsePositiveRate) {
+        this.exact = Objects.requireNonNull(exact);
+        this.hasher = Objects.requireNonNull(hasher);
+        this.falsePositiveRate = falsePositiveRate;
+        this.expectedInsertions = Math.max(expectedInsertions, exact.size());
+        this.filter = new BlockedBloomFilter(this.expectedInsertions, falsePositiveRate);
+        for (E e : exact) filter.add(hasher.applyAsLong(e));
+    }
+
+    public boolean add(E e) {
+        long hash = hasher.applyAsLong(e);
+        boolean added;
+        rebuildLock.readLock().lock();
+        try {
+            filter.add(hash); // before the exact set, so a concurrent contains() never misses it
+            added = exact.add(e);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+        if (exact.size() > expectedInsertions * GROWTH_FACTOR) {
+            rebuild();
+        }
+        return added;
+    }
+
+    public boolean remove(E e) {
+        boolean removed;
+        rebuildLock.readLock().lock();
+        try {
+            removed = exact.remove(e);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+        if (removed && removedSinceRebuild.incrementAndGet() > expectedInsertions * REBUILD_REMOVED_FRACTION) {
+            rebuild();
+        }
+        return removed;
+    }
+
+    public boolean contains(E e) {
+        if (!filter.mightContain(hasher.applyAsLong(e))) {
+            filterNegatives.increment();
+            return false;
+        }
+        if (exact.contains(e)) {
+            truePositives.increment();
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    public int size() {
+        return exact.size();
+    }
+
+    // Rebuilds the filter from the exact set, sized for the current contents.
+    public void rebuild() {
+        rebuildLock.writeLock().lock();
+        try {
+            // Another thread may have rebuilt while we waited for the lock
+            boolean tooManyRemovals = removedSinceRebuild.get() > expectedInsertions * REBUILD_REMOVED_FRACTION;
+            boolean outgrown = exact.size() > expectedInsertions * GROWTH_FACTOR;
+            if (!tooManyRemovals && !outgrown) return;
+            long newExpected = Math.max(expectedInsertions, (long) (exact.size() * GROWTH_FACTOR));
+            BlockedBloomFilter rebuilt = new BlockedBloomFilter(newExpected, falsePositiveRate);
+            for (E e : exact) rebuilt.add(hasher.applyAsLong(e));
+            expectedInsertions = newExpected;
+            removedSinceRebuild.set(0);
+            filter = rebuilt;
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    // Share of lookups for absent elements that the filter failed to reject
+    public double observedFalsePositiveRate() {
+        long fp = falsePositives.sum();
+        long negatives = fp + filterNegatives.sum();
+        return negatives == 0 ? 0.0 : (double) fp / negatives;
+    }
+
+    public String stats() {
+        return String.format("BloomFilteredSet{size=%d, filterBits=%d, hashes=%d, filterNegatives=%d, "
+                        + "truePositives=%d, falsePositives=%d, observedFpr=%.4f, targetFpr=%.4f}",
+                size(), filter.bitSize(), filter.hashCount(), filterNegatives.sum(), truePositives.sum(),
+                falsePositives.sum(), observedFalsePositiveRate(), falsePositiveRate);
+    }
+
+    // 64-bit hash: strings are hashed over all their chars, since String.hashCode()
+    // is only 32 bits and collides too often for a large filter
+    static long defaultHash(Object o) {
+        long h;
+        if (o instanceof String) {
+            String s = (String) o;
+            h = 0x9E3779B97F4A7C15L ^ s.length();
+            for (int i = 0; i < s.length(); i++) {
+                h = (h ^ s.charAt(i)) * 0x100000001B3L;
+            }
+        } else {
+            h = o.hashCode() * 0x9E3779B97F4A7C15L;
+        }
+        // Final avalanche (splitmix64)
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+// Lookup throughput of HashSet<String> against BloomFilteredSet at 1%, 10%
+// and 50% hit rates, plus the observed false positive rate.
+// Run with: java -Xmx4g BloomFilteredSetBenchmark [n]
+public class BloomFilteredSetBenchmark {
+    private static final int LOOKUPS = 2_000_000;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        Random random = new Random(42);
+        String[] members = new String[n];
+        for (int i = 0; i < n; i++) members[i] = "user-" + random.nextLong();
+
+        Set<String> hashSet = new HashSet<>(n * 2);
+        for (String member : members) hashSet.add(member);
+        BloomFilteredSet<String> filtered = new BloomFilteredSet<>(n, 0.01);
+        for (String member : members) filtered.add(member);
+
+        for (double hitRate : new double[] {0.01, 0.10, 0.50}) {
+            System.out.printf("Hit rate %.0f%% (%d members, %d lookups)%n", hitRate * 100, n, LOOKUPS);
+            for (int round = 1; round <= 3; round++) {
+                // Fresh String objects each round, so no cached String.hashCode() is reused
+                String[] queries = queries(members, hitRate, random);
+                long start = System.nanoTime();
+                int found = 0;
+                for (String q : queries) if (hashSet.contains(q)) found++;
+                long hashSetNanos = System.nanoTime() - start;
+
+                queries = queries(members, hitRate, random);
+                start = System.nanoTime();
+                int filteredFound = 0;
+                for (String q : queries) if (filtered.contains(q)) filteredFound++;
+                long filteredNanos = System.nanoTime() - start;
+
+                System.out.printf("  round %d: HashSet %6.2f Mops/s (%d found)  BloomFilteredSet %6.2f Mops/s (%d found)%n",
+                        round, LOOKUPS * 1e3 / hashSetNanos, found, LOOKUPS * 1e3 / filteredNanos, filteredFound);
+            }
+        }
+        System.out.println(filtered.stats());
+    }
+
+    private static String[] queries(String[] members, double hitRate, Random random) {
+        String[] queries = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            String q = random.nextDouble() < hitRate
+                    ? members[random.nextInt(members.length)]
+                    : "user-" + random.nextLong();
+            queries[i] = new String(q.toCharArray());
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+
+// Read-only view of a bitmap written by RoaringBitmap.serialize().
+// Queries read straight from the buffer (usually a memory-mapped file), so a
+// multi-GB bitmap can be opened instantly and only the pages that are
+// touched get loaded. Nothing is copied onto the heap.
+public class MappedRoaringBitmap {
+    private final ByteBuffer buffer;
+    private final int containerCount;
+
+    public MappedRoaringBitmap(ByteBuffer serialized) {
+        buffer = serialized.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != RoaringBitmap.MAGIC) {
+            throw new IllegalArgumentException("Not a serialized RoaringBitmap");
+        }
+        containerCount = buffer.getInt(4);
+    }
+
+    public static MappedRoaringBitmap map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new MappedRoaringBitmap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public boolean contains(int value) {
+        int i = indexOf((char) (value >>> 16));
+        if (i < 0) return false;
+        char low = (char) value;
+        int offset = payloadOffset(i);
+        switch (type(i)) {
+            case RoaringBitmap.TYPE_ARRAY:
+                return arrayContains(offset, cardinality(i), low);
+            case RoaringBitmap.TYPE_BITMAP:
+                return (buffer.getLong(offset + (low >>> 6) * 8) & (1L << low)) != 0;
+            default:
+                return runContains(offset, low);
+        }
+    }
+
+    public long getCardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < containerCount; i++) cardinality += cardinality(i);
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return containerCount == 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < containerCount; i++) {
+            int high = key(i) << 16;
+            int offset = payloadOffset(i);
+            switch (type(i)) {
+                case RoaringBitmap.TYPE_ARRAY:
+                    for (int k = 0, n = cardinality(i); k < n; k++) {
+                        action.accept(high | buffer.getChar(offset + 2 * k));
+                    }
+                    break;
+                case RoaringBitmap.TYPE_BITMAP:
+                    for (int w = 0; w < RoaringBitmap.BITMAP_WORDS; w++) {
+                        long word = buffer.getLong(offset + 8 * w);
+                        while (word != 0) {
+                            action.accept(high | (w * 64 + Long.numberOfTrailingZeros(word)));
+                            word &= word - 1;
+                        }
+                    }
+                    break;
+                default:
+                    int runs = buffer.getChar(offset);
+                    for (int r = 0; r < runs; r++) {
+                        int start = buffer.getChar(offset + 2 + 4 * r);
+                        int end = start + buffer.getChar(offset + 4 + 4 * r);
+                        for (int v = start; v <= end; v++) action.accept(high | v);
+                    }
+            }
+        }
+    }
+
+    // Copies the data into a mutable heap bitmap.
+    public RoaringBitmap toRoaringBitmap() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i < containerCount; i++) {
+            int offset = payloadOffset(i);
+            int cardinality = cardinality(i);
+            int type = type(i);
+            if (type == RoaringBitmap.TYPE_BITMAP) {
+                long[] words = new long[RoaringBitmap.BITMAP_WORDS];
+                for (int w = 0; w < words.length; w++) words[w] = buffer.getLong(offset + 8 * w);
+                bitmap.append(key(i), type, cardinality, null, words);
+            } else {
+                int length = type == RoaringBitmap.TYPE_ARRAY ? cardinality : 2 * buffer.getChar(offset);
+                int start = type == RoaringBitmap.TYPE_ARRAY ? offset : offset + 2;
+                char[] values = new char[Math.max(length, 1)];
+                for (int k = 0; k < length; k++) values[k] = buffer.getChar(start + 2 * k);
+                bitmap.append(key(i), type, cardinality, values, null);
+            }
+        }
+        return bitmap;
+    }
+
+    // ---- Header access ----
+
+    private int entry(int i) {
+        return RoaringBitmap.HEADER_BYTES + i * RoaringBitmap.ENTRY_BYTES;
+    }
+
+    private char key(int i) {
+        return buffer.getChar(entry(i));
+    }
+
+    private int type(int i) {
+        return buffer.getChar(entry(i) + 2);
+    }
+
+    private int cardinality(int i) {
+        return buffer.getInt(entry(i) + 4);
+    }
+
+    private int payloadOffset(int i) {
+        return buffer.getInt(entry(i) + 8);
+    }
+
+    private int indexOf(char high) {
+        int low = 0;
+        int highIndex = containerCount - 1;
+        while (low <= highIndex) {
+            int mid = (low + highIndex) >>> 1;
+            char key = key(mid);
+            if (key < high) low = mid + 1;
+            else if (key > high) highIndex = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private boolean arrayContains(int offset, int cardinality, char value) {
+        int low = 0;
+        int high = cardinality - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char v = buffer.getChar(offset + 2 * mid);
+            if (v < value) low = mid + 1;
+            else if (v > value) high = mid - 1;
+            else return true;
+        }
+        return false;
+    }
+
+    private boolean runContains(int offset, char value) {
+        int runs = buffer.getChar(offset);
+        int low = 0;
+        int high = runs - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getChar(offset + 2 + 4 * mid) <= value) low = mid + 1; else high = mid - 1;
+        }
+        if (high < 0) return false;
+        int start = buffer.getChar(offset + 2 + 4 * high);
+        return value <= start + buffer.getChar(offset + 4 + 4 * high);
+    }
+}
@@ -0,0 +1,769 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+// A compressed bitmap set of ints in the style of Roaring bitmaps.
+//
+// Each int is split into a 16-bit high key and a 16-bit low value. Values
+// sharing a high key go into one container, and each container picks the
+// cheapest of three encodings:
+// - ArrayContainer:  sorted char[] of low values, used up to 4096 values (2 bytes per value)
+// - BitmapContainer: 65536-bit long[1024] bitmap, used above 4096 values (8 KB)
+// - RunContainer:    (start, length) runs, chosen by runOptimize() for long consecutive ranges
+//
+// Dense ids cost about 1 bit each and sparse ids 2 bytes each, instead of the
+// ~50 bytes of an Integer in a HashSet/TreeSet. Values are ordered as unsigned
+// ints, so iteration is ascending for non-negative ids.
+public class RoaringBitmap {
+    static final int ARRAY_MAX = 4096;
+    static final int BITMAP_WORDS = 1024;
+
+    // Serialized format, shared with MappedRoaringBitmap (little-endian):
+    //   int magic, int containerCount,
+    //   containerCount * (char key, char type, int cardinality, int payloadOffset),
+    //   payloads: array -> cardinality chars, bitmap -> 1024 longs,
+    //             run -> char runCount + runCount * (char start, char lengthMinusOne)
+    static final int MAGIC = 0x52424D31; // "RBM1"
+    static final int HEADER_BYTES = 8;
+    static final int ENTRY_BYTES = 12;
+    static final int TYPE_ARRAY = 0;
+    static final int TYPE_BITMAP = 1;
+    static final int TYPE_RUN = 2;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size; // containers in use
+
+    public RoaringBitmap() {
+    }
+
+    public static RoaringBitmap bitmapOf(int... values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) bitmap.add(value);
+        return bitmap;
+    }
+
+    public void add(int value) {
+        char high = highBits(value);
+        int i = indexOf(high);
+        if (i >= 0) {
+            containers[i] = containers[i].add(lowBits(value));
+        } else {
+            ArrayContainer container = new ArrayContainer();
+            container.add(lowBits(value));
+            insertContainerAt(-i - 1, high, container);
+        }
+    }
+
+    public void remove(int value) {
+        int i = indexOf(highBits(value));
+        if (i < 0) return;
+        Container container = containers[i].remove(lowBits(value));
+        if (container.cardinality() == 0) {
+            removeContainerAt(i);
+        } else {
+            containers[i] = container;
+        }
+    }
+
+    public boolean contains(int value) {
+        int i = indexOf(highBits(value));
+        return i >= 0 && containers[i].contains(lowBits(value));
+    }
+
+    public long getCardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) cardinality += containers[i].cardinality();
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                result.appendIfNotEmpty(a.keys[i], a.containers[i].and(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.appendIfNotEmpty(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (i == a.size || a.keys[i] > b.keys[j]) {
+                result.appendIfNotEmpty(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                result.appendIfNotEmpty(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            while (j < b.size && b.keys[j] < a.keys[i]) j++;
+            if (j < b.size && b.keys[j] == a.keys[i]) {
+                result.appendIfNotEmpty(a.keys[i], a.containers[i].andNot(b.containers[j]));
+            } else {
+                result.appendIfNotEmpty(a.keys[i], a.containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    // Ascending (unsigned) order
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int containerIndex;
+            private int nextLow = size > 0 ? containers[0].nextValue(0) : -1;
+
+            @Override
+            public boolean hasNext() {
+                return containerIndex < size;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int value = keys[containerIndex] << 16 | nextLow;
+                nextLow = nextLow < 0xFFFF ? containers[containerIndex].nextValue(nextLow + 1) : -1;
+                while (nextLow < 0 && ++containerIndex < size) {
+                    nextLow = containers[containerIndex].nextValue(0);
+                }
+                return value;
+            }
+        };
+    }
+
+    // Converts containers to run encoding wherever that is smaller.
+    public void runOptimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].runOptimize();
+        }
+    }
+
+    // Approximate heap footprint: key/container arrays plus container payloads
+    public long getSizeInBytes() {
+        long bytes = 16 + keys.length * 2L + containers.length * 4L;
+        for (int i = 0; i < size; i++) bytes += 16 + containers[i].payloadCapacityBytes();
+        return bytes;
+    }
+
+    public int serializedSizeInBytes() {
+        int bytes = HEADER_BYTES + size * ENTRY_BYTES;
+        for (int i = 0; i < size; i++) bytes += containers[i].payloadBytes();
+        return bytes;
+    }
+
+    // Writes the bitmap at the buffer's position; see MappedRoaringBitmap for reading it back in place.
+    public void serialize(ByteBuffer out) {
+        ByteBuffer buffer = out.slice().order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(size);
+        int offset = HEADER_BYTES + size * ENTRY_BYTES;
+        for (int i = 0; i < size; i++) {
+            buffer.putChar(keys[i]);
+            buffer.putChar((char) containers[i].type());
+            buffer.putInt(containers[i].cardinality());
+            buffer.putInt(offset);
+            offset += containers[i].payloadBytes();
+        }
+        for (int i = 0; i < size; i++) {
+            containers[i].writePayload(buffer);
+        }
+        out.position(out.position() + buffer.position());
+    }
+
+    public static RoaringBitmap deserialize(ByteBuffer in) {
+        return new MappedRoaringBitmap(in).toRoaringBitmap();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach(value -> {
+            if (sb.length() > 1) sb.append(',');
+            sb.append(Integer.toUnsignedString(value));
+        });
+        return sb.append('}').toString();
+    }
+
+    // Used by MappedRoaringBitmap to rebuild a heap copy
+    void append(char key, int type, int cardinality, char[] values, long[] words) {
+        Container container;
+        if (type == TYPE_ARRAY) {
+            container = new ArrayContainer(values, cardinality);
+        } else if (type == TYPE_BITMAP) {
+            container = new BitmapContainer(words, cardinality);
+        } else {
+            container = new RunContainer(values, values.length / 2);
+        }
+        appendIfNotEmpty(key, container);
+    }
+
+    private void appendIfNotEmpty(char key, Container container) {
+        if (container.cardinality() > 0) insertContainerAt(size, key, container);
+    }
+
+    private int indexOf(char high) {
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    private void insertContainerAt(int i, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+    }
+
+    private void removeContainerAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    private static char highBits(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char lowBits(int value) {
+        return (char) value;
+    }
+
+    // ---- Containers ----
+    // Mutating methods return the container to keep using, which may be a
+    // different encoding if the cardinality crossed ARRAY_MAX.
+
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        // Smallest value >= from, or -1
+        abstract int nextValue(int from);
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract Container copy();
+
+        abstract int type();
+
+        abstract int payloadBytes();
+
+        abstract void writePayload(ByteBuffer buffer);
+
+        int payloadCapacityBytes() {
+            return payloadBytes();
+        }
+
+        // Array or bitmap form, used by operations that do not handle runs
+        abstract Container toArrayOrBitmap();
+
+        Container runOptimize() {
+            int runs = numberOfRuns();
+            int runBytes = 2 + runs * 4;
+            if (runBytes >= payloadBytes()) return this;
+            char[] pairs = new char[runs * 2];
+            int[] n = {0};
+            int[] previous = {-2};
+            forEach(0, value -> {
+                if (value == previous[0] + 1) {
+                    pairs[n[0] - 1]++;
+                } else {
+                    pairs[n[0]++] = (char) value;
+                    pairs[n[0]++] = 0;
+                }
+                previous[0] = value;
+            });
+            return new RunContainer(pairs, runs);
+        }
+
+        int numberOfRuns() {
+            int[] runs = {0};
+            int[] previous = {-2};
+            forEach(0, value -> {
+                if (value != previous[0] + 1) runs[0]++;
+                previous[0] = value;
+            });
+            return runs[0];
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int pos = Arrays.binarySearch(values, 0, cardinality, value);
+            if (pos >= 0) return this;
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            pos = -pos - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, pos, values, pos + 1, cardinality - pos);
+            values[pos] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int pos = Arrays.binarySearch(values, 0, cardinality, value);
+            if (pos >= 0) {
+                System.arraycopy(values, pos + 1, values, pos, cardinality - pos - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int nextValue(int from) {
+            int pos = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (pos < 0) pos = -pos - 1;
+            return pos < cardinality ? values[pos] : -1;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) action.accept(high | values[i]);
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int n = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                int i = 0, j = 0;
+                while (i < cardinality && j < o.cardinality) {
+                    if (values[i] < o.values[j]) i++;
+                    else if (values[i] > o.values[j]) j++;
+                    else {
+                        result[n++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) result[n++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (!(other instanceof ArrayContainer)) {
+                return other.or(this);
+            }
+            ArrayContainer o = (ArrayContainer) other;
+            char[] merged = new char[cardinality + o.cardinality];
+            int i = 0, j = 0, n = 0;
+            while (i < cardinality && j < o.cardinality) {
+                if (values[i] < o.values[j]) merged[n++] = values[i++];
+                else if (values[i] > o.values[j]) merged[n++] = o.values[j++];
+                else {
+                    merged[n++] = values[i++];
+                    j++;
+                }
+            }
+            while (i < cardinality) merged[n++] = values[i++];
+            while (j < o.cardinality) merged[n++] = o.values[j++];
+            ArrayContainer result = new ArrayContainer(merged, n);
+            return n > ARRAY_MAX ? result.toBitmap() : result;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) result[n++] = values[i];
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        @Override
+        int type() {
+            return TYPE_ARRAY;
+        }
+
+        @Override
+        int payloadBytes() {
+            return cardinality * 2;
+        }
+
+        @Override
+        int payloadCapacityBytes() {
+            return 16 + values.length * 2;
+        }
+
+        @Override
+        void writePayload(ByteBuffer buffer) {
+            for (int i = 0; i < cardinality; i++) buffer.putChar(values[i]);
+        }
+
+        @Override
+        Container toArrayOrBitmap() {
+            return this;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) bitmap.set(values[i]);
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+        int cardinality;
+
+        BitmapContainer() {
+            this(new long[BITMAP_WORDS], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        void set(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            words[value >>> 6] = after;
+            if (before != after) cardinality++;
+        }
+
+        @Override
+        Container add(char value) {
+            set(value);
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            long after = before & ~(1L << value);
+            words[value >>> 6] = after;
+            if (before != after) cardinality--;
+            return cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int nextValue(int from) {
+            int w = from >>> 6;
+            long word = words[w] & (-1L << from);
+            while (true) {
+                if (word != 0) return w * 64 + Long.numberOfTrailingZeros(word);
+                if (++w == BITMAP_WORDS) return -1;
+                word = words[w];
+            }
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    action.accept(high | (w * 64 + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container and(Container other) {
+            Container o = other.toArrayOrBitmap();
+            if (o instanceof ArrayContainer) return o.and(this);
+            long[] otherWords = ((BitmapContainer) o).words;
+            long[] result = new long[BITMAP_WORDS];
+            int cardinality = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = words[w] & otherWords[w];
+                cardinality += Long.bitCount(result[w]);
+            }
+            return normalize(result, cardinality);
+        }
+
+        @Override
+        Container or(Container other) {
+            Container o = other.toArrayOrBitmap();
+            if (o instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) o;
+                BitmapContainer result = (BitmapContainer) copy();
+                for (int i = 0; i < array.cardinality; i++) result.set(array.values[i]);
+                return result;
+            }
+            long[] otherWords = ((BitmapContainer) o).words;
+            long[] result = new long[BITMAP_WORDS];
+            int cardinality = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = words[w] | otherWords[w];
+                cardinality += Long.bitCount(result[w]);
+            }
+            return new BitmapContainer(result, cardinality);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            Container o = other.toArrayOrBitmap();
+            long[] result = words.clone();
+            if (o instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) o;
+                for (int i = 0; i < array.cardinality; i++) {
+                    char value = array.values[i];
+                    result[value >>> 6] &= ~(1L << value);
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) o).words;
+                for (int w = 0; w < BITMAP_WORDS; w++) result[w] &= ~otherWords[w];
+            }
+            int cardinality = 0;
+            for (long word : result) cardinality += Long.bitCount(word);
+            return normalize(result, cardinality);
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        int type() {
+            return TYPE_BITMAP;
+        }
+
+        @Override
+        int payloadBytes() {
+            return BITMAP_WORDS * 8;
+        }
+
+        @Override
+        void writePayload(ByteBuffer buffer) {
+            for (long word : words) buffer.putLong(word);
+        }
+
+        @Override
+        Container toArrayOrBitmap() {
+            return this;
+        }
+
+        private static Container normalize(long[] words, int cardinality) {
+            BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+            return cardinality <= ARRAY_MAX ? bitmap.toArray() : bitmap;
+        }
+
+        ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int[] n = {0};
+            forEach(0, value -> values[n[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+
+    // Runs are stored as pairs (start, length - 1). Run containers are only
+    // created by runOptimize(); mutating one converts it back to array/bitmap.
+    private static final class RunContainer extends Container {
+        final char[] runs;
+        final int runCount;
+        final int cardinality;
+
+        RunContainer(char[] runs, int runCount) {
+            this.runs = runs;
+            this.runCount = runCount;
+            int cardinality = 0;
+            for (int r = 0; r < runCount; r++) cardinality += runs[2 * r + 1] + 1;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            return contains(value) ? this : toArrayOrBitmap().add(value);
+        }
+
+        @Override
+        Container remove(char value) {
+            return contains(value) ? toArrayOrBitmap().remove(value) : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            int r = runIndex(value);
+            return r >= 0 && value <= runs[2 * r] + runs[2 * r + 1];
+        }
+
+        // Index of the last run starting at or before value, or -1
+        private int runIndex(int value) {
+            int low = 0;
+            int high = runCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (runs[2 * mid] <= value) low = mid + 1; else high = mid - 1;
+            }
+            return high;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int nextValue(int from) {
+            int r = runIndex(from);
+            if (r >= 0 && from <= runs[2 * r] + runs[2 * r + 1]) return from;
+            return r + 1 < runCount ? runs[2 * (r + 1)] : -1;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int r = 0; r < runCount; r++) {
+                int start = runs[2 * r];
+                int end = start + runs[2 * r + 1];
+                for (int v = start; v <= end; v++) action.accept(high | v);
+            }
+        }
+
+        @Override
+        Container and(Container other) {
+            return toArrayOrBitmap().and(other);
+        }
+
+        @Override
+        Container or(Container other) {
+            return toArrayOrBitmap().or(other);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            return toArrayOrBitmap().andNot(other);
+        }
+
+        @Override
+        Container copy() {
+            return this; // immutable
+        }
+
+        @Override
+        int type() {
+            return TYPE_RUN;
+        }
+
+        @Override
+        int payloadBytes() {
+            return 2 + runCount * 4;
+        }
+
+        @Override
+        void writePayload(ByteBuffer buffer) {
+            buffer.putChar((char) runCount);
+            for (int i = 0; i < runCount * 2; i++) buffer.putChar(runs[i]);
+        }
+
+        @Override
+        Container toArrayOrBitmap() {
+            if (cardinality <= ARRAY_MAX) {
+                char[] values = new char[cardinality];
+                int[] n = {0};
+                forEach(0, value -> values[n[0]++] = (char) value);
+                return new ArrayContainer(values, cardinality);
+            }
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int r = 0; r < runCount; r++) {
+                int start = runs[2 * r];
+                int end = start + runs[2 * r + 1];
+                for (int v = start; v <= end; v++) bitmap.set((char) v);
+            }
+            return bitmap;
+        }
+
+        @Override
+        Container runOptimize() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+// Memory and speed of HashSet<Integer> against RoaringBitmap for a set of
+// dense ids (half of the ids in [0, 2n)). HashSet needs a large heap:
+//   java -Xmx4g RoaringBitmapBenchmark 10000000
+public class RoaringBitmapBenchmark {
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Random random = new Random(42);
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) ids[i] = random.nextInt(2 * n);
+
+        long before = usedMemory();
+        long start = System.nanoTime();
+        Set<Integer> hashSet = new HashSet<>();
+        for (int id : ids) hashSet.add(id);
+        long hashSetBuild = System.nanoTime() - start;
+        long hashSetBytes = usedMemory() - before;
+
+        start = System.nanoTime();
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int id : ids) bitmap.add(id);
+        long bitmapBuild = System.nanoTime() - start;
+        long bitmapBytes = bitmap.getSizeInBytes();
+
+        System.out.printf("n = %,d inserts, %,d distinct ids%n", n, bitmap.getCardinality());
+        System.out.printf("%-24s %8d ms %10.2f bytes/id%n", "HashSet<Integer>", hashSetBuild / 1_000_000, (double) hashSetBytes / hashSet.size());
+        System.out.printf("%-24s %8d ms %10.2f bytes/id (serialized %.2f)%n", "RoaringBitmap", bitmapBuild / 1_000_000,
+                (double) bitmapBytes / bitmap.getCardinality(), (double) bitmap.serializedSizeInBytes() / bitmap.getCardinality());
+
+        int[] probes = new int[n];
+        for (int i = 0; i < n; i++) probes[i] = random.nextInt(2 * n);
+        for (int round = 1; round <= 3; round++) {
+            System.out.println("Round " + round);
+            start = System.nanoTime();
+            int hits = 0;
+            for (int probe : probes) if (hashSet.contains(probe)) hits++;
+            report("HashSet contains", System.nanoTime() - start, hits);
+
+            start = System.nanoTime();
+            hits = 0;
+            for (int probe : probes) if (bitmap.contains(probe)) hits++;
+            report("RoaringBitmap contains", System.nanoTime() - start, hits);
+
+            RoaringBitmap other = new RoaringBitmap();
+            for (int i = 0; i < n; i += 2) other.add(probes[i]);
+            start = System.nanoTime();
+            long cardinality = RoaringBitmap.and(bitmap, other).getCardinality()
+                    + RoaringBitmap.or(bitmap, other).getCardinality()
+                    + RoaringBitmap.andNot(bitmap, other).getCardinality();
+            report("RoaringBitmap and+or+andNot", System.nanoTime() - start, cardinality);
+
+            ByteBuffer serialized = ByteBuffer.allocateDirect(bitmap.serializedSizeInBytes());
+            bitmap.serialize(serialized);
+            serialized.flip();
+            MappedRoaringBitmap mapped = new MappedRoaringBitmap(serialized);
+            start = System.nanoTime();
+            hits = 0;
+            for (int probe : probes) if (mapped.contains(probe)) hits++;
+            report("MappedRoaringBitmap contains", System.nanoTime() - start, hits);
+        }
+    }
+
+    private static void report(String name, long nanos, long result) {
+        System.out.printf("  %-30s %8.1f ms  (result %d)%n", name, nanos / 1e6, result);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
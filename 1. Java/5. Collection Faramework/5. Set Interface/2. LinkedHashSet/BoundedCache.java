@@ -0,0 +1,549 @@
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
+
+// A concurrent, bounded cache with W-TinyLFU eviction.
+//
+// The usual LRU cache is an access-ordered LinkedHashMap behind one lock: every
+// get() reorders the linked list, so every reader takes the lock. Here:
+// - Entries live in a ConcurrentHashMap, so get() never locks.
+// - A get() only records "this entry was read" in a small per-thread-stripe
+//   ring buffer. Writes record their change in a write buffer.
+// - Whoever gets the eviction lock (tryLock, so nobody waits) drains both
+//   buffers in a batch and updates the eviction order and frequency sketch.
+//
+// Eviction policy (W-TinyLFU): new entries enter a small LRU "window" (1% of
+// capacity). Entries leaving the window become candidates for the main space,
+// an LRU split into probation (20%) and protected (80%) segments. A candidate
+// only replaces the probation victim if a count-min sketch (FrequencySketch)
+// says it has been used more often recently. This keeps one-hit wonders from
+// flushing popular entries, which plain LRU cannot do.
+//
+// The read buffers are lossy: when a stripe is full, the read is dropped from
+// the policy (never from the data), which only makes the ordering slightly
+// less precise.
+public class BoundedCache<K, V> {
+    private static final int READ_BUFFER_SIZE = 16; // power of two
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int WRITE_BUFFER_MAX = 1024;
+    private static final double WINDOW_FRACTION = 0.01;
+    private static final double PROTECTED_FRACTION = 0.80;
+    private static final int ADMIT_HASHDOS_THRESHOLD = 6;
+
+    private static final int NOT_LINKED = 0;
+    private static final int WINDOW = 1;
+    private static final int PROBATION = 2;
+    private static final int PROTECTED = 3;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final long maximumWeight;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    private final long expireAfterWriteNanos; // 0 = entries never expire
+    private final LongSupplier ticker;
+
+    private final ReadBuffer<K, V>[] readBuffers;
+    private final Queue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+
+    // Everything below is guarded by evictionLock
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque<K, V> window = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> probation = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> protectedSegment = new AccessOrderDeque<>();
+    private final WriteOrderDeque<K, V> writeOrder = new WriteOrderDeque<>();
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private long windowWeight;
+    private long protectedWeight;
+    private long totalWeight;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private BoundedCache(Builder<K, V> builder) {
+        maximumWeight = builder.maximumWeight;
+        weigher = builder.weigher;
+        expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        ticker = builder.ticker;
+
+        windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_FRACTION));
+        protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_FRACTION);
+        sketch = new FrequencySketch(builder.weigher == null ? maximumWeight : Math.min(maximumWeight, 1 << 20));
+
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+        readBuffers = new ReadBuffer[stripes];
+        for (int i = 0; i < stripes; i++) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    // Returns the cached value, or null if absent or expired. Never blocks.
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null || isExpired(node, now())) {
+            missCount.increment();
+            return null;
+        }
+        V value = node.value;
+        afterRead(node);
+        hitCount.increment();
+        return value;
+    }
+
+    // Returns the cached value, loading and caching it on a miss. The loader is
+    // not run under a lock, so under contention it may run more than once per key.
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) put(key, value);
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        int weight = weigh(key, value);
+        long now = now();
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node<K, V>[] result = new Node[2]; // [0] = created, [1] = updated
+        data.compute(key, (k, old) -> {
+            if (old == null) {
+                return result[0] = new Node<>(k, value, weight, now);
+            }
+            old.value = value;
+            old.weight = weight;
+            old.writeTime = now;
+            return result[1] = old;
+        });
+        if (result[0] != null) {
+            Node<K, V> created = result[0];
+            afterWrite(() -> onAdd(created));
+        } else {
+            Node<K, V> updated = result[1];
+            afterWrite(() -> onUpdate(updated));
+        }
+    }
+
+    public void invalidate(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node != null) {
+            node.retired = true;
+            afterWrite(() -> onRemove(node));
+        }
+    }
+
+    // Number of mappings, including expired ones not cleaned up yet.
+    public long estimatedSize() {
+        return data.mappingCount();
+    }
+
+    public long weightedSize() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), expirationCount.sum());
+    }
+
+    // Runs pending maintenance (buffer draining, expiration, eviction) now.
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    // ---- Buffering ----
+
+    private void afterRead(Node<K, V> node) {
+        int stripe = (int) (Thread.currentThread().getId() * 0x9E3779B9L >>> 16) & (readBuffers.length - 1);
+        if (readBuffers[stripe].offer(node)) {
+            tryMaintenance();
+        }
+    }
+
+    private void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        if (pendingWrites.incrementAndGet() > WRITE_BUFFER_MAX) {
+            // Writers outpace maintenance: wait for the lock to keep the buffer bounded
+            cleanUp();
+        } else {
+            tryMaintenance();
+        }
+    }
+
+    private void tryMaintenance() {
+        do {
+            if (!evictionLock.tryLock()) return;
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+            // A write may have been queued after we drained but before we unlocked
+        } while (!writeBuffer.isEmpty());
+    }
+
+    private void maintenance() {
+        for (ReadBuffer<K, V> buffer : readBuffers) {
+            buffer.drain(this);
+        }
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            pendingWrites.decrementAndGet();
+            task.run();
+        }
+        expireEntries();
+        evictEntries();
+    }
+
+    // ---- Policy (all called with evictionLock held) ----
+
+    private void onAdd(Node<K, V> node) {
+        if (node.retired) return; // removed before it was ever linked
+        sketch.increment(node.key);
+        node.policyWeight = node.weight;
+        totalWeight += node.policyWeight;
+        windowWeight += node.policyWeight;
+        node.queue = WINDOW;
+        window.addLast(node);
+        if (expireAfterWriteNanos > 0) writeOrder.addLast(node);
+    }
+
+    private void onUpdate(Node<K, V> node) {
+        if (node.queue == NOT_LINKED) return; // its onAdd has not run yet, or it was evicted
+        int delta = node.weight - node.policyWeight;
+        node.policyWeight = node.weight;
+        totalWeight += delta;
+        if (node.queue == WINDOW) windowWeight += delta;
+        if (node.queue == PROTECTED) protectedWeight += delta;
+        if (expireAfterWriteNanos > 0) writeOrder.moveToBack(node);
+        onAccess(node);
+    }
+
+    private void onRemove(Node<K, V> node) {
+        if (node.queue != NOT_LINKED) unlink(node);
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (node.queue == NOT_LINKED) return;
+        sketch.increment(node.key);
+        if (node.queue == WINDOW) {
+            window.moveToBack(node);
+        } else if (node.queue == PROBATION) {
+            // A second hit promotes the entry to the protected segment
+            probation.remove(node);
+            protectedSegment.addLast(node);
+            node.queue = PROTECTED;
+            protectedWeight += node.policyWeight;
+            while (protectedWeight > protectedMaximum && protectedSegment.head != null) {
+                Node<K, V> demoted = protectedSegment.head;
+                protectedSegment.remove(demoted);
+                protectedWeight -= demoted.policyWeight;
+                probation.addLast(demoted);
+                demoted.queue = PROBATION;
+            }
+        } else {
+            protectedSegment.moveToBack(node);
+        }
+    }
+
+    private void expireEntries() {
+        if (expireAfterWriteNanos == 0) return;
+        long now = now();
+        Node<K, V> node;
+        while ((node = writeOrder.head) != null && isExpired(node, now)) {
+            Node<K, V> expired = node;
+            // Only remove the mapping if no put() refreshed it in the meantime
+            boolean[] removed = {false};
+            data.computeIfPresent(node.key, (k, current) -> {
+                if (current == expired && isExpired(current, now)) {
+                    removed[0] = true;
+                    return null;
+                }
+                return current;
+            });
+            if (removed[0]) {
+                expired.retired = true;
+                expirationCount.increment();
+                unlink(expired);
+            } else if (expired.retired) {
+                unlink(expired); // invalidated; its pending onRemove will find it unlinked
+            } else {
+                writeOrder.moveToBack(expired); // refreshed by a put()
+            }
+        }
+    }
+
+    private void evictEntries() {
+        // Entries pushed out of the window become admission candidates at the
+        // back of probation
+        Node<K, V> candidate = null;
+        while (windowWeight > windowMaximum && window.head != null) {
+            Node<K, V> node = window.head;
+            window.remove(node);
+            windowWeight -= node.policyWeight;
+            probation.addLast(node);
+            node.queue = PROBATION;
+            if (candidate == null) candidate = node;
+        }
+
+        while (totalWeight > maximumWeight) {
+            Node<K, V> victim = probation.head;
+            if (victim == null) {
+                victim = protectedSegment.head != null ? protectedSegment.head : window.head;
+                if (victim == null) break;
+                evict(victim);
+                continue;
+            }
+            if (candidate == null || victim == candidate) {
+                if (victim == candidate) candidate = candidate.next;
+                evict(victim);
+            } else if (admit(candidate, victim)) {
+                evict(victim);
+            } else {
+                Node<K, V> rejected = candidate;
+                candidate = candidate.next;
+                evict(rejected);
+            }
+        }
+    }
+
+    // TinyLFU: the candidate wins only if it was used more often recently.
+    // A little randomness stops an attacker from pinning a victim with hash collisions.
+    private boolean admit(Node<K, V> candidate, Node<K, V> victim) {
+        int candidateFrequency = sketch.frequency(candidate.key);
+        int victimFrequency = sketch.frequency(victim.key);
+        if (candidateFrequency > victimFrequency) return true;
+        if (candidateFrequency < ADMIT_HASHDOS_THRESHOLD) return false;
+        return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+    }
+
+    private void evict(Node<K, V> node) {
+        if (data.remove(node.key, node)) {
+            node.retired = true;
+            evictionCount.increment();
+        }
+        unlink(node);
+    }
+
+    private void unlink(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowWeight -= node.policyWeight;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedSegment.remove(node);
+                protectedWeight -= node.policyWeight;
+                break;
+            default:
+                return;
+        }
+        totalWeight -= node.policyWeight;
+        node.queue = NOT_LINKED;
+        if (expireAfterWriteNanos > 0) writeOrder.remove(node);
+    }
+
+    private boolean isExpired(Node<K, V> node, long now) {
+        return expireAfterWriteNanos > 0 && now - node.writeTime >= expireAfterWriteNanos;
+    }
+
+    private long now() {
+        return expireAfterWriteNanos > 0 ? ticker.getAsLong() : 0L;
+    }
+
+    private int weigh(K key, V value) {
+        if (weigher == null) return 1;
+        int weight = weigher.applyAsInt(key, value);
+        if (weight < 0) throw new IllegalArgumentException("Negative weight: " + weight);
+        return weight;
+    }
+
+    // ---- Internals ----
+
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        volatile int weight;
+        volatile long writeTime;
+        volatile boolean retired; // no longer in the map
+
+        // Guarded by evictionLock
+        int policyWeight;
+        int queue = NOT_LINKED;
+        Node<K, V> prev;
+        Node<K, V> next;
+        Node<K, V> writePrev;
+        Node<K, V> writeNext;
+
+        Node(K key, V value, int weight, long writeTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = writeTime;
+        }
+    }
+
+    // Intrusive LRU list through Node.prev/next: head is least recently used
+    private static final class AccessOrderDeque<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) head = node; else tail.next = node;
+            tail = node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) head = node.next; else node.prev.next = node.next;
+            if (node.next == null) tail = node.prev; else node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    // Same list through Node.writePrev/writeNext: head is the oldest write
+    private static final class WriteOrderDeque<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+
+        void addLast(Node<K, V> node) {
+            node.writePrev = tail;
+            node.writeNext = null;
+            if (tail == null) head = node; else tail.writeNext = node;
+            tail = node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.writePrev == null) head = node.writeNext; else node.writePrev.writeNext = node.writeNext;
+            if (node.writeNext == null) tail = node.writePrev; else node.writeNext.writePrev = node.writePrev;
+            node.writePrev = null;
+            node.writeNext = null;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    // Bounded multi-producer ring buffer of read events, drained under the eviction lock.
+    private static final class ReadBuffer<K, V> {
+        final AtomicReferenceArray<Node<K, V>> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        final AtomicLong writeCount = new AtomicLong();
+        volatile long readCount;
+
+        // Records the read; returns true when the buffer is full and should be drained.
+        // Lossy: the event is dropped if the buffer is full or the slot is contended.
+        boolean offer(Node<K, V> node) {
+            long head = readCount;
+            long tail = writeCount.get();
+            if (tail - head >= READ_BUFFER_SIZE) return true;
+            if (writeCount.compareAndSet(tail, tail + 1)) {
+                slots.lazySet((int) (tail & READ_BUFFER_MASK), node);
+                return tail - head + 1 >= READ_BUFFER_SIZE;
+            }
+            return false;
+        }
+
+        void drain(BoundedCache<K, V> cache) {
+            long head = readCount;
+            long tail = writeCount.get();
+            for (; head < tail; head++) {
+                int index = (int) (head & READ_BUFFER_MASK);
+                Node<K, V> node = slots.get(index);
+                if (node == null) break; // claimed but not written yet; pick it up next time
+                slots.lazySet(index, null);
+                cache.onAccess(node);
+            }
+            readCount = head;
+        }
+    }
+
+    public static final class Builder<K, V> {
+        private long maximumWeight = -1;
+        private ToIntBiFunction<? super K, ? super V> weigher;
+        private long expireAfterWriteNanos;
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder() {
+        }
+
+        public Builder<K, V> maximumSize(long maximumSize) {
+            if (maximumSize < 1) throw new IllegalArgumentException("maximumSize must be positive");
+            this.maximumWeight = maximumSize;
+            this.weigher = null;
+            return this;
+        }
+
+        // Each entry counts as weigher(key, value) toward maximumWeight instead of 1
+        public Builder<K, V> maximumWeight(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+            if (maximumWeight < 1) throw new IllegalArgumentException("maximumWeight must be positive");
+            this.maximumWeight = maximumWeight;
+            this.weigher = Objects.requireNonNull(weigher);
+            return this;
+        }
+
+        public Builder<K, V> expireAfterWrite(Duration duration) {
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("expireAfterWrite must be positive");
+            }
+            this.expireAfterWriteNanos = duration.toNanos();
+            return this;
+        }
+
+        // Time source in nanoseconds, replaceable for tests and simulations
+        public Builder<K, V> ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker);
+            return this;
+        }
+
+        public BoundedCache<K, V> build() {
+            if (maximumWeight < 0) throw new IllegalStateException("maximumSize or maximumWeight is required");
+            return new BoundedCache<>(this);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+// Hit rate and throughput of BoundedCache (W-TinyLFU) against an access-ordered
+// LinkedHashMap LRU behind a lock, on Zipf-distributed keys.
+// Run with: java BoundedCacheBenchmark [keySpace] [threads]
+public class BoundedCacheBenchmark {
+    private static final double ZIPF_EXPONENT = 0.99;
+    private static final int TRACE_LENGTH = 2_000_000;
+    private static final int OPS_PER_THREAD = 2_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int keySpace = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int[] trace = zipfTrace(keySpace, TRACE_LENGTH, new Random(42));
+
+        System.out.println("Hit rate on a Zipf(" + ZIPF_EXPONENT + ") trace over " + keySpace + " keys");
+        for (double fraction : new double[] {0.001, 0.01, 0.1}) {
+            int capacity = (int) (keySpace * fraction);
+            BoundedCache<Integer, Integer> tinyLfu = BoundedCache.<Integer, Integer>builder().maximumSize(capacity).build();
+            LruCache lru = new LruCache(capacity);
+            double tinyLfuHitRate = hitRate(trace, key -> tinyLfu.get(key) != null, key -> tinyLfu.put(key, key));
+            double lruHitRate = hitRate(trace, key -> lru.get(key) != null, key -> lru.put(key, key));
+            System.out.printf("  capacity %8d: W-TinyLFU %6.2f%%  LRU %6.2f%%%n", capacity, tinyLfuHitRate * 100, lruHitRate * 100);
+        }
+
+        System.out.println("Throughput (90% reads), capacity = 1% of keys");
+        int capacity = keySpace / 100;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            BoundedCache<Integer, Integer> tinyLfu = BoundedCache.<Integer, Integer>builder().maximumSize(capacity).build();
+            LruCache lru = new LruCache(capacity);
+            double tinyLfuOps = throughput(threads, trace, tinyLfu::get, key -> tinyLfu.put(key, key));
+            double lruOps = throughput(threads, trace, lru::get, key -> lru.put(key, key));
+            System.out.printf("  %2d threads: W-TinyLFU %7.2f Mop/s  LRU %7.2f Mop/s%n", threads, tinyLfuOps, lruOps);
+        }
+    }
+
+    private static double hitRate(int[] trace, IntPredicate get, IntConsumer put) {
+        int hits = 0;
+        for (int key : trace) {
+            if (get.test(key)) {
+                hits++;
+            } else {
+                put.accept(key);
+            }
+        }
+        return (double) hits / trace.length;
+    }
+
+    private static double throughput(int threads, int[] trace, IntFunction<Integer> get,
+                                     IntConsumer put) throws InterruptedException {
+        for (int key : trace) put.accept(key); // warm up to a steady state
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int offset = t * (trace.length / threads);
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        int key = trace[(offset + i) % trace.length];
+                        if (i % 10 == 0) put.accept(key); else get.apply(key);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return (double) threads * OPS_PER_THREAD / (System.nanoTime() - begin) * 1_000;
+    }
+
+    // Keys 0..n-1 where key k has probability proportional to 1 / (k + 1)^s
+    private static int[] zipfTrace(int n, int length, Random random) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, ZIPF_EXPONENT);
+            cdf[k] = sum;
+        }
+        // Scatter ranks over the key space so popular keys are not all adjacent
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; i++) permutation[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = tmp;
+        }
+        int[] trace = new int[length];
+        for (int i = 0; i < length; i++) {
+            double u = random.nextDouble() * sum;
+            int rank = Arrays.binarySearch(cdf, u);
+            if (rank < 0) rank = -rank - 1;
+            trace[i] = permutation[Math.min(rank, n - 1)];
+        }
+        return trace;
+    }
+
+    // The classic LRU cache: access-ordered LinkedHashMap under one lock
+    private static final class LruCache {
+        private final Map<Integer, Integer> map;
+
+        LruCache(int capacity) {
+            map = new LinkedHashMap<Integer, Integer>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized Integer get(int key) {
+            return map.get(key);
+        }
+
+        synchronized void put(int key, int value) {
+            map.put(key, value);
+        }
+    }
+}
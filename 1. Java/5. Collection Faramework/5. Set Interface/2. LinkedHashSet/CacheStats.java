@@ -0,0 +1,47 @@
+// Immutable snapshot of BoundedCache counters.
+public final class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long expirationCount;
+
+    CacheStats(long hitCount, long missCount, long evictionCount, long expirationCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.expirationCount = expirationCount;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    // Entries removed to stay within the size/weight bound
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    // Entries removed because they outlived expireAfterWrite
+    public long expirationCount() {
+        return expirationCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats{hits=%d, misses=%d, hitRate=%.4f, evictions=%d, expirations=%d}",
+                hitCount, missCount, hitRate(), evictionCount, expirationCount);
+    }
+}
@@ -0,0 +1,573 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.OptionalInt;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+// A sorted set of primitive ints stored in a B+tree.
+//
+// TreeSet<Integer> uses one red-black tree node (~40 bytes) plus one Integer
+// (~16 bytes) per element, and walking it jumps between scattered objects.
+// Here all values live in wide int[] leaves (about 4-5 bytes per element),
+// leaves are linked left to right, so a range scan is a walk over arrays.
+//
+// Removal does not merge underfull leaves; only empty leaves are dropped.
+// After heavy removals, rebuild with fromSorted() to compact the tree.
+public class BPlusTreeIntSet implements IntSortedSet {
+    private static final int LEAF_CAPACITY = 128;
+    private static final int INNER_CAPACITY = 64;
+
+    // Bounds of the whole int range as a half-open [lo, hi) pair of longs
+    private static final long MIN = Integer.MIN_VALUE;
+    private static final long MAX_EXCLUSIVE = Integer.MAX_VALUE + 1L;
+
+    private Node root = new Leaf();
+    private Leaf head = (Leaf) root;
+    private Leaf tail = head;
+    private int size;
+    private int modCount;
+
+    public BPlusTreeIntSet() {
+    }
+
+    // Builds a tree with full leaves from strictly ascending values in O(n).
+    public static BPlusTreeIntSet fromSorted(int[] sorted) {
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i - 1] >= sorted[i]) {
+                throw new IllegalArgumentException("Input is not strictly ascending at index " + i);
+            }
+        }
+        BPlusTreeIntSet set = new BPlusTreeIntSet();
+        if (sorted.length == 0) return set;
+
+        int leafCount = (sorted.length + LEAF_CAPACITY - 1) / LEAF_CAPACITY;
+        Node[] level = new Node[leafCount];
+        int[] lowKeys = new int[leafCount];
+        Leaf previous = null;
+        for (int i = 0; i < leafCount; i++) {
+            Leaf leaf = new Leaf();
+            int from = i * LEAF_CAPACITY;
+            leaf.count = Math.min(LEAF_CAPACITY, sorted.length - from);
+            System.arraycopy(sorted, from, leaf.keys, 0, leaf.count);
+            leaf.prev = previous;
+            if (previous != null) previous.next = leaf;
+            previous = leaf;
+            level[i] = leaf;
+            lowKeys[i] = sorted[from];
+        }
+        set.head = (Leaf) level[0];
+        set.tail = previous;
+
+        // Build inner levels bottom-up until a single root is left
+        int fanout = INNER_CAPACITY + 1;
+        while (level.length > 1) {
+            int parentCount = (level.length + fanout - 1) / fanout;
+            Node[] parents = new Node[parentCount];
+            int[] parentLowKeys = new int[parentCount];
+            for (int p = 0; p < parentCount; p++) {
+                Inner inner = new Inner();
+                int from = p * fanout;
+                int children = Math.min(fanout, level.length - from);
+                System.arraycopy(level, from, inner.children, 0, children);
+                System.arraycopy(lowKeys, from + 1, inner.keys, 0, children - 1);
+                inner.count = children - 1;
+                parents[p] = inner;
+                parentLowKeys[p] = lowKeys[from];
+            }
+            level = parents;
+            lowKeys = parentLowKeys;
+        }
+        set.root = level[0];
+        set.size = sorted.length;
+        return set;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean contains(int value) {
+        Leaf leaf = findLeaf(value);
+        return Arrays.binarySearch(leaf.keys, 0, leaf.count, value) >= 0;
+    }
+
+    @Override
+    public boolean add(int value) {
+        int sizeBefore = size;
+        Node sibling = insert(root, value);
+        if (sibling != null) {
+            Inner newRoot = new Inner();
+            newRoot.children[0] = root;
+            newRoot.children[1] = sibling;
+            newRoot.keys[0] = splitKey;
+            newRoot.count = 1;
+            root = newRoot;
+        }
+        return size != sizeBefore;
+    }
+
+    @Override
+    public boolean remove(int value) {
+        int status = delete(root, value);
+        if (status == NOT_FOUND) return false;
+        if (status == REMOVED_AND_EMPTY && root instanceof Inner) {
+            root = head = tail = new Leaf();
+        }
+        // Collapse inner roots that are left with a single child
+        while (root instanceof Inner && root.count == 0) {
+            root = ((Inner) root).children[0];
+        }
+        return true;
+    }
+
+    public void clear() {
+        root = head = tail = new Leaf();
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int first() {
+        if (size == 0) throw new NoSuchElementException();
+        return head.keys[0];
+    }
+
+    @Override
+    public int last() {
+        if (size == 0) throw new NoSuchElementException();
+        return tail.keys[tail.count - 1];
+    }
+
+    @Override
+    public OptionalInt floor(int value) {
+        return floorInRange(value, MIN);
+    }
+
+    @Override
+    public OptionalInt ceiling(int value) {
+        return ceilingInRange(value, MAX_EXCLUSIVE);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return iterator(MIN, MAX_EXCLUSIVE);
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        forEach(MIN, MAX_EXCLUSIVE, action);
+    }
+
+    @Override
+    public IntSortedSet subSet(int fromInclusive, int toExclusive) {
+        if (fromInclusive > toExclusive) {
+            throw new IllegalArgumentException("fromInclusive > toExclusive");
+        }
+        return new RangeView(fromInclusive, toExclusive);
+    }
+
+    @Override
+    public IntSortedSet headSet(int toExclusive) {
+        return new RangeView(MIN, toExclusive);
+    }
+
+    @Override
+    public IntSortedSet tailSet(int fromInclusive) {
+        return new RangeView(fromInclusive, MAX_EXCLUSIVE);
+    }
+
+    @Override
+    public String toString() {
+        return rangeToString(MIN, MAX_EXCLUSIVE);
+    }
+
+    // ---- Insertion ----
+
+    // Separator produced by the last split; read by the caller right after insert() returns
+    private int splitKey;
+
+    // Inserts into the subtree and returns the new right sibling if the node split.
+    private Node insert(Node node, int value) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int pos = Arrays.binarySearch(leaf.keys, 0, leaf.count, value);
+            if (pos >= 0) return null;
+            pos = -pos - 1;
+            System.arraycopy(leaf.keys, pos, leaf.keys, pos + 1, leaf.count - pos);
+            leaf.keys[pos] = value;
+            leaf.count++;
+            size++;
+            modCount++;
+            return leaf.count > LEAF_CAPACITY ? splitLeaf(leaf, pos) : null;
+        }
+
+        Inner inner = (Inner) node;
+        int index = childIndex(inner, value);
+        Node sibling = insert(inner.children[index], value);
+        if (sibling == null) return null;
+
+        System.arraycopy(inner.keys, index, inner.keys, index + 1, inner.count - index);
+        System.arraycopy(inner.children, index + 1, inner.children, index + 2, inner.count - index);
+        inner.keys[index] = splitKey;
+        inner.children[index + 1] = sibling;
+        inner.count++;
+        return inner.count > INNER_CAPACITY ? splitInner(inner) : null;
+    }
+
+    private Node splitLeaf(Leaf leaf, int insertedAt) {
+        Leaf right = new Leaf();
+        // Appending in ascending order keeps the left leaf full instead of half empty
+        boolean append = leaf == tail && insertedAt == leaf.count - 1;
+        int keep = append ? LEAF_CAPACITY : leaf.count / 2;
+        right.count = leaf.count - keep;
+        System.arraycopy(leaf.keys, keep, right.keys, 0, right.count);
+        leaf.count = keep;
+
+        right.next = leaf.next;
+        right.prev = leaf;
+        if (leaf.next != null) leaf.next.prev = right; else tail = right;
+        leaf.next = right;
+
+        splitKey = right.keys[0];
+        return right;
+    }
+
+    private Node splitInner(Inner inner) {
+        Inner right = new Inner();
+        int mid = inner.count / 2;
+        right.count = inner.count - mid - 1;
+        System.arraycopy(inner.keys, mid + 1, right.keys, 0, right.count);
+        System.arraycopy(inner.children, mid + 1, right.children, 0, right.count + 1);
+        Arrays.fill(inner.children, mid + 1, inner.count + 1, null);
+        splitKey = inner.keys[mid];
+        inner.count = mid;
+        return right;
+    }
+
+    // ---- Removal ----
+
+    private static final int NOT_FOUND = 0;
+    private static final int REMOVED = 1;
+    private static final int REMOVED_AND_EMPTY = 2;
+
+    private int delete(Node node, int value) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int pos = Arrays.binarySearch(leaf.keys, 0, leaf.count, value);
+            if (pos < 0) return NOT_FOUND;
+            System.arraycopy(leaf.keys, pos + 1, leaf.keys, pos, leaf.count - pos - 1);
+            leaf.count--;
+            size--;
+            modCount++;
+            if (leaf.count > 0 || leaf == root) return REMOVED;
+            unlink(leaf);
+            return REMOVED_AND_EMPTY;
+        }
+
+        Inner inner = (Inner) node;
+        int index = childIndex(inner, value);
+        int status = delete(inner.children[index], value);
+        if (status != REMOVED_AND_EMPTY) return status;
+
+        // Drop the empty child together with the separator next to it
+        if (inner.count == 0) {
+            inner.children[0] = null;
+            return REMOVED_AND_EMPTY;
+        }
+        int keyIndex = index == 0 ? 0 : index - 1;
+        System.arraycopy(inner.keys, keyIndex + 1, inner.keys, keyIndex, inner.count - keyIndex - 1);
+        System.arraycopy(inner.children, index + 1, inner.children, index, inner.count - index);
+        inner.children[inner.count] = null;
+        inner.count--;
+        return REMOVED;
+    }
+
+    private void unlink(Leaf leaf) {
+        if (leaf.prev != null) leaf.prev.next = leaf.next; else head = leaf.next;
+        if (leaf.next != null) leaf.next.prev = leaf.prev; else tail = leaf.prev;
+    }
+
+    // ---- Search ----
+
+    private Leaf findLeaf(int value) {
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = inner.children[childIndex(inner, value)];
+        }
+        return (Leaf) node;
+    }
+
+    // Index of the child that may contain value: the number of separators <= value
+    private static int childIndex(Inner inner, int value) {
+        int low = 0;
+        int high = inner.count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (inner.keys[mid] <= value) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    // First position in the leaf holding a key >= value
+    private static int lowerBound(Leaf leaf, int value) {
+        int pos = Arrays.binarySearch(leaf.keys, 0, leaf.count, value);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+    // Smallest element >= value that is below hi
+    private OptionalInt ceilingInRange(long value, long hi) {
+        if (value >= hi || value > Integer.MAX_VALUE) return OptionalInt.empty();
+        int v = (int) Math.max(value, MIN);
+        Leaf leaf = findLeaf(v);
+        int pos = lowerBound(leaf, v);
+        if (pos == leaf.count) {
+            leaf = leaf.next;
+            pos = 0;
+        }
+        if (leaf == null || leaf.count == 0 || leaf.keys[pos] >= hi) return OptionalInt.empty();
+        return OptionalInt.of(leaf.keys[pos]);
+    }
+
+    // Greatest element <= value that is at least lo
+    private OptionalInt floorInRange(long value, long lo) {
+        if (value < lo || value < MIN) return OptionalInt.empty();
+        int v = (int) Math.min(value, Integer.MAX_VALUE);
+        Leaf leaf = findLeaf(v);
+        int pos = lowerBound(leaf, v);
+        if (pos == leaf.count || leaf.keys[pos] != v) pos--;
+        if (pos < 0) {
+            leaf = leaf.prev;
+            if (leaf == null) return OptionalInt.empty();
+            pos = leaf.count - 1;
+        }
+        if (pos < 0 || leaf.keys[pos] < lo) return OptionalInt.empty();
+        return OptionalInt.of(leaf.keys[pos]);
+    }
+
+    private int countRange(long lo, long hi) {
+        if (lo <= MIN && hi >= MAX_EXCLUSIVE) return size;
+        if (lo >= hi || size == 0) return 0;
+        Leaf leaf = findLeaf((int) lo);
+        int pos = lowerBound(leaf, (int) lo);
+        int count = 0;
+        while (leaf != null) {
+            if (leaf.count > 0 && leaf.keys[leaf.count - 1] < hi) {
+                count += leaf.count - pos;
+            } else {
+                // Last leaf that overlaps the range
+                int end = hi > Integer.MAX_VALUE ? leaf.count : lowerBound(leaf, (int) hi);
+                return count + Math.max(0, end - pos);
+            }
+            leaf = leaf.next;
+            pos = 0;
+        }
+        return count;
+    }
+
+    private void forEach(long lo, long hi, IntConsumer action) {
+        if (lo >= hi || size == 0) return;
+        Leaf leaf = findLeaf((int) lo);
+        int pos = lowerBound(leaf, (int) lo);
+        int expectedModCount = modCount;
+        for (; leaf != null; leaf = leaf.next, pos = 0) {
+            int[] keys = leaf.keys;
+            int count = leaf.count;
+            for (; pos < count; pos++) {
+                int key = keys[pos];
+                if (key >= hi) return;
+                action.accept(key);
+            }
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+        }
+    }
+
+    private PrimitiveIterator.OfInt iterator(long lo, long hi) {
+        return new RangeIterator(lo, hi);
+    }
+
+    private String rangeToString(long lo, long hi) {
+        StringBuilder sb = new StringBuilder("[");
+        forEach(lo, hi, value -> {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(value);
+        });
+        return sb.append(']').toString();
+    }
+
+    private void checkInRange(int value, long lo, long hi) {
+        if (value < lo || value >= hi) {
+            throw new IllegalArgumentException("Value out of range: " + value);
+        }
+    }
+
+    // ---- Nodes, iterator and views ----
+
+    private abstract static class Node {
+        int count; // keys in use
+        final int[] keys;
+
+        Node(int keyCapacity) {
+            keys = new int[keyCapacity];
+        }
+    }
+
+    private static final class Leaf extends Node {
+        Leaf prev;
+        Leaf next;
+
+        Leaf() {
+            super(LEAF_CAPACITY + 1); // one slot of slack so a full leaf can take the key before splitting
+        }
+    }
+
+    private static final class Inner extends Node {
+        final Node[] children = new Node[INNER_CAPACITY + 2];
+
+        Inner() {
+            super(INNER_CAPACITY + 1);
+        }
+    }
+
+    private final class RangeIterator implements PrimitiveIterator.OfInt {
+        private final long hi;
+        private Leaf leaf;
+        private int pos;
+        private int expectedModCount = modCount;
+
+        RangeIterator(long lo, long hi) {
+            this.hi = hi;
+            if (lo < hi && size > 0) {
+                leaf = findLeaf((int) lo);
+                pos = lowerBound(leaf, (int) lo);
+                advanceLeaf();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null && leaf.keys[pos] < hi;
+        }
+
+        @Override
+        public int nextInt() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (!hasNext()) throw new NoSuchElementException();
+            int value = leaf.keys[pos++];
+            advanceLeaf();
+            return value;
+        }
+
+        private void advanceLeaf() {
+            while (leaf != null && pos >= leaf.count) {
+                leaf = leaf.next;
+                pos = 0;
+            }
+        }
+    }
+
+    // A live [lo, hi) window onto the tree; nothing is copied.
+    private final class RangeView implements IntSortedSet {
+        private final long lo;
+        private final long hi;
+
+        RangeView(long lo, long hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        public int size() {
+            return countRange(lo, hi);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return !ceilingInRange(lo, hi).isPresent();
+        }
+
+        @Override
+        public boolean contains(int value) {
+            return value >= lo && value < hi && BPlusTreeIntSet.this.contains(value);
+        }
+
+        @Override
+        public boolean add(int value) {
+            checkInRange(value, lo, hi);
+            return BPlusTreeIntSet.this.add(value);
+        }
+
+        @Override
+        public boolean remove(int value) {
+            return value >= lo && value < hi && BPlusTreeIntSet.this.remove(value);
+        }
+
+        @Override
+        public int first() {
+            return ceilingInRange(lo, hi).orElseThrow(NoSuchElementException::new);
+        }
+
+        @Override
+        public int last() {
+            return floorInRange(hi - 1, lo).orElseThrow(NoSuchElementException::new);
+        }
+
+        @Override
+        public OptionalInt floor(int value) {
+            return floorInRange(Math.min(value, hi - 1), lo);
+        }
+
+        @Override
+        public OptionalInt ceiling(int value) {
+            return ceilingInRange(Math.max(value, lo), hi);
+        }
+
+        @Override
+        public PrimitiveIterator.OfInt iterator() {
+            return BPlusTreeIntSet.this.iterator(lo, hi);
+        }
+
+        @Override
+        public void forEach(IntConsumer action) {
+            BPlusTreeIntSet.this.forEach(lo, hi, action);
+        }
+
+        @Override
+        public IntSortedSet subSet(int fromInclusive, int toExclusive) {
+            if (fromInclusive > toExclusive) {
+                throw new IllegalArgumentException("fromInclusive > toExclusive");
+            }
+            return narrow(fromInclusive, toExclusive);
+        }
+
+        @Override
+        public IntSortedSet headSet(int toExclusive) {
+            return narrow(lo, toExclusive);
+        }
+
+        @Override
+        public IntSortedSet tailSet(int fromInclusive) {
+            return narrow(fromInclusive, hi);
+        }
+
+        private IntSortedSet narrow(long newLo, long newHi) {
+            if (newLo < lo || newHi > hi) {
+                throw new IllegalArgumentException("Range is outside of this view");
+            }
+            return new RangeView(newLo, newHi);
+        }
+
+        @Override
+        public String toString() {
+            return rangeToString(lo, hi);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.NavigableSet;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+// Memory and range-scan comparison of TreeSet<Integer> and BPlusTreeIntSet.
+// TreeSet needs a large heap at 10M elements:
+//   java -Xmx4g BPlusTreeIntSetBenchmark 10000000
+public class BPlusTreeIntSetBenchmark {
+    private static final int RANGE_QUERIES = 200;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        // Every other int, so the sets hold n elements spread over [0, 2n)
+        int[] sorted = new int[n];
+        for (int i = 0; i < n; i++) sorted[i] = i * 2;
+
+        long before = usedMemory();
+        TreeSet<Integer> treeSet = new TreeSet<>();
+        long start = System.nanoTime();
+        for (int value : sorted) treeSet.add(value);
+        long treeSetBuild = System.nanoTime() - start;
+        long treeSetBytes = usedMemory() - before;
+
+        before = usedMemory();
+        start = System.nanoTime();
+        BPlusTreeIntSet bulkLoaded = BPlusTreeIntSet.fromSorted(sorted);
+        long bulkLoad = System.nanoTime() - start;
+        long bulkLoadedBytes = usedMemory() - before;
+
+        before = usedMemory();
+        BPlusTreeIntSet inserted = new BPlusTreeIntSet();
+        start = System.nanoTime();
+        for (int value : sorted) inserted.add(value);
+        long insertBuild = System.nanoTime() - start;
+        long insertedBytes = usedMemory() - before;
+
+        System.out.printf("n = %,d%n", n);
+        System.out.printf("%-32s %8d ms %10.1f bytes/element%n", "TreeSet<Integer> add", treeSetBuild / 1_000_000, (double) treeSetBytes / n);
+        System.out.printf("%-32s %8d ms %10.1f bytes/element%n", "BPlusTreeIntSet add", insertBuild / 1_000_000, (double) insertedBytes / n);
+        System.out.printf("%-32s %8d ms %10.1f bytes/element%n", "BPlusTreeIntSet fromSorted", bulkLoad / 1_000_000, (double) bulkLoadedBytes / n);
+
+        int window = Math.max(1, n / 50); // each query covers ~1% of the set
+        for (int round = 1; round <= 3; round++) {
+            Random random = new Random(round);
+            int[] from = new int[RANGE_QUERIES];
+            for (int i = 0; i < RANGE_QUERIES; i++) from[i] = random.nextInt(2 * n);
+            System.out.println("Range scans, round " + round + " (" + RANGE_QUERIES + " queries)");
+            report("TreeSet.subSet for-each", scanTreeSet(treeSet, from, window));
+            report("BPlusTreeIntSet subSet iterator", scanIterator(bulkLoaded, from, window));
+            report("BPlusTreeIntSet subSet forEach", scanForEach(bulkLoaded, from, window));
+        }
+    }
+
+    private static long scanTreeSet(NavigableSet<Integer> set, int[] from, int window) {
+        long start = System.nanoTime();
+        long sum = 0;
+        for (int lo : from) {
+            for (Integer value : set.subSet(lo, lo + window)) sum += value;
+        }
+        sink += sum;
+        return System.nanoTime() - start;
+    }
+
+    private static long scanIterator(IntSortedSet set, int[] from, int window) {
+        long start = System.nanoTime();
+        long sum = 0;
+        for (int lo : from) {
+            for (PrimitiveIterator.OfInt it = set.subSet(lo, lo + window).iterator(); it.hasNext(); ) {
+                sum += it.nextInt();
+            }
+        }
+        sink += sum;
+        return System.nanoTime() - start;
+    }
+
+    private static long scanForEach(IntSortedSet set, int[] from, int window) {
+        long start = System.nanoTime();
+        long[] sum = new long[1];
+        for (int lo : from) {
+            set.subSet(lo, lo + window).forEach(value -> sum[0] += value);
+        }
+        sink += sum[0];
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.printf("  %-32s %8.2f ms%n", name, nanos / 1e6);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static volatile long sink;
+}
@@ -0,0 +1,39 @@
+import java.util.OptionalInt;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+// The SortedSet/NavigableSet operations for primitive ints, without boxing.
+// Range views follow SortedSet: subSet is [from, to), headSet is [.., to),
+// tailSet is [from, ..), and views write through to the backing set.
+public interface IntSortedSet {
+    int size();
+
+    boolean isEmpty();
+
+    boolean contains(int value);
+
+    boolean add(int value);
+
+    boolean remove(int value);
+
+    // Throws NoSuchElementException if the set is empty
+    int first();
+
+    int last();
+
+    // Greatest element <= value / least element >= value
+    OptionalInt floor(int value);
+
+    OptionalInt ceiling(int value);
+
+    PrimitiveIterator.OfInt iterator();
+
+    // Ascending traversal without an iterator object; fastest way to scan a range
+    void forEach(IntConsumer action);
+
+    IntSortedSet subSet(int fromInclusive, int toExclusive);
+
+    IntSortedSet headSet(int toExclusive);
+
+    IntSortedSet tailSet(int fromInclusive);
+}
@@ -1,3 +1,4 @@
+import java.util.SortedSet;
 import java.util.TreeSet;
 
 public class TreeSetExample {
@@ -29,8 +30,8 @@ public class TreeSetExample {
         System.out.println("First element: " + set.first()); // Output: 5
         System.out.println("Last element: " + set.last()); // Output: 20
 
-        // Subset view
-        TreeSet<Integer> subset = (TreeSet<Integer>) set.subSet(5, 20);
+        // Subset view (declared as SortedSet, the return type of subSet, rather than cast to TreeSet)
+        SortedSet<Integer> subset = set.subSet(5, 20);
         System.out.println("Subset: " + subset); // Output: [5, 15]
 
         // Clearing the set
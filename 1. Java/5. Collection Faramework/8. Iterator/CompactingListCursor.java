@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+// A forward ListIterator for array-backed lists (ArrayList, Vector, ...) that
+// makes remove() and add() O(1) during the pass and fixes up the list once,
+// in O(n), when the cursor is closed.
+//
+// ArrayList's own iterator shifts the whole tail on every remove()/add(), so
+// filtering a large list one element at a time is O(n^2). Here the kept
+// elements are instead copied down over the gaps as the cursor moves
+// ("two-pointer" compaction). Inserted elements that do not fit into a gap
+// wait in a small buffer and are merged in when the cursor closes.
+//
+// Usage:
+//   try (CompactingListCursor<String> cursor = CompactingListCursor.of(list)) {
+//       while (cursor.hasNext()) {
+//           String s = cursor.next();
+//           if (s.isEmpty()) cursor.remove();
+//       }
+//   }
+//
+// The list is in an intermediate state until close(); do not read or modify
+// it through any other reference while the cursor is open. Only forward
+// traversal is supported: previous() throws UnsupportedOperationException.
+public class CompactingListCursor<E> implements ListIterator<E>, AutoCloseable {
+    private final List<E> list;
+    private final int originalSize;
+
+    private int read;   // next unread position of the original list
+    private int write;  // next free output position; always <= read
+    private final List<E> overflow = new ArrayList<>(); // output that did not fit before read
+    private int overflowHead;
+
+    private E current;          // element returned by the last next(), not yet written out
+    private boolean hasCurrent;
+    private boolean canModify;  // set()/remove() are allowed
+    private boolean closed;
+
+    private CompactingListCursor(List<E> list) {
+        this.list = list;
+        this.originalSize = list.size();
+    }
+
+    public static <E> CompactingListCursor<E> of(List<E> list) {
+        if (!(list instanceof RandomAccess)) {
+            throw new IllegalArgumentException("CompactingListCursor needs a RandomAccess list, got "
+                    + list.getClass().getName());
+        }
+        return new CompactingListCursor<>(list);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return read < originalSize;
+    }
+
+    @Override
+    public E next() {
+        checkOpen();
+        if (!hasNext()) throw new NoSuchElementException();
+        flushCurrent();
+        current = list.get(read++);
+        hasCurrent = true;
+        canModify = true;
+        drainOverflow(); // the slot we just read from is free now
+        return current;
+    }
+
+    @Override
+    public void remove() {
+        checkOpen();
+        if (!canModify) throw new IllegalStateException();
+        hasCurrent = false;
+        current = null;
+        canModify = false;
+    }
+
+    @Override
+    public void set(E e) {
+        checkOpen();
+        if (!canModify) throw new IllegalStateException();
+        current = e;
+        hasCurrent = true;
+    }
+
+    // Inserts e before the element the next call to next() would return.
+    @Override
+    public void add(E e) {
+        checkOpen();
+        flushCurrent();
+        emit(e);
+        canModify = false;
+    }
+
+    @Override
+    public int nextIndex() {
+        return write + (overflow.size() - overflowHead) + (hasCurrent ? 1 : 0);
+    }
+
+    @Override
+    public int previousIndex() {
+        return nextIndex() - 1;
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return nextIndex() > 0;
+    }
+
+    @Override
+    public E previous() {
+        throw new UnsupportedOperationException("CompactingListCursor only moves forward");
+    }
+
+    // Applies all removals and insertions to the list in one O(n) pass.
+    @Override
+    public void close() {
+        if (closed) return;
+        if (list.size() != originalSize) throw new ConcurrentModificationException();
+        flushCurrent();
+        closed = true;
+
+        int pending = overflow.size() - overflowHead;
+        int tail = originalSize - read;
+        int newSize = write + pending + tail;
+        if (newSize > originalSize) {
+            // Grow once, then move the unread tail right to make room for the overflow
+            list.addAll(Collections.nCopies(newSize - originalSize, (E) null));
+            for (int i = tail - 1; i >= 0; i--) {
+                list.set(write + pending + i, list.get(read + i));
+            }
+        } else {
+            // Move the unread tail left over the gap, then drop the end in one call
+            for (int i = 0; i < tail; i++) {
+                list.set(write + pending + i, list.get(read + i));
+            }
+            list.subList(newSize, originalSize).clear();
+        }
+        for (int i = 0; i < pending; i++) {
+            list.set(write + i, overflow.get(overflowHead + i));
+        }
+    }
+
+    private void flushCurrent() {
+        if (hasCurrent) {
+            emit(current);
+            hasCurrent = false;
+            current = null;
+        }
+    }
+
+    private void emit(E e) {
+        if (overflowHead == overflow.size() && write < read) {
+            list.set(write++, e);
+        } else {
+            overflow.add(e); // keep order: nothing may overtake what is already waiting
+        }
+    }
+
+    private void drainOverflow() {
+        while (overflowHead < overflow.size() && write < read) {
+            list.set(write++, overflow.get(overflowHead));
+            overflow.set(overflowHead++, null);
+        }
+        if (overflowHead == overflow.size() && overflowHead > 0) {
+            overflow.clear();
+            overflowHead = 0;
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("Cursor is closed");
+    }
+}
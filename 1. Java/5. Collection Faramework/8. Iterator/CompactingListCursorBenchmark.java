@@ -0,0 +1,61 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+
+// ArrayList.listIterator() against CompactingListCursor for one filtering pass
+// that removes every 10th element and inserts after every 100th. The
+// ArrayList iterator shifts the tail on every change, so its time grows with
+// n^2; the cursor's grows with n.
+// Run with: java CompactingListCursorBenchmark
+public class CompactingListCursorBenchmark {
+    public static void main(String[] args) {
+        System.out.printf("%10s %22s %22s%n", "n", "ArrayList.listIterator", "CompactingListCursor");
+        for (int n : new int[] {10_000, 100_000, 1_000_000}) {
+            long iteratorNanos = timeListIterator(n);
+            long cursorNanos = timeCursor(n);
+            System.out.printf("%10d %19.1f ms %19.1f ms%n", n, iteratorNanos / 1e6, cursorNanos / 1e6);
+        }
+    }
+
+    private static long timeListIterator(int n) {
+        List<Integer> list = filledList(n);
+        long start = System.nanoTime();
+        ListIterator<Integer> it = list.listIterator();
+        while (it.hasNext()) {
+            int value = it.next();
+            if (value % 10 == 0) it.remove();
+            else if (value % 100 == 1) it.add(-value);
+        }
+        long elapsed = System.nanoTime() - start;
+        check(list, n);
+        return elapsed;
+    }
+
+    private static long timeCursor(int n) {
+        List<Integer> list = filledList(n);
+        long start = System.nanoTime();
+        try (CompactingListCursor<Integer> cursor = CompactingListCursor.of(list)) {
+            while (cursor.hasNext()) {
+                int value = cursor.next();
+                if (value % 10 == 0) cursor.remove();
+                else if (value % 100 == 1) cursor.add(-value);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        check(list, n);
+        return elapsed;
+    }
+
+    private static List<Integer> filledList(int n) {
+        List<Integer> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) list.add(i);
+        return list;
+    }
+
+    private static void check(List<Integer> list, int n) {
+        int expected = n - n / 10 + n / 100;
+        if (list.size() != expected) {
+            throw new IllegalStateException("Expected " + expected + " elements, got " + list.size());
+        }
+    }
+}
@@ -0,0 +1,335 @@
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The producer/consumer flow as a java.util.concurrent.Flow.Publisher: no
+// thread ever blocks, so thousands of producers and consumers can share a
+// handful of threads.
+//
+// In ProducerConsumerExample a producer that finds the queue full waits()
+// inside SharedQueue.produce, holding on to its thread. Here the consumer
+// decides how much it wants (Flow.Subscription.request(n)) and nothing is
+// pushed beyond that:
+// - Every subscriber has its own bounded buffer. Items wait there until the
+//   subscriber has demand; a slow subscriber only fills its own buffer.
+// - Signals (onSubscribe, onNext, onComplete, onError) are delivered by drain
+//   tasks on a shared Executor, one task per subscriber at a time, so a
+//   subscriber is never called concurrently. A drain task delivers at most
+//   maxBatch items and then resubmits itself, so one busy subscriber cannot
+//   starve thousands of others on the same threads.
+// - Fan-out: every subscriber receives every item published after it
+//   subscribed.
+// - Back-pressure reaches the producer without blocking it:
+//   from(source, ...) pulls the next item from a Source only while every
+//   subscriber's buffer has room, as a task on the executor. A producer that
+//   pushes with offer() gets false when a buffer is full, and onReady() tells
+//   it when to try again.
+//
+// Usage:
+//   ExecutorService pool = Executors.newFixedThreadPool(4);
+//   AtomicInteger counter = new AtomicInteger();
+//   DemandPublisher<Integer> producer = DemandPublisher.from(
+//           () -> counter.get() < 100 ? counter.getAndIncrement() : null, pool, 16);
+//   producer.subscribe(new DemandSubscriber<>(8) {
+//       protected void onItem(Integer item) { System.out.println("Consumed: " + item); }
+//   });
+//   producer.start();
+//
+// A Subscriber that throws from onNext is cancelled (Reactive Streams rule 2.13).
+public final class DemandPublisher<T> implements Flow.Publisher<T>, AutoCloseable {
+    // Produces items on demand; null means there are no more (the publisher
+    // then completes). Called on the executor, never concurrently.
+    @FunctionalInterface
+    public interface Source<T> {
+        T next() throws Exception;
+    }
+
+    private final Executor executor;
+    private final int bufferCapacity;
+    private final int maxBatch;
+    private final Source<T> source;
+    private final CopyOnWriteArrayList<DemandSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Object offerLock = new Object();
+    private final AtomicInteger pumpWork = new AtomicInteger();
+    private final Runnable pumpTask = this::pump;
+    private volatile boolean started;
+    private volatile boolean closed;
+    private volatile Throwable closedWith;
+    private final AtomicBoolean readyWanted = new AtomicBoolean();
+    private volatile Runnable onReady;
+
+    private DemandPublisher(Source<T> source, Executor executor, int bufferCapacity, int maxBatch) {
+        if (bufferCapacity < 1) throw new IllegalArgumentException("Buffer capacity must be >= 1: " + bufferCapacity);
+        if (maxBatch < 1) throw new IllegalArgumentException("Max batch must be >= 1: " + maxBatch);
+        this.source = source;
+        this.executor = Objects.requireNonNull(executor);
+        this.bufferCapacity = bufferCapacity;
+        this.maxBatch = maxBatch;
+        this.started = source == null;
+    }
+
+    // A publisher fed with offer(); bufferCapacity items per subscriber
+    public static <T> DemandPublisher<T> create(Executor executor, int bufferCapacity) {
+        return new DemandPublisher<>(null, executor, bufferCapacity, 64);
+    }
+
+    // A publisher that pulls from source whenever every subscriber's buffer has
+    // room, once start() has been called (so that subscribers attached before
+    // start() all see the first item)
+    public static <T> DemandPublisher<T> from(Source<T> source, Executor executor, int bufferCapacity) {
+        return new DemandPublisher<>(Objects.requireNonNull(source), executor, bufferCapacity, 64);
+    }
+
+    // Same, delivering at most maxBatch items per task before yielding the thread
+    public static <T> DemandPublisher<T> from(Source<T> source, Executor executor, int bufferCapacity, int maxBatch) {
+        return new DemandPublisher<>(Objects.requireNonNull(source), executor, bufferCapacity, maxBatch);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        DemandSubscription s = new DemandSubscription(Objects.requireNonNull(subscriber));
+        if (!closed) subscriptions.add(s);
+        s.signal(); // onSubscribe, then onComplete right away if already closed
+        if (source != null && started) wakeProducer(); // the source may have stopped for lack of subscribers
+    }
+
+    // Source publishers: starts pulling items
+    public void start() {
+        started = true;
+        wakeProducer();
+    }
+
+    // Publishes item to every current subscriber. Never blocks: returns false,
+    // and delivers to nobody, if some subscriber's buffer is full.
+    public boolean offer(T item) {
+        Objects.requireNonNull(item);
+        if (source != null) throw new IllegalStateException("This publisher pulls from its source");
+        if (closed) throw new IllegalStateException("Publisher is closed");
+        return deliver(item);
+    }
+
+    // Runs callback (on the executor) once after a rejected offer(), as soon
+    // as every buffer has room again
+    public void onReady(Runnable callback) {
+        this.onReady = callback;
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Subscribers receive what is buffered, then onComplete
+    @Override
+    public void close() {
+        closeExceptionally(null);
+    }
+
+    // Subscribers receive what is buffered, then onError(error)
+    public void closeExceptionally(Throwable error) {
+        synchronized (offerLock) {
+            if (closed) return;
+            closedWith = error;
+            closed = true;
+        }
+        for (DemandSubscription s : subscriptions) s.signal();
+    }
+
+    private boolean deliver(T item) {
+        synchronized (offerLock) {
+            if (closed) return false;
+            if (!allHaveRoom()) {
+                readyWanted.set(true);
+                // A drain may have made room meanwhile; if it took the flag, onReady is on its way
+                if (!allHaveRoom() || !readyWanted.compareAndSet(true, false)) return false;
+            }
+            for (DemandSubscription s : subscriptions) s.enqueue(item);
+        }
+        for (DemandSubscription s : subscriptions) s.signal();
+        return true;
+    }
+
+    private boolean allHaveRoom() {
+        for (DemandSubscription s : subscriptions) {
+            if (s.buffered() >= bufferCapacity) return false;
+        }
+        return true;
+    }
+
+    // Called when a buffer got room or a subscriber left
+    private void wakeProducer() {
+        if (source != null) {
+            if (pumpWork.getAndIncrement() == 0) execute(pumpTask);
+        } else if (readyWanted.get() && allHaveRoom() && readyWanted.compareAndSet(true, false)) {
+            Runnable callback = onReady;
+            if (callback != null) execute(callback);
+        }
+    }
+
+    // Pulls from the source while every buffer has room; one task at a time
+    private void pump() {
+        int missed = 1;
+        while (true) {
+            int produced = 0;
+            while (produced < maxBatch && started && !closed && !subscriptions.isEmpty() && allHaveRoom()) {
+                T item;
+                try {
+                    item = source.next();
+                } catch (Throwable t) {
+                    closeExceptionally(t);
+                    break;
+                }
+                if (item == null) {
+                    close();
+                    break;
+                }
+                deliver(item);
+                produced++;
+            }
+            if (produced == maxBatch) {
+                execute(pumpTask); // more to do: give other tasks a turn first
+                return;
+            }
+            missed = pumpWork.addAndGet(-missed);
+            if (missed == 0) return;
+        }
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            closeExceptionally(e); // a shut-down executor cannot deliver anything any more
+        }
+    }
+
+    // One subscriber: its buffer, its demand and its drain task
+    private final class DemandSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Object[] buffer = new Object[bufferCapacity];
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile long head; // next item to deliver (drain task only)
+        private volatile long tail; // next free position (under offerLock)
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private boolean subscribed;
+        private boolean terminated;
+
+        DemandSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        int buffered() {
+            return cancelled ? 0 : (int) (tail - head);
+        }
+
+        // Caller holds offerLock and has checked there is room
+        void enqueue(T item) {
+            if (cancelled) return;
+            long t = tail;
+            buffer[(int) (t % bufferCapacity)] = item;
+            tail = t + 1; // volatile write publishes the item to the drain task
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("request(n) needs n > 0 (rule 3.9): " + n);
+            } else {
+                demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) return;
+            cancelled = true;
+            subscriptions.remove(this);
+            signal(); // the drain task drops the buffer
+            wakeProducer();
+        }
+
+        void signal() {
+            if (work.getAndIncrement() == 0) execute(this);
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            while (true) {
+                int delivered = drain();
+                if (delivered == maxBatch) {
+                    execute(this); // keeps 'work' above zero, so nobody else schedules it
+                    return;
+                }
+                missed = work.addAndGet(-missed);
+                if (missed == 0) return;
+            }
+        }
+
+        // Delivers up to maxBatch items; returns how many
+        private int drain() {
+            if (terminated) return 0;
+            if (!subscribed) {
+                subscribed = true;
+                try {
+                    subscriber.onSubscribe(this);
+                } catch (Throwable t) {
+                    cancel();
+                }
+            }
+            if (cancelled) {
+                terminated = true;
+                for (long h = head; h < tail; h++) buffer[(int) (h % bufferCapacity)] = null;
+                return 0;
+            }
+            if (invalidRequest != null) {
+                terminate(invalidRequest);
+                return 0;
+            }
+            int delivered = 0;
+            while (delivered < maxBatch && !cancelled) {
+                long h = head;
+                if (h == tail || demand.get() == 0) break;
+                int index = (int) (h % bufferCapacity);
+                @SuppressWarnings("unchecked")
+                T item = (T) buffer[index];
+                buffer[index] = null;
+                head = h + 1;
+                if (demand.get() != Long.MAX_VALUE) demand.decrementAndGet();
+                delivered++;
+                try {
+                    subscriber.onNext(item);
+                } catch (Throwable t) {
+                    cancel();
+                }
+            }
+            if (delivered > 0) wakeProducer();
+            if (closed && head == tail && !cancelled) terminate(closedWith);
+            return delivered;
+        }
+
+        private void terminate(Throwable error) {
+            terminated = true;
+            cancelled = true;
+            subscriptions.remove(this);
+            try {
+                if (error == null) subscriber.onComplete();
+                else subscriber.onError(error);
+            } catch (Throwable ignored) {
+                // Rule 2.13: nothing left to tell the subscriber
+            }
+            wakeProducer();
+        }
+    }
+}
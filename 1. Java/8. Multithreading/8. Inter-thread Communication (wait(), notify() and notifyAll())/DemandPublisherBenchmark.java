@@ -0,0 +1,204 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Many independent producer -> consumer pairs, each moving a fixed number of
+// items:
+// - thread per producer and per consumer over a SharedQueue-style monitor
+//   queue (wait/notifyAll, as in ProducerConsumerExample, without printing);
+// - DemandPublisher pulling from a Source, on a pool of 4 threads;
+// - the same with two subscribers per publisher (fan-out);
+// - DemandPublisher fed with offer(), producers resumed by onReady();
+// - the pulling variant with ten times as many pairs.
+// Reports time, items handed to consumers per second and the peak number of
+// live threads.
+// Run with: java DemandPublisherBenchmark [pairs] [itemsPerProducer]
+// (default 1,000 pairs x 1,000 items). Each variant runs twice; the second
+// run is reported.
+public class DemandPublisherBenchmark {
+    private static final int CAPACITY = 16;
+    private static final int POOL_THREADS = 4;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int items = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        System.out.printf("%,d producers x %,d items, buffers of %d, %d cores%n", pairs, items, CAPACITY,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-48s %10s %14s %12s%n", "", "ms", "deliveries/s", "peak threads");
+
+        measure("thread per producer/consumer (SharedQueue)", (long) pairs * items, () -> threaded(pairs, items));
+        measure("DemandPublisher, source, " + POOL_THREADS + " threads", (long) pairs * items,
+                () -> pulled(pairs, items, 1));
+        measure("DemandPublisher, source, 2 subscribers each", 2L * pairs * items, () -> pulled(pairs, items, 2));
+        measure("DemandPublisher, offer() + onReady()", (long) pairs * items, () -> offered(pairs, items));
+        measure("DemandPublisher, source, " + 10 * pairs + " pairs", 10L * pairs * items,
+                () -> pulled(10 * pairs, items, 1));
+    }
+
+    interface Measured {
+        long run() throws Exception;
+    }
+
+    private static void measure(String label, long deliveries, Measured measured) throws Exception {
+        long nanos = 0;
+        for (int round = 0; round < 2; round++) {
+            System.gc();
+            THREADS.resetPeakThreadCount();
+            long start = System.nanoTime();
+            long sum = measured.run();
+            nanos = System.nanoTime() - start;
+            if (sum != deliveries) throw new IllegalStateException(label + ": lost or duplicated items");
+            sink += sum;
+        }
+        System.out.printf("%-48s %10.0f %,14.0f %12d%n", label, nanos / 1e6, deliveries / (nanos / 1e9),
+                THREADS.getPeakThreadCount());
+    }
+
+    // ---- Thread per producer and consumer ----
+
+    // SharedQueue from ProducerConsumerExample, without println
+    static final class MonitorQueue {
+        private final Queue<Integer> queue = new LinkedList<>();
+
+        synchronized void produce(int item) throws InterruptedException {
+            while (queue.size() == CAPACITY) wait();
+            queue.offer(item);
+            notifyAll();
+        }
+
+        synchronized int consume() throws InterruptedException {
+            while (queue.isEmpty()) wait();
+            int item = queue.poll();
+            notifyAll();
+            return item;
+        }
+    }
+
+    private static long threaded(int pairs, int items) throws InterruptedException {
+        AtomicLong total = new AtomicLong();
+        CountDownLatch go = new CountDownLatch(1); // all pairs alive at once, like the pooled variants
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < pairs; p++) {
+            MonitorQueue queue = new MonitorQueue();
+            threads.add(new Thread(() -> {
+                try {
+                    go.await();
+                    for (int i = 0; i < items; i++) queue.produce(i);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            threads.add(new Thread(() -> {
+                try {
+                    long count = 0;
+                    for (int i = 0; i < items; i++) {
+                        queue.consume();
+                        count++;
+                    }
+                    total.addAndGet(count);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Thread t : threads) t.start();
+        go.countDown();
+        for (Thread t : threads) t.join();
+        return total.get();
+    }
+
+    // ---- DemandPublisher ----
+
+    static final class Counter extends DemandSubscriber<Integer> {
+        private final AtomicLong total;
+        private final CountDownLatch done;
+        private long count;
+
+        Counter(AtomicLong total, CountDownLatch done) {
+            super(CAPACITY);
+            this.total = total;
+            this.done = done;
+        }
+
+        @Override
+        protected void onItem(Integer item) {
+            count++;
+        }
+
+        @Override
+        protected void onDone(Throwable error) {
+            if (error != null) error.printStackTrace();
+            total.addAndGet(count);
+            done.countDown();
+        }
+    }
+
+    private static long pulled(int pairs, int items, int subscribersEach) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(POOL_THREADS);
+        AtomicLong total = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(pairs * subscribersEach);
+        List<DemandPublisher<Integer>> publishers = new ArrayList<>();
+        for (int p = 0; p < pairs; p++) {
+            int[] next = new int[1];
+            DemandPublisher<Integer> publisher = DemandPublisher.from(
+                    () -> next[0] < items ? next[0]++ : null, pool, CAPACITY);
+            for (int s = 0; s < subscribersEach; s++) publisher.subscribe(new Counter(total, done));
+            publishers.add(publisher);
+        }
+        for (DemandPublisher<Integer> publisher : publishers) publisher.start();
+        done.await();
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        return total.get();
+    }
+
+    // A producer without a thread: offers until refused, resumes in onReady
+    static final class OfferingProducer implements Runnable {
+        private final DemandPublisher<Integer> publisher;
+        private final int items;
+        private int next;
+
+        OfferingProducer(DemandPublisher<Integer> publisher, int items) {
+            this.publisher = publisher;
+            this.items = items;
+            publisher.onReady(this);
+        }
+
+        @Override
+        public void run() {
+            while (next < items) {
+                if (!publisher.offer(next)) return;
+                next++;
+            }
+            publisher.close();
+        }
+    }
+
+    private static long offered(int pairs, int items) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(POOL_THREADS);
+        AtomicLong total = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(pairs);
+        List<OfferingProducer> producers = new ArrayList<>();
+        for (int p = 0; p < pairs; p++) {
+            DemandPublisher<Integer> publisher = DemandPublisher.create(pool, CAPACITY);
+            publisher.subscribe(new Counter(total, done));
+            producers.add(new OfferingProducer(publisher, items));
+        }
+        for (OfferingProducer producer : producers) pool.execute(producer);
+        done.await();
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        return total.get();
+    }
+}
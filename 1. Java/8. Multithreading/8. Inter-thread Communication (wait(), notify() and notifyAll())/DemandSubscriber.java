@@ -0,0 +1,62 @@
+import java.util.concurrent.Flow;
+
+// A Flow.Subscriber that keeps a window of demand open, the usual way to
+// consume a DemandPublisher: it requests 'window' items up front and requests
+// more each time half of them have been handled. A larger window means fewer
+// request() calls; a smaller one keeps a slow consumer from being flooded.
+//
+// Usage:
+//   publisher.subscribe(new DemandSubscriber<String>(32) {
+//       protected void onItem(String item) { System.out.println("Consumed: " + item); }
+//       protected void onDone(Throwable error) { latch.countDown(); }
+//   });
+//
+// Handlers run on the publisher's executor and must not block.
+public abstract class DemandSubscriber<T> implements Flow.Subscriber<T> {
+    private final int window;
+    private final int refill;
+    private Flow.Subscription subscription;
+    private int handledSinceRequest;
+
+    protected DemandSubscriber(int window) {
+        if (window < 1) throw new IllegalArgumentException("Window must be >= 1: " + window);
+        this.window = window;
+        this.refill = Math.max(1, window / 2);
+    }
+
+    protected abstract void onItem(T item);
+
+    // After the last item; error is null on normal completion
+    protected void onDone(Throwable error) {
+    }
+
+    // Stops the flow; no onDone follows
+    protected final void cancel() {
+        subscription.cancel();
+    }
+
+    @Override
+    public final void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(window);
+    }
+
+    @Override
+    public final void onNext(T item) {
+        onItem(item);
+        if (++handledSinceRequest == refill) {
+            handledSinceRequest = 0;
+            subscription.request(refill);
+        }
+    }
+
+    @Override
+    public final void onError(Throwable error) {
+        onDone(error);
+    }
+
+    @Override
+    public final void onComplete() {
+        onDone(null);
+    }
+}
@@ -0,0 +1,425 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+// A multi-stage pipeline over one preallocated ring of event slots
+// (the LMAX Disruptor design).
+//
+// Chaining SharedQueues (parse -> queue -> enrich -> queue -> persist) costs
+// on every hop: a lock, a notifyAll that wakes threads, a new object for the
+// next stage, and one item per hand-off. Here the events never move:
+// - The ring holds bufferSize mutable event objects, created once. A producer
+//   claims the next sequence number, fills the slot at sequence & (size - 1)
+//   in place and publishes it by advancing a cursor.
+// - Every stage thread keeps its own sequence: the last event it finished.
+//   A stage waits on a barrier, the minimum sequence of the step before it
+//   (the cursor for the first step), and then processes everything up to that
+//   point in one batch, publishing its own sequence once per batch.
+//   onEvent's endOfBatch flag lets a stage flush batched work (e.g. one
+//   database write per batch).
+// - Handlers in the same step run in parallel on the same events, e.g. two
+//   enrichers that fill different fields. thenSharded() instead splits one
+//   step's events between several threads by sequence number.
+// - The producer may not lap the slowest handler of the last step, so the
+//   ring is also the back-pressure.
+// No locks, no allocation per event, and each sequence is written by exactly
+// one thread; the only contended operation is the claim by several producers
+// (ProducerType.MULTI, one CAS per event).
+//
+// Usage:
+//   RingPipeline<Order> pipeline = RingPipeline.builder(Order::new)
+//           .bufferSize(1024)
+//           .then((order, seq, endOfBatch) -> order.parse())       // step 1
+//           .then(priceEnricher, customerEnricher)                 // step 2, in parallel
+//           .then(new BatchingPersister())                         // step 3
+//           .build();                                              // threads start here
+//   pipeline.publish((order, line) -> order.raw = line, "42,widget,3");
+//   pipeline.close(); // drains everything published, then stops the threads
+//
+// A handler that throws does not stop the pipeline; the first failure is kept,
+// and publish() and close() throw IllegalStateException with it as the cause.
+public final class RingPipeline<E> implements AutoCloseable {
+    public enum ProducerType {
+        SINGLE, // one publishing thread: no CAS at all
+        MULTI   // any number of publishing threads
+    }
+
+    public enum WaitStrategy {
+        BUSY_SPIN, // lowest latency, burns a core per idle thread
+        YIELDING,  // spin, then Thread.yield()
+        PARKING    // spin, yield, then park 50 microseconds: least CPU when idle
+    }
+
+    @FunctionalInterface
+    public interface EventHandler<E> {
+        // endOfBatch is true for the last event currently available to this handler
+        void onEvent(E event, long sequence, boolean endOfBatch) throws Exception;
+    }
+
+    private static final long HALTED = Long.MIN_VALUE;
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    private final Object[] slots;
+    private final int mask;
+    private final int indexShift;
+    private final ProducerType producerType;
+    private final WaitStrategy waitStrategy;
+    // SINGLE: last published sequence. MULTI: last claimed sequence; published
+    // slots are marked in the available array.
+    private final Sequence cursor = new Sequence(-1);
+    private final AtomicIntegerArray available;
+    private final Sequence gatingCache = new Sequence(-1); // last known minimum of the last step
+    private final List<Processor> processors = new ArrayList<>();
+    private final Sequence[] lastStep;
+    private long claimed = -1; // SINGLE producer's own claim counter
+
+    private volatile boolean running = true;
+    private volatile Throwable failure;
+
+    private RingPipeline(Builder<E> builder) {
+        int size = builder.bufferSize;
+        this.slots = new Object[size];
+        for (int i = 0; i < size; i++) slots[i] = builder.factory.get();
+        this.mask = size - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(size);
+        this.producerType = builder.producerType;
+        this.waitStrategy = builder.waitStrategy;
+        if (producerType == ProducerType.MULTI) {
+            available = new AtomicIntegerArray(size);
+            for (int i = 0; i < size; i++) available.set(i, -1);
+        } else {
+            available = null;
+        }
+
+        Sequence[] upstream = {cursor};
+        int step = 0;
+        for (List<StepHandler<E>> handlers : builder.steps) {
+            Sequence[] own = new Sequence[handlers.size()];
+            for (int i = 0; i < handlers.size(); i++) {
+                StepHandler<E> h = handlers.get(i);
+                Processor p = new Processor(h.handler, upstream, step == 0, h.shard, h.ways);
+                own[i] = p.sequence;
+                processors.add(p);
+            }
+            upstream = own;
+            step++;
+        }
+        this.lastStep = upstream;
+
+        int number = 0;
+        for (Processor p : processors) {
+            p.thread = new Thread(p, "pipeline-" + number++);
+            p.thread.setDaemon(true);
+            p.thread.start();
+        }
+    }
+
+    public static <E> Builder<E> builder(Supplier<E> factory) {
+        return new Builder<>(factory);
+    }
+
+    // ---- Producing ----
+
+    // Claims the next slot, waiting while the ring is full. Fill the event from
+    // get(sequence), then call publish(sequence); every claimed sequence must be
+    // published, or the stages stop at it.
+    public long next() {
+        checkUsable();
+        if (producerType == ProducerType.SINGLE) {
+            long next = ++claimed;
+            awaitCapacity(next);
+            return next;
+        }
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            awaitCapacity(next);
+            if (cursor.compareAndSet(current, next)) return next;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) slots[(int) sequence & mask];
+    }
+
+    public void publish(long sequence) {
+        if (producerType == ProducerType.SINGLE) {
+            cursor.setRelease(sequence);
+        } else {
+            available.lazySet((int) sequence & mask, (int) (sequence >>> indexShift)); // the slot's lap
+        }
+    }
+
+    // next(), fill with translator(event, argument), publish(): no lambda capture needed
+    public <A> long publish(BiConsumer<E, A> translator, A argument) {
+        long sequence = next();
+        try {
+            translator.accept(get(sequence), argument);
+        } finally {
+            publish(sequence);
+        }
+        return sequence;
+    }
+
+    private void awaitCapacity(long next) {
+        long wrapPoint = next - slots.length;
+        if (wrapPoint <= gatingCache.get()) return;
+        int idle = 0;
+        long minimum;
+        while (wrapPoint > (minimum = minimum(lastStep))) {
+            checkUsable();
+            idle(idle++);
+        }
+        gatingCache.setRelease(minimum);
+    }
+
+    // Highest sequence all handlers of the last step have finished
+    public long completed() {
+        return minimum(lastStep);
+    }
+
+    // Last sequence handed out to a producer
+    public long claimedSequence() {
+        return producerType == ProducerType.SINGLE ? claimed : cursor.get();
+    }
+
+    // Waits until every handler has processed every published event, then
+    // stops the stage threads. Producers must have stopped publishing.
+    @Override
+    public void close() {
+        long last = claimedSequence();
+        int idle = 0;
+        while (running && minimum(lastStep) < last) {
+            if (!processorsAlive()) break;
+            idle(idle++);
+        }
+        running = false;
+        boolean interrupted = false;
+        for (Processor p : processors) {
+            LockSupport.unpark(p.thread);
+            while (p.thread.isAlive()) {
+                try {
+                    p.thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw handlerFailure();
+    }
+
+    private boolean processorsAlive() {
+        for (Processor p : processors) {
+            if (!p.thread.isAlive()) return false;
+        }
+        return true;
+    }
+
+    private void checkUsable() {
+        if (failure != null) throw handlerFailure();
+        if (!running) throw new IllegalStateException("Pipeline is closed");
+    }
+
+    private IllegalStateException handlerFailure() {
+        return new IllegalStateException("Pipeline handler failed", failure);
+    }
+
+    private static long minimum(Sequence[] sequences) {
+        long minimum = Long.MAX_VALUE;
+        for (Sequence s : sequences) minimum = Math.min(minimum, s.get());
+        return minimum;
+    }
+
+    private void idle(int counter) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                Thread.onSpinWait();
+                break;
+            case YIELDING:
+                if (counter < 100) Thread.onSpinWait();
+                else Thread.yield();
+                break;
+            default:
+                if (counter < 100) Thread.onSpinWait();
+                else if (counter < 200) Thread.yield();
+                else LockSupport.parkNanos(IDLE_PARK_NANOS);
+                break;
+        }
+    }
+
+    // ---- Stages ----
+
+    private final class Processor implements Runnable {
+        final Sequence sequence = new Sequence(-1);
+        private final EventHandler<E> handler;
+        private final Sequence[] upstream;
+        private final boolean firstStep;
+        private final int shard;
+        private final int ways;
+        Thread thread;
+
+        Processor(EventHandler<E> handler, Sequence[] upstream, boolean firstStep, int shard, int ways) {
+            this.handler = handler;
+            this.upstream = upstream;
+            this.firstStep = firstStep;
+            this.shard = shard;
+            this.ways = ways;
+        }
+
+        @Override
+        public void run() {
+            long next = 0;
+            while (true) {
+                long availableSequence = waitFor(next);
+                if (availableSequence == HALTED) return;
+                for (long s = next; s <= availableSequence; s++) {
+                    if (ways > 1 && s % ways != shard) continue;
+                    boolean endOfBatch = s + (ways > 1 ? ways : 1) > availableSequence;
+                    try {
+                        handler.onEvent(get(s), s, endOfBatch);
+                    } catch (Throwable t) {
+                        if (failure == null) failure = t;
+                    }
+                }
+                sequence.setRelease(availableSequence); // one release per batch
+                next = availableSequence + 1;
+            }
+        }
+
+        // The highest sequence this stage may process, at least next; HALTED on close
+        private long waitFor(long next) {
+            int idle = 0;
+            while (true) {
+                long availableSequence = minimum(upstream);
+                if (availableSequence >= next) {
+                    if (!firstStep || producerType == ProducerType.SINGLE) return availableSequence;
+                    // Several producers: claimed is not published; stop at the first gap
+                    long published = highestPublished(next, availableSequence);
+                    if (published >= next) return published;
+                }
+                if (!running) return HALTED;
+                idle(idle++);
+            }
+        }
+    }
+
+    private long highestPublished(long low, long high) {
+        for (long s = low; s <= high; s++) {
+            if (available.get((int) s & mask) != (int) (s >>> indexShift)) return s - 1;
+        }
+        return high;
+    }
+
+    // A sequence number on its own cache lines, so that stages updating
+    // neighbouring sequences do not invalidate each other's caches
+    @SuppressWarnings("unused")
+    private static final class Sequence {
+        private static final VarHandle VALUE;
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(Sequence.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private long p1, p2, p3, p4, p5, p6, p7;
+        private volatile long value;
+        private long p9, p10, p11, p12, p13, p14, p15;
+
+        Sequence(long initial) {
+            value = initial;
+        }
+
+        long get() {
+            return value;
+        }
+
+        void setRelease(long v) {
+            VALUE.setRelease(this, v);
+        }
+
+        boolean compareAndSet(long expected, long v) {
+            return VALUE.compareAndSet(this, expected, v);
+        }
+    }
+
+    private static final class StepHandler<E> {
+        final EventHandler<E> handler;
+        final int shard;
+        final int ways;
+
+        StepHandler(EventHandler<E> handler, int shard, int ways) {
+            this.handler = handler;
+            this.shard = shard;
+            this.ways = ways;
+        }
+    }
+
+    public static final class Builder<E> {
+        private final Supplier<E> factory;
+        private final List<List<StepHandler<E>>> steps = new ArrayList<>();
+        private int bufferSize = 1024;
+        private ProducerType producerType = ProducerType.SINGLE;
+        private WaitStrategy waitStrategy = WaitStrategy.PARKING;
+
+        private Builder(Supplier<E> factory) {
+            this.factory = factory;
+        }
+
+        // Slots in the ring, a power of two (default 1024)
+        public Builder<E> bufferSize(int size) {
+            if (size < 2 || Integer.bitCount(size) != 1) {
+                throw new IllegalArgumentException("Buffer size must be a power of two >= 2: " + size);
+            }
+            this.bufferSize = size;
+            return this;
+        }
+
+        public Builder<E> producerType(ProducerType type) {
+            this.producerType = type;
+            return this;
+        }
+
+        // How idle stages (and a producer facing a full ring) wait (default PARKING)
+        public Builder<E> waitStrategy(WaitStrategy strategy) {
+            this.waitStrategy = strategy;
+            return this;
+        }
+
+        // Adds a step: each handler sees every event, on its own thread, after
+        // all handlers of the previous step are done with it
+        @SafeVarargs
+        public final Builder<E> then(EventHandler<E>... handlers) {
+            if (handlers.length == 0) throw new IllegalArgumentException("A step needs at least one handler");
+            List<StepHandler<E>> step = new ArrayList<>();
+            for (EventHandler<E> h : handlers) step.add(new StepHandler<>(h, 0, 1));
+            steps.add(step);
+            return this;
+        }
+
+        // Adds a step whose events are split between ways threads: handler i
+        // gets the sequences with sequence % ways == i
+        public Builder<E> thenSharded(int ways, IntFunction<EventHandler<E>> handlers) {
+            if (ways < 1) throw new IllegalArgumentException("Ways must be >= 1: " + ways);
+            List<StepHandler<E>> step = new ArrayList<>();
+            for (int i = 0; i < ways; i++) step.add(new StepHandler<>(handlers.apply(i), i, ways));
+            steps.add(step);
+            return this;
+        }
+
+        public RingPipeline<E> build() {
+            if (steps.isEmpty()) throw new IllegalStateException("A pipeline needs at least one step");
+            return new RingPipeline<>(this);
+        }
+    }
+}
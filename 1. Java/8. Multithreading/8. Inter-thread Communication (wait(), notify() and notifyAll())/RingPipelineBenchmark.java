@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// parse -> enrich -> persist over a stream of "id,quantity,price" lines:
+// - three threads chained by SharedQueue-style monitor queues (wait/notifyAll,
+//   as in ProducerConsumerExample, without the printing), a new object per hop;
+// - the same with ArrayBlockingQueues;
+// - RingPipeline with the same three steps, with two enrichers in parallel,
+//   and with two producers.
+// Run with: java RingPipelineBenchmark [events]
+// Each variant runs twice; the second run is reported.
+public class RingPipelineBenchmark {
+    private static final int CAPACITY = 1024;
+    private static final Object END = new Object();
+    private static final String[] LINES = new String[1024];
+
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        long events = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000;
+        for (int i = 0; i < LINES.length; i++) LINES[i] = i + "," + (1 + i % 9) + "," + (100 + i * 37 % 5000);
+        System.out.printf("%,d events, %d cores%n", events, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-44s %12s %14s%n", "", "ms", "events/s");
+
+        measure("chained monitor queues (SharedQueue)", events, () -> chained(events, MonitorQueue::new));
+        measure("chained ArrayBlockingQueues", events, () -> chained(events, BlockingHop::new));
+        for (RingPipeline.WaitStrategy wait : new RingPipeline.WaitStrategy[] {
+                RingPipeline.WaitStrategy.PARKING, RingPipeline.WaitStrategy.YIELDING}) {
+            measure("ring, 3 steps, " + wait, events, () -> ring(events, wait, false, 1));
+            measure("ring, enrich x2 in parallel, " + wait, events, () -> ring(events, wait, true, 1));
+            measure("ring, 2 producers (MULTI), " + wait, events, () -> ring(events, wait, false, 2));
+        }
+    }
+
+    interface Measured {
+        long run() throws Exception;
+    }
+
+    private static void measure(String label, long events, Measured measured) throws Exception {
+        long nanos = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            sink += measured.run();
+            nanos = System.nanoTime() - start;
+        }
+        System.out.printf("%-44s %12.0f %,14.0f%n", label, nanos / 1e6, events / (nanos / 1e9));
+    }
+
+    // ---- The work, shared by all variants ----
+
+    static final class Order {
+        String raw;
+        long id;
+        int quantity;
+        long priceCents;
+        long totalCents;
+        int tier;
+
+        void parse() {
+            String s = raw;
+            int first = s.indexOf(',');
+            int second = s.indexOf(',', first + 1);
+            id = Long.parseLong(s, 0, first, 10);
+            quantity = Integer.parseInt(s, first + 1, second, 10);
+            priceCents = Long.parseLong(s, second + 1, s.length(), 10);
+        }
+
+        void price() {
+            totalCents = quantity * priceCents;
+        }
+
+        void tier() {
+            tier = (int) (id % 7);
+        }
+
+        long persisted() {
+            return id * 31 + totalCents + tier;
+        }
+
+        // What a hop between queues does: a new message for the next stage
+        Order copy() {
+            Order o = new Order();
+            o.raw = raw;
+            o.id = id;
+            o.quantity = quantity;
+            o.priceCents = priceCents;
+            o.totalCents = totalCents;
+            o.tier = tier;
+            return o;
+        }
+    }
+
+    // ---- Chained queues ----
+
+    interface Hop {
+        void put(Object item) throws InterruptedException;
+
+        Object take() throws InterruptedException;
+    }
+
+    // SharedQueue from ProducerConsumerExample, for objects, without println
+    static final class MonitorQueue implements Hop {
+        private final Queue<Object> queue = new LinkedList<>();
+
+        @Override
+        public synchronized void put(Object item) throws InterruptedException {
+            while (queue.size() == CAPACITY) wait();
+            queue.offer(item);
+            notifyAll();
+        }
+
+        @Override
+        public synchronized Object take() throws InterruptedException {
+            while (queue.isEmpty()) wait();
+            Object item = queue.poll();
+            notifyAll();
+            return item;
+        }
+    }
+
+    static final class BlockingHop implements Hop {
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(CAPACITY);
+
+        @Override
+        public void put(Object item) throws InterruptedException {
+            queue.put(item);
+        }
+
+        @Override
+        public Object take() throws InterruptedException {
+            return queue.take();
+        }
+    }
+
+    interface HopFactory {
+        Hop create();
+    }
+
+    private static long chained(long events, HopFactory factory) throws InterruptedException {
+        Hop toParse = factory.create();
+        Hop toEnrich = factory.create();
+        Hop toPersist = factory.create();
+        long[] result = new long[1];
+        List<Thread> threads = new ArrayList<>();
+        threads.add(stage(toParse, toEnrich, o -> o.parse()));
+        threads.add(stage(toEnrich, toPersist, o -> {
+            o.price();
+            o.tier();
+        }));
+        threads.add(new Thread(() -> {
+            try {
+                long sum = 0;
+                for (Object item; (item = toPersist.take()) != END; ) sum += ((Order) item).persisted();
+                result[0] = sum;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        for (Thread t : threads) t.start();
+        for (long i = 0; i < events; i++) {
+            Order o = new Order();
+            o.raw = LINES[(int) i & 1023];
+            toParse.put(o);
+        }
+        toParse.put(END);
+        for (Thread t : threads) t.join();
+        return result[0];
+    }
+
+    interface Work {
+        void apply(Order order);
+    }
+
+    private static Thread stage(Hop in, Hop out, Work work) {
+        return new Thread(() -> {
+            try {
+                for (Object item; (item = in.take()) != END; ) {
+                    Order o = (Order) item;
+                    work.apply(o);
+                    out.put(o.copy());
+                }
+                out.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    // ---- Ring ----
+
+    private static long ring(long events, RingPipeline.WaitStrategy wait, boolean parallelEnrich, int producers)
+            throws InterruptedException {
+        long[] sum = new long[1];
+        RingPipeline.Builder<Order> builder = RingPipeline.builder(Order::new)
+                .bufferSize(CAPACITY)
+                .waitStrategy(wait)
+                .producerType(producers > 1 ? RingPipeline.ProducerType.MULTI : RingPipeline.ProducerType.SINGLE)
+                .then((o, seq, endOfBatch) -> o.parse());
+        if (parallelEnrich) {
+            builder.then((o, seq, endOfBatch) -> o.price(), (o, seq, endOfBatch) -> o.tier());
+        } else {
+            builder.then((o, seq, endOfBatch) -> {
+                o.price();
+                o.tier();
+            });
+        }
+        RingPipeline<Order> pipeline = builder.then((o, seq, endOfBatch) -> sum[0] += o.persisted()).build();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long from = events * p / producers;
+            long to = events * (p + 1) / producers;
+            threads.add(new Thread(() -> {
+                for (long i = from; i < to; i++) pipeline.publish((o, line) -> o.raw = line, LINES[(int) i & 1023]);
+            }));
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+        pipeline.close(); // drains; the persist thread's writes are visible after the join
+        return sum[0];
+    }
+}